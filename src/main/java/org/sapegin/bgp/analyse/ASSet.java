@@ -0,0 +1,184 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Immutable set of AS names (numbers), which checks membership
+ *         without boxing and in constant time. It's used to filter messages
+ *         by ASs during parsing of updates and RIBs, where ArrayList.contains
+ *         was called for every message.
+ * 
+ *         2-byte AS numbers are stored in a bitset (8KB), other (4-byte) AS
+ *         numbers - in open-addressing hash table with linear probing.
+ * 
+ */
+public class ASSet extends AbstractSet<Integer> {
+
+	private static final int BITSET_SIZE = 1 << 16;
+
+	// AS 0 is reserved and always stored in the bitset, so 0 marks free
+	// slots in the table
+	private static final int FREE = 0;
+
+	private final long[] bits = new long[BITSET_SIZE / 64];
+
+	private final int[] table;
+
+	// all AS names in ascending order
+	private final int[] names;
+
+	public ASSet(Collection<Integer> ases) {
+		// remove duplicates
+		int[] sorted = new int[ases.size()];
+		int i = 0;
+		for (Integer as : ases) {
+			sorted[i++] = as;
+		}
+		Arrays.sort(sorted);
+
+		int length = 0;
+		for (i = 0; i < sorted.length; i++) {
+			if (length == 0 || sorted[length - 1] != sorted[i]) {
+				sorted[length++] = sorted[i];
+			}
+		}
+		names = Arrays.copyOf(sorted, length);
+
+		// keep load factor <= 0.5
+		int big = 0;
+		for (int as : names) {
+			if (!isSmall(as)) {
+				big++;
+			}
+		}
+		int tableSize = 2;
+		while (tableSize < big * 2) {
+			tableSize *= 2;
+		}
+		table = new int[tableSize];
+
+		for (int as : names) {
+			if (isSmall(as)) {
+				bits[as >>> 6] |= 1L << as;
+			} else {
+				int mask = table.length - 1;
+				int j = hash(as) & mask;
+				while (table[j] != FREE) {
+					j = (j + 1) & mask;
+				}
+				table[j] = as;
+			}
+		}
+	}
+
+	/**
+	 * returns the given collection, if it's already ASSet, or creates new
+	 * ASSet with the same AS names
+	 * 
+	 * @param ases
+	 * @return
+	 */
+	public static ASSet of(Collection<Integer> ases) {
+		if (ases instanceof ASSet) {
+			return (ASSet) ases;
+		}
+		return new ASSet(ases);
+	}
+
+	public boolean contains(int as) {
+		if (isSmall(as)) {
+			return (bits[as >>> 6] & (1L << as)) != 0;
+		}
+
+		int mask = table.length - 1;
+		int i = hash(as) & mask;
+		while (table[i] != FREE) {
+			if (table[i] == as) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return (o instanceof Integer) && contains(((Integer) o).intValue());
+	}
+
+	@Override
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * @return AS names in ascending order
+	 */
+	public int[] toIntArray() {
+		return names.clone();
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < names.length;
+			}
+
+			@Override
+			public Integer next() {
+				if (next >= names.length) {
+					throw new NoSuchElementException();
+				}
+				return names[next++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("ASSet is immutable");
+			}
+		};
+	}
+
+	private static boolean isSmall(int as) {
+		return as >= 0 && as < BITSET_SIZE;
+	}
+
+	private static int hash(int as) {
+		int h = as * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -26,6 +26,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -42,6 +43,9 @@ public class ASsNames {
 	// got in properties.
 	private ArrayList<Integer> asesNames = new ArrayList<Integer>();
 
+	// the same names for fast lookup
+	private ASSet asesSet;
+
 	// names of files with ASs lists. Each file contains a list of ASs monitored
 	// by 1 monitoring router (vantage point)
 	private ArrayList<String> inputASsFilenames = new ArrayList<String>();
@@ -59,12 +63,23 @@ public class ASsNames {
 		return asesNames;
 	}
 
+	/**
+	 * @return the same AS names as {@link #getASsNames()}, but in a set
+	 *         with fast lookup
+	 */
+	public ASSet getASsSet() {
+		return asesSet;
+	}
+
 	/**
 	 * This method reads unique AS names from files into ArrayList
 	 */
 	private void readASsNames() {
 		logger.info("loading ASs names...");
-		
+
+		// unique names in the order of files
+		LinkedHashSet<Integer> names = new LinkedHashSet<Integer>();
+
 		// for every file
 		for (String inputASsFilename : inputASsFilenames) {
 
@@ -81,12 +96,10 @@ public class ASsNames {
 						// parse AS name
 						int name = Integer.parseInt(str);
 
-						// add AS name to the array if not already there. It
+						// add AS name to the set if not already there. It
 						// could happen, if the previous file (corresponding to
 						// previous monitor router) has the same monitored AS.
-						if (!asesNames.contains(name)) {
-							asesNames.add(name);
-						}
+						names.add(name);
 
 					} catch (NumberFormatException e) {
 						logger.warn("Can't parse AS name in "
@@ -108,6 +121,9 @@ public class ASsNames {
 			}
 		}
 		
+		asesNames = new ArrayList<Integer>(names);
+		asesSet = new ASSet(names);
+
 		logger.info(asesNames.size() + " ASs loaded.");
 	}
 }
@@ -23,14 +23,19 @@
 package org.sapegin.bgp.analyse;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.sapegin.bgp.analyse.generics.ASsFactory;
+import org.sapegin.bgp.analyse.ribs.RIBLoader;
+import org.sapegin.bgp.analyse.updates.SelectiveIngest;
 import org.sapegin.bgp.analyse.visibility.ASsToAnalyse;
 import org.sapegin.bgp.analyse.visibility.VisibleDuplicatedSpikes;
 
@@ -59,10 +64,30 @@ public abstract class AnalyseSpikesTask<T extends ASsToAnalyse> {
 	protected ArrayList<String> inputRIBsFilenames = new ArrayList<String>();
 
 	protected Boolean useRIBs;
+
+	// maximum number of RIBs loaded at the same time, part of heap, which
+	// should stay free to start loading of next RIB, and if RIBs should be
+	// loaded from binary snapshots
+	protected int ribThreads;
+	protected double ribMemoryReserve;
+	protected boolean ribSnapshots;
+
+	// folder with spikes saved by previous runs, or null if spikes should not
+	// be cached
+	protected String spikeCacheFolder;
+	// store prefixes only for spikes, which could be analysed (see
+	// SelectiveIngest)
+	protected boolean selectiveIngest;
 	protected Boolean synchronise;
 	protected Boolean componentOnly;
 	protected Boolean correlated;
 
+	// all time buffers and duplication percentages to analyse (correlated
+	// analysis could classify spikes for all their combinations in one run)
+	protected ArrayList<Long> timeBuffers;
+	protected ArrayList<Double> duplicationPercentages;
+	// the widest time buffer and the lowest duplication percentage. If only
+	// one value is given, they are the same as given values
 	protected long timeBuffer;
 	protected double duplicationPercentage;
 
@@ -90,6 +115,26 @@ public abstract class AnalyseSpikesTask<T extends ASsToAnalyse> {
 
 		this.useRIBs = Boolean.parseBoolean(properties.getProperty("with_ribs",
 				"false"));
+		this.ribThreads = Integer.parseInt(properties.getProperty(
+				"rib_threads",
+				String.valueOf(Runtime.getRuntime().availableProcessors())));
+		this.ribMemoryReserve = Double.parseDouble(properties.getProperty(
+				"rib_memory_reserve",
+				String.valueOf(RIBLoader.DEFAULT_MEMORY_RESERVE)));
+		this.ribSnapshots = Boolean.parseBoolean(properties.getProperty(
+				"rib_snapshots", "false"));
+		if (Boolean.parseBoolean(properties.getProperty("spike_cache", "true"))) {
+			// by default, cache is kept next to the input_names file (i.e.
+			// with the data), not in the working directory
+			File inputNamesFolder = new File(inputFilenamesFilename)
+					.getAbsoluteFile().getParentFile();
+			this.spikeCacheFolder = properties.getProperty(
+					"spike_cache_folder",
+					new File(inputNamesFolder, "spike_cache").getPath());
+		}
+
+		this.selectiveIngest = Boolean.parseBoolean(properties.getProperty(
+				"selective_ingest", "false"));
 
 		this.synchronise = Boolean.parseBoolean(properties.getProperty(
 				"sync_time", "false"));
@@ -100,10 +145,20 @@ public abstract class AnalyseSpikesTask<T extends ASsToAnalyse> {
 		this.componentOnly = Boolean.parseBoolean(properties.getProperty(
 				"analyse_biggest_connected_subcomponent_only", "true"));
 
-		this.timeBuffer = Long.parseLong(properties.getProperty("time-buffer",
-				"120"));
-		this.duplicationPercentage = Double.parseDouble(properties.getProperty(
-				"duplication-percentage", "0.99"));
+		this.timeBuffers = new ArrayList<Long>();
+		for (String buffer : properties.getProperty("time-buffer", "120")
+				.split(",")) {
+			this.timeBuffers.add(Long.parseLong(buffer.trim()));
+		}
+		this.timeBuffer = Collections.max(timeBuffers);
+
+		this.duplicationPercentages = new ArrayList<Double>();
+		for (String percentage : properties.getProperty(
+				"duplication-percentage", "0.99").split(",")) {
+			this.duplicationPercentages.add(Double.parseDouble(percentage
+					.trim()));
+		}
+		this.duplicationPercentage = Collections.min(duplicationPercentages);
 
 		// load size intervals from properties
 		String intervals = properties.getProperty("spike_size_intervals",
@@ -127,6 +182,21 @@ public abstract class AnalyseSpikesTask<T extends ASsToAnalyse> {
 
 	public abstract void selectVisibleDuplicatedSpikes() throws Exception;
 
+	/**
+	 * @param analysedSizes
+	 *            - sizes of spikes analysed by the task
+	 * @return seconds to store prefixes for (see
+	 *         UpdatesFactory.setSelectiveIngest()), or null if selective
+	 *         ingest is switched off
+	 */
+	protected SelectiveIngest newSelectiveIngest(
+			List<SizeInterval> analysedSizes) {
+		if (!selectiveIngest) {
+			return null;
+		}
+		return new SelectiveIngest(analysedSizes, timeBuffer);
+	}
+
 	public abstract void writeResults();
 
 	/**
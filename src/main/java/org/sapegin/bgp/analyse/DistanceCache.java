@@ -0,0 +1,109 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         this class contains distances from some ASs (sources) to all other
+ *         ASs in Internet Map, calculated by BFS. It could be shared by many
+ *         threads: the cache is divided into stripes, and every stripe is
+ *         locked separately. Every stripe keeps only limited number of sources
+ *         and removes the least recently used one when it's full.
+ * 
+ */
+public class DistanceCache {
+
+	private final Stripe[] stripes;
+
+	/**
+	 * @param maxSources
+	 *            - maximum number of sources with distances to keep in cache
+	 * @param stripes
+	 *            - number of separately locked parts of cache
+	 */
+	public DistanceCache(int maxSources, int stripes) {
+		this.stripes = new Stripe[stripes];
+		int stripeSize = Math.max(1, maxSources / stripes);
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new Stripe(stripeSize);
+		}
+	}
+
+	/**
+	 * @param source
+	 *            - index of source AS in the map
+	 * @return distances from source to all ASs or null if they are not in
+	 *         cache
+	 */
+	public byte[] get(int source) {
+		Stripe stripe = stripeOf(source);
+		synchronized (stripe) {
+			return stripe.get(source);
+		}
+	}
+
+	/**
+	 * Saves distances from source to all ASs. Distances array should not be
+	 * changed after that.
+	 * 
+	 * @param source
+	 *            - index of source AS in the map
+	 * @param distances
+	 */
+	public void put(int source, byte[] distances) {
+		Stripe stripe = stripeOf(source);
+		synchronized (stripe) {
+			stripe.put(source, distances);
+		}
+	}
+
+	private Stripe stripeOf(int source) {
+		return stripes[(source & 0x7fffffff) % stripes.length];
+	}
+
+	/**
+	 * One part of cache: map in access order, removing eldest entry when it
+	 * has too many of them
+	 */
+	private static class Stripe extends LinkedHashMap<Integer, byte[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		Stripe(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+			return size() > maxSize;
+		}
+	}
+}
@@ -27,12 +27,10 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -55,18 +53,24 @@ public class InternetMap extends AutonomousSystemsGraph {
 	// logger
 	private static Logger logger = LogManager.getLogger(InternetMap.class);
 
-	private Map<Integer, Distances> distances = new HashMap<Integer, Distances>();
+	// distance of 127 is infinity
+	private static final byte INFINITY = 127;
 
-	protected InternetMap() {
-	}
+	// memory for distances cached by all threads together
+	private static final long DISTANCE_CACHE_BYTES = 64L * 1024 * 1024;
 
-	/**
-	 * Protected cunstructor for cloning the Map
-	 * 
-	 * @param graphAS
-	 */
-	protected InternetMap(SimpleGraph<Integer, DefaultEdge> graphAS) {
-		this.graphAS = graphAS;
+	private static final int CACHE_STRIPES = 16;
+
+	// compact copy of the graph used for BFS, created on first request
+	private volatile Adjacency adjacency;
+
+	// distances from already searched ASs, shared by all threads
+	private DistanceCache distances;
+
+	// distances between monitored ASs, if they were precomputed
+	private volatile MonitoredDistances monitoredDistances;
+
+	protected InternetMap() {
 	}
 
 	/**
@@ -120,36 +124,6 @@ public class InternetMap extends AutonomousSystemsGraph {
 		}
 	}
 
-	/**
-	 * clones the graph inside the Map and returns new Map based on cloned graph
-	 * 
-	 * @return
-	 */
-	public InternetMap copyMap() {
-		logger.debug("copying Internet Map...");
-		logger.debug(this.graphAS.edgeSet().size() + " edges in source");
-		logger.debug(this.graphAS.vertexSet().size() + " vertices in source");
-
-		SimpleGraph<Integer, DefaultEdge> copiedGraph = new SimpleGraph<Integer, DefaultEdge>(
-				DefaultEdge.class);
-		
-		//copy vertices
-		for (Integer vertex : this.graphAS.vertexSet()) {
-			copiedGraph.addVertex(vertex.intValue());
-		}
-
-		// copy edges
-		for (DefaultEdge edge : this.graphAS.edgeSet()) {
-			copiedGraph.addEdge(this.graphAS.getEdgeSource(edge).intValue(),
-					this.graphAS.getEdgeTarget(edge).intValue());
-		}
-
-		logger.debug(copiedGraph.edgeSet().size() + " edges copied");
-		logger.debug(copiedGraph.vertexSet().size() + " vertices copied");
-
-		return new InternetMap(copiedGraph);
-	}
-
 	/**
 	 * This method reads 'map' file (from Internet Topology Collection) set in
 	 * the properties (private field).
@@ -409,85 +383,208 @@ public class InternetMap extends AutonomousSystemsGraph {
 		return mergedInternetGraph;
 	}
 
-	// 127 is infinity, null - not calculated before
+	/**
+	 * Finds distance (number of hops) between 2 ASs with Breadth-First-Search.
+	 * BFS finds distances from as1 to all ASs at once, and they are saved in
+	 * cache shared by all threads, so next requests for as1 are answered
+	 * without search.
+	 * 
+	 * @param as1
+	 * @param as2
+	 * @return distance in hops or 127 (infinity) if as2 is not reachable from
+	 *         as1 or any of ASs is not in the map
+	 */
 	public Byte getInternetDistanceBFS(int as1, int as2) {
+		MonitoredDistances monitoredDistances = this.monitoredDistances;
+		if (monitoredDistances != null) {
+			byte distance = monitoredDistances.getDistance(as1, as2);
+			if (distance >= 0) { // both ASs are monitored
+				return distance;
+			}
+		}
 
-		// if Distances for AS1 are not created yet - create them
-		if (distances.get(as1) == null) {
-			distances.put(as1, new Distances());
+		Adjacency adjacency = getAdjacency();
+
+		int source = Arrays.binarySearch(adjacency.names, as1);
+		int destination = Arrays.binarySearch(adjacency.names, as2);
+		if (source < 0 || destination < 0) { // AS is not in the map
+			return INFINITY;
 		}
 
-		if (distances.get(as1).getDistance(as2) != null) { // if distance was
-															// already found,
-															// return it.
-			return distances.get(as1).getDistance(as2);
-		} else { // start Breadth-First-Search
-
-			// array where I save vertices found
-			Set<Integer> foundVerticies = new HashSet<Integer>();
-
-			// FIFO queue where I put new vertices
-			Queue<Integer> queue = new LinkedList<Integer>();
-
-			// add first AS to the graph and add it to the queue
-			foundVerticies.add(as1);
-			queue.add(as1);
-
-			// set distance to itself for first vertex
-			distances.get(as1).setDistance(as1, (byte) 0);
-
-			while (!queue.isEmpty()) {
-				// get and remove first element from the queue
-				int currentVertex = queue.poll();
-
-				// get all neighbours of current vertex, mark them and add to
-				// the queue if not found earlier
-				if (this.getNeighbours(currentVertex) != null) {
-					for (Integer neighbour : this.getNeighbours(currentVertex)) {
-						if (!foundVerticies.contains(neighbour)) {
-							// mark as found and add to the queue
-							foundVerticies.add(neighbour);
-							queue.add(neighbour);
-
-							// set distance for neighbour found
-							if (distances.get(as1).getDistance(currentVertex) < 127) { // check
-																						// if
-																						// distance
-																						// to
-																						// currentVertex
-																						// is
-																						// less
-																						// than
-																						// infinity
-								distances.get(as1).setDistance(
-										// set distance
-										neighbour,
-										(byte) (distances.get(as1).getDistance(
-												currentVertex) + 1));
-							} else {
-								distances.get(as1).setDistance(neighbour, // set
-																			// infinite
-																			// distance
-																			// (127)
-										(byte) 127);
-							}
-
-							if (neighbour == as2) { // if as2 was reached -
-													// return
-													// result
-								return distances.get(as1)
-										.getDistance(neighbour);
-							}
-						}
-					}
+		byte[] sourceDistances = distances.get(source);
+		if (sourceDistances == null) {
+			sourceDistances = adjacency.bfs(source);
+			distances.put(source, sourceDistances);
+		}
+
+		return sourceDistances[destination];
+	}
+
+	/**
+	 * Finds distances from as1 to all given ASs with one Breadth-First-Search.
+	 * Results are not cached.
+	 * 
+	 * @param as1
+	 * @param ases
+	 * @return distances in the same order as ases, 127 (infinity) for not
+	 *         reachable ASs or ASs not in the map
+	 */
+	public byte[] getInternetDistancesBFS(int as1, int[] ases) {
+		Adjacency adjacency = getAdjacency();
+
+		byte[] result = new byte[ases.length];
+		Arrays.fill(result, INFINITY);
+
+		int source = Arrays.binarySearch(adjacency.names, as1);
+		if (source < 0) { // AS is not in the map
+			return result;
+		}
+
+		byte[] sourceDistances = adjacency.bfs(source);
+		for (int i = 0; i < ases.length; i++) {
+			int destination = Arrays.binarySearch(adjacency.names, ases[i]);
+			if (destination >= 0) {
+				result[i] = sourceDistances[destination];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calculates distances between all pairs of monitored ASs at once (or
+	 * loads them from cache folder, if they were calculated before for the
+	 * same map files). After that getInternetDistanceBFS() for monitored ASs
+	 * just reads the distance.
+	 * 
+	 * @param monitoredASs
+	 * @param threads
+	 * @param cacheFolder
+	 *            - folder to save distances, null if they should not be
+	 *            saved
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public void precomputeDistances(Collection<Integer> monitoredASs,
+			int threads, String cacheFolder) throws InterruptedException,
+			ExecutionException {
+		this.monitoredDistances = new MonitoredDistances(this, monitoredASs,
+				threads, cacheFolder);
+	}
+
+	/**
+	 * @return names of map files used to create this map (null if map file
+	 *         was not used)
+	 */
+	List<String> getMapFilenames() {
+		return Arrays.asList(mapFilenameITP, mapFilenameCAIDA1,
+				mapFilenameCAIDA2, mapFilenameCAIDA3);
+	}
+
+	/**
+	 * Returns compact copy of the graph for distance calculation. It is
+	 * created on first request, when the map is already loaded.
+	 * 
+	 * @return
+	 */
+	private Adjacency getAdjacency() {
+		Adjacency adjacency = this.adjacency;
+		if (adjacency == null) {
+			synchronized (this) {
+				adjacency = this.adjacency;
+				if (adjacency == null) {
+					adjacency = new Adjacency(graphAS);
+					logger.debug("adjacency arrays for "
+							+ adjacency.names.length + " ASs created");
+
+					// keep distances from as many ASs, as fit into cache
+					distances = new DistanceCache(Math.max(CACHE_STRIPES,
+							(int) (DISTANCE_CACHE_BYTES / Math.max(1,
+									adjacency.names.length))), CACHE_STRIPES);
+
+					this.adjacency = adjacency;
 				}
 			}
+		}
+		return adjacency;
+	}
+
+	/**
+	 * Immutable compact representation of the graph: ASs are numbered by
+	 * their position in sorted array of AS names, and neighbours of AS number
+	 * i are neighbours[start[i]] .. neighbours[start[i+1]-1]. It can be read by
+	 * any number of threads.
+	 */
+	private static class Adjacency {
+
+		// sorted names of all ASs in the map
+		private final int[] names;
+		private final int[] start;
+		private final int[] neighbours;
+
+		Adjacency(SimpleGraph<Integer, DefaultEdge> graph) {
+			names = new int[graph.vertexSet().size()];
+			int i = 0;
+			for (Integer vertex : graph.vertexSet()) {
+				names[i++] = vertex;
+			}
+			Arrays.sort(names);
 
-			// If I'm here, the as2 was not reached
-			distances.get(as1).setDistance(as2, (byte) 127); // set distance to
-																// infinity
-			return (byte) 127;
+			// count neighbours
+			start = new int[names.length + 1];
+			for (DefaultEdge edge : graph.edgeSet()) {
+				start[Arrays.binarySearch(names, graph.getEdgeSource(edge)) + 1]++;
+				start[Arrays.binarySearch(names, graph.getEdgeTarget(edge)) + 1]++;
+			}
+			for (i = 0; i < names.length; i++) {
+				start[i + 1] += start[i];
+			}
+
+			// fill neighbours
+			neighbours = new int[start[names.length]];
+			int[] filled = Arrays.copyOf(start, names.length);
+			for (DefaultEdge edge : graph.edgeSet()) {
+				int source = Arrays.binarySearch(names,
+						graph.getEdgeSource(edge));
+				int target = Arrays.binarySearch(names,
+						graph.getEdgeTarget(edge));
+				neighbours[filled[source]++] = target;
+				neighbours[filled[target]++] = source;
+			}
+		}
+
+		/**
+		 * @param source
+		 *            - number of AS
+		 * @return distances from source AS to all ASs, 127 for not reachable
+		 */
+		byte[] bfs(int source) {
+			byte[] distances = new byte[names.length];
+			Arrays.fill(distances, INFINITY);
+
+			// FIFO queue of found ASs
+			int[] queue = new int[names.length];
+			int head = 0;
+			int tail = 0;
+
+			distances[source] = 0;
+			queue[tail++] = source;
+
+			while (head < tail) {
+				int current = queue[head++];
+				// 126 is the longest finite distance
+				byte next = (byte) Math.min(distances[current] + 1,
+						INFINITY - 1);
+
+				for (int i = start[current]; i < start[current + 1]; i++) {
+					int neighbour = neighbours[i];
+					if (distances[neighbour] == INFINITY) {
+						distances[neighbour] = next;
+						queue[tail++] = neighbour;
+					}
+				}
+			}
 
+			return distances;
 		}
 	}
 }
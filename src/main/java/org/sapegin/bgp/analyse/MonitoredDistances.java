@@ -0,0 +1,314 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         this class contains distances (in hops) between all pairs of
+ *         monitored ASs. They are calculated once for the run by parallel BFS
+ *         (one search for every monitored AS) and saved into file in cache
+ *         folder. The name of the file is a hash of map files and monitored ASs,
+ *         so the next run with the same map and the same ASs just maps the
+ *         file into memory and does not search anything.
+ * 
+ *         File format: int MAGIC, int number of ASs (n), n sorted AS names,
+ *         n*n distances (row for every AS).
+ */
+public class MonitoredDistances {
+
+	private static final int MAGIC = 0x42475044; // "BGPD"
+
+	private static Logger logger = LogManager
+			.getLogger(MonitoredDistances.class);
+
+	// sorted names of monitored ASs
+	private final int[] names;
+
+	// n*n distances, starting from current position
+	private final ByteBuffer matrix;
+
+	/**
+	 * Loads distances from cache folder or calculates them (and saves into
+	 * cache folder)
+	 * 
+	 * @param iMap
+	 * @param monitoredASs
+	 * @param threads
+	 *            - number of threads for BFS
+	 * @param cacheFolder
+	 *            - folder with saved distances, or null if distances should
+	 *            not be saved
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	public MonitoredDistances(InternetMap iMap,
+			Collection<Integer> monitoredASs, int threads, String cacheFolder)
+			throws InterruptedException, ExecutionException {
+		this.names = sortedUnique(monitoredASs);
+
+		File cacheFile = null;
+		ByteBuffer loaded = null;
+		if (cacheFolder != null) {
+			try {
+				cacheFile = new File(cacheFolder, "distances_"
+						+ key(iMap.getMapFilenames(), names) + ".bin");
+				if (cacheFile.exists()) {
+					loaded = load(cacheFile);
+				}
+			} catch (IOException e) {
+				logger.error("Cannot read distances from cache", e);
+			}
+		}
+
+		if (loaded != null) {
+			logger.info("distances between " + names.length
+					+ " monitored ASs loaded from " + cacheFile);
+			this.matrix = loaded;
+			return;
+		}
+
+		logger.info("calculating distances between " + names.length
+				+ " monitored ASs...");
+		byte[][] rows = calculate(iMap, threads);
+
+		if (cacheFile != null) {
+			try {
+				save(cacheFile, rows);
+				logger.info("distances saved into " + cacheFile);
+			} catch (IOException e) {
+				logger.error("Cannot save distances into cache", e);
+			}
+		}
+
+		ByteBuffer matrix = ByteBuffer.allocate(names.length * names.length);
+		for (byte[] row : rows) {
+			matrix.put(row);
+		}
+		matrix.flip();
+		this.matrix = matrix;
+	}
+
+	/**
+	 * @param as1
+	 * @param as2
+	 * @return distance between ASs (127 is infinity) or -1, if any of ASs is
+	 *         not monitored
+	 */
+	public byte getDistance(int as1, int as2) {
+		int i = Arrays.binarySearch(names, as1);
+		int j = Arrays.binarySearch(names, as2);
+		if (i < 0 || j < 0) {
+			return -1;
+		}
+		// absolute get does not change the buffer, so it's thread safe
+		return matrix.get(matrix.position() + i * names.length + j);
+	}
+
+	/**
+	 * @return number of monitored ASs
+	 */
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Runs BFS from every monitored AS in parallel
+	 */
+	private byte[][] calculate(final InternetMap iMap, int threads)
+			throws InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+				threads));
+
+		try {
+			List<Future<byte[]>> futureRows = new ArrayList<Future<byte[]>>();
+			for (final int source : names) {
+				futureRows.add(executor.submit(new Callable<byte[]>() {
+					@Override
+					public byte[] call() {
+						return iMap.getInternetDistancesBFS(source, names);
+					}
+				}));
+			}
+
+			byte[][] rows = new byte[names.length][];
+			for (int i = 0; i < names.length; i++) {
+				rows[i] = futureRows.get(i).get();
+			}
+			return rows;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Maps saved distances into memory
+	 * 
+	 * @param cacheFile
+	 * @return buffer positioned at the first distance or null if file
+	 *         contains something else
+	 * @throws IOException
+	 */
+	private ByteBuffer load(File cacheFile) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(cacheFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+
+			int headerSize = 8 + 4 * names.length;
+			if (buffer.capacity() != headerSize + names.length * names.length
+					|| buffer.getInt() != MAGIC
+					|| buffer.getInt() != names.length) {
+				logger.warn("Unexpected content of " + cacheFile
+						+ ". Distances will be calculated again.");
+				return null;
+			}
+			for (int name : names) {
+				if (buffer.getInt() != name) {
+					logger.warn("Unexpected ASs in " + cacheFile
+							+ ". Distances will be calculated again.");
+					return null;
+				}
+			}
+
+			// mapping stays valid after the file is closed
+			return buffer;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Saves distances into file. File is written under temporary name and
+	 * then renamed, so other runs never see half-written file.
+	 */
+	private void save(File cacheFile, byte[][] rows) throws IOException {
+		cacheFile.getParentFile().mkdirs();
+		File tmpFile = new File(cacheFile.getPath() + ".tmp");
+
+		RandomAccessFile file = new RandomAccessFile(tmpFile, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					8 + 4 * names.length + names.length * names.length);
+			buffer.putInt(MAGIC);
+			buffer.putInt(names.length);
+			for (int name : names) {
+				buffer.putInt(name);
+			}
+			for (byte[] row : rows) {
+				buffer.put(row);
+			}
+		} finally {
+			file.close();
+		}
+
+		if (!tmpFile.renameTo(cacheFile)) {
+			cacheFile.delete();
+			if (!tmpFile.renameTo(cacheFile)) {
+				throw new IOException("Cannot rename " + tmpFile + " to "
+						+ cacheFile);
+			}
+		}
+	}
+
+	/**
+	 * @return hash of content of all map files and names of monitored ASs
+	 */
+	private static String key(List<String> mapFilenames, int[] names)
+			throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] buffer = new byte[64 * 1024];
+
+			for (String mapFilename : mapFilenames) {
+				// null maps are marked too, as maps are not interchangeable
+				if (mapFilename == null) {
+					digest.update((byte) 0);
+					continue;
+				}
+				digest.update((byte) 1);
+
+				FileInputStream in = new FileInputStream(mapFilename);
+				try {
+					int read;
+					while ((read = in.read(buffer)) > 0) {
+						digest.update(buffer, 0, read);
+					}
+				} finally {
+					in.close();
+				}
+			}
+
+			ByteBuffer namesBuffer = ByteBuffer.allocate(4 * names.length);
+			namesBuffer.asIntBuffer().put(names);
+			digest.update(namesBuffer.array());
+
+			return String.format("%032x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			// MD5 is always available in Java
+			throw new IOException(e);
+		}
+	}
+
+	private static int[] sortedUnique(Collection<Integer> ases) {
+		int[] names = new int[ases.size()];
+		int size = 0;
+		for (Integer as : ases) {
+			names[size++] = as;
+		}
+		Arrays.sort(names);
+
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique == 0 || names[unique - 1] != names[i]) {
+				names[unique++] = names[i];
+			}
+		}
+		return Arrays.copyOf(names, unique);
+	}
+}
@@ -46,6 +46,17 @@ public class SizeInterval {
 		return maxSize;
 	}
 
+	/**
+	 * Constructor.
+	 * 
+	 * @param minSize
+	 * @param maxSize
+	 */
+	public SizeInterval(int minSize, int maxSize) {
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+	}
+
 	/**
 	 * Constructor. It accepts string representation of integer interval, which
 	 * should look like 123..234 or 0..15.
@@ -28,10 +28,15 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.HashSet;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.sapegin.bgp.analyse.updates.BGP4MPHandler;
+import org.sapegin.bgp.analyse.updates.DumpParser;
+import org.sapegin.bgp.analyse.updates.MRTParser;
 
 /**
  * 
@@ -107,15 +112,29 @@ public class ASsFileGenerator {
 					continue;
 				}
 
-				HashSet<Integer> names = new HashSet<Integer>(); // clear list
-																	// with
-																	// unique AS
-																	// names
+				// clear list with unique AS names
+				final HashSet<Integer> names = new HashSet<Integer>();
 
 				// read file with updates
-				FileReader updates = new FileReader(updatesFilename);
-				BufferedReader updatesBR = new BufferedReader(updates);
-				// go throw file with updates
+				InputStream updates = DumpParser.open(updatesFilename);
+				if (DumpParser.isMRT(updates)) {
+					// binary file - take names of ASs sent the messages
+					new MRTParser().parse(updates, new BGP4MPHandler() {
+						@Override
+						public void message(long time, byte type, int peerAS,
+								int prefix, byte prefixLength, byte[] line,
+								int asPathStart, int asPathEnd) {
+							names.add(peerAS);
+						}
+
+						@Override
+						public void malformed(String reason) {
+						}
+					});
+				}
+				BufferedReader updatesBR = new BufferedReader(
+						new InputStreamReader(updates, "US-ASCII"));
+				// go throw file with updates (nothing is left in binary file)
 				String str = updatesBR.readLine();
 				while (str != null) {
 
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.sapegin.bgp.analyse.correlation.advanced.AdvancedClassificationResult;
+import org.sapegin.bgp.analyse.correlation.advanced.QuantileSketch;
 import org.sapegin.bgp.analyse.correlation.advanced.SpikeClassStats;
 import org.sapegin.bgp.analyse.correlation.basic.BasicClassificationResult;
 import org.sapegin.bgp.analyse.duplication.DuplicationStats;
@@ -50,18 +51,35 @@ public class ClassificationResults {
 	// fields for advanced classification:
 
 	// Statistics for single spikes with different visibility
-	private SpikeClassStats singleSpikesMax033Visible = new SpikeClassStats();
-	private SpikeClassStats singleSpikesMax066Visible = new SpikeClassStats();
-	private SpikeClassStats singleSpikes100Visible = new SpikeClassStats();
+	private SpikeClassStats singleSpikesMax033Visible;
+	private SpikeClassStats singleSpikesMax066Visible;
+	private SpikeClassStats singleSpikes100Visible;
 
 	// Statistics for correlated spikes with different maxDistance in hops
 	// key presents a distance in hops
 	private Map<Byte, SpikeClassStats> correlatedSpikesStats = new HashMap<Byte, SpikeClassStats>();
 
 	// Statistics for correlated spikes with infinite maxDistance
-	private SpikeClassStats otherCorrelatedSpikesStats = new SpikeClassStats();
+	private SpikeClassStats otherCorrelatedSpikesStats;
+
+	// size of quantile sketches of all statistics (see SpikeClassStats)
+	private int sketchSize;
 
 	public ClassificationResults() {
+		this(QuantileSketch.DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param sketchSize
+	 *            - number of values stored exactly by quantile sketches of
+	 *            statistics (see QuantileSketch)
+	 */
+	public ClassificationResults(int sketchSize) {
+		this.sketchSize = sketchSize;
+		this.singleSpikesMax033Visible = new SpikeClassStats(sketchSize);
+		this.singleSpikesMax066Visible = new SpikeClassStats(sketchSize);
+		this.singleSpikes100Visible = new SpikeClassStats(sketchSize);
+		this.otherCorrelatedSpikesStats = new SpikeClassStats(sketchSize);
 	}
 
 	/**
@@ -89,7 +107,7 @@ public class ClassificationResults {
 									result.getMaxTimeDifference(),
 									result.getOriginASs());
 				} else {
-					SpikeClassStats initStats = new SpikeClassStats();
+					SpikeClassStats initStats = new SpikeClassStats(sketchSize);
 					initStats.addSpikeStats(result.getSize(),
 							result.getMaxTimeDifference(),
 							result.getOriginASs());
@@ -167,12 +185,13 @@ public class ClassificationResults {
 				.getCorrelatedSpikesStats();
 
 		for (byte hop : statsToMerge.keySet()) {
+			// statistics are never shared, as they are changed by merging
 			if (this.correlatedSpikesStats.get(hop) == null) {
-				this.correlatedSpikesStats.put(hop, statsToMerge.get(hop));
-			} else {
-				this.correlatedSpikesStats.get(hop).mergeWith(
-						statsToMerge.get(hop));
+				this.correlatedSpikesStats.put(hop, new SpikeClassStats(
+						sketchSize));
 			}
+			this.correlatedSpikesStats.get(hop).mergeWith(
+					statsToMerge.get(hop));
 		}
 
 		this.otherCorrelatedSpikesStats.mergeWith(results
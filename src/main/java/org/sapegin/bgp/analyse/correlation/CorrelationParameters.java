@@ -0,0 +1,102 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.correlation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         one combination of parameters used to classify spikes: time buffer,
+ *         duplication percentage and (for basic classification only)
+ *         threshold. Spikes could be classified for several combinations in
+ *         one run (see DuplicatedSpikesWindow).
+ * 
+ */
+public class CorrelationParameters {
+
+	private final long timeBuffer;
+	private final double duplicationPercentage;
+	private final Double basicThreshold;
+
+	public CorrelationParameters(long timeBuffer, double duplicationPercentage,
+			Double basicThreshold) {
+		this.timeBuffer = timeBuffer;
+		this.duplicationPercentage = duplicationPercentage;
+		this.basicThreshold = basicThreshold;
+	}
+
+	/**
+	 * Creates all combinations of given parameters. Combinations with the
+	 * same time buffer and duplication percentage follow each other.
+	 * 
+	 * @param timeBuffers
+	 * @param duplicationPercentages
+	 * @param basicThresholds
+	 *            - null, if classification is not basic
+	 * @return
+	 */
+	public static List<CorrelationParameters> combine(List<Long> timeBuffers,
+			List<Double> duplicationPercentages, List<Double> basicThresholds) {
+		if (basicThresholds == null) {
+			basicThresholds = Arrays.asList((Double) null);
+		}
+
+		List<CorrelationParameters> combinations = new ArrayList<CorrelationParameters>();
+		for (long timeBuffer : timeBuffers) {
+			for (double duplicationPercentage : duplicationPercentages) {
+				for (Double basicThreshold : basicThresholds) {
+					combinations.add(new CorrelationParameters(timeBuffer,
+							duplicationPercentage, basicThreshold));
+				}
+			}
+		}
+		return combinations;
+	}
+
+	public long getTimeBuffer() {
+		return timeBuffer;
+	}
+
+	public double getDuplicationPercentage() {
+		return duplicationPercentage;
+	}
+
+	public Double getBasicThreshold() {
+		return basicThreshold;
+	}
+
+	/**
+	 * @return name of combination to be used in filenames, e.g. "120_0.99" or
+	 *         "120_0.99_0.1" for basic classification
+	 */
+	public String getName() {
+		if (basicThreshold == null) {
+			return timeBuffer + "_" + duplicationPercentage;
+		}
+		return timeBuffer + "_" + duplicationPercentage + "_" + basicThreshold;
+	}
+}
@@ -26,9 +26,8 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringWriter;
-import java.net.InetAddress;
 import java.util.ArrayList;
-import java.util.Set;
+import java.util.HashMap;
 
 import org.jgrapht.ext.DOTExporter;
 import org.jgrapht.graph.DefaultEdge;
@@ -37,8 +36,8 @@ import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.MyDirectIntegerVertexNameProvider;
 import org.sapegin.bgp.analyse.correlation.advanced.AdvancedClassificationResult;
 import org.sapegin.bgp.analyse.correlation.basic.BasicClassificationResult;
-import org.sapegin.bgp.analyse.spikes.Destination;
 import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.PrefixSet;
 import org.sapegin.bgp.analyse.spikes.SingleASspikes;
 import org.sapegin.bgp.analyse.spikes.Spike;
 import org.sapegin.bgp.analyse.spikes.SpikeCollection;
@@ -109,6 +108,25 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 	public DuplicatedSpikesGroup(MonitoredAS as, Spike spike, long time,
 			Updates updates, InternetMap iMap, long timeBuffer,
 			double duplicationPercentage) {
+		this(as, spike, time, updates, iMap, timeBuffer,
+				duplicationPercentage, null, -1);
+	}
+
+	/**
+	 * Creates a group from spikes duplicated with the given one, which were
+	 * already found (see DuplicatedSpikesWindow)
+	 * 
+	 * @param duplicatedSpikes
+	 *            - spikes duplicated with the given one, or null to find them
+	 *            here. Spikes of the collection are changed by the group.
+	 * @param allDuplicatedPrefixesInSpike
+	 *            - number of prefixes in the given spike duplicated with any
+	 *            other spike from different AS, or -1 to find it here
+	 */
+	DuplicatedSpikesGroup(MonitoredAS as, Spike spike, long time,
+			Updates updates, InternetMap iMap, long timeBuffer,
+			double duplicationPercentage, SpikeCollection duplicatedSpikes,
+			int allDuplicatedPrefixesInSpike) {
 		this.preloadedUpdates = updates;
 		this.duplicationPercentage = duplicationPercentage;
 
@@ -126,9 +144,12 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 				+ this.spikeAS.getMonitoringRouter());
 
 		// find spikes, duplicated with the given one, and add them to the group
-		logger.trace("searching for spikes duplicated with the given one");
-		this.allUpdates.putAll(updates.findDuplicatedSpikes(spike, spikeTime,
-				timeBuffer, spikeAS, duplicationPercentage).getUpdateMap());
+		if (duplicatedSpikes == null) {
+			logger.trace("searching for spikes duplicated with the given one");
+			duplicatedSpikes = updates.findDuplicatedSpikes(spike, spikeTime,
+					timeBuffer, spikeAS, duplicationPercentage);
+		}
+		this.allUpdates.putAll(duplicatedSpikes.getUpdateMap());
 		int count = 0;
 		for (SingleASspikes spikes : this.allUpdates.values()) {
 			count += spikes.getNumberOfSpikes();
@@ -199,33 +220,34 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 
 				// update maximum
 				if (givenSpikeASmaxSpikeUpdateSum < allUpdates.get(monitoredAS)
-						.getCurrentBiggestSpike().getSpikeSize()) {
+						.getCurrentBiggestSpikeSize()) {
 					givenSpikeASmaxSpikeUpdateSum = allUpdates.get(monitoredAS)
-							.getCurrentBiggestSpike().getSpikeSize();
+							.getCurrentBiggestSpikeSize();
 				}
 			} else { // if monitored AS is not the same as for given spike
 				// update maximum
 				if (otherASmaxSpikeUpdateSum < allUpdates.get(monitoredAS)
-						.getCurrentBiggestSpike().getSpikeSize()) {
+						.getCurrentBiggestSpikeSize()) {
 					otherASmaxSpikeUpdateSum = allUpdates.get(monitoredAS)
-							.getCurrentBiggestSpike().getSpikeSize();
+							.getCurrentBiggestSpikeSize();
 				}
 			}
 		}
 
+		if (allDuplicatedPrefixesInSpike >= 0) {
+			this.allDuplicatedPrefixesInSpike = allDuplicatedPrefixesInSpike;
+			return;
+		}
+
 		// identify number of prefixes, actually marked as duplicated in this
 		// spike.
-		Set<InetAddress> allUniqueDuplicatedPrefixes = preloadedUpdates
+		PrefixSet allUniqueDuplicatedPrefixes = preloadedUpdates
 				.getAllDuplicatedPrefixesInSpike(this.spike, this.spikeTime,
 						this.timeBuffer, this.spikeAS,
 						this.duplicationPercentage);
 		// find number of duplicated prefixes
-		this.allDuplicatedPrefixesInSpike = 0;
-		for (Destination destination : spike.copyPrefixSet()) {
-			if (allUniqueDuplicatedPrefixes.contains(destination.getPrefix())) {
-				this.allDuplicatedPrefixesInSpike++;
-			}
-		}
+		this.allDuplicatedPrefixesInSpike = spike
+				.countPrefixesIn(allUniqueDuplicatedPrefixes);
 	}
 
 	public Spike getSpike() {
@@ -297,8 +319,7 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 		for (MonitoredAS monitoredAS : allUpdates.keySet()) {
 			if ((allUpdates.get(monitoredAS).getCurrentUpdateSum() > threshold
 					* groupUpdateSum)
-					|| (allUpdates.get(monitoredAS).getCurrentBiggestSpike()
-							.getSpikeSize() > 0.33 * givenSpikeASmaxSpikeUpdateSum)
+					|| (allUpdates.get(monitoredAS).getCurrentBiggestSpikeSize() > 0.33 * givenSpikeASmaxSpikeUpdateSum)
 					|| monitoredAS == spikeAS) {
 
 				// mark as with red if not already marked
@@ -316,6 +337,16 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 			}
 		}
 
+		// find once, when every monitored AS has sent duplicated spikes first
+		HashMap<Integer, Long> minTimes = new HashMap<Integer, Long>();
+		for (MonitoredAS monitoredAS : allUpdates.keySet()) {
+			long minTime = allUpdates.get(monitoredAS).getCurrentMinTime();
+			Long asMinTime = minTimes.get(monitoredAS.getMonitoredAS());
+			if (asMinTime == null || minTime < asMinTime) {
+				minTimes.put(monitoredAS.getMonitoredAS(), minTime);
+			}
+		}
+
 		// for all marked ASs - check if they are connected
 		// if yes, set an edge direction based on time of spike arrival from
 		// those ASs, also taking into account a spike size
@@ -329,22 +360,8 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 						|| exportedGraph.contains(as2 + " -- " + as1)) {
 
 					// find which AS has sent duplicated spikes earlier
-					long as1MinTime = Long.MAX_VALUE;
-					long as2MinTime = Long.MAX_VALUE;
-					for (MonitoredAS monitoredAS : allUpdates.keySet()) {
-						if ((monitoredAS.getMonitoredAS() == as1)
-								&& allUpdates.get(monitoredAS)
-										.getCurrentMinTime() < as1MinTime) {
-							as1MinTime = allUpdates.get(monitoredAS)
-									.getCurrentMinTime();
-						}
-						if ((monitoredAS.getMonitoredAS() == as2)
-								&& allUpdates.get(monitoredAS)
-										.getCurrentMinTime() < as2MinTime) {
-							as2MinTime = allUpdates.get(monitoredAS)
-									.getCurrentMinTime();
-						}
-					}
+					long as1MinTime = minTimes.get(as1);
+					long as2MinTime = minTimes.get(as2);
 
 					// set edge direction, if one of connected ASs sent a
 					// duplicated spike earlier
@@ -413,7 +430,7 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 
 			return new AdvancedClassificationResult(single, this.spike.getSpikeSize(),
 					visibleASs.visibility(spikeAS.getMonitoredAS()), null,
-					null, spike.getNumberOfOriginASs());
+					null, spike.getNumberOfOriginASsCountingUnknown());
 		} else {
 			// spike is correlated (duplicated)
 			single = false;
@@ -430,11 +447,15 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 			Byte maxDistance = 0;
 			boolean infinite = false; // infinite distance was never found
 
+			// select pairs satisfying threshold conditions only once
+			ArrayList<MonitoredAS> markedPairs = new ArrayList<MonitoredAS>();
 			for (MonitoredAS pair : allUpdates.keySet()) {
 				SingleASspikes pairSpikes = allUpdates.get(pair);
 
 				if ((pairSpikes.getCurrentUpdateSum() > (threshold * this.groupUpdateSum))
-						|| (pairSpikes.getCurrentBiggestSpike().getSpikeSize() > (0.33 * this.givenSpikeASmaxSpikeUpdateSum))) {
+						|| (pairSpikes.getCurrentBiggestSpikeSize() > (0.33 * this.givenSpikeASmaxSpikeUpdateSum))) {
+					markedPairs.add(pair);
+
 					// 1. finding maximum time difference part
 					if (minTime > pairSpikes.getCurrentMinTime()) {
 						minTime = pairSpikes.getCurrentMinTime();
@@ -442,29 +463,22 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 					if (maxTime < pairSpikes.getCurrentMaxTime()) {
 						maxTime = pairSpikes.getCurrentMaxTime();
 					}
+				}
+			}
 
-					// 2. finding maximum topological distance between ASs of 2
-					// spikes in the group
-					for (MonitoredAS secondPair : allUpdates.keySet()) {
-
-						SingleASspikes secondPairSpikes = allUpdates
-								.get(secondPair);
-						if ((secondPairSpikes.getCurrentUpdateSum() > (threshold * this.groupUpdateSum))
-								|| (secondPairSpikes.getCurrentBiggestSpike()
-										.getSpikeSize() > (0.33 * this.givenSpikeASmaxSpikeUpdateSum))) {
-							byte distance = iMap.getInternetDistanceBFS(
-									pair.getMonitoredAS(),
-									secondPair.getMonitoredAS());
-							if (distance != 127) { // if distance is not
-													// infinite
-								if (distance > maxDistance) {
-									maxDistance = distance;
-								}
-							} else {
-								infinite = true; // mark that infinite distance
-													// was found
-							}
+			// 2. finding maximum topological distance between ASs of 2
+			// spikes in the group
+			for (MonitoredAS pair : markedPairs) {
+				for (MonitoredAS secondPair : markedPairs) {
+					byte distance = iMap.getInternetDistanceBFS(
+							pair.getMonitoredAS(), secondPair.getMonitoredAS());
+					if (distance != 127) { // if distance is not infinite
+						if (distance > maxDistance) {
+							maxDistance = distance;
 						}
+					} else {
+						infinite = true; // mark that infinite distance was
+											// found
 					}
 				}
 			}
@@ -487,7 +501,7 @@ public class DuplicatedSpikesGroup extends SpikeCollection {
 			return new AdvancedClassificationResult(single, this.spike.getSpikeSize(),
 					visibleASs.visibility(spikeAS.getMonitoredAS()),
 					maxDistance, (maxTime - minTime),
-					spike.getNumberOfOriginASs());
+					spike.getNumberOfOriginASsCountingUnknown());
 		}
 	}
 	
@@ -0,0 +1,151 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.correlation;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.sapegin.bgp.analyse.InternetMap;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+import org.sapegin.bgp.analyse.updates.Updates;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         spikes, which could be duplicated with the given one, within the
+ *         widest time buffer and with the lowest duplication percentage. They
+ *         are searched only once, and then groups of duplicated spikes (see
+ *         DuplicatedSpikesGroup) are created from them for every smaller time
+ *         buffer and higher duplication percentage.
+ * 
+ */
+public class DuplicatedSpikesWindow {
+
+	private MonitoredAS spikeAS;
+	private Spike spike;
+	private long spikeTime;
+	private Updates updates;
+	private InternetMap iMap;
+	private double duplicationPercentage;
+
+	// spikes found within the window
+	private ArrayList<MonitoredAS> pairs = new ArrayList<MonitoredAS>();
+	private ArrayList<Long> times = new ArrayList<Long>();
+	private ArrayList<Spike> spikes = new ArrayList<Spike>();
+
+	// duplication ratio of every found spike with the given one. Ratios are
+	// calculated only if a higher duplication percentage is checked.
+	private float[] ratios;
+	private boolean[] ratiosFound;
+
+	// offset of the nearest spike from different AS for every prefix in the
+	// given spike (see Updates.getDuplicatedPrefixOffsets())
+	private long[] prefixOffsets;
+
+	/**
+	 * @param as
+	 * @param spike
+	 * @param time
+	 * @param updates
+	 * @param iMap
+	 * @param timeBuffer
+	 *            - the widest time buffer
+	 * @param duplicationPercentage
+	 *            - the lowest duplication percentage
+	 */
+	public DuplicatedSpikesWindow(MonitoredAS as, Spike spike, long time,
+			Updates updates, InternetMap iMap, long timeBuffer,
+			double duplicationPercentage) {
+		this.spikeAS = as;
+		this.spike = spike;
+		this.spikeTime = time;
+		this.updates = updates;
+		this.iMap = iMap;
+		this.duplicationPercentage = duplicationPercentage;
+
+		SpikeCollection duplicatedSpikes = updates.findDuplicatedSpikes(spike,
+				time, timeBuffer, as, duplicationPercentage);
+		for (Map.Entry<MonitoredAS, SingleASspikes> pair : duplicatedSpikes
+				.getUpdateMap().entrySet()) {
+			SingleASspikes pairSpikes = pair.getValue();
+			for (int i = 0; i < pairSpikes.getNumberOfSpikes(); i++) {
+				pairs.add(pair.getKey());
+				times.add(pairSpikes.getTime(i));
+				spikes.add(pairSpikes.getSpike(i));
+			}
+		}
+		this.ratios = new float[spikes.size()];
+		this.ratiosFound = new boolean[spikes.size()];
+
+		this.prefixOffsets = updates.getDuplicatedPrefixOffsets(spike, time,
+				timeBuffer, as);
+	}
+
+	/**
+	 * Creates a group of spikes duplicated with the given one for smaller (or
+	 * the same) time buffer and higher (or the same) duplication percentage
+	 * 
+	 * @param timeBuffer
+	 * @param duplicationPercentage
+	 * @return
+	 */
+	public DuplicatedSpikesGroup newGroup(long timeBuffer,
+			double duplicationPercentage) {
+		SpikeCollection duplicatedSpikes = new SpikeCollection();
+
+		for (int i = 0; i < spikes.size(); i++) {
+			if (Math.abs(times.get(i) - spikeTime) > timeBuffer) {
+				continue;
+			}
+
+			// all found spikes are duplicated with the lowest percentage
+			if (duplicationPercentage > this.duplicationPercentage) {
+				if (!ratiosFound[i]) {
+					ratios[i] = spikes.get(i).getDuplicationRatio(spike);
+					ratiosFound[i] = true;
+				}
+				if (!(ratios[i] >= duplicationPercentage)) {
+					continue;
+				}
+			}
+
+			duplicatedSpikes.addSpike(times.get(i), spikes.get(i),
+					pairs.get(i));
+		}
+
+		int allDuplicatedPrefixes = 0;
+		for (long offset : prefixOffsets) {
+			if (offset <= timeBuffer) {
+				allDuplicatedPrefixes++;
+			}
+		}
+
+		return new DuplicatedSpikesGroup(spikeAS, spike, spikeTime, updates,
+				iMap, timeBuffer, duplicationPercentage, duplicatedSpikes,
+				allDuplicatedPrefixes);
+	}
+}
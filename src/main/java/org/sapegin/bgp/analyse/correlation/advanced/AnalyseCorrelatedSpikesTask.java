@@ -23,10 +23,14 @@
 package org.sapegin.bgp.analyse.correlation.advanced;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.AnalyseSpikesTask;
+import org.sapegin.bgp.analyse.SizeInterval;
+import org.sapegin.bgp.analyse.correlation.CorrelationParameters;
 import org.sapegin.bgp.analyse.generics.ASsFactory;
 import org.sapegin.bgp.analyse.updates.Updates;
 import org.sapegin.bgp.analyse.updates.UpdatesFactory;
@@ -92,18 +96,40 @@ public class AnalyseCorrelatedSpikesTask<T extends ASsToAnalyse> extends
 		// so I just call all of them visible
 		visibleASs = factoryASs.create(iMap, allASs, 1, threads);
 
+		// calculate all distances between monitored ASs at once, if needed
+		if (Boolean.parseBoolean(properties.getProperty(
+				"precompute_distances", "false"))) {
+			iMap.precomputeDistances(allASs.getASsNames(), threads,
+					properties.getProperty("distances_cache_folder",
+							"distances_cache"));
+		}
+
+		// spikes are classified for every combination of time buffer and
+		// duplication percentage
+		List<CorrelationParameters> parameters = CorrelationParameters
+				.combine(timeBuffers, duplicationPercentages, null);
+
+		// if there are several combinations, their names are added to
+		// filenames (see MonitoredCorrelatedSpikes.writeResults())
+		String name = "classification";
+		if (parameters.size() == 1) {
+			name = name + "_" + parameters.get(0).getName();
+		}
 		this.classificationResultsFilename = properties.getProperty(
-				"classification_results_filename", "classification_"
-						+ timeBuffer + "_" + duplicationPercentage);
+				"classification_results_filename", name);
 		this.timeQuartilesFilename = properties.getProperty(
-				"time_quartiles_filename", "classification_" + timeBuffer + "_"
-						+ duplicationPercentage + "_time_quartiles_all_hops");
+				"time_quartiles_filename", name + "_time_quartiles_all_hops");
 		this.originsQuartilesFilename = properties.getProperty(
-				"origins_quartiles_filename", "classification_" + timeBuffer
-						+ "_" + duplicationPercentage
+				"origins_quartiles_filename", name
 						+ "_origins_quartiles_all_hops");
 
-		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>();
+		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>(
+				ribThreads, ribMemoryReserve, ribSnapshots,
+				spikeCacheFolder);
+		// spikes from intervals startInterval..endInterval-1 are classified
+		updatesFactory.setSelectiveIngest(newSelectiveIngest(Arrays
+				.asList(new SizeInterval(startInterval * 100 - 100,
+						endInterval * 100 - 100))));
 
 		logger.info("loading RIBs and updates...");
 		Boolean correlated = properties.getProperty("Analysis_type").equals(
@@ -114,7 +140,10 @@ public class AnalyseCorrelatedSpikesTask<T extends ASsToAnalyse> extends
 
 		correlatedSpikes = new MonitoredCorrelatedSpikes<T>(this.threads,
 				this.startInterval, this.endInterval, iMap, allUpdates, null,
-				timeBuffer, duplicationPercentage, visibleASs, false, null);
+				parameters, visibleASs, false);
+		correlatedSpikes.setQuantileSketchSize(Integer.parseInt(properties
+				.getProperty("quantile_sketch_size",
+						String.valueOf(QuantileSketch.DEFAULT_SIZE))));
 	}
 
 	@Override
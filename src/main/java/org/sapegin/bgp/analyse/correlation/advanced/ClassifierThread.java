@@ -22,6 +22,9 @@
 	 */
 package org.sapegin.bgp.analyse.correlation.advanced;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
@@ -29,11 +32,12 @@ import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.correlation.ClassificationResults;
+import org.sapegin.bgp.analyse.correlation.CorrelationParameters;
 import org.sapegin.bgp.analyse.correlation.DuplicatedSpikesGroup;
+import org.sapegin.bgp.analyse.correlation.DuplicatedSpikesWindow;
 import org.sapegin.bgp.analyse.correlation.basic.BasicClassificationResult;
 import org.sapegin.bgp.analyse.spikes.MonitoredAS;
 import org.sapegin.bgp.analyse.spikes.SingleASspikes;
-import org.sapegin.bgp.analyse.spikes.Spike;
 import org.sapegin.bgp.analyse.spikes.SpikeCollection;
 import org.sapegin.bgp.analyse.updates.Updates;
 import org.sapegin.bgp.analyse.visibility.ASsToAnalyse;
@@ -49,77 +53,143 @@ import org.sapegin.bgp.analyse.visibility.ASsToAnalyse;
 public class ClassifierThread implements Callable<ClassificationResults> {
 
 	private Logger logger = LogManager.getLogger(ClassifierThread.class);
-	private double duplicationPercentage;
+	// combinations of time buffer, duplication percentage and basic
+	// threshold to classify spikes with
+	private List<CorrelationParameters> parameters;
 	private Map<MonitoredAS, SingleASspikes> selectedSpikes;
 	private Updates allUpdates;
-	private long timeBuffer;
+	// Internet map shared by all classifiers
 	private InternetMap iMap;
 	private ASsToAnalyse visibleASs;
 	// should be only the basic classification performed?
 	private Boolean basic;
-	private Double basicThreshold;
+	// size of quantile sketches in results (see ClassificationResults)
+	private int quantileSketchSize = QuantileSketch.DEFAULT_SIZE;
 
 	public ClassifierThread(double duplicationPercentage,
 			SpikeCollection spikes, ASsToAnalyse visibleASs,
 			Updates allUpdates, long timeBuffer, InternetMap iMap,
 			Boolean basic, Double basicThreshold) {
-		this.duplicationPercentage = duplicationPercentage;
+		this(Arrays.asList(new CorrelationParameters(timeBuffer,
+				duplicationPercentage, basicThreshold)), spikes, visibleASs,
+				allUpdates, iMap, basic);
+	}
+
+	/**
+	 * Creates classifier for several combinations of parameters (see
+	 * classifyAll())
+	 */
+	public ClassifierThread(List<CorrelationParameters> parameters,
+			SpikeCollection spikes, ASsToAnalyse visibleASs,
+			Updates allUpdates, InternetMap iMap, Boolean basic) {
+		this.parameters = parameters;
 		this.selectedSpikes = spikes.getUpdateMap();
 		this.allUpdates = allUpdates;
-		this.timeBuffer = timeBuffer;
 		this.iMap = iMap;
 		this.visibleASs = visibleASs;
 		this.basic = basic;
-		this.basicThreshold = basicThreshold;
 	}
 
+	/**
+	 * @param quantileSketchSize
+	 *            - size of quantile sketches in results, should be the same
+	 *            as in results these are merged into
+	 */
+	public void setQuantileSketchSize(int quantileSketchSize) {
+		this.quantileSketchSize = quantileSketchSize;
+	}
+
+	/**
+	 * @return results of classification for the first (usually, the only)
+	 *         combination of parameters
+	 */
 	@Override
 	public ClassificationResults call() throws Exception {
+		return classifyAll().get(0);
+	}
 
-		ClassificationResults results = new ClassificationResults();
+	/**
+	 * Classifies spikes for all combinations of parameters. Spikes, which
+	 * could be duplicated with the given one, are searched only once for the
+	 * widest time buffer and the lowest duplication percentage (see
+	 * DuplicatedSpikesWindow).
+	 * 
+	 * @return results of classification for every combination of parameters,
+	 *         in the same order
+	 */
+	public List<ClassificationResults> classifyAll() {
+
+		List<ClassificationResults> results = new ArrayList<ClassificationResults>();
+		long maxTimeBuffer = 0;
+		double minDuplicationPercentage = Double.MAX_VALUE;
+		for (CorrelationParameters combination : parameters) {
+			results.add(new ClassificationResults(quantileSketchSize));
+			maxTimeBuffer = Math.max(maxTimeBuffer,
+					combination.getTimeBuffer());
+			minDuplicationPercentage = Math.min(minDuplicationPercentage,
+					combination.getDuplicationPercentage());
+		}
 
-		logger.info("Starting classification of the subset of selected spikes");
-		int count = 0;
-		for (SingleASspikes spikes : selectedSpikes.values()) {
-			count += spikes.getNumberOfSpikes();
+		if (logger.isDebugEnabled()) {
+			int count = 0;
+			for (SingleASspikes spikes : selectedSpikes.values()) {
+				count += spikes.getNumberOfSpikes();
+			}
+			logger.debug("Starting classification of " + count
+					+ " selected spikes");
 		}
-		logger.info(count + " spikes will be analysed");
 
 		// for every monitor
 		for (MonitoredAS monitoredAS : selectedSpikes.keySet()) {
-			Map<Long, Spike> spikes = selectedSpikes.get(monitoredAS)
-					.getAllSpikes();
+			SingleASspikes spikes = selectedSpikes.get(monitoredAS);
 
 			// for every spike
-			for (Long time : spikes.keySet()) {
-
-				// create a group of spike, correlated with the given one, if
-				// any
-				DuplicatedSpikesGroup dgroup = new DuplicatedSpikesGroup(
-						monitoredAS, spikes.get(time), time, allUpdates, iMap,
-						timeBuffer, duplicationPercentage);
-
-				// classify spike
-				if (!this.basic) {
-					// perform advanced classification
-					AdvancedClassificationResult result = dgroup
-							.classify(visibleASs);
-
-					// save classification results
-					results.addResult(result);
-				} else {
-					// perform basic classification
-					BasicClassificationResult result = dgroup
-							.classifyBasic(basicThreshold);
-
-					// save classification results
-					results.addBasicResult(result);
+			for (int i = 0; i < spikes.getNumberOfSpikes(); i++) {
+				long time = spikes.getTime(i);
+
+				// find spikes, which could be correlated with the given one,
+				// for all combinations
+				DuplicatedSpikesWindow window = new DuplicatedSpikesWindow(
+						monitoredAS, spikes.getSpike(i), time, allUpdates,
+						iMap, maxTimeBuffer, minDuplicationPercentage);
+
+				DuplicatedSpikesGroup dgroup = null;
+				for (int c = 0; c < parameters.size(); c++) {
+					CorrelationParameters combination = parameters.get(c);
+
+					// create a group of spike, correlated with the given one,
+					// if any. Combinations with the same time buffer and
+					// percentage (but another threshold) use the same group.
+					if (c == 0
+							|| combination.getTimeBuffer() != parameters.get(
+									c - 1).getTimeBuffer()
+							|| combination.getDuplicationPercentage() != parameters
+									.get(c - 1).getDuplicationPercentage()) {
+						dgroup = window.newGroup(combination.getTimeBuffer(),
+								combination.getDuplicationPercentage());
+					}
+
+					// classify spike
+					if (!this.basic) {
+						// perform advanced classification
+						AdvancedClassificationResult result = dgroup
+								.classify(visibleASs);
+
+						// save classification results
+						results.get(c).addResult(result);
+					} else {
+						// perform basic classification
+						BasicClassificationResult result = dgroup
+								.classifyBasic(combination.getBasicThreshold());
+
+						// save classification results
+						results.get(c).addBasicResult(result);
+					}
 				}
-
 			}
 		}
 
-		logger.info("thread finished. returning results...");
+		logger.debug("classification finished. returning results...");
 
 		// when ready, return results of classification for the subset of spikes
 		return results;
@@ -27,9 +27,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -39,8 +42,10 @@ import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.correlation.ClassificationResults;
+import org.sapegin.bgp.analyse.correlation.CorrelationParameters;
 import org.sapegin.bgp.analyse.duplication.DuplicationStats;
 import org.sapegin.bgp.analyse.spikes.SelectedSpikes;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
 import org.sapegin.bgp.analyse.updates.Updates;
 import org.sapegin.bgp.analyse.visibility.ASsToAnalyse;
 
@@ -60,13 +65,21 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 	private InternetMap iMap;
 	private Updates allUpdates;
 	private Updates allUpdatesFromAllASs;
-	private long timeBuffer;
-	private double duplicationPercentage;
+	// combinations of time buffer, duplication percentage and basic
+	// threshold. Spikes are classified for all of them in one run.
+	private List<CorrelationParameters> parameters;
 	private T visibleASs;
 	private Boolean basic;
-	private Double basicThreshold;
 
-	private Map<Integer, ClassificationResults> results = new HashMap<Integer, ClassificationResults>();
+	// size of quantile sketches for merged results (see QuantileSketch)
+	private int quantileSketchSize = QuantileSketch.DEFAULT_SIZE;
+
+	// spikes are packed into one classification task until the task has at
+	// least TASK_SIZE prefixes, so bigger spikes are always separate tasks
+	private static final int TASK_SIZE = 100;
+
+	// results for every interval, for every combination of parameters
+	private List<Map<Integer, ClassificationResults>> results = new ArrayList<Map<Integer, ClassificationResults>>();
 
 	private Logger logger = LogManager
 			.getLogger(MonitoredCorrelatedSpikes.class);
@@ -76,25 +89,58 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 			Updates allUpdatesFromAllASs, long timeBuffer,
 			double duplicationPercentage, T visibleASs, Boolean basic,
 			Double basicThreshold) {
+		this(threads, startInterval, endInterval, iMap, allUpdates,
+				allUpdatesFromAllASs, Arrays.asList(new CorrelationParameters(
+						timeBuffer, duplicationPercentage, basicThreshold)),
+				visibleASs, basic);
+	}
+
+	/**
+	 * Creates classification for several combinations of time buffer,
+	 * duplication percentage and basic threshold. If there are several
+	 * combinations, results for every combination are written into separate
+	 * files (see writeResults()).
+	 */
+	public MonitoredCorrelatedSpikes(int threads, int startInterval,
+			int endInterval, InternetMap iMap, Updates allUpdates,
+			Updates allUpdatesFromAllASs,
+			List<CorrelationParameters> parameters, T visibleASs,
+			Boolean basic) {
 		this.threads = threads;
 		this.iMap = iMap;
 		this.allUpdates = allUpdates;
 		this.allUpdatesFromAllASs = allUpdatesFromAllASs;
-		this.timeBuffer = timeBuffer;
-		this.duplicationPercentage = duplicationPercentage;
+		this.parameters = parameters;
 		this.visibleASs = visibleASs;
 		this.firstInterval = startInterval;
 		this.lastInterval = endInterval;
 		this.basic = basic;
-		this.basicThreshold = basicThreshold;
+
+		for (int c = 0; c < parameters.size(); c++) {
+			this.results.add(new HashMap<Integer, ClassificationResults>());
+		}
+	}
+
+	/**
+	 * @param quantileSketchSize
+	 *            - number of values (maximum times and numbers of origin ASs)
+	 *            stored exactly for quartiles. Bigger values need more memory,
+	 *            but give more precise quartiles for more spikes.
+	 */
+	public void setQuantileSketchSize(int quantileSketchSize) {
+		this.quantileSketchSize = quantileSketchSize;
 	}
 
 	/**
-	 * divide one-second spikes into groups by size (0..99, 100..199, ...) for
-	 * each group divide spikes into computation blocks depending on the number
-	 * of classifier threads.
+	 * divide one-second spikes into groups by size (0..99, 100..199, ...) and
+	 * classify all spikes from all groups with one pool of classifier threads.
 	 * 
-	 * Runs threads and merges results
+	 * Every spike (or a few small spikes together) is a separate task, so
+	 * threads which have finished their tasks just take next ones and no
+	 * thread waits for the slowest one. Spikes from the next group are
+	 * submitted while spikes from the previous groups are still analysed.
+	 * 
+	 * Results are merged for every group in the order of groups
 	 * 
 	 * @throws InterruptedException
 	 * @throws ExecutionException
@@ -103,92 +149,172 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 	public void startThreads() throws InterruptedException, ExecutionException,
 			IOException {
 
-		for (int interval = this.firstInterval; interval < this.lastInterval; interval++) {
-			// get all spikes with sizes from sizeInterval
-			SelectedSpikes selectedSpikes = new SelectedSpikes(
-					allUpdates.getSpikesWithPredefinedSize(
-							interval * 100 - 100, interval * 100, threads));
-
-			logger.info("" + selectedSpikes.numberOfSpikes() + " spikes with "
-					+ selectedSpikes.numberOfUpdates()
-					+ " updates and size from " + (interval * 100 - 100)
-					+ " to " + (interval * 100 - 1) + " found.");
-
-			int computationBlockSize = selectedSpikes.numberOfSpikes()
-					/ threads;
-			int classifierThreads = threads;
-
-			if (computationBlockSize == 0) {
-				// run only one thread to do all the job
-				classifierThreads = 1;
-			}
+		// find correlated spikes for selected spikes among all spikes from
+		// all monitored ASs, if I need to perform basic classification of
+		// visible ASs only, or otherwise among the same updates dataset
+		Updates updatesToCorrelate = (allUpdatesFromAllASs != null) ? allUpdatesFromAllASs
+				: allUpdates;
 
-			ArrayList<ClassifierThread> threadArray = new ArrayList<ClassifierThread>();
+		logger.info("Executing " + threads + " classifier threads...");
 
-			for (int i = 0; i < classifierThreads; i++) {
-				// divide task for threads
-				int startIndex = i * computationBlockSize + 1;
-				int endIndex = (i + 1) * computationBlockSize;
-				if (i == (classifierThreads - 1)) { // last thread finishes the
-													// job
-					endIndex = selectedSpikes.numberOfSpikes();
-				}
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
 
-				ClassifierThread classifier;
-				if (allUpdatesFromAllASs != null) { // if I need to perform
-													// basic
-													// classification of visible
-													// ASs only
-					// find correlated spikes for selected spikes only, but
-					// among all spikes from all monitored ASs
-					classifier = new ClassifierThread(duplicationPercentage,
-							selectedSpikes.getSpikes(startIndex, endIndex),
-							visibleASs, allUpdatesFromAllASs, timeBuffer,
-							iMap.copyMap(), basic, basicThreshold);
-				} else {
-					// otherwise, perform usual classification on the same
-					// updates dataset with selected spikes
-					classifier = new ClassifierThread(duplicationPercentage,
-							selectedSpikes.getSpikes(startIndex, endIndex),
-							visibleASs, allUpdates, timeBuffer, iMap.copyMap(),
-							basic, basicThreshold);
+		// submitted, but not merged yet intervals with their tasks
+		LinkedList<Integer> pendingIntervals = new LinkedList<Integer>();
+		LinkedList<List<Future<List<ClassificationResults>>>> pendingTasks = new LinkedList<List<Future<List<ClassificationResults>>>>();
+
+		try {
+			for (int interval = this.firstInterval; interval < this.lastInterval; interval++) {
+				// get all spikes with sizes from sizeInterval
+				SelectedSpikes selectedSpikes = allUpdates
+						.selectSpikesWithPredefinedSize(interval * 100 - 100,
+								interval * 100);
+
+				logger.info("" + selectedSpikes.numberOfSpikes()
+						+ " spikes with " + selectedSpikes.numberOfUpdates()
+						+ " updates and size from " + (interval * 100 - 100)
+						+ " to " + (interval * 100 - 1) + " found.");
+
+				pendingIntervals.add(interval);
+				pendingTasks.add(submitTasks(executor, selectedSpikes,
+						updatesToCorrelate));
+
+				// do not keep too many intervals (with their selected spikes)
+				// in memory
+				if (pendingIntervals.size() > threads) {
+					mergeResults(pendingIntervals.poll(), pendingTasks.poll());
 				}
+			}
 
-				threadArray.add(classifier);
+			// merge the rest
+			while (!pendingIntervals.isEmpty()) {
+				mergeResults(pendingIntervals.poll(), pendingTasks.poll());
 			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-			logger.info("Executing threads...");
+	/**
+	 * Submits tasks to classify all selected spikes. Every spike is a separate
+	 * task, only small spikes are packed together (up to TASK_SIZE prefixes
+	 * per task).
+	 * 
+	 * @param executor
+	 * @param selectedSpikes
+	 * @param updatesToCorrelate
+	 * @return
+	 */
+	private List<Future<List<ClassificationResults>>> submitTasks(
+			ExecutorService executor, SelectedSpikes selectedSpikes,
+			Updates updatesToCorrelate) {
+		List<Future<List<ClassificationResults>>> tasks = new ArrayList<Future<List<ClassificationResults>>>();
+
+		SpikeCollection task = new SpikeCollection();
+		int taskSize = 0;
+
+		// selected spikes are ordered by size, so small spikes are packed
+		// together
+		for (int i = 0; i < selectedSpikes.numberOfSpikes(); i++) {
+			task.addSpike(selectedSpikes.getTime(i),
+					selectedSpikes.getSpike(i),
+					selectedSpikes.getMonitoredAS(i));
+			taskSize += selectedSpikes.getSpike(i).getSpikeSize();
+
+			if (taskSize >= TASK_SIZE) {
+				tasks.add(executor.submit(newTask(task, updatesToCorrelate)));
+				task = new SpikeCollection();
+				taskSize = 0;
+			}
+		}
 
-			ExecutorService executor = Executors.newCachedThreadPool();
+		if (!task.getUpdateMap().isEmpty()) {
+			tasks.add(executor.submit(newTask(task, updatesToCorrelate)));
+		}
 
-			ClassificationResults intervalResults = new ClassificationResults();
+		return tasks;
+	}
 
-			// run all threads and get list of results
-			List<Future<ClassificationResults>> results = executor
-					.invokeAll(threadArray);
+	/**
+	 * Creates a task to classify spikes for all combinations of parameters
+	 * 
+	 * @param spikes
+	 * @param updatesToCorrelate
+	 * @return
+	 */
+	private Callable<List<ClassificationResults>> newTask(
+			SpikeCollection spikes, Updates updatesToCorrelate) {
+		final ClassifierThread classifier = new ClassifierThread(parameters,
+				spikes, visibleASs, updatesToCorrelate, iMap, basic);
+		classifier.setQuantileSketchSize(quantileSketchSize);
+
+		return new Callable<List<ClassificationResults>>() {
+			@Override
+			public List<ClassificationResults> call() {
+				return classifier.classifyAll();
+			}
+		};
+	}
 
-			logger.info("threads execution finished. Merging results...");
+	/**
+	 * Waits for all tasks of interval, merges their results and dumps them to
+	 * file
+	 * 
+	 * @param interval
+	 * @param tasks
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 * @throws IOException
+	 */
+	private void mergeResults(int interval,
+			List<Future<List<ClassificationResults>>> tasks)
+			throws InterruptedException, ExecutionException, IOException {
+		List<ClassificationResults> intervalResults = new ArrayList<ClassificationResults>();
+		for (int c = 0; c < parameters.size(); c++) {
+			intervalResults.add(new ClassificationResults(quantileSketchSize));
+		}
 
-			// merge results list
-			for (Future<ClassificationResults> futureResultsFromOneThread : results) {
-				ClassificationResults resultsFromOneThread = futureResultsFromOneThread
-						.get();
-				intervalResults.merge(resultsFromOneThread);
+		// merge results list
+		for (Future<List<ClassificationResults>> futureResultsFromOneTask : tasks) {
+			List<ClassificationResults> taskResults = futureResultsFromOneTask
+					.get();
+			for (int c = 0; c < parameters.size(); c++) {
+				intervalResults.get(c).merge(taskResults.get(c));
 			}
+		}
 
-			logger.info("results merged into interval results");
+		logger.info("results for spikes with size from "
+				+ (interval * 100 - 100) + " to " + (interval * 100 - 1)
+				+ " merged into interval results");
 
-			this.results.put(interval, intervalResults);
+		for (int c = 0; c < parameters.size(); c++) {
+			this.results.get(c).put(interval, intervalResults.get(c));
 			// dump results for current interval to file
 			writeCurrentClassificationResultsForOneInterval(
-					"temp_classification_results", interval);
+					getFilename("temp_classification_results", c),
+					this.results.get(c), interval);
+		}
+	}
 
-			executor.shutdown();
+	/**
+	 * @param filename
+	 * @param combination
+	 *            - index of combination of parameters
+	 * @return filename for results of the given combination. If there is only
+	 *         one combination, the filename is not changed.
+	 */
+	private String getFilename(String filename, int combination) {
+		if (filename == null || parameters.size() == 1) {
+			return filename;
 		}
+		return filename + "_" + parameters.get(combination).getName();
 	}
 
 	/**
-	 * Writes classification results to files.
+	 * Writes classification results to files. If spikes were classified for
+	 * several combinations of parameters, results for every combination are
+	 * written into separate files, named as given ones plus
+	 * "_timeBuffer_duplicationPercentage[_basicThreshold]".
 	 * 
 	 * @param classificationResultsFilename
 	 * @param timeQuartilesFilename
@@ -199,15 +325,32 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 			String timeQuartilesFilename, String originsQuartilesFilename)
 			throws IOException {
 
+		for (int c = 0; c < parameters.size(); c++) {
+			writeResults(getFilename(classificationResultsFilename, c),
+					getFilename(timeQuartilesFilename, c),
+					getFilename(originsQuartilesFilename, c),
+					this.results.get(c));
+		}
+	}
+
+	/**
+	 * Writes classification results for one combination of parameters to
+	 * files.
+	 */
+	private void writeResults(String classificationResultsFilename,
+			String timeQuartilesFilename, String originsQuartilesFilename,
+			Map<Integer, ClassificationResults> results) throws IOException {
+
 		if (this.basic) {
 			// write results for basic classification and return
-			this.writeBasicClassificationResults(classificationResultsFilename);
+			this.writeBasicClassificationResults(
+					classificationResultsFilename, results);
 		} else {
 
 			// find max hop to prepare file header
 			byte maxHop = 0;
 			for (int interval = this.firstInterval; interval < this.lastInterval; interval++) {
-				for (byte hop : this.results.get(interval)
+				for (byte hop : results.get(interval)
 						.getCorrelatedSpikesStats().keySet()) {
 					if (maxHop < hop) {
 						maxHop = hop;
@@ -216,12 +359,13 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 			}
 
 			this.writeClassificationResults(classificationResultsFilename,
-					maxHop);
+					results, maxHop);
 
 			// merge time and origins
-			ClassificationResults allClassificationResults = new ClassificationResults();
+			ClassificationResults allClassificationResults = new ClassificationResults(
+					quantileSketchSize);
 
-			for (ClassificationResults intervalResults : this.results.values()) {
+			for (ClassificationResults intervalResults : results.values()) {
 				allClassificationResults.merge(intervalResults);
 			}
 
@@ -241,7 +385,8 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 	 * Writes the results of basic classification for all intervals to file
 	 */
 	private void writeBasicClassificationResults(
-			String basicClassificationResultsFilename) throws IOException {
+			String basicClassificationResultsFilename,
+			Map<Integer, ClassificationResults> results) throws IOException {
 		// create folders if needed
 		if (basicClassificationResultsFilename.lastIndexOf("/") != -1) {
 			File file = new File(basicClassificationResultsFilename.substring(
@@ -270,7 +415,7 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 					+ (interval * 100 - 1));
 
 			// write values
-			DuplicationStats intervalBasicStats = this.results.get(interval)
+			DuplicationStats intervalBasicStats = results.get(interval)
 					.getBasicStats();
 			bcbwr.write("\t"
 					+ intervalBasicStats.getTotalNumberOfSpikes()
@@ -435,11 +580,13 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 	 * Writes classification results to file
 	 * 
 	 * @param classificationResultsFilename
+	 * @param results
 	 * @param maxHop
 	 * @throws IOException
 	 */
 	private void writeClassificationResults(
-			String classificationResultsFilename, byte maxHop)
+			String classificationResultsFilename,
+			Map<Integer, ClassificationResults> results, byte maxHop)
 			throws IOException {
 
 		// create folders if needed
@@ -472,29 +619,29 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 
 			// write stats for single spikes with visibility <= 0.33
 			cbwr.write("\t"
-					+ this.results.get(interval).getSingleSpikesMax033Visible()
+					+ results.get(interval).getSingleSpikesMax033Visible()
 							.getTotalNumberOfSpikes()
 					+ "\t"
-					+ this.results.get(interval).getSingleSpikesMax033Visible()
+					+ results.get(interval).getSingleSpikesMax033Visible()
 							.getTotalNumberOfPrefixes());
 			// write stats for single spikes with (0.33 < visibility <= 0.66)
 			cbwr.write("\t"
-					+ this.results.get(interval).getSingleSpikesMax066Visible()
+					+ results.get(interval).getSingleSpikesMax066Visible()
 							.getTotalNumberOfSpikes()
 					+ "\t"
-					+ this.results.get(interval).getSingleSpikesMax066Visible()
+					+ results.get(interval).getSingleSpikesMax066Visible()
 							.getTotalNumberOfPrefixes());
 			// write stats for single spikes with (0.66 < visibility <= 1)
 			cbwr.write("\t"
-					+ this.results.get(interval).getSingleSpikes100Visible()
+					+ results.get(interval).getSingleSpikes100Visible()
 							.getTotalNumberOfSpikes()
 					+ "\t"
-					+ this.results.get(interval).getSingleSpikes100Visible()
+					+ results.get(interval).getSingleSpikes100Visible()
 							.getTotalNumberOfPrefixes());
 
 			// write statistics for correlated spikes for every hop
 			for (byte hop = 1; hop <= maxHop; hop++) {
-				SpikeClassStats stats = this.results.get(interval)
+				SpikeClassStats stats = results.get(interval)
 						.getCorrelatedSpikesStats().get(hop);
 				if (stats != null) {
 					cbwr.write("\t" + stats.getTotalNumberOfSpikes() + "\t"
@@ -513,15 +660,17 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 	 * Writes results for 1 interval into file
 	 * 
 	 * @param classificationResultsFilename
+	 * @param results
 	 * @throws IOException
 	 */
 	private void writeCurrentClassificationResultsForOneInterval(
-			String classificationResultsFilename, int interval)
+			String classificationResultsFilename,
+			Map<Integer, ClassificationResults> results, int interval)
 			throws IOException {
 
 		// find maxHop
 		byte maxHop = 0;
-		for (byte hop : this.results.get(interval).getCorrelatedSpikesStats()
+		for (byte hop : results.get(interval).getCorrelatedSpikesStats()
 				.keySet()) {
 			if (maxHop < hop) {
 				maxHop = hop;
@@ -557,29 +706,29 @@ public class MonitoredCorrelatedSpikes<T extends ASsToAnalyse> {
 
 		// write stats for single spikes with visibility <= 0.33
 		bwr.write("\t"
-				+ this.results.get(interval).getSingleSpikesMax033Visible()
+				+ results.get(interval).getSingleSpikesMax033Visible()
 						.getTotalNumberOfSpikes()
 				+ "\t"
-				+ this.results.get(interval).getSingleSpikesMax033Visible()
+				+ results.get(interval).getSingleSpikesMax033Visible()
 						.getTotalNumberOfPrefixes());
 		// write stats for single spikes with (0.33 < visibility <= 0.66)
 		bwr.write("\t"
-				+ this.results.get(interval).getSingleSpikesMax066Visible()
+				+ results.get(interval).getSingleSpikesMax066Visible()
 						.getTotalNumberOfSpikes()
 				+ "\t"
-				+ this.results.get(interval).getSingleSpikesMax066Visible()
+				+ results.get(interval).getSingleSpikesMax066Visible()
 						.getTotalNumberOfPrefixes());
 		// write stats for single spikes with (0.66 < visibility <= 1)
 		bwr.write("\t"
-				+ this.results.get(interval).getSingleSpikes100Visible()
+				+ results.get(interval).getSingleSpikes100Visible()
 						.getTotalNumberOfSpikes()
 				+ "\t"
-				+ this.results.get(interval).getSingleSpikes100Visible()
+				+ results.get(interval).getSingleSpikes100Visible()
 						.getTotalNumberOfPrefixes());
 
 		// write statistics for correlated spikes for every hop
 		for (byte hop = 1; hop <= maxHop; hop++) {
-			SpikeClassStats stats = this.results.get(interval)
+			SpikeClassStats stats = results.get(interval)
 					.getCorrelatedSpikesStats().get(hop);
 			if (stats != null) {
 				bwr.write("\t" + stats.getTotalNumberOfSpikes() + "\t"
@@ -0,0 +1,272 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.correlation.advanced;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Mergeable quantile sketch with bounded memory (KLL style) for
+ *         distributions of integer values.
+ * 
+ *         Values are stored in levels. Every value on level h stands for 2^h
+ *         values. When a level has 'size' values, they are sorted and every
+ *         second of them is moved to the next level (compaction), so no level
+ *         keeps more than 2*size values and memory grows only with the
+ *         logarithm of the number of values.
+ * 
+ *         While there are not more than 'size' values, nothing is compacted
+ *         and quartiles are exact. Otherwise the rank error of quartiles is
+ *         of order log2(count/size)/size of count (e.g. about 1% for 1000000
+ *         values and default size). Minimum and maximum are always exact.
+ * 
+ */
+public class QuantileSketch {
+
+	public static final int DEFAULT_SIZE = 1024;
+
+	// arrays of levels grow up to size, so that many small sketches need
+	// little memory
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final int size;
+
+	// values of every level and number of values in them
+	private long[][] levels = new long[][] { new long[0] };
+	private int[] levelSizes = new int[1];
+
+	private long count;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	// compactions keep odd and even values in turn, so that errors of
+	// different compactions cancel each other
+	private boolean keepOdd;
+
+	public QuantileSketch() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param size
+	 *            - number of values stored exactly, and also number of values
+	 *            on one level. Bigger size means smaller error and more
+	 *            memory.
+	 */
+	public QuantileSketch(int size) {
+		if (size < 2) {
+			throw new IllegalArgumentException("Sketch size " + size
+					+ " is too small");
+		}
+		this.size = size;
+	}
+
+	public void add(long value) {
+		append(0, value);
+		count++;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+
+		if (levelSizes[0] >= size) {
+			compress();
+		}
+	}
+
+	/**
+	 * Adds all values of the given sketch to this one. The given sketch is
+	 * not changed. Cost depends only on sizes of sketches, not on number of
+	 * values in them.
+	 * 
+	 * @param sketch
+	 */
+	public void merge(QuantileSketch sketch) {
+		if (sketch.count == 0) {
+			return;
+		}
+
+		for (int level = 0; level < sketch.levels.length; level++) {
+			for (int i = 0; i < sketch.levelSizes[level]; i++) {
+				append(level, sketch.levels[level][i]);
+			}
+		}
+		count += sketch.count;
+		min = Math.min(min, sketch.min);
+		max = Math.max(max, sketch.max);
+
+		compress();
+	}
+
+	/**
+	 * @return number of added values
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return true if all added values are stored, so that quartiles are
+	 *         exact
+	 */
+	public boolean isExact() {
+		return levels.length == 1;
+	}
+
+	/**
+	 * @return all added values in the order they were added, if sketch is
+	 *         exact. Otherwise only values stored on the first level.
+	 */
+	public long[] getValues() {
+		return Arrays.copyOf(levels[0], levelSizes[0]);
+	}
+
+	/**
+	 * Calculates quartiles using SAS method 5 (as Collections.sort() and
+	 * averaging of neighbours would do for all values).
+	 * 
+	 * @return quartiles or null if there are no values
+	 */
+	public Quartiles getQuartiles() {
+		if (count == 0) {
+			return null;
+		}
+
+		// all stored values with their weights {value, weight}, sorted by
+		// value
+		int stored = 0;
+		for (int levelSize : levelSizes) {
+			stored += levelSize;
+		}
+		long[][] weighted = new long[stored][];
+		int position = 0;
+		for (int level = 0; level < levels.length; level++) {
+			for (int i = 0; i < levelSizes[level]; i++) {
+				weighted[position++] = new long[] { levels[level][i],
+						1L << level };
+			}
+		}
+		Arrays.sort(weighted, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] a, long[] b) {
+				return (a[0] < b[0]) ? -1 : ((a[0] == b[0]) ? 0 : 1);
+			}
+		});
+
+		// cumulative weights, so that value with rank r is the first value
+		// with cumulative weight > r
+		long[] values = new long[stored];
+		long[] ranks = new long[stored];
+		long rank = 0;
+		for (int i = 0; i < stored; i++) {
+			values[i] = weighted[i][0];
+			rank += weighted[i][1];
+			ranks[i] = rank;
+		}
+
+		return new Quartiles(min, quartile(values, ranks, 0.25), quartile(
+				values, ranks, 0.5), quartile(values, ranks, 0.75), max);
+	}
+
+	/**
+	 * SAS method 5: if count*p is integer j, quartile is the average of values
+	 * number j and j+1, otherwise it's value number ceil(count*p) (numeration
+	 * starts at 1).
+	 */
+	private float quartile(long[] values, long[] ranks, double p) {
+		double np = count * p;
+		long j = (long) np;
+		double g = np - j;
+		j = j - 1; // numeration in the array starts at 0
+
+		if (g == 0) {
+			return (valueAt(values, ranks, j) + valueAt(values, ranks, j + 1))
+					/ (float) 2;
+		} else {
+			return valueAt(values, ranks, j + 1);
+		}
+	}
+
+	/**
+	 * @return value with the given rank (from 0) among all added values
+	 */
+	private long valueAt(long[] values, long[] ranks, long rank) {
+		int index = Arrays.binarySearch(ranks, rank + 1);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return values[Math.min(index, values.length - 1)];
+	}
+
+	private void append(int level, long value) {
+		if (level == levels.length) {
+			levels = Arrays.copyOf(levels, level + 1);
+			levels[level] = new long[0];
+			levelSizes = Arrays.copyOf(levelSizes, level + 1);
+		}
+
+		long[] values = levels[level];
+		if (levelSizes[level] == values.length) {
+			levels[level] = values = Arrays.copyOf(values,
+					Math.max(INITIAL_CAPACITY, values.length * 2));
+		}
+		values[levelSizes[level]++] = value;
+	}
+
+	/**
+	 * Compacts all levels, which have too many values
+	 */
+	private void compress() {
+		for (int level = 0; level < levels.length; level++) {
+			if (levelSizes[level] >= size) {
+				compact(level);
+			}
+		}
+	}
+
+	/**
+	 * Moves every second value of the level to the next one, where it stands
+	 * for two values. If number of values is odd, the biggest value stays on
+	 * the level, so that total weight doesn't change.
+	 * 
+	 * @param level
+	 */
+	private void compact(int level) {
+		long[] values = levels[level];
+		int length = levelSizes[level];
+		Arrays.sort(values, 0, length);
+
+		int compacted = length - (length % 2);
+		for (int i = keepOdd ? 1 : 0; i < compacted; i += 2) {
+			append(level + 1, values[i]);
+		}
+		keepOdd = !keepOdd;
+
+		// the biggest value stays, if number of values is odd
+		if (compacted < length) {
+			values[0] = values[length - 1];
+		}
+		levelSizes[level] = length - compacted;
+	}
+}
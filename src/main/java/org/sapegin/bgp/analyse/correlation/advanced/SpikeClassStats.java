@@ -23,7 +23,6 @@
 package org.sapegin.bgp.analyse.correlation.advanced;
 
 import java.util.ArrayList;
-import java.util.Collections;
 
 /**
  * 
@@ -31,22 +30,38 @@ import java.util.Collections;
  * 
  *         class containing statistics for one class of classified spikes
  * 
+ *         Distributions of times and origins are kept in quantile sketches
+ *         (see {@link QuantileSketch}), so statistics for millions of spikes
+ *         need constant memory and are merged in constant time. For small
+ *         number of spikes quartiles are exact.
+ * 
  */
 public class SpikeClassStats {
 
-	// array with the maximum time difference between two correlated spikes for
-	// every group of correlated spikes for this spike class
-	private ArrayList<Long> maxGroupTimes = new ArrayList<Long>();
+	// distribution of the maximum time difference between two correlated
+	// spikes for every group of correlated spikes for this spike class
+	private QuantileSketch maxGroupTimes;
 
-	// array with the number of origin ASs for every group of
+	// distribution of the number of origin ASs for every group of
 	// correlated spikes for this spike class
-	private ArrayList<Integer> originASsInGroups = new ArrayList<Integer>();
+	private QuantileSketch originASsInGroups;
 
 	private int totalNumberOfSpikes;
 
 	private int totalNumberOfPrefixes;
 
 	public SpikeClassStats() {
+		this(QuantileSketch.DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param sketchSize
+	 *            - number of values stored exactly by quantile sketches (see
+	 *            {@link QuantileSketch#QuantileSketch(int)})
+	 */
+	public SpikeClassStats(int sketchSize) {
+		this.maxGroupTimes = new QuantileSketch(sketchSize);
+		this.originASsInGroups = new QuantileSketch(sketchSize);
 	}
 
 	public void addSpikeStats(int size, Long maxTimeDifference,
@@ -63,12 +78,28 @@ public class SpikeClassStats {
 		}
 	}
 
+	/**
+	 * @return all maximum time differences, if there are not more than sketch
+	 *         size of them. Otherwise only part of them is returned.
+	 */
 	public ArrayList<Long> getMaxGroupTimes() {
-		return maxGroupTimes;
+		ArrayList<Long> times = new ArrayList<Long>();
+		for (long time : maxGroupTimes.getValues()) {
+			times.add(time);
+		}
+		return times;
 	}
 
+	/**
+	 * @return all numbers of origin ASs, if there are not more than sketch
+	 *         size of them. Otherwise only part of them is returned.
+	 */
 	public ArrayList<Integer> getOriginASsInGroups() {
-		return originASsInGroups;
+		ArrayList<Integer> origins = new ArrayList<Integer>();
+		for (long originASs : originASsInGroups.getValues()) {
+			origins.add((int) originASs);
+		}
+		return origins;
 	}
 
 	public int getTotalNumberOfSpikes() {
@@ -80,8 +111,8 @@ public class SpikeClassStats {
 	}
 
 	public void mergeWith(SpikeClassStats stats) {
-		this.maxGroupTimes.addAll(stats.getMaxGroupTimes());
-		this.originASsInGroups.addAll(stats.getOriginASsInGroups());
+		this.maxGroupTimes.merge(stats.maxGroupTimes);
+		this.originASsInGroups.merge(stats.originASsInGroups);
 		this.totalNumberOfPrefixes += stats.getTotalNumberOfPrefixes();
 		this.totalNumberOfSpikes += stats.getTotalNumberOfSpikes();
 	}
@@ -89,136 +120,18 @@ public class SpikeClassStats {
 	/**
 	 * calculates and returns quartiles for maximum inter-arriveal times
 	 * 
-	 * @return
+	 * @return quartiles or null, if there are no times
 	 */
 	public Quartiles getTimeQuartiles() {
-		Collections.sort(this.maxGroupTimes);
-
-		// first quartile
-		double np = this.maxGroupTimes.size() * 0.25;
-
-		int j = (int) np;
-		double g = np - j;
-		j = j - 1; // numeration in the array starts at 0. So if j=1, in need to
-					// get element number 0.
-
-		float firstQuartile;
-		if (g == 0) {
-			firstQuartile = (this.maxGroupTimes.get(j) + this.maxGroupTimes
-					.get(j + 1)) / (float) 2;
-		} else {
-			firstQuartile = this.maxGroupTimes.get(j + 1);
-		}
-
-		// mediana
-		np = this.maxGroupTimes.size() * 0.5;
-
-		j = (int) np;
-		g = np - j;
-		j = j - 1; // numeration in the array starts at 0. So if j=1, in need to
-					// get element number 0.
-
-		float mediana;
-		if (g == 0) {
-			mediana = (this.maxGroupTimes.get(j) + this.maxGroupTimes
-					.get(j + 1)) / (float) 2;
-		} else {
-			mediana = this.maxGroupTimes.get(j + 1);
-		}
-
-		// third quartile
-		np = this.maxGroupTimes.size() * 0.75;
-
-		j = (int) np;
-		g = np - j;
-		j = j - 1; // numeration in the array starts at 0. So if j=1, in need to
-					// get element number 0.
-
-		float thirdQuartile;
-		if (g == 0) {
-			thirdQuartile = (this.maxGroupTimes.get(j) + this.maxGroupTimes
-					.get(j + 1)) / (float) 2;
-		} else {
-			thirdQuartile = this.maxGroupTimes.get(j + 1);
-		}
-
-		// min
-		long min = this.maxGroupTimes.get(0);
-
-		// max
-		long max = this.maxGroupTimes.get(this.maxGroupTimes.size() - 1);
-
-		return new Quartiles(min, firstQuartile, mediana, thirdQuartile, max);
-
+		return maxGroupTimes.getQuartiles();
 	}
 
 	/**
 	 * Calculates and returns quartiles for number of origin ASs
 	 * 
-	 * @return
+	 * @return quartiles or null, if there are no origins
 	 */
 	public Quartiles getOriginsQuartiles() {
-		if(originASsInGroups.size()==0){
-			return null;
-		}
-		
-		Collections.sort(this.originASsInGroups);
-
-		// first quartile
-		double np = this.originASsInGroups.size() * 0.25;
-
-		int j = ((int) np);
-		double g = np - j;
-		j = j - 1; // numeration in the array starts at 0. So if j=1, in need to
-					// get element number 0.
-
-		float firstQuartile;
-		if (g == 0) {
-			firstQuartile = (this.originASsInGroups.get(j) + this.originASsInGroups
-					.get(j + 1)) / (float) 2;
-		} else {
-			firstQuartile = this.originASsInGroups.get(j + 1);
-		}
-
-		// mediana
-		np = this.originASsInGroups.size() * 0.5;
-
-		j = (int) np;
-		g = np - j;
-		j = j - 1; // numeration in the array starts at 0. So if j=1, in need to
-					// get element number 0.
-
-		float mediana;
-		if (g == 0) {
-			mediana = (this.originASsInGroups.get(j) + this.originASsInGroups
-					.get(j + 1)) / (float) 2;
-		} else {
-			mediana = this.originASsInGroups.get(j + 1);
-		}
-
-		// third quartile
-		np = this.originASsInGroups.size() * 0.75;
-
-		j = (int) np;
-		g = np - j;
-		j = j - 1; // numeration in the array starts at 0. So if j=1, in need to
-					// get element number 0.
-
-		float thirdQuartile;
-		if (g == 0) {
-			thirdQuartile = (this.originASsInGroups.get(j) + this.originASsInGroups
-					.get(j + 1)) / (float) 2;
-		} else {
-			thirdQuartile = this.originASsInGroups.get(j + 1);
-		}
-
-		// min
-		long min = this.originASsInGroups.get(0);
-
-		// max
-		long max = this.originASsInGroups
-				.get(this.originASsInGroups.size() - 1);
-
-		return new Quartiles(min, firstQuartile, mediana, thirdQuartile, max);
+		return originASsInGroups.getQuartiles();
 	}
 }
@@ -23,13 +23,20 @@
 package org.sapegin.bgp.analyse.correlation.basic;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.AnalyseSpikesTask;
+import org.sapegin.bgp.analyse.SizeInterval;
+import org.sapegin.bgp.analyse.correlation.CorrelationParameters;
 import org.sapegin.bgp.analyse.correlation.advanced.MonitoredCorrelatedSpikes;
+import org.sapegin.bgp.analyse.correlation.advanced.QuantileSketch;
 import org.sapegin.bgp.analyse.generics.ASsFactory;
 import org.sapegin.bgp.analyse.generics.MonitoredASsFactory;
+import org.sapegin.bgp.analyse.updates.SelectiveIngest;
 import org.sapegin.bgp.analyse.updates.Updates;
 import org.sapegin.bgp.analyse.updates.UpdatesFactory;
 import org.sapegin.bgp.analyse.visibility.ASsToAnalyse;
@@ -66,7 +73,7 @@ public class BasicCorrelationAnalysisTask<T extends ASsToAnalyse> extends
 	private Updates allUpdates;
 
 	private int threads;
-	private double threshold;
+	private ArrayList<Double> thresholds;
 	private int startInterval;
 	private int endInterval;
 
@@ -94,8 +101,11 @@ public class BasicCorrelationAnalysisTask<T extends ASsToAnalyse> extends
 				"start_interval", "1"));
 		this.endInterval = Integer.parseInt(properties.getProperty(
 				"end_interval", "203"));
-		this.threshold = Double.parseDouble(properties.getProperty(
-				"basic_threshold", "0.1"));
+		this.thresholds = new ArrayList<Double>();
+		for (String threshold : properties.getProperty("basic_threshold",
+				"0.1").split(",")) {
+			this.thresholds.add(Double.parseDouble(threshold.trim()));
+		}
 
 		// read all names of monitored ASs
 		logger.info("loading AS names...");
@@ -109,20 +119,33 @@ public class BasicCorrelationAnalysisTask<T extends ASsToAnalyse> extends
 		logger.info(visibleASs.getVisibleASsNames().size()
 				+ " ASs left after calling visibleASs factory.");
 
-		this.classificationResultsFilename = properties.getProperty(
-				"basic_classification_results_filename",
-				"basic_classification_" + timeBuffer + "_"
-						+ duplicationPercentage + "_" + threshold);
+		// spikes are classified for every combination of time buffer,
+		// duplication percentage and threshold
+		List<CorrelationParameters> parameters = CorrelationParameters
+				.combine(timeBuffers, duplicationPercentages, thresholds);
 
-		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>();
+		// if there are several combinations, their names are added to
+		// filename (see MonitoredCorrelatedSpikes.writeResults())
+		String name = "basic_classification";
+		if (parameters.size() == 1) {
+			name = name + "_" + parameters.get(0).getName();
+		}
+		this.classificationResultsFilename = properties.getProperty(
+				"basic_classification_results_filename", name);
+
+		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>(
+				ribThreads, ribMemoryReserve, ribSnapshots,
+				spikeCacheFolder);
+		// spikes from intervals startInterval..endInterval-1 are classified.
+		// The same seconds are selected for all updates, as spikes to
+		// classify are compared with them.
+		SelectiveIngest selectiveIngest = newSelectiveIngest(Arrays
+				.asList(new SizeInterval(startInterval * 100 - 100,
+						endInterval * 100 - 100)));
+		updatesFactory.setSelectiveIngest(selectiveIngest);
 
-		logger.info("loading visible RIBs and updates...");
 		Boolean correlated = properties.getProperty("Analysis_type").equals(
 				"correlated");
-		// updates to be classified
-		allUpdates = updatesFactory.createUpdates(useRIBs, inputRIBsFilenames,
-				componentOnly, correlated, visibleASs, inputUpdatesFilenames,
-				synchronise);
 
 		// updates for searching of correlated spikes, in visible mode only
 		Updates allUpdatesFromAllASs = null;
@@ -133,19 +156,51 @@ public class BasicCorrelationAnalysisTask<T extends ASsToAnalyse> extends
 			MonitoredASs allMonitoredASs = new MonitoredASsFactory().create(
 					iMap, allASs, 1, threads);
 
-			UpdatesFactory<MonitoredASs> allUpdatesFactory = new UpdatesFactory<MonitoredASs>();
-
-			// all updates from all monitored ASs to check for correlation with
-			// previous updates
-			allUpdatesFromAllASs = allUpdatesFactory.createUpdates(useRIBs,
-					inputRIBsFilenames, componentOnly, correlated,
-					allMonitoredASs, inputUpdatesFilenames, synchronise);
+			UpdatesFactory<MonitoredASs> allUpdatesFactory = new UpdatesFactory<MonitoredASs>(
+					ribThreads, ribMemoryReserve, ribSnapshots,
+					spikeCacheFolder);
+			allUpdatesFactory.setSelectiveIngest(selectiveIngest);
+
+			if (UpdatesFactory.canCreateView(useRIBs, componentOnly,
+					correlated)) {
+				// all updates from all monitored ASs are loaded once, and
+				// updates to be classified are selected from them
+				allUpdatesFromAllASs = allUpdatesFactory.createUpdates(
+						useRIBs, inputRIBsFilenames, componentOnly,
+						correlated, allMonitoredASs, inputUpdatesFilenames,
+						false);
+
+				logger.info("selecting updates from visible ASs...");
+				allUpdates = updatesFactory.createView(allUpdatesFromAllASs,
+						useRIBs, componentOnly, correlated, visibleASs,
+						synchronise);
+			} else {
+				logger.info("loading visible RIBs and updates...");
+				allUpdates = updatesFactory.createUpdates(useRIBs,
+						inputRIBsFilenames, componentOnly, correlated,
+						visibleASs, inputUpdatesFilenames, synchronise);
+
+				// all updates from all monitored ASs to check for correlation
+				// with previous updates
+				allUpdatesFromAllASs = allUpdatesFactory.createUpdates(
+						useRIBs, inputRIBsFilenames, componentOnly,
+						correlated, allMonitoredASs, inputUpdatesFilenames,
+						synchronise);
+			}
+		} else {
+			logger.info("loading visible RIBs and updates...");
+			// updates to be classified
+			allUpdates = updatesFactory.createUpdates(useRIBs,
+					inputRIBsFilenames, componentOnly, correlated, visibleASs,
+					inputUpdatesFilenames, synchronise);
 		}
 
 		correlatedSpikes = new MonitoredCorrelatedSpikes<T>(this.threads,
 				this.startInterval, this.endInterval, iMap, allUpdates,
-				allUpdatesFromAllASs, timeBuffer, duplicationPercentage,
-				visibleASs, true, threshold);
+				allUpdatesFromAllASs, parameters, visibleASs, true);
+		correlatedSpikes.setQuantileSketchSize(Integer.parseInt(properties
+				.getProperty("quantile_sketch_size",
+						String.valueOf(QuantileSketch.DEFAULT_SIZE))));
 	}
 
 	@Override
@@ -64,6 +64,10 @@ public class CountDuplicationTask<T extends ASsToAnalyse> extends
 	private ArrayList<Float> percentages;
 	private ArrayList<Byte> buffers;
 
+	// if true, all time buffers and percentages are analysed in one pass
+	// (see DuplicationSweep)
+	private boolean sweep;
+
 	/**
 	 * prevent access to the default constructor
 	 */
@@ -97,6 +101,9 @@ public class CountDuplicationTask<T extends ASsToAnalyse> extends
 			this.buffers.add(Byte.parseByte(buffer));
 		}
 
+		this.sweep = Boolean.parseBoolean(properties.getProperty(
+				"duplication_sweep", "true"));
+
 		this.factoryASs = factoryASs;
 
 	}
@@ -104,7 +111,8 @@ public class CountDuplicationTask<T extends ASsToAnalyse> extends
 	@Override
 	public void selectVisibleDuplicatedSpikes() throws Exception {
 
-		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>();
+		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>(
+				ribThreads, ribMemoryReserve, ribSnapshots, spikeCacheFolder);
 
 		Iterator<String> updatesIterator = inputUpdatesFilenames.iterator();
 		Iterator<String> asesIterator = inputASsFilenames.iterator();
@@ -128,6 +136,25 @@ public class CountDuplicationTask<T extends ASsToAnalyse> extends
 					false, visibleASs,
 					new ArrayList<String>(Arrays.asList(inputUpdates)), false);
 
+			if (sweep) {
+				logger.info("Starting analysis with all " + this.buffers.size()
+						+ " time buffers and " + this.percentages.size()
+						+ " duplication percentages in one pass");
+
+				DuplicationSweep analyser = new DuplicationSweep(updates,
+						this.buffers, this.percentages);
+				analyser.calculateDuplication();
+
+				for (int b = 0; b < this.buffers.size(); b++) {
+					for (int p = 0; p < this.percentages.size(); p++) {
+						this.stats.put(new File(inputUpdates).getName()
+								+ this.buffers.get(b) + this.percentages.get(p),
+								analyser.getStats(b, p));
+					}
+				}
+				continue;
+			}
+
 			// for every time buffer and duplication percentage
 			for (byte buffer : this.buffers) {
 				for (float percentage : this.percentages) {
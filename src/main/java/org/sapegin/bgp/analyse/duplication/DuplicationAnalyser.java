@@ -22,12 +22,10 @@
 	 */
 package org.sapegin.bgp.analyse.duplication;
 
-import java.net.InetAddress;
 import java.util.Map;
-import java.util.Set;
 
-import org.sapegin.bgp.analyse.spikes.Destination;
 import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.PrefixSet;
 import org.sapegin.bgp.analyse.spikes.SingleASspikes;
 import org.sapegin.bgp.analyse.spikes.Spike;
 import org.sapegin.bgp.analyse.updates.Updates;
@@ -70,16 +68,16 @@ public class DuplicationAnalyser {
 		// for every monitor
 		for (MonitoredAS monitoredAS : allUpdates.keySet()) {
 			// get all spikes
-			Map<Long, Spike> spikes = allUpdates.get(monitoredAS)
-					.getAllSpikes();
+			SingleASspikes spikes = allUpdates.get(monitoredAS);
 
 			// for every spike
-			for (Long time : spikes.keySet()) {
-				Spike spike = spikes.get(time);
+			for (int i = 0; i < spikes.getNumberOfSpikes(); i++) {
+				long time = spikes.getTime(i);
+				Spike spike = spikes.getSpike(i);
 
 				// get number of unique duplicated (only with DUPLICATED spikes from other
 				// monitors) prefixes in this spike
-				Set<InetAddress> uniqueDuplicatedPrefixes = this.updates
+				PrefixSet uniqueDuplicatedPrefixes = this.updates
 						.getDuplicatedPrefixesInSpikeIfSpikeIsDuplicated(spike,
 								time, timeBuffer, monitoredAS,
 								duplicationPercentage);
@@ -88,19 +86,14 @@ public class DuplicationAnalyser {
 				
 				// get number of unique duplicated (only with spikes from other
 				// monitors) prefixes in this spike
-				Set<InetAddress> allUniqueDuplicatedPrefixes = this.updates
+				PrefixSet allUniqueDuplicatedPrefixes = this.updates
 						.getAllDuplicatedPrefixesInSpike(spike,
 								time, timeBuffer, monitoredAS,
 								duplicationPercentage);
 				
 				// find number of duplicated prefixes
-				int allDuplicatedPrefixes = 0;
-				for (Destination destination : spike.copyPrefixSet()) {
-					if (allUniqueDuplicatedPrefixes.contains(destination
-							.getPrefix())) {
-						allDuplicatedPrefixes++;
-					}
-				}
+				int allDuplicatedPrefixes = spike
+						.countPrefixesIn(allUniqueDuplicatedPrefixes);
 
 					
 					
@@ -113,13 +106,8 @@ public class DuplicationAnalyser {
 					// spike is duplicated
 
 					// find number of duplicated prefixes
-					int duplicatedPrefixes = 0;
-					for (Destination destination : spike.copyPrefixSet()) {
-						if (uniqueDuplicatedPrefixes.contains(destination
-								.getPrefix())) {
-							duplicatedPrefixes++;
-						}
-					}
+					int duplicatedPrefixes = spike
+							.countPrefixesIn(uniqueDuplicatedPrefixes);
 
 					// update stats
 					this.stats.addDuplicated(spike.getSpikeSize(),
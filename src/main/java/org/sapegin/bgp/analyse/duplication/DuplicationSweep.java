@@ -0,0 +1,225 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.duplication;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.PrefixSpikeIndex;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeTimeIndex;
+import org.sapegin.bgp.analyse.updates.Updates;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         calculates the same statistics as {@link DuplicationAnalyser}, but
+ *         for all combinations of time buffers and duplication percentages at
+ *         once. Spikes of other monitors are searched only once for every
+ *         spike, within the biggest time buffer. For every found spike its
+ *         time offset and duplication ratio are stored, and then statistics
+ *         for every combination (cell) are filled from them.
+ * 
+ */
+public class DuplicationSweep {
+
+	private Updates updates;
+	private long[] timeBuffers;
+	private double[] duplicationPercentages;
+
+	// [time buffer][duplication percentage]
+	private DuplicationStats[][] stats;
+
+	protected DuplicationSweep() {
+	}
+
+	public DuplicationSweep(Updates updates, List<Byte> timeBuffers,
+			List<Float> duplicationPercentages) {
+		this.updates = updates;
+
+		this.timeBuffers = new long[timeBuffers.size()];
+		for (int i = 0; i < this.timeBuffers.length; i++) {
+			this.timeBuffers[i] = timeBuffers.get(i);
+		}
+
+		this.duplicationPercentages = new double[duplicationPercentages.size()];
+		for (int i = 0; i < this.duplicationPercentages.length; i++) {
+			this.duplicationPercentages[i] = duplicationPercentages.get(i);
+		}
+
+		this.stats = new DuplicationStats[this.timeBuffers.length][this.duplicationPercentages.length];
+		for (int b = 0; b < this.timeBuffers.length; b++) {
+			for (int p = 0; p < this.duplicationPercentages.length; p++) {
+				this.stats[b][p] = new DuplicationStats();
+			}
+		}
+	}
+
+	/**
+	 * This procedure calculate rates of duplicated spikes from different
+	 * monitors (monitoredASs) for all time buffers and duplication
+	 * percentages
+	 */
+	public void calculateDuplication() {
+
+		long maxTimeBuffer = 0;
+		for (long timeBuffer : timeBuffers) {
+			maxTimeBuffer = Math.max(maxTimeBuffer, timeBuffer);
+		}
+
+		PrefixSpikeIndex index = updates.getPrefixIndex();
+
+		Map<MonitoredAS, SingleASspikes> allUpdates = updates.getUpdateMap();
+
+		// for every monitor
+		for (MonitoredAS monitoredAS : allUpdates.keySet()) {
+			// get all spikes
+			SingleASspikes spikes = allUpdates.get(monitoredAS);
+
+			// for every spike
+			for (int i = 0; i < spikes.getNumberOfSpikes(); i++) {
+				addSpike(index, spikes.getTime(i), spikes.getSpike(i),
+						monitoredAS, maxTimeBuffer);
+			}
+		}
+	}
+
+	/**
+	 * Finds duplication of one spike for all cells
+	 */
+	private void addSpike(PrefixSpikeIndex index, long time, Spike spike,
+			MonitoredAS as, long maxTimeBuffer) {
+		int size = spike.getSpikeSize();
+		if (!spike.hasPrefixes()) {
+			// nothing could be duplicated
+			for (DuplicationStats[] bufferStats : stats) {
+				for (DuplicationStats cellStats : bufferStats) {
+					cellStats.addSingle(size, 0);
+				}
+			}
+			return;
+		}
+
+		SpikeTimeIndex times = index.getTimeIndex();
+
+		// the smallest offset of spike from other monitor containing the
+		// prefix, for every prefix in spike
+		long[] nearest = new long[size];
+		Arrays.fill(nearest, Long.MAX_VALUE);
+
+		// prefixes duplicated with duplicated spikes for every cell
+		boolean[][][] duplicated = new boolean[timeBuffers.length][duplicationPercentages.length][];
+
+		// spikes from other monitors with common prefixes within the biggest
+		// time buffer (others could not duplicate any prefix)
+		boolean[] contained = new boolean[size];
+		for (int candidate : index.findCandidates(spike, time - maxTimeBuffer,
+				time + maxTimeBuffer)) {
+			if (times.getMonitoredAS(candidate).getMonitoredAS() == as
+					.getMonitoredAS()) {
+				// skip all spikes from the same AS
+				continue;
+			}
+
+			Spike candidateSpike = times.getSpike(candidate);
+			long offset = Math.abs(times.getTime(candidate) - time);
+
+			for (int j = 0; j < size; j++) {
+				contained[j] = candidateSpike.containsPrefix(spike
+						.getPrefix(j));
+				if (contained[j] && offset < nearest[j]) {
+					nearest[j] = offset;
+				}
+			}
+
+			float ratio = candidateSpike.getDuplicationRatio(spike);
+
+			// mark prefixes in all cells, where spikes are duplicated
+			for (int b = 0; b < timeBuffers.length; b++) {
+				if (offset > timeBuffers[b]) {
+					continue;
+				}
+				for (int p = 0; p < duplicationPercentages.length; p++) {
+					if (!(ratio >= duplicationPercentages[p])) {
+						continue;
+					}
+					if (duplicated[b][p] == null) {
+						duplicated[b][p] = new boolean[size];
+					}
+					for (int j = 0; j < size; j++) {
+						duplicated[b][p][j] |= contained[j];
+					}
+				}
+			}
+		}
+
+		// update statistics of every cell
+		for (int b = 0; b < timeBuffers.length; b++) {
+			int allDuplicatedPrefixes = 0;
+			for (int j = 0; j < size; j++) {
+				if (nearest[j] <= timeBuffers[b]) {
+					allDuplicatedPrefixes++;
+				}
+			}
+
+			for (int p = 0; p < duplicationPercentages.length; p++) {
+				int duplicatedPrefixes = 0;
+				if (duplicated[b][p] != null) {
+					for (int j = 0; j < size; j++) {
+						if (duplicated[b][p][j]) {
+							duplicatedPrefixes++;
+						}
+					}
+				}
+
+				// spike is duplicated, if at least one prefix is duplicated
+				// with duplicated spikes
+				if (duplicatedPrefixes == 0) {
+					stats[b][p].addSingle(size, allDuplicatedPrefixes);
+				} else {
+					stats[b][p].addDuplicated(size, duplicatedPrefixes,
+							allDuplicatedPrefixes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get rates of duplicated spikes from different monitors for one cell
+	 * 
+	 * @param timeBufferIndex
+	 *            - index in the list of time buffers
+	 * @param duplicationPercentageIndex
+	 *            - index in the list of duplication percentages
+	 * @return
+	 */
+	public DuplicationStats getStats(int timeBufferIndex,
+			int duplicationPercentageIndex) {
+		return this.stats[timeBufferIndex][duplicationPercentageIndex];
+	}
+
+}
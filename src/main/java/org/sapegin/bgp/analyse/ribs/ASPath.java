@@ -110,6 +110,68 @@ public class ASPath {
 		}
 	}
 
+	/**
+	 * parse AS Path directly from the part of byte buffer (e.g. from the
+	 * buffer of {@link org.sapegin.bgp.analyse.updates.BGP4MPParser}), without
+	 * creating Strings
+	 * 
+	 * @param buf
+	 * @param start
+	 *            - index of first byte of AS Path
+	 * @param end
+	 *            - index after the last byte of AS Path
+	 */
+	public ASPath(byte[] buf, int start, int end) {
+		// initialize array
+		this.asPath = new ArrayList<ASPathElement>();
+
+		// not null while parsing multi-AS element
+		ArrayList<Integer> multiAS = null;
+
+		long as = 0;
+		boolean digits = false;
+
+		// space after the last byte finishes the last element
+		for (int i = start; i <= end; i++) {
+			byte b = (i < end) ? buf[i] : (byte) ' ';
+
+			if (b >= '0' && b <= '9') {
+				as = as * 10 + (b - '0');
+				if (as > Integer.MAX_VALUE) {
+					logger.trace("Can't parse the name of AS in AS Path! Update message will be skipped!");
+					return;
+				}
+				digits = true;
+			} else if (b == ' ' || (b == ']' && multiAS != null && digits)) {
+				if (digits) {
+					if (multiAS != null) {
+						multiAS.add((int) as);
+					} else { // simple AS_PATH element
+						ArrayList<Integer> singleAS = new ArrayList<Integer>();
+						singleAS.add((int) as);
+						this.asPath.add(new ASPathElement(singleAS));
+					}
+				}
+				if (b == ']') { // multi-AS element is finished
+					// it is checked, but not added to the AS Path - the same
+					// as in the String parser above
+					multiAS = null;
+				}
+				as = 0;
+				digits = false;
+			} else if (b == '[' && multiAS == null && !digits) {
+				multiAS = new ArrayList<Integer>();
+			} else {
+				logger.trace("Can't parse the name of AS in AS Path! Update message will be skipped!");
+				return;
+			}
+		}
+
+		if (multiAS != null) {
+			logger.trace("Multi-AS element in AS Path is not finished! Update message will be skipped!");
+		}
+	}
+
 	public ArrayList<ASPathElement> getASPath() {
 		return this.asPath;
 	}
@@ -142,4 +204,22 @@ public class ASPath {
 
 		return asList;
 	}
+
+	/**
+	 * AS Paths are equal if they have equal elements (see
+	 * {@link InternPool})
+	 */
+	@Override
+	public int hashCode() {
+		return asPath.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object otherPath) {
+		if (otherPath != null && (otherPath instanceof ASPath)) {
+			return ((ASPath) otherPath).getASPath().equals(asPath);
+		} else {
+			return false;
+		}
+	}
 }
@@ -0,0 +1,99 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.ribs;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Pool of interned values (AS Paths or origin ASs). Most routes in a
+ *         RIB share the same AS Path, so I keep only one instance of every
+ *         value and let RIBs of all peers refer to it by an int id.
+ * 
+ *         Values are never removed from the pool (withdrawn AS Paths are
+ *         usually announced again anyway). The pool could be used by several
+ *         threads at the same time.
+ * 
+ * @param <T>
+ *            - type of values, should implement equals() and hashCode()
+ */
+public class InternPool<T> {
+
+	// value -> id
+	private final ConcurrentHashMap<T, Integer> ids = new ConcurrentHashMap<T, Integer>();
+
+	// id -> value. Values are written before their id is published through
+	// 'ids', so every thread which got an id could also read its value.
+	private volatile Object[] values = new Object[1024];
+
+	private int size = 0;
+
+	/**
+	 * @param value
+	 * @return id of value. Value is added to pool, if it's not there yet
+	 */
+	public int intern(T value) {
+		Integer id = ids.get(value);
+		if (id != null) {
+			return id;
+		}
+
+		synchronized (this) {
+			id = ids.get(value);
+			if (id != null) {
+				return id;
+			}
+
+			Object[] current = values;
+			if (size == current.length) {
+				current = Arrays.copyOf(current, size * 2);
+			}
+			current[size] = value;
+			values = current;
+
+			id = size++;
+			ids.put(value, id);
+			return id;
+		}
+	}
+
+	/**
+	 * @param id
+	 *            - id returned by intern()
+	 * @return interned value
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int id) {
+		return (T) values[id];
+	}
+
+	/**
+	 * @return number of different values in pool
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
@@ -22,11 +22,12 @@
 	 */
 package org.sapegin.bgp.analyse.ribs;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
 
 /**
  * 
@@ -35,32 +36,61 @@ import org.sapegin.bgp.analyse.spikes.Destination;
  *         This class contains a part of monitoring router RIB, which contains
  *         only prefixes received from 1 monitored AS
  * 
+ *         Prefixes are replaced by their ids from {@link PrefixDictionary}
+ *         and AS Paths by ids from {@link InternPool}. Both are shared by all
+ *         peers, so only an int array (prefix id -> AS Path id) is stored per
+ *         peer.
+ * 
  */
 public class OneAS_RIB {
 
 	// logger
 	private Logger logger = LogManager.getLogger(OneAS_RIB.class);
 
-	// part of RIB with prefixes received from 1 monitored (remote) AS
-	private HashMap<Destination, ASPath> routesAS;
+	private final PrefixDictionary prefixes;
+
+	private final InternPool<ASPath> pool;
+
+	// (id of AS Path + 1) for every prefix id, 0 if there is no route to prefix
+	private int[] routes = new int[1024];
 
+	/**
+	 * Creates RIB with its own prefix dictionary and pool
+	 */
 	public OneAS_RIB() {
-		// prefix , AS Path
-		routesAS = new HashMap<Destination, ASPath>();
+		this(new PrefixDictionary(), new InternPool<ASPath>());
+	}
+
+	/**
+	 * @param prefixes
+	 *            - dictionary shared by all peers
+	 * @param pool
+	 *            - pool shared by all peers
+	 */
+	public OneAS_RIB(PrefixDictionary prefixes, InternPool<ASPath> pool) {
+		this.prefixes = prefixes;
+		this.pool = pool;
 	}
 
 	/**
 	 * Adds route to RIB
 	 * 
 	 * @param prefix
-	 * @param asPath
+	 * @param value
 	 */
-	public void announce(Destination prefix, ASPath asPath) {
-		if (routesAS.get(prefix) != null) {
-			logger.trace("AS Path for prefix " + prefix.getPrefix().getHostAddress()
+	public void announce(Destination prefix, ASPath value) {
+		int id = prefixes.intern(prefix.getPrefix());
+
+		if (id >= routes.length) {
+			routes = Arrays.copyOf(routes,
+					Math.max(id + 1, routes.length * 2));
+		}
+
+		if (routes[id] != 0) {
+			logger.trace("AS Path for prefix " + prefix
 					+ " is already in RIB!");
 		}
-		routesAS.put(prefix, asPath);
+		routes[id] = pool.intern(value) + 1;
 	}
 
 	/**
@@ -69,11 +99,13 @@ public class OneAS_RIB {
 	 * @param prefix
 	 */
 	public void withdraw(Destination prefix) {
-		if (routesAS.get(prefix) == null) {
-			logger.trace("AS Path for prefix " + prefix.getPrefix().getHostAddress()
+		int id = find(prefix);
+		if (id == PrefixDictionary.NO_ID) {
+			logger.trace("AS Path for prefix " + prefix
 					+ " does not exist in RIB!");
+			return;
 		}
-		routesAS.remove(prefix);
+		routes[id] = 0;
 	}
 
 	/**
@@ -84,7 +116,23 @@ public class OneAS_RIB {
 	 * @return
 	 */
 	public ASPath getAS_Path(Destination prefix) {
-		return routesAS.get(prefix);
+		int id = find(prefix);
+		if (id == PrefixDictionary.NO_ID) {
+			return null;
+		}
+		return pool.get(routes[id] - 1);
+	}
+
+	/**
+	 * @return id of prefix, if there is a route to it, or NO_ID
+	 */
+	private int find(Destination prefix) {
+		int id = prefixes.getId(prefix.getPrefix());
+		if (id == PrefixDictionary.NO_ID || id >= routes.length
+				|| routes[id] == 0) {
+			return PrefixDictionary.NO_ID;
+		}
+		return id;
 	}
 
 }
@@ -22,44 +22,75 @@
 	 */
 package org.sapegin.bgp.analyse.ribs;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
 
 /**
  * 
  * @author Andrey Sapegin
  * 
- *         This class contains an origin ASs from RIB, only prefixes received from 1 monitored AS
+ *         This class contains an origin ASs from RIB, only prefixes received
+ *         from 1 monitored AS
+ * 
+ *         Prefixes are replaced by their ids from {@link PrefixDictionary}
+ *         and origin ASs by ids from {@link InternPool}. Both are shared by all
+ *         peers, so only an int array (prefix id -> origin AS id) is stored per
+ *         peer.
  * 
  */
 public class OriginsOnlyOneAS_RIB {
 
 	// logger
-	private Logger logger = LogManager.getLogger(OneAS_RIB.class);
+	private Logger logger = LogManager.getLogger(OriginsOnlyOneAS_RIB.class);
+
+	private final PrefixDictionary prefixes;
+
+	private final InternPool<ASPathElement> pool;
 
-	// origins from RIB for prefixes received from 1 monitored (remote) AS
-	private HashMap<Destination, ASPathElement> originsAS;
+	// (id of origin AS + 1) for every prefix id, 0 if there is no route to prefix
+	private int[] routes = new int[1024];
 
+	/**
+	 * Creates RIB with its own prefix dictionary and pool
+	 */
 	public OriginsOnlyOneAS_RIB() {
-		// prefix , AS Path
-		originsAS = new HashMap<Destination, ASPathElement>();
+		this(new PrefixDictionary(), new InternPool<ASPathElement>());
+	}
+
+	/**
+	 * @param prefixes
+	 *            - dictionary shared by all peers
+	 * @param pool
+	 *            - pool shared by all peers
+	 */
+	public OriginsOnlyOneAS_RIB(PrefixDictionary prefixes, InternPool<ASPathElement> pool) {
+		this.prefixes = prefixes;
+		this.pool = pool;
 	}
 
 	/**
 	 * Adds route to RIB
 	 * 
 	 * @param prefix
-	 * @param asPath
+	 * @param value
 	 */
-	public void announceOrigin(Destination prefix, ASPathElement originAS) {
-		if (originsAS.get(prefix) != null) {
-			logger.trace("AS Path for prefix " + prefix.getPrefix().getHostAddress()
+	public void announceOrigin(Destination prefix, ASPathElement value) {
+		int id = prefixes.intern(prefix.getPrefix());
+
+		if (id >= routes.length) {
+			routes = Arrays.copyOf(routes,
+					Math.max(id + 1, routes.length * 2));
+		}
+
+		if (routes[id] != 0) {
+			logger.trace("AS Path for prefix " + prefix
 					+ " is already in RIB!");
 		}
-		originsAS.put(prefix, originAS);
+		routes[id] = pool.intern(value) + 1;
 	}
 
 	/**
@@ -68,11 +99,13 @@ public class OriginsOnlyOneAS_RIB {
 	 * @param prefix
 	 */
 	public void withdrawOrigin(Destination prefix) {
-		if (originsAS.get(prefix) == null) {
-			logger.trace("AS Path for prefix " + prefix.getPrefix().getHostAddress()
+		int id = find(prefix);
+		if (id == PrefixDictionary.NO_ID) {
+			logger.trace("AS Path for prefix " + prefix
 					+ " does not exist in RIB!");
+			return;
 		}
-		originsAS.remove(prefix);
+		routes[id] = 0;
 	}
 
 	/**
@@ -83,7 +116,23 @@ public class OriginsOnlyOneAS_RIB {
 	 * @return
 	 */
 	public ASPathElement getOriginAS(Destination prefix) {
-		return originsAS.get(prefix);
+		int id = find(prefix);
+		if (id == PrefixDictionary.NO_ID) {
+			return null;
+		}
+		return pool.get(routes[id] - 1);
+	}
+
+	/**
+	 * @return id of prefix, if there is a route to it, or NO_ID
+	 */
+	private int find(Destination prefix) {
+		int id = prefixes.getId(prefix.getPrefix());
+		if (id == PrefixDictionary.NO_ID || id >= routes.length
+				|| routes[id] == 0) {
+			return PrefixDictionary.NO_ID;
+		}
+		return id;
 	}
 
 }
@@ -22,18 +22,15 @@
 	 */
 package org.sapegin.bgp.analyse.ribs;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.net.Inet4Address;
-import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
+import org.sapegin.bgp.analyse.updates.DumpParser;
 
 /**
  * 
@@ -45,7 +42,8 @@ import org.sapegin.bgp.analyse.spikes.Destination;
  *         AS Path and some other which I will need for my analysis.
  * 
  *         This RIB should be loaded from ASCII machine-readable (-m) file
- *         created using converter of MRT-format RIBs.
+ *         created using converter of MRT-format RIBs, or directly from
+ *         MRT-format RIB (see {@link DumpParser}).
  * 
  */
 public class OriginsOnlyRIB {
@@ -53,13 +51,53 @@ public class OriginsOnlyRIB {
 	// logger
 	private Logger logger = LogManager.getLogger(OriginsOnlyRIB.class);
 
-	private HashMap<Integer, OriginsOnlyOneAS_RIB> rib = new HashMap<Integer, OriginsOnlyOneAS_RIB>();
+	// RIBs of peers. Updates of different peers could be applied by
+	// different threads at the same time.
+	private ConcurrentHashMap<Integer, OriginsOnlyOneAS_RIB> rib = new ConcurrentHashMap<Integer, OriginsOnlyOneAS_RIB>();
 
-	private ArrayList<Integer> inputASs;
+	// prefix ids and origin ASs shared by RIBs of all peers
+	private PrefixDictionary prefixes;
+	private InternPool<ASPathElement> origins;
 
-	public OriginsOnlyRIB(String ribFilename, ArrayList<Integer> inputASs) {
-		this.inputASs = inputASs;
-		loadRIBFromFile(ribFilename);
+	private ASSet inputASs;
+
+	public OriginsOnlyRIB(String ribFilename, Collection<Integer> inputASs) {
+		this(ribFilename, inputASs, new PrefixDictionary(),
+				new InternPool<ASPathElement>());
+	}
+
+	/**
+	 * @param ribFilename
+	 * @param inputASs
+	 * @param prefixes
+	 *            - prefix dictionary, could be shared with RIBs of other
+	 *            monitoring routers
+	 * @param origins
+	 *            - pool of origin ASs, could be shared with RIBs of other
+	 *            monitoring routers
+	 */
+	public OriginsOnlyRIB(String ribFilename, Collection<Integer> inputASs,
+			PrefixDictionary prefixes, InternPool<ASPathElement> origins) {
+		this(ribFilename, inputASs, prefixes, origins, false);
+	}
+
+	/**
+	 * @param ribFilename
+	 * @param inputASs
+	 * @param prefixes
+	 * @param origins
+	 * @param useSnapshot
+	 *            - if true, routes are loaded from binary snapshot of RIB file
+	 *            (see {@link RIBSnapshot}), which is created during the first
+	 *            load
+	 */
+	public OriginsOnlyRIB(String ribFilename, Collection<Integer> inputASs,
+			PrefixDictionary prefixes, InternPool<ASPathElement> origins,
+			boolean useSnapshot) {
+		this.inputASs = ASSet.of(inputASs);
+		this.prefixes = prefixes;
+		this.origins = origins;
+		loadRIBFromFile(ribFilename, useSnapshot);
 	}
 
 	/**
@@ -67,110 +105,20 @@ public class OriginsOnlyRIB {
 	 * from ASs listed in 'inputASs' will be imported.
 	 * 
 	 * @param ribFilename
+	 * @param useSnapshot
+	 *            - load routes from snapshot, if it exists, or create it
 	 */
-	private void loadRIBFromFile(String ribFilename) {
-		try {
-
-			logger.info("loading RIB from " + ribFilename);
-
-			FileReader fr = new FileReader(ribFilename);
-			BufferedReader br = new BufferedReader(fr);
-
-			String str = br.readLine();
-
-			int routes_total = 0;
-			int routes_read = 0;
-
-			while (str != null) {
-
-				routes_total++;
-
-				int message_type_size;
-
-				// check message format
-				if (str.startsWith("TABLE_DUMP2|")) {
-					message_type_size = 12;
-				} else if (str.startsWith("TABLE_DUMP|")) {
-					message_type_size = 11;
-				} else {
-					logger.trace("Update message does not start with 'TABLE_DUMP2|' or 'TABLE_DUMP|'. Skipping message...");
-					str = br.readLine();
-					continue;
-				}
-
-				// delete "TABLE_DUMP2|" or "TABLE_DUMP|" 
-				str = str.substring(message_type_size);
-
-				// get name (number) of AS sent the update message
-				for (int i = 0; i < 3; i++) { // skip '|' 3 times
-					str = str.substring(str.indexOf("|") + 1);
-				}
-				int nameAS;
-				try { // parse AS's name
-					nameAS = Integer
-							.parseInt(str.substring(0, str.indexOf("|")));
-				} catch (NumberFormatException e) {
-					logger.trace(
-							"Can't parse the name of AS, which has sent the update message! Message will be skipped.",
-							e);
-					str = br.readLine();
-					continue;
-				}
-
-				if (!inputASs.contains(nameAS)) {
-					logger.trace("Update from AS "
-							+ nameAS
-							+ ", not contained in inputASs list found. Update message will be skipped.");
-					str = br.readLine();
-					continue;
-				}
-
-				// read prefix
-				Destination prefix;
-				String sprefix = str.substring(str.indexOf("|") + 1,
-						str.indexOf("/"));
-				try { // parse prefix
-					prefix = new Destination(Inet4Address.getByName(sprefix));
-				} catch (UnknownHostException e) {
-					logger.error(
-							"Can't parse prefix: "
-									+ sprefix
-									+ ". Update message will be skipped. It's normal if the prefix is IPv6, as I analyse only IPv4 prefixes.",
-							e);
-					str = br.readLine();
-					continue;
-				}
-
-				// read AS path
-				str = str.substring(str.indexOf("|") + 1); // delete AS name
-				str = str.substring(str.indexOf("|") + 1); // delete prefix
-				String ases = str.substring(0, str.indexOf("|"));
-
-				ASPath asPath = new ASPath(ases);
-
-				// add prefix with AS Path to the RIB!
+	private void loadRIBFromFile(String ribFilename, boolean useSnapshot) {
+		new RIBFileReader(inputASs) {
+			@Override
+			public void route(int nameAS, Destination prefix, ASPath asPath) {
 				announceOrigin(nameAS, prefix, asPath.getOriginAS());
-
-				routes_read++;
-
-				str = br.readLine();
 			}
-
-			br.close();
-			fr.close();
-
-			logger.info(routes_read + " of " + routes_total
-					+ " loaded from RIB.");
-
-		} catch (FileNotFoundException e) {
-			logger.fatal("FileNotFound exception during reading RIB", e);
-		} catch (IOException e) {
-			logger.fatal("IO exception during reading RIB", e);
-		}
+		}.read(ribFilename, useSnapshot);
 	}
 
 	/**
-	 * This method adds route to the HashMap representation of RIB
+	 * This method adds route to RIB
 	 * 
 	 * @param nameAS
 	 * @param prefix
@@ -180,7 +128,7 @@ public class OriginsOnlyRIB {
 		if (rib.containsKey(nameAS)) {
 			rib.get(nameAS).announceOrigin(prefix, originAS);
 		} else {
-			OriginsOnlyOneAS_RIB asRIB = new OriginsOnlyOneAS_RIB();
+			OriginsOnlyOneAS_RIB asRIB = new OriginsOnlyOneAS_RIB(prefixes, origins);
 			asRIB.announceOrigin(prefix, originAS);
 			rib.put(nameAS, asRIB);
 		}
@@ -197,7 +145,7 @@ public class OriginsOnlyRIB {
 			rib.get(nameAS).withdrawOrigin(prefix);
 		} else {
 			logger.warn("No routes in RIB to prefix "
-					+ prefix.getPrefix().getHostAddress() + " from AS "
+					+ prefix + " from AS "
 					+ nameAS);
 		}
 	}
@@ -215,7 +163,7 @@ public class OriginsOnlyRIB {
 			return rib.get(nameAS).getOriginAS(prefix);
 		} else {
 			logger.trace("No routes in RIB to prefix "
-					+ prefix.getPrefix().getHostAddress() + " from AS "
+					+ prefix + " from AS "
 					+ nameAS);
 			return null;
 		}
@@ -22,18 +22,15 @@
 	 */
 package org.sapegin.bgp.analyse.ribs;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
-import java.net.Inet4Address;
-import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
+import org.sapegin.bgp.analyse.updates.DumpParser;
 
 /**
  * 
@@ -45,7 +42,8 @@ import org.sapegin.bgp.analyse.spikes.Destination;
  *         AS Path and some other which I will need for my analysis.
  * 
  *         This RIB should be loaded from ASCII machine-readable (-m) file
- *         created using converter of MRT-format RIBs.
+ *         created using converter of MRT-format RIBs, or directly from
+ *         MRT-format RIB (see {@link DumpParser}).
  * 
  */
 public class RIB {
@@ -53,13 +51,53 @@ public class RIB {
 	// logger
 	private Logger logger = LogManager.getLogger(RIB.class);
 
-	private HashMap<Integer, OneAS_RIB> rib = new HashMap<Integer, OneAS_RIB>();
+	// RIBs of peers. Updates of different peers could be applied by
+	// different threads at the same time.
+	private ConcurrentHashMap<Integer, OneAS_RIB> rib = new ConcurrentHashMap<Integer, OneAS_RIB>();
 
-	private ArrayList<Integer> inputASs;
+	// prefix ids and AS Paths shared by RIBs of all peers
+	private PrefixDictionary prefixes;
+	private InternPool<ASPath> paths;
 
-	public RIB(String ribFilename, ArrayList<Integer> inputASs) {
-		this.inputASs = inputASs;
-		loadRIBFromFile(ribFilename);
+	private ASSet inputASs;
+
+	public RIB(String ribFilename, Collection<Integer> inputASs) {
+		this(ribFilename, inputASs, new PrefixDictionary(),
+				new InternPool<ASPath>());
+	}
+
+	/**
+	 * @param ribFilename
+	 * @param inputASs
+	 * @param prefixes
+	 *            - prefix dictionary, could be shared with RIBs of other
+	 *            monitoring routers
+	 * @param paths
+	 *            - pool of AS Paths, could be shared with RIBs of other
+	 *            monitoring routers
+	 */
+	public RIB(String ribFilename, Collection<Integer> inputASs,
+			PrefixDictionary prefixes, InternPool<ASPath> paths) {
+		this(ribFilename, inputASs, prefixes, paths, false);
+	}
+
+	/**
+	 * @param ribFilename
+	 * @param inputASs
+	 * @param prefixes
+	 * @param paths
+	 * @param useSnapshot
+	 *            - if true, routes are loaded from binary snapshot of RIB file
+	 *            (see {@link RIBSnapshot}), which is created during the first
+	 *            load
+	 */
+	public RIB(String ribFilename, Collection<Integer> inputASs,
+			PrefixDictionary prefixes, InternPool<ASPath> paths,
+			boolean useSnapshot) {
+		this.inputASs = ASSet.of(inputASs);
+		this.prefixes = prefixes;
+		this.paths = paths;
+		loadRIBFromFile(ribFilename, useSnapshot);
 	}
 
 	/**
@@ -67,110 +105,20 @@ public class RIB {
 	 * from ASs listed in 'inputASs' will be imported.
 	 * 
 	 * @param ribFilename
+	 * @param useSnapshot
+	 *            - load routes from snapshot, if it exists, or create it
 	 */
-	private void loadRIBFromFile(String ribFilename) {
-		try {
-
-			logger.info("loading RIB from " + ribFilename);
-
-			FileReader fr = new FileReader(ribFilename);
-			BufferedReader br = new BufferedReader(fr);
-
-			String str = br.readLine();
-
-			int routes_total = 0;
-			int routes_read = 0;
-
-			while (str != null) {
-
-				routes_total++;
-
-				int message_type_size;
-
-				// check message format
-				if (str.startsWith("TABLE_DUMP2|")) {
-					message_type_size = 12;
-				} else if (str.startsWith("TABLE_DUMP|")) {
-					message_type_size = 11;
-				} else {
-					logger.trace("Update message does not start with 'TABLE_DUMP2|' or 'TABLE_DUMP|'. Skipping message...");
-					str = br.readLine();
-					continue;
-				}
-
-				// delete "TABLE_DUMP2|" or "TABLE_DUMP|" 
-				str = str.substring(message_type_size);
-
-				// get name (number) of AS sent the update message
-				for (int i = 0; i < 3; i++) { // skip '|' 3 times
-					str = str.substring(str.indexOf("|") + 1);
-				}
-				int nameAS;
-				try { // parse AS's name
-					nameAS = Integer
-							.parseInt(str.substring(0, str.indexOf("|")));
-				} catch (NumberFormatException e) {
-					logger.trace(
-							"Can't parse the name of AS, which has sent the update message! Message will be skipped.",
-							e);
-					str = br.readLine();
-					continue;
-				}
-
-				if (!inputASs.contains(nameAS)) {
-					logger.trace("Update from AS "
-							+ nameAS
-							+ ", not contained in inputASs list found. Update message will be skipped.");
-					str = br.readLine();
-					continue;
-				}
-
-				// read prefix
-				Destination prefix;
-				String sprefix = str.substring(str.indexOf("|") + 1,
-						str.indexOf("/"));
-				try { // parse prefix
-					prefix = new Destination(Inet4Address.getByName(sprefix));
-				} catch (UnknownHostException e) {
-					logger.error(
-							"Can't parse prefix: "
-									+ sprefix
-									+ ". Update message will be skipped. It's normal if the prefix is IPv6, as I analyse only IPv4 prefixes.",
-							e);
-					str = br.readLine();
-					continue;
-				}
-
-				// read AS path
-				str = str.substring(str.indexOf("|") + 1); // delete AS name
-				str = str.substring(str.indexOf("|") + 1); // delete prefix
-				String ases = str.substring(0, str.indexOf("|"));
-
-				ASPath asPath = new ASPath(ases);
-
-				// add prefix with AS Path to the RIB!
+	private void loadRIBFromFile(String ribFilename, boolean useSnapshot) {
+		new RIBFileReader(inputASs) {
+			@Override
+			public void route(int nameAS, Destination prefix, ASPath asPath) {
 				announce(nameAS, prefix, asPath);
-
-				routes_read++;
-
-				str = br.readLine();
 			}
-
-			br.close();
-			fr.close();
-
-			logger.info(routes_read + " of " + routes_total
-					+ " loaded from RIB.");
-
-		} catch (FileNotFoundException e) {
-			logger.fatal("FileNotFound exception during reading RIB", e);
-		} catch (IOException e) {
-			logger.fatal("IO exception during reading RIB", e);
-		}
+		}.read(ribFilename, useSnapshot);
 	}
 
 	/**
-	 * This method adds route to the HashMap representation of RIB
+	 * This method adds route to RIB
 	 * 
 	 * @param nameAS
 	 * @param prefix
@@ -180,7 +128,7 @@ public class RIB {
 		if (rib.containsKey(nameAS)) {
 			rib.get(nameAS).announce(prefix, asPath);
 		} else {
-			OneAS_RIB asRIB = new OneAS_RIB();
+			OneAS_RIB asRIB = new OneAS_RIB(prefixes, paths);
 			asRIB.announce(prefix, asPath);
 			rib.put(nameAS, asRIB);
 		}
@@ -197,7 +145,7 @@ public class RIB {
 			rib.get(nameAS).withdraw(prefix);
 		} else {
 			logger.warn("No routes in RIB to prefix "
-					+ prefix.getPrefix().getHostAddress() + " from AS "
+					+ prefix + " from AS "
 					+ nameAS);
 		}
 	}
@@ -215,7 +163,7 @@ public class RIB {
 			return rib.get(nameAS).getAS_Path(prefix);
 		} else {
 			logger.trace("No routes in RIB to prefix "
-					+ prefix.getPrefix().getHostAddress() + " from AS "
+					+ prefix + " from AS "
 					+ nameAS);
 			return null;
 		}
@@ -0,0 +1,234 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.ribs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.sapegin.bgp.analyse.ASSet;
+import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.updates.BGP4MPHandler;
+import org.sapegin.bgp.analyse.updates.DumpParser;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Reads routes from RIB file or from its snapshot (see
+ *         {@link RIBSnapshot}) and passes routes from input ASs to
+ *         {@link #route(int, Destination, ASPath)}. It's used by
+ *         {@link RIB} and {@link OriginsOnlyRIB}, which store different
+ *         parts of the same routes.
+ * 
+ */
+abstract class RIBFileReader implements RIBSnapshot.RouteHandler {
+
+	// logger
+	private Logger logger = LogManager.getLogger(RIBFileReader.class);
+
+	// only routes from these ASs are read
+	private final ASSet inputASs;
+
+	RIBFileReader(ASSet inputASs) {
+		this.inputASs = inputASs;
+	}
+
+	/**
+	 * This method reads routes from file 'ribFilename'. However, only routes
+	 * from ASs listed in 'inputASs' will be passed to route().
+	 * 
+	 * Snapshot is only an optimisation, so if it can't be read or written,
+	 * RIB is parsed as if there were no snapshots.
+	 * 
+	 * @param ribFilename
+	 * @param useSnapshot
+	 *            - load routes from snapshot, if it exists, or create it
+	 */
+	void read(String ribFilename, boolean useSnapshot) {
+		RIBSnapshot snapshot = null;
+		if (useSnapshot) {
+			try {
+				snapshot = new RIBSnapshot(ribFilename, inputASs);
+			} catch (IOException e) {
+				logger.warn("Cannot find snapshot of " + ribFilename
+						+ ". RIB will be parsed.", e);
+			}
+		}
+
+		if (snapshot != null && snapshot.exists() && replay(snapshot)) {
+			return;
+		}
+
+		RIBSnapshot.Writer writer = null;
+		if (snapshot != null) {
+			try {
+				writer = snapshot.newWriter();
+			} catch (IOException e) {
+				logger.warn("Cannot write snapshot " + snapshot.getFile()
+						+ ". RIB will be parsed without it.", e);
+			}
+		}
+
+		try {
+			parse(ribFilename, writer);
+		} finally {
+			if (writer != null) {
+				// does nothing, if snapshot is already finished
+				writer.abort();
+			}
+		}
+	}
+
+	/**
+	 * @return true, if all routes are loaded from snapshot. Otherwise no
+	 *         routes are loaded.
+	 */
+	private boolean replay(RIBSnapshot snapshot) {
+		logger.info("loading RIB from " + snapshot.getFile());
+
+		try {
+			int routes = snapshot.replay(this);
+			if (routes >= 0) {
+				logger.info(routes + " routes loaded from snapshot.");
+				return true;
+			}
+		} catch (IOException e) {
+			logger.warn("IO exception during reading " + snapshot.getFile()
+					+ ". RIB will be parsed again.", e);
+		}
+		return false;
+	}
+
+	/**
+	 * Parses RIB file and writes read routes into snapshot, if writer is not
+	 * null
+	 */
+	private void parse(String ribFilename, RIBSnapshot.Writer writer) {
+		try {
+			logger.info("loading RIB from " + ribFilename);
+
+			InputStream in = DumpParser.open(ribFilename);
+
+			RIBHandler handler = new RIBHandler(writer);
+			DumpParser.forRIBs(in).parse(in, handler);
+
+			in.close();
+
+			logger.info(handler.routes_read + " of " + handler.routes_total
+					+ " loaded from RIB.");
+
+			if (writer != null) {
+				finish(writer, handler.writeError);
+			}
+
+		} catch (FileNotFoundException e) {
+			logger.fatal("FileNotFound exception during reading RIB", e);
+		} catch (IOException e) {
+			logger.fatal("IO exception during reading RIB", e);
+		}
+	}
+
+	/**
+	 * Saves snapshot, if it was written without errors. RIB is already loaded,
+	 * so errors are only logged.
+	 */
+	private void finish(RIBSnapshot.Writer writer, IOException writeError) {
+		if (writeError != null) {
+			logger.warn("Cannot write snapshot of RIB", writeError);
+			return;
+		}
+
+		try {
+			writer.finish();
+			logger.info("snapshot of RIB saved.");
+		} catch (IOException e) {
+			logger.warn("Cannot save snapshot of RIB", e);
+		}
+	}
+
+	/**
+	 * Adds routes parsed from RIB file
+	 */
+	private class RIBHandler implements BGP4MPHandler {
+
+		private int routes_total = 0;
+		private int routes_read = 0;
+
+		// null, if snapshot is not written
+		private final RIBSnapshot.Writer writer;
+
+		// first error during writing of snapshot
+		private IOException writeError = null;
+
+		RIBHandler(RIBSnapshot.Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void message(long time, byte type, int nameAS, int prefix,
+				byte prefixLength, byte[] line, int asPathStart, int asPathEnd) {
+
+			routes_total++;
+
+			if (!inputASs.contains(nameAS)) {
+				if (logger.isTraceEnabled()) {
+					logger.trace("Update from AS "
+							+ nameAS
+							+ ", not contained in inputASs list found. Update message will be skipped.");
+				}
+				return;
+			}
+
+			// read AS path
+			ASPath asPath = new ASPath(line, asPathStart, asPathEnd);
+
+			// add prefix with AS Path to the RIB!
+			route(nameAS, new Destination(prefix, prefixLength), asPath);
+
+			routes_read++;
+
+			if (writer != null && writeError == null) {
+				try {
+					writer.route(nameAS, prefix, prefixLength, line,
+							asPathStart, asPathEnd);
+				} catch (IOException e) {
+					writeError = e;
+				}
+			}
+		}
+
+		@Override
+		public void malformed(String reason) {
+			routes_total++;
+
+			// it's normal if the prefix is IPv6, as I analyse only IPv4
+			// prefixes.
+			if (logger.isTraceEnabled()) {
+				logger.trace(reason + " Message will be skipped.");
+			}
+		}
+	}
+}
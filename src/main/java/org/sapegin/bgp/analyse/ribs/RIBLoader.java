@@ -0,0 +1,157 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.ribs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Loads RIBs of several monitoring routers in parallel. Every RIB file
+ *         is loaded by its own task, and loadAll() returns immediately, so
+ *         that updates of a monitoring router could be read as soon as its
+ *         RIB is ready, while other RIBs are still loading.
+ * 
+ *         RIBs are big, so new load is started only if at least
+ *         'memoryReserve' part of maximum heap is free, or if no other RIB is
+ *         loading at the moment (then RIBs are just loaded one by one).
+ * 
+ * @param <R>
+ *            - type of RIB
+ */
+public abstract class RIBLoader<R> {
+
+	// part of maximum heap, which should be free to start next load
+	public static final double DEFAULT_MEMORY_RESERVE = 0.25;
+
+	// logger
+	private Logger logger = LogManager.getLogger(RIBLoader.class);
+
+	private final int threads;
+
+	private final double memoryReserve;
+
+	// number of RIBs loading at the moment
+	private int loading = 0;
+
+	/**
+	 * @param threads
+	 *            - maximum number of RIBs loaded at the same time
+	 * @param memoryReserve
+	 *            - part of maximum heap (0..1), which should be free to start
+	 *            loading of next RIB, while other RIBs are loading
+	 */
+	public RIBLoader(int threads, double memoryReserve) {
+		this.threads = Math.max(1, threads);
+		this.memoryReserve = memoryReserve;
+	}
+
+	/**
+	 * Loads RIB from file. Could be called by several threads at the same
+	 * time for different files.
+	 * 
+	 * @param ribFilename
+	 * @return
+	 */
+	protected abstract R load(String ribFilename);
+
+	/**
+	 * Starts loading of all RIBs
+	 * 
+	 * @param ribFilenames
+	 * @return RIBs in the same order as file names
+	 */
+	public List<Future<R>> loadAll(List<String> ribFilenames) {
+		List<Future<R>> ribs = new ArrayList<Future<R>>();
+		if (ribFilenames.isEmpty()) {
+			return ribs;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(
+				threads, ribFilenames.size()));
+
+		for (final String ribFilename : ribFilenames) {
+			ribs.add(executor.submit(new Callable<R>() {
+				@Override
+				public R call() throws InterruptedException {
+					startLoading(ribFilename);
+					try {
+						return load(ribFilename);
+					} finally {
+						finishLoading();
+					}
+				}
+			}));
+		}
+
+		// threads will finish after the last RIB is loaded
+		executor.shutdown();
+
+		return ribs;
+	}
+
+	/**
+	 * waits until there is enough free memory or no other RIB is loading
+	 */
+	private synchronized void startLoading(String ribFilename)
+			throws InterruptedException {
+		long reserve = (long) (Runtime.getRuntime().maxMemory() * memoryReserve);
+
+		boolean logged = false;
+		while (loading > 0 && freeMemory() < reserve) {
+			if (!logged) {
+				logger.info("Not enough free memory to load " + ribFilename
+						+ " now, waiting for other RIBs...");
+				logged = true;
+			}
+			// memory could be also freed by garbage collector, so check it
+			// from time to time
+			wait(1000);
+		}
+
+		loading++;
+	}
+
+	private synchronized void finishLoading() {
+		loading--;
+		notifyAll();
+	}
+
+	/**
+	 * @return memory, which could still be allocated in heap
+	 */
+	private static long freeMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory()
+				- (runtime.totalMemory() - runtime.freeMemory());
+	}
+}
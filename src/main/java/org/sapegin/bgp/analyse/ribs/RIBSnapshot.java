@@ -0,0 +1,357 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.ribs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.sapegin.bgp.analyse.ASSet;
+import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.updates.BGP4MPHandler;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Binary snapshot of routes loaded from RIB file, already filtered by
+ *         input ASs. It is written next to the RIB file during the first load
+ *         and memory-mapped by next runs instead of parsing the RIB again.
+ * 
+ *         The name of the snapshot contains a hash of RIB file content and of
+ *         input ASs, so the snapshot is never used if RIB file or ASs have
+ *         changed.
+ * 
+ *         File format: int MAGIC, int VERSION, then records: PATH (int length,
+ *         AS Path in ASCII format as in RIB file) or ROUTE (int peer AS, int
+ *         prefix, byte prefix length, int number of path). Paths are numbered
+ *         in the order of their records, every path is written only once. The
+ *         last record is END (int number of routes).
+ */
+public class RIBSnapshot {
+
+	private static final int MAGIC = 0x42475052; // "BGPR"
+	private static final int VERSION = 1;
+
+	private static final byte PATH = 'P';
+	private static final byte ROUTE = 'R';
+	private static final byte END = 'E';
+
+	// ROUTE record without its type
+	private static final int ROUTE_SIZE = 13;
+	// END record
+	private static final int END_SIZE = 5;
+
+	private static Logger logger = LogManager.getLogger(RIBSnapshot.class);
+
+	private final File file;
+
+	/**
+	 * @param ribFilename
+	 * @param inputASs
+	 *            - only routes from these ASs are loaded from RIB
+	 * @throws IOException
+	 *             if RIB file can't be read
+	 */
+	public RIBSnapshot(String ribFilename, ASSet inputASs) throws IOException {
+		this.file = new File(ribFilename + "." + key(ribFilename, inputASs)
+				+ ".snapshot");
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public boolean exists() {
+		return file.exists();
+	}
+
+	/**
+	 * Receives routes replayed from snapshot
+	 */
+	public interface RouteHandler {
+
+		/**
+		 * @param peerAS
+		 * @param prefix
+		 * @param asPath
+		 *            - parsed only once for all routes with the same AS Path
+		 */
+		void route(int peerAS, Destination prefix, ASPath asPath);
+	}
+
+	/**
+	 * Passes all routes from snapshot to handler. The whole snapshot is
+	 * checked before the first route is passed, so that handler gets either
+	 * all routes or nothing.
+	 * 
+	 * @param handler
+	 * @return number of routes or -1, if snapshot contains something else (no
+	 *         routes are passed to handler then)
+	 * @throws IOException
+	 *             if snapshot can't be read (no routes are passed to handler
+	 *             then)
+	 */
+	public int replay(RouteHandler handler) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		ByteBuffer buffer;
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() > Integer.MAX_VALUE
+					|| channel.size() < 8 + END_SIZE) {
+				logger.warn("Unexpected size of " + file
+						+ ". RIB will be parsed again.");
+				return -1;
+			}
+			// mapping stays valid after the file is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} finally {
+			raf.close();
+		}
+
+		// check header and that the file is complete
+		int endPosition = buffer.capacity() - END_SIZE;
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+				|| buffer.get(endPosition) != END) {
+			logger.warn("Unexpected content of " + file
+					+ ". RIB will be parsed again.");
+			return -1;
+		}
+
+		// first pass: every path is parsed once, and all records are checked
+		ASPath[] paths = new ASPath[1024];
+		int pathsNumber = 0;
+		int routes = 0;
+		byte[] path = new byte[256];
+		try {
+			while (buffer.position() < endPosition) {
+				byte record = buffer.get();
+				if (record == PATH) {
+					int length = buffer.getInt();
+					if (length < 0 || length > endPosition - buffer.position()) {
+						return unexpectedContent();
+					}
+					if (length > path.length) {
+						path = new byte[Math.max(length, path.length * 2)];
+					}
+					buffer.get(path, 0, length);
+
+					if (pathsNumber >= paths.length) {
+						paths = Arrays.copyOf(paths, paths.length * 2);
+					}
+					paths[pathsNumber] = new ASPath(path, 0, length);
+					pathsNumber++;
+				} else if (record == ROUTE) {
+					// skip peer AS, prefix and prefix length
+					buffer.position(buffer.position() + ROUTE_SIZE - 4);
+					int pathNumber = buffer.getInt();
+					if (pathNumber < 0 || pathNumber >= pathsNumber) {
+						return unexpectedContent();
+					}
+					routes++;
+				} else {
+					return unexpectedContent();
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			return unexpectedContent();
+		} catch (IllegalArgumentException e) {
+			// position after the end of buffer
+			return unexpectedContent();
+		}
+
+		// the last record should finish exactly before END, which contains
+		// number of routes
+		if (buffer.position() != endPosition
+				|| buffer.getInt(endPosition + 1) != routes) {
+			return unexpectedContent();
+		}
+
+		// second pass: all records are correct, so routes could be passed
+		buffer.position(8);
+		while (buffer.position() < endPosition) {
+			if (buffer.get() == PATH) {
+				int length = buffer.getInt();
+				buffer.position(buffer.position() + length);
+			} else {
+				int peerAS = buffer.getInt();
+				int prefix = buffer.getInt();
+				byte prefixLength = buffer.get();
+				int pathNumber = buffer.getInt();
+				handler.route(peerAS, new Destination(prefix, prefixLength),
+						paths[pathNumber]);
+			}
+		}
+
+		return routes;
+	}
+
+	private int unexpectedContent() {
+		logger.warn("Unexpected record in " + file
+				+ ". RIB will be parsed again.");
+		return -1;
+	}
+
+	/**
+	 * @return writer of new snapshot. Snapshot appears under its name only
+	 *         after {@link Writer#finish()}
+	 * @throws IOException
+	 */
+	public Writer newWriter() throws IOException {
+		return new Writer();
+	}
+
+	/**
+	 * Writes routes into temporary file, which is renamed into snapshot, when
+	 * all routes are written.
+	 */
+	public class Writer {
+
+		private final File tmpFile;
+
+		private final DataOutputStream out;
+
+		// AS Path -> number of path in snapshot
+		private final HashMap<ByteBuffer, Integer> paths = new HashMap<ByteBuffer, Integer>();
+
+		private int routes = 0;
+
+		private boolean finished = false;
+
+		private Writer() throws IOException {
+			tmpFile = new File(file.getPath() + ".tmp");
+			out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tmpFile), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		}
+
+		/**
+		 * Adds route. AS Path is passed as a span of buffer, as in
+		 * {@link BGP4MPHandler}.
+		 */
+		public void route(int peerAS, int prefix, byte prefixLength,
+				byte[] line, int asPathStart, int asPathEnd) throws IOException {
+			ByteBuffer asPath = ByteBuffer.wrap(line, asPathStart, asPathEnd
+					- asPathStart);
+
+			Integer path = paths.get(asPath);
+			if (path == null) {
+				// buffer of parser is reused, so the key should be copied
+				byte[] copy = Arrays.copyOfRange(line, asPathStart, asPathEnd);
+				path = paths.size();
+				paths.put(ByteBuffer.wrap(copy), path);
+
+				out.writeByte(PATH);
+				out.writeInt(copy.length);
+				out.write(copy);
+			}
+
+			out.writeByte(ROUTE);
+			out.writeInt(peerAS);
+			out.writeInt(prefix);
+			out.writeByte(prefixLength);
+			out.writeInt(path);
+			routes++;
+		}
+
+		/**
+		 * Completes snapshot
+		 */
+		public void finish() throws IOException {
+			out.writeByte(END);
+			out.writeInt(routes);
+			out.close();
+
+			if (!tmpFile.renameTo(file)) {
+				file.delete();
+				if (!tmpFile.renameTo(file)) {
+					throw new IOException("Cannot rename " + tmpFile + " to "
+							+ file);
+				}
+			}
+			finished = true;
+		}
+
+		/**
+		 * Deletes incomplete snapshot. Does nothing, if snapshot is finished.
+		 */
+		public void abort() {
+			if (finished) {
+				return;
+			}
+			try {
+				out.close();
+			} catch (IOException e) {
+				logger.warn("Cannot close " + tmpFile, e);
+			}
+			tmpFile.delete();
+		}
+	}
+
+	/**
+	 * @return hash of content of RIB file and input ASs
+	 */
+	private static String key(String ribFilename, ASSet inputASs)
+			throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] buffer = new byte[64 * 1024];
+
+			FileInputStream in = new FileInputStream(ribFilename);
+			try {
+				int read;
+				while ((read = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+
+			int[] names = inputASs.toIntArray();
+			ByteBuffer namesBuffer = ByteBuffer.allocate(4 * names.length);
+			namesBuffer.asIntBuffer().put(names);
+			digest.update(namesBuffer.array());
+
+			return String.format("%032x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			// MD5 is always available in Java
+			throw new IOException(e);
+		}
+	}
+}
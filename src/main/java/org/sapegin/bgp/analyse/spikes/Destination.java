@@ -37,30 +37,52 @@ import org.sapegin.bgp.analyse.ribs.ASPathElement;
  */
 
 public class Destination {
-	private InetAddress prefix;
+	// network address packed into int (see Prefix)
+	private int prefix;
+	private byte prefixLength;
 	private ASPathElement originAS;
 
 	/**
 	 * Adds prefix without originated AS
 	 * 
 	 * @param prefix
+	 *            - network address packed into int
+	 * @param prefixLength
+	 *            - mask length
 	 */
-	public Destination(InetAddress prefix) {
-		this.prefix = prefix;
-		this.originAS = null;
+	public Destination(int prefix, byte prefixLength) {
+		this(prefix, prefixLength, null);
 	}
 
-	public Destination(InetAddress prefix, ASPathElement originAS) {
+	public Destination(int prefix, byte prefixLength, ASPathElement originAS) {
 		this.prefix = prefix;
+		this.prefixLength = prefixLength;
 		this.originAS = originAS;
 	}
 
+	/**
+	 * Adds prefix without originated AS. Mask length is unknown.
+	 * 
+	 * @param prefix
+	 */
+	public Destination(InetAddress prefix) {
+		this(prefix, null);
+	}
+
+	public Destination(InetAddress prefix, ASPathElement originAS) {
+		this(Prefix.fromInetAddress(prefix), Prefix.UNKNOWN_LENGTH, originAS);
+	}
+
+	/**
+	 * Mask length is not used here (as well as in equals()), as I compare
+	 * prefixes by network address only.
+	 */
 	@Override
 	public int hashCode(){
 		if (originAS == null) {
-		return new HashCodeBuilder().append(prefix.hashCode()).toHashCode();
+		return new HashCodeBuilder().append(prefix).toHashCode();
 		} else{
-			return new HashCodeBuilder().append(prefix.hashCode()).append(originAS.hashCode()).toHashCode();
+			return new HashCodeBuilder().append(prefix).append(originAS.hashCode()).toHashCode();
 		}
 	}
 	
@@ -69,13 +91,15 @@ public class Destination {
 		if (anotherDestination != null
 				&& (anotherDestination instanceof Destination)) {
 
-			if (((Destination) anotherDestination).getPrefix().equals(prefix)) {
+			if (((Destination) anotherDestination).getPrefix() == prefix) {
 
 				ASPathElement anotherOrigin = ((Destination) anotherDestination)
 						.getOriginAS();
 
 				if ((anotherOrigin == null) && (this.originAS == null)) {
 					return true;
+				} else if (anotherOrigin == null) {
+					return false;
 				} else {
 
 					if (anotherOrigin.equals(originAS)) {
@@ -92,10 +116,22 @@ public class Destination {
 		}
 	}
 
-	public InetAddress getPrefix() {
+	@Override
+	public String toString() {
+		return Prefix.toString(prefix, prefixLength);
+	}
+
+	/**
+	 * @return network address packed into int (see Prefix)
+	 */
+	public int getPrefix() {
 		return this.prefix;
 	}
 
+	public byte getPrefixLength() {
+		return this.prefixLength;
+	}
+
 	public ASPathElement getOriginAS() {
 		return this.originAS;
 	}
@@ -22,22 +22,24 @@
 	 */
 package org.sapegin.bgp.analyse.spikes;
 
-import org.apache.commons.lang3.builder.HashCodeBuilder;
-
 /**
  * 
  * This class just represents a pair {monitoringRouter,monitoredAS}
  * 
+ * Pairs are keys of maps of spikes, so hash code is computed only once.
+ * 
  * @author Andrey Sapegin
  * 
  */
 public class MonitoredAS {
 	private String monitoringRouter;
 	private int monitoredAS;
+	private final int hash;
 
 	public MonitoredAS(String monitoringRouter, int monitoredAS) {
 		this.monitoringRouter = monitoringRouter;
 		this.monitoredAS = monitoredAS;
+		this.hash = 31 * monitoringRouter.hashCode() + monitoredAS;
 	}
 
 	public String getMonitoringRouter() {
@@ -62,21 +64,18 @@ public class MonitoredAS {
 		if (obj.getClass() != getClass()) {
 			return false;
 		}
-		
+
 		MonitoredAS as = (MonitoredAS) obj;
-		
-		return ((as.getMonitoredAS() == monitoredAS) && (as
-				.getMonitoringRouter().equals(monitoringRouter)));
+
+		return ((as.hash == hash) && (as.monitoredAS == monitoredAS) && (as.monitoringRouter
+				.equals(monitoringRouter)));
 	}
-	
+
 	/**
 	 * I override hashCode() as I want to use MonitoredAS as key in a HashMap
 	 */
 	@Override
-	public int hashCode(){
-		HashCodeBuilder hash = new HashCodeBuilder();
-		hash.append(monitoredAS);
-		hash.append(monitoringRouter);
-		return hash.toHashCode();
+	public int hashCode() {
+		return hash;
 	}
 }
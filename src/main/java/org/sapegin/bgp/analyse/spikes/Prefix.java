@@ -0,0 +1,151 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.spikes;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Helper methods for IPv4 prefixes packed into int (network address in
+ *         big-endian order, e.g. 1.2.3.0 is 0x01020300). Mask length is stored
+ *         separately as byte.
+ * 
+ *         No name service lookups are done here, so these methods are much
+ *         cheaper than InetAddress.getByName().
+ * 
+ */
+public final class Prefix {
+
+	// mask length of prefixes created from InetAddress or String without mask
+	public static final byte UNKNOWN_LENGTH = -1;
+
+	private Prefix() {
+	}
+
+	/**
+	 * Parses IPv4 network address in String format (aaa.bbb.ccc.ddd). Mask
+	 * (e.g. "/24") is ignored, if present.
+	 * 
+	 * @param ip
+	 * @return network address packed into int
+	 * @throws NumberFormatException
+	 *             - if ip is not IPv4 address
+	 */
+	public static int parse(String ip) throws NumberFormatException {
+		int address = 0;
+		int octet = 0;
+		int octets = 0;
+		int digits = 0;
+
+		for (int i = 0; i <= ip.length(); i++) {
+			char c = (i < ip.length()) ? ip.charAt(i) : '.';
+
+			if (c == '/' && octets == 3) { // mask is ignored
+				c = '.';
+				i = ip.length();
+			}
+
+			if (c >= '0' && c <= '9') {
+				octet = octet * 10 + (c - '0');
+				digits++;
+				if (octet > 255) {
+					throw new NumberFormatException("Not an IPv4 address: "
+							+ ip);
+				}
+			} else if (c == '.' && digits > 0 && octets < 4) {
+				address = (address << 8) | octet;
+				octets++;
+				octet = 0;
+				digits = 0;
+			} else {
+				throw new NumberFormatException("Not an IPv4 address: " + ip);
+			}
+		}
+
+		if (octets != 4) {
+			throw new NumberFormatException("Not an IPv4 address: " + ip);
+		}
+
+		return address;
+	}
+
+	/**
+	 * Packs IPv4 address into int
+	 * 
+	 * @param ip
+	 * @return network address packed into int
+	 * @throws IllegalArgumentException
+	 *             - if ip is not IPv4 address
+	 */
+	public static int fromInetAddress(InetAddress ip) {
+		byte[] bytes = ip.getAddress();
+		if (bytes.length != 4) {
+			throw new IllegalArgumentException("Not an IPv4 address: " + ip);
+		}
+
+		return ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16)
+				| ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+	}
+
+	/**
+	 * Converts packed address back to InetAddress (without name lookup)
+	 * 
+	 * @param address
+	 * @return
+	 */
+	public static InetAddress toInetAddress(int address) {
+		try {
+			return InetAddress.getByAddress(new byte[] {
+					(byte) (address >>> 24), (byte) (address >>> 16),
+					(byte) (address >>> 8), (byte) address });
+		} catch (UnknownHostException e) {
+			// never happens for 4 bytes array
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param address
+	 * @return address in String format (aaa.bbb.ccc.ddd)
+	 */
+	public static String toString(int address) {
+		return (address >>> 24) + "." + ((address >>> 16) & 0xff) + "."
+				+ ((address >>> 8) & 0xff) + "." + (address & 0xff);
+	}
+
+	/**
+	 * @param address
+	 * @param length
+	 * @return prefix in String format (aaa.bbb.ccc.ddd/ll), or address only if
+	 *         mask length is unknown
+	 */
+	public static String toString(int address, byte length) {
+		if (length == UNKNOWN_LENGTH) {
+			return toString(address);
+		}
+		return toString(address) + "/" + length;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.spikes;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Dictionary, which gives every IPv4 network address packed into int
+ *         (see {@link Prefix}) a dense id (0, 1, 2, ...). It's shared by RIBs
+ *         of all peers, so that every peer could store its routes in a
+ *         primitive array indexed by prefix id instead of a map.
+ * 
+ *         Ids are never removed. The dictionary could be used by several
+ *         threads at the same time: the table is split into segments, and
+ *         each segment has its own lock.
+ * 
+ */
+public class PrefixDictionary {
+
+	// returned if prefix has no id yet
+	public static final int NO_ID = -1;
+
+	// number of segments (power of two)
+	private static final int SEGMENTS = 64;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	// next free id
+	private int size = 0;
+
+	public PrefixDictionary() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * @param prefix
+	 *            - network address packed into int
+	 * @return id of prefix or NO_ID, if prefix was never added
+	 */
+	public int getId(int prefix) {
+		Segment segment = segmentFor(prefix);
+		synchronized (segment) {
+			return segment.get(prefix);
+		}
+	}
+
+	/**
+	 * @param prefix
+	 *            - network address packed into int
+	 * @return id of prefix. New id is created, if prefix was never added
+	 */
+	public int intern(int prefix) {
+		Segment segment = segmentFor(prefix);
+		synchronized (segment) {
+			int id = segment.get(prefix);
+			if (id == NO_ID) {
+				id = nextId();
+				segment.put(prefix, id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * @return number of prefixes in dictionary (all ids are less than size)
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	private synchronized int nextId() {
+		return size++;
+	}
+
+	/**
+	 * upper bits of hash select the segment, lower bits are used inside it
+	 */
+	private Segment segmentFor(int prefix) {
+		return segments[PrefixSet.hash(prefix) >>> 26];
+	}
+
+	/**
+	 * Open-addressing map from prefix to id with linear probing (see
+	 * {@link PrefixMap}). Ids are never removed, so there is no removal here.
+	 */
+	private static class Segment {
+
+		private static final int FREE = 0;
+
+		private int[] keys = new int[PrefixSet.tableSize(8)];
+		private int[] ids = new int[keys.length];
+
+		// number of keys in table (without 0.0.0.0)
+		private int count = 0;
+
+		// id of 0.0.0.0, as 0 marks free slots
+		private int zeroId = NO_ID;
+
+		int get(int prefix) {
+			if (prefix == FREE) {
+				return zeroId;
+			}
+
+			int mask = keys.length - 1;
+			int i = PrefixSet.hash(prefix) & mask;
+			while (keys[i] != FREE) {
+				if (keys[i] == prefix) {
+					return ids[i];
+				}
+				i = (i + 1) & mask;
+			}
+			return NO_ID;
+		}
+
+		/**
+		 * adds prefix, which is not in the table yet
+		 */
+		void put(int prefix, int id) {
+			if (prefix == FREE) {
+				zeroId = id;
+				return;
+			}
+
+			int mask = keys.length - 1;
+			int i = PrefixSet.hash(prefix) & mask;
+			while (keys[i] != FREE) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = prefix;
+			ids[i] = id;
+			count++;
+
+			// keep load factor <= 0.5
+			if (count * 2 > keys.length) {
+				rehash(keys.length * 2);
+			}
+		}
+
+		private void rehash(int newLength) {
+			int[] oldKeys = keys;
+			int[] oldIds = ids;
+			keys = new int[newLength];
+			ids = new int[newLength];
+			count = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != FREE) {
+					put(oldKeys[i], oldIds[i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.spikes;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Map from IPv4 network addresses packed into int (see {@link Prefix})
+ *         to values. It's an open-addressing hash map with linear probing, so
+ *         keys are not boxed. Null values are not stored (putting null removes
+ *         the key).
+ * 
+ *         Address 0.0.0.0 marks free slots in the table, so its value is
+ *         stored in a separate field.
+ * 
+ * @param <V>
+ */
+public class PrefixMap<V> {
+
+	private static final int FREE = 0;
+
+	private int[] keys;
+	private Object[] values;
+
+	// number of keys in table (without 0.0.0.0)
+	private int size;
+
+	private V zeroValue;
+
+	public PrefixMap() {
+		this(8);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            - number of keys, which could be added without resizing
+	 */
+	public PrefixMap(int expectedSize) {
+		int length = PrefixSet.tableSize(expectedSize);
+		keys = new int[length];
+		values = new Object[length];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(int prefix) {
+		if (prefix == FREE) {
+			return zeroValue;
+		}
+
+		int i = find(prefix);
+		return (i < 0) ? null : (V) values[i];
+	}
+
+	/**
+	 * @param prefix
+	 * @param value
+	 * @return previous value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int prefix, V value) {
+		if (value == null) {
+			return remove(prefix);
+		}
+
+		if (prefix == FREE) {
+			V old = zeroValue;
+			zeroValue = value;
+			return old;
+		}
+
+		int mask = keys.length - 1;
+		int i = PrefixSet.hash(prefix) & mask;
+		while (keys[i] != FREE) {
+			if (keys[i] == prefix) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = prefix;
+		values[i] = value;
+		size++;
+
+		// keep load factor <= 0.5
+		if (size * 2 > keys.length) {
+			rehash(keys.length * 2);
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param prefix
+	 * @return removed value or null
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int prefix) {
+		if (prefix == FREE) {
+			V old = zeroValue;
+			zeroValue = null;
+			return old;
+		}
+
+		int i = find(prefix);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V) values[i];
+		size--;
+
+		// shift following keys of the same cluster back, so that lookups
+		// never stop at the freed slot
+		int mask = keys.length - 1;
+		int j = i;
+		while (true) {
+			j = (j + 1) & mask;
+			if (keys[j] == FREE) {
+				break;
+			}
+			int home = PrefixSet.hash(keys[j]) & mask;
+			// move key only if its home slot is not in (i, j]
+			boolean between = (i <= j) ? (i < home && home <= j)
+					: (i < home || home <= j);
+			if (!between) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		keys[i] = FREE;
+		values[i] = null;
+
+		return old;
+	}
+
+	public int size() {
+		return (zeroValue != null) ? size + 1 : size;
+	}
+
+	/**
+	 * @return index of key in table or -1
+	 */
+	private int find(int prefix) {
+		int mask = keys.length - 1;
+		int i = PrefixSet.hash(prefix) & mask;
+		while (keys[i] != FREE) {
+			if (keys[i] == prefix) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rehash(int newLength) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[newLength];
+		values = new Object[newLength];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				put(oldKeys[i], (V) oldValues[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.spikes;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Set of IPv4 network addresses packed into int (see {@link Prefix}).
+ *         It's an open-addressing hash set with linear probing, so no objects
+ *         are created per prefix.
+ * 
+ *         Address 0.0.0.0 marks free slots in the table, so it is stored in a
+ *         separate flag.
+ * 
+ */
+public class PrefixSet {
+
+	private static final int FREE = 0;
+
+	private static final int DEFAULT_SIZE = 8;
+
+	private int[] table;
+
+	// number of addresses in table (without 0.0.0.0)
+	private int size;
+
+	private boolean containsZero;
+
+	public PrefixSet() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param expectedSize
+	 *            - number of addresses, which could be added without resizing
+	 */
+	public PrefixSet(int expectedSize) {
+		table = new int[tableSize(expectedSize)];
+	}
+
+	/**
+	 * @param prefix
+	 * @return true, if prefix was not contained in the set
+	 */
+	public boolean add(int prefix) {
+		if (prefix == FREE) {
+			boolean added = !containsZero;
+			containsZero = true;
+			return added;
+		}
+
+		int mask = table.length - 1;
+		int i = hash(prefix) & mask;
+		while (table[i] != FREE) {
+			if (table[i] == prefix) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+
+		table[i] = prefix;
+		size++;
+
+		// keep load factor <= 0.5
+		if (size * 2 > table.length) {
+			rehash(table.length * 2);
+		}
+
+		return true;
+	}
+
+	public boolean contains(int prefix) {
+		if (prefix == FREE) {
+			return containsZero;
+		}
+
+		int mask = table.length - 1;
+		int i = hash(prefix) & mask;
+		while (table[i] != FREE) {
+			if (table[i] == prefix) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+
+		return false;
+	}
+
+	public void addAll(PrefixSet prefixes) {
+		if (prefixes.containsZero) {
+			containsZero = true;
+		}
+		for (int prefix : prefixes.table) {
+			if (prefix != FREE) {
+				add(prefix);
+			}
+		}
+	}
+
+	public int size() {
+		return containsZero ? size + 1 : size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * @return all addresses in ascending (unsigned) order
+	 */
+	public int[] toArray() {
+		int[] prefixes = new int[size()];
+		int n = 0;
+		if (containsZero) {
+			prefixes[n++] = FREE;
+		}
+		for (int prefix : table) {
+			if (prefix != FREE) {
+				// flip sign bit to sort addresses as unsigned
+				prefixes[n++] = prefix ^ Integer.MIN_VALUE;
+			}
+		}
+		Arrays.sort(prefixes, containsZero ? 1 : 0, n);
+		for (int i = containsZero ? 1 : 0; i < n; i++) {
+			prefixes[i] ^= Integer.MIN_VALUE;
+		}
+		return prefixes;
+	}
+
+	private void rehash(int newLength) {
+		int[] oldTable = table;
+		table = new int[newLength];
+		size = 0;
+		for (int prefix : oldTable) {
+			if (prefix != FREE) {
+				add(prefix);
+			}
+		}
+	}
+
+	/**
+	 * @return power of two, at least twice bigger than expected size
+	 */
+	static int tableSize(int expectedSize) {
+		int length = DEFAULT_SIZE;
+		while (length < expectedSize * 2) {
+			length *= 2;
+		}
+		return length;
+	}
+
+	/**
+	 * mixes bits of address, as addresses of neighbour prefixes differ only in
+	 * a few bits
+	 */
+	static int hash(int prefix) {
+		int h = prefix * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,188 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.spikes;
+
+import java.util.Arrays;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         This class is an inverted index from prefix (network address) to
+ *         all spikes containing this prefix. Spikes are referenced by their
+ *         positions in SpikeTimeIndex, so every posting list is sorted by time
+ *         and the part of it within some time interval is found with binary
+ *         search.
+ * 
+ *         It is used to select candidates for duplicated spikes: spike could be
+ *         duplicated with the given one only if they have at least one common
+ *         prefix. So instead of checking all spikes within time interval I
+ *         check only spikes found in posting lists of the given spike
+ *         prefixes, and the cost depends on the real overlap of spikes.
+ */
+public class PrefixSpikeIndex {
+
+	private static final int[] EMPTY = new int[0];
+
+	private final SpikeTimeIndex timeIndex;
+
+	// positions (in timeIndex) of spikes containing the prefix, ascending
+	private final PrefixMap<int[]> postings;
+
+	/**
+	 * Builds index for all spikes in the given time index
+	 * 
+	 * @param timeIndex
+	 */
+	public PrefixSpikeIndex(SpikeTimeIndex timeIndex) {
+		this.timeIndex = timeIndex;
+
+		// count spikes for every prefix first, so that every posting list is
+		// allocated only once
+		PrefixMap<int[]> counters = new PrefixMap<int[]>();
+		for (int position = 0; position < timeIndex.size(); position++) {
+			Spike spike = timeIndex.getSpike(position);
+			if (!spike.hasPrefixes()) {
+				continue; // spike only counts prefixes, nothing to index
+			}
+			for (int i = 0; i < spike.getSpikeSize(); i++) {
+				int prefix = spike.getPrefix(i);
+				int[] counter = counters.get(prefix);
+				if (counter == null) {
+					// {number of spikes, last counted spike}
+					counter = new int[] { 0, -1 };
+					counters.put(prefix, counter);
+				}
+				// prefix could be repeated in spike, but spike should be
+				// counted only once
+				if (counter[1] != position) {
+					counter[0]++;
+					counter[1] = position;
+				}
+			}
+		}
+
+		// fill posting lists. Spikes are visited in time order, so the lists
+		// are sorted.
+		postings = new PrefixMap<int[]>(counters.size());
+		for (int position = 0; position < timeIndex.size(); position++) {
+			Spike spike = timeIndex.getSpike(position);
+			if (!spike.hasPrefixes()) {
+				continue;
+			}
+			for (int i = 0; i < spike.getSpikeSize(); i++) {
+				int prefix = spike.getPrefix(i);
+				int[] counter = counters.get(prefix);
+				int[] list = postings.get(prefix);
+				if (list == null) {
+					list = new int[counter[0]];
+					postings.put(prefix, list);
+					counter[0] = 0; // now it's number of filled positions
+				}
+				if (counter[0] == 0 || list[counter[0] - 1] != position) {
+					list[counter[0]++] = position;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return time index, positions of which are returned by this index
+	 */
+	public SpikeTimeIndex getTimeIndex() {
+		return timeIndex;
+	}
+
+	/**
+	 * @param prefix
+	 * @return positions in time index of all spikes containing the given
+	 *         prefix in ascending (time) order. The array must not be
+	 *         modified.
+	 */
+	public int[] getPostings(int prefix) {
+		int[] list = postings.get(prefix);
+		return (list == null) ? EMPTY : list;
+	}
+
+	/**
+	 * Finds all spikes within time interval [from,to] having at least one
+	 * common prefix with the given spike
+	 * 
+	 * @param spike
+	 * @param from
+	 * @param to
+	 * @return positions in time index of found spikes in ascending (time)
+	 *         order, without repetitions
+	 */
+	public int[] findCandidates(Spike spike, long from, long to) {
+		int[] candidates = new int[16];
+		int size = 0;
+
+		for (int i = 0; i < spike.getSpikeSize(); i++) {
+			int[] list = postings.get(spike.getPrefix(i));
+			if (list == null) {
+				continue;
+			}
+
+			for (int j = firstPostingFrom(list, from); j < list.length
+					&& timeIndex.getTime(list[j]) <= to; j++) {
+				if (size == candidates.length) {
+					candidates = Arrays.copyOf(candidates, size * 2);
+				}
+				candidates[size++] = list[j];
+			}
+		}
+
+		// remove repetitions (spikes found by several prefixes)
+		Arrays.sort(candidates, 0, size);
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique == 0 || candidates[unique - 1] != candidates[i]) {
+				candidates[unique++] = candidates[i];
+			}
+		}
+
+		return Arrays.copyOf(candidates, unique);
+	}
+
+	/**
+	 * Finds the first position in posting list with spike time >= {time}
+	 * 
+	 * @param list
+	 * @param time
+	 * @return index in posting list or list.length if there is no such spike
+	 */
+	public int firstPostingFrom(int[] list, long time) {
+		int low = 0;
+		int high = list.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (timeIndex.getTime(list[middle]) < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
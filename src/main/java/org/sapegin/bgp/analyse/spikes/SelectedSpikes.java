@@ -23,6 +23,7 @@
 package org.sapegin.bgp.analyse.spikes;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,21 +37,45 @@ import org.apache.commons.math.random.RandomDataImpl;
  *         get specific spikes (e.g., defined number of random spikes) from this
  *         collection
  * 
+ *         Spikes selected by size (see SpikeSizeIndex.select()) are a
+ *         read-only view of the index: spikes are not copied, and map of
+ *         spikes (see getUpdateMap()) is created only if requested.
+ * 
  */
 public class SelectedSpikes extends SpikeCollection {
 
+	// if not null, spikes are positions [from, to) of this index
+	private SpikeSizeIndex index;
+	private int from;
+	private int to;
+
 	protected SelectedSpikes() {
 	}
 
+	/**
+	 * Creates a view of spikes with numbers from {from} (inclusive) to {to}
+	 * (exclusive) in the given index
+	 */
+	SelectedSpikes(SpikeSizeIndex index, int from, int to) {
+		this.index = index;
+		this.from = from;
+		this.to = to;
+		this.allUpdates = null; // created on request
+	}
+
 	public SelectedSpikes(Map<MonitoredAS, SingleASspikes> spikes) {
 		this.allUpdates = spikes;
 	}
 
 	public SelectedSpikes(SpikeCollection collection) {
-		this.allUpdates = collection.allUpdates;
+		this.allUpdates = collection.getUpdateMap();
 	}
 
 	public int numberOfSpikes() {
+		if (index != null) {
+			return to - from;
+		}
+
 		int num = 0;
 
 		for (SingleASspikes spikes : this.allUpdates.values()) {
@@ -61,6 +86,10 @@ public class SelectedSpikes extends SpikeCollection {
 	}
 	
 	public long numberOfUpdates(){
+		if (index != null) {
+			return index.getUpdateSum(from, to);
+		}
+
 		long num = 0;
 
 		for (SingleASspikes spikes : this.allUpdates.values()) {
@@ -70,10 +99,94 @@ public class SelectedSpikes extends SpikeCollection {
 		return num;
 	}
 
+	/**
+	 * @param position
+	 *            - from 0 to numberOfSpikes()-1
+	 * @return time of spike number {position} of spikes selected by size
+	 */
+	public long getTime(int position) {
+		return view().getTime(from + position);
+	}
+
+	/**
+	 * @param position
+	 *            - from 0 to numberOfSpikes()-1
+	 * @return spike number {position} of spikes selected by size
+	 */
+	public Spike getSpike(int position) {
+		return view().getSpike(from + position);
+	}
+
+	/**
+	 * @param position
+	 *            - from 0 to numberOfSpikes()-1
+	 * @return pair {monitored AS, monitoring router} of spike number
+	 *         {position} of spikes selected by size
+	 */
+	public MonitoredAS getMonitoredAS(int position) {
+		return view().getMonitoredAS(from + position);
+	}
+
+	private SpikeSizeIndex view() {
+		if (index == null) {
+			throw new IllegalStateException(
+					"Positions are defined only for spikes selected by size");
+		}
+		return index;
+	}
+
+	/**
+	 * Spikes selected by size could not be changed
+	 */
+	@Override
+	public boolean addSpike(long spikeTime, Spike spike, MonitoredAS as) {
+		if (index != null) {
+			throw new UnsupportedOperationException(
+					"Spikes selected by size are read-only");
+		}
+		return super.addSpike(spikeTime, spike, as);
+	}
+
+	/**
+	 * For spikes selected by size the map is created on the first request.
+	 * Spikes are not copied.
+	 */
+	@Override
+	public Map<MonitoredAS, SingleASspikes> getUpdateMap() {
+		if (index == null) {
+			return allUpdates;
+		}
+
+		synchronized (this) {
+			if (allUpdates == null) {
+				Map<MonitoredAS, SingleASspikes> map = new HashMap<MonitoredAS, SingleASspikes>();
+				for (int i = from; i < to; i++) {
+					SingleASspikes spikes = map.get(index.getMonitoredAS(i));
+					if (spikes == null) {
+						spikes = new SingleASspikes();
+						map.put(index.getMonitoredAS(i), spikes);
+					}
+					spikes.addSpike(index.getTime(i), index.getSpike(i));
+				}
+				allUpdates = Collections.unmodifiableMap(map);
+			}
+			return allUpdates;
+		}
+	}
+
 	// get spikes with order number in the defined interval
 	public SpikeCollection getSpikes(int min, int max) {
 		SpikeCollection result = new SpikeCollection();
 
+		if (index != null) {
+			// spikes of the view in size order, without copying
+			for (int i = Math.max(min, 1); i <= Math.min(max, to - from); i++) {
+				result.addSpike(getTime(i - 1), getSpike(i - 1),
+						getMonitoredAS(i - 1));
+			}
+			return result;
+		}
+
 		int cursor = 0;
 
 		// go through sets of spikes for each monitored AS
@@ -106,10 +219,10 @@ public class SelectedSpikes extends SpikeCollection {
 					asMax = this.allUpdates.get(as).getNumberOfSpikes();
 				}
 
-				HashMap<Long,Spike> spikes = this.allUpdates.get(
-						as).getSpikes(asMin, asMax);
-				for (Long time: spikes.keySet()){
-				result.addSpike(time, spikes.get(time), as);
+				SingleASspikes spikes = this.allUpdates.get(as).getSpikes(
+						asMin, asMax);
+				for (int i = 0; i < spikes.getNumberOfSpikes(); i++) {
+					result.addSpike(spikes.getTime(i), spikes.getSpike(i), as);
 				}
 			}
 		}
@@ -129,6 +242,22 @@ public class SelectedSpikes extends SpikeCollection {
 
 		RandomDataImpl generator = new RandomDataImpl();
 
+		if (index != null) {
+			// distinct random positions of the view, spikes are not copied
+			int total = to - from;
+			if (numberOfRandomSpikesToAnalyse > total) {
+				numberOfRandomSpikesToAnalyse = total;
+			}
+			if (numberOfRandomSpikesToAnalyse > 0) {
+				for (int position : generator.nextPermutation(total,
+						numberOfRandomSpikesToAnalyse)) {
+					randomSpikes.addSpike(getTime(position),
+							getSpike(position), getMonitoredAS(position));
+				}
+			}
+			return randomSpikes;
+		}
+
 		// find total number of spikes
 		int total = 0;
 		for (SingleASspikes asSpikes : allUpdates.values()) {
@@ -171,8 +300,7 @@ public class SelectedSpikes extends SpikeCollection {
 			}
 
 			if (oneASspikes.hasSpikeAtTime(time)) {
-				Spike randomSpike = new Spike(oneASspikes.getSpikeAtTime(time)
-						.copyPrefixSet());
+				Spike randomSpike = new Spike(oneASspikes.getSpikeAtTime(time));
 
 				// add it to map with all random spikes
 				if (randomSpikes.addSpike(time, randomSpike, as)) {
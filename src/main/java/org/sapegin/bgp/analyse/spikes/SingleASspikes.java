@@ -22,128 +22,252 @@
 	 */
 package org.sapegin.bgp.analyse.spikes;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
 
 /**
  * 
  * @author Andrey Sapegin
  * 
- *         This class contains map with spikes from one and only one on pair
- *         {monitored AS,monitoring router}
+ *         This class contains spikes from one and only one on pair {monitored
+ *         AS,monitoring router}
+ * 
+ *         Spikes are stored in two parallel arrays sorted by time, so that
+ *         spikes could be iterated in time order (without probing empty
+ *         seconds) and found by time with binary search. Spikes are usually
+ *         added in time order, in this case adding is just appending to the
+ *         arrays.
+ * 
+ *         Sum of updates and size of the biggest spike are kept up to date
+ *         while spikes are added or deleted, so that statistics of a pair
+ *         could be read without iterating over all its spikes. Spikes could
+ *         also grow after they were added (e.g. if more prefixes were received
+ *         at the same second), in this case spikeGrown() should be called.
  */
 public class SingleASspikes {
-	// for every key (timestamp in Unix-time) the Spike (all prefixes for that
-	// timestamp) will be stored as Value
-	private Map<Long, Spike> oneSecondSpikes;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// timestamps (in Unix-time) of spikes in ascending order
+	private long[] times;
+	// the Spike (all prefixes for that timestamp) at the same index
+	private Spike[] spikes;
+	// number of spikes
+	private int size;
+
+	// sum of sizes of all spikes
+	private long updateSum;
+	// size of the biggest spike
+	private int biggestSpikeSize;
 
 	public SingleASspikes() {
-		this.oneSecondSpikes = new HashMap<Long, Spike>();
+		this.times = new long[DEFAULT_CAPACITY];
+		this.spikes = new Spike[DEFAULT_CAPACITY];
 	}
 
-	public SingleASspikes(HashMap<Long, Spike> spikes) {
-		this.oneSecondSpikes = spikes;
+	/**
+	 * Copies arrays of spikes of the given pair, but not the spikes
+	 * themselves. Thus spikes could be deleted from the copy (e.g. by
+	 * synchronise()) without changing the original.
+	 * 
+	 * @param spikes
+	 */
+	public SingleASspikes(SingleASspikes spikes) {
+		this.size = spikes.size;
+		this.times = Arrays.copyOf(spikes.times,
+				Math.max(size, DEFAULT_CAPACITY));
+		this.spikes = Arrays.copyOf(spikes.spikes, this.times.length);
+		this.updateSum = spikes.updateSum;
+		this.biggestSpikeSize = spikes.biggestSpikeSize;
 	}
 
 	/**
-	 * This method adds new Spike {spike} at time {time} to the Map of one
-	 * second spikes.
+	 * This method adds new Spike {spike} at time {time} to the one second
+	 * spikes.
 	 * 
 	 * @param spike
 	 *            - spike - set of prefixes received from one AS at the time
 	 *            {time}
 	 * @param time
 	 *            - time of spike in Unix format
+	 * @return false if spike is null or there is already a spike at this time
 	 */
 	public boolean addSpike(long time, Spike spike) {
 		if (spike == null) {
 			return false;
+		}
+
+		// find position for new spike (usually it's the end of arrays)
+		int index;
+		if (size == 0 || times[size - 1] < time) {
+			index = size;
 		} else {
-			if (oneSecondSpikes.containsKey(time)) {
+			index = Arrays.binarySearch(times, 0, size, time);
+			if (index >= 0) { // there is already a spike at this time
 				return false;
-			} else {
-				oneSecondSpikes.put(time, spike);
-				return true;
 			}
+			index = -index - 1;
+		}
+
+		// grow arrays if needed
+		if (size == times.length) {
+			times = Arrays.copyOf(times, size * 2);
+			spikes = Arrays.copyOf(spikes, size * 2);
+		}
+
+		// shift later spikes
+		System.arraycopy(times, index, times, index + 1, size - index);
+		System.arraycopy(spikes, index, spikes, index + 1, size - index);
+
+		times[index] = time;
+		spikes[index] = spike;
+		size++;
+
+		updateSum += spike.getSpikeSize();
+		if (spike.getSpikeSize() > biggestSpikeSize) {
+			biggestSpikeSize = spike.getSpikeSize();
 		}
+
+		return true;
 	}
 
-	public Map<Long, Spike> getAllSpikes() {
-		return oneSecondSpikes;
+	/**
+	 * Should be called after prefixes were added to the spike, which is
+	 * already in this pair, to keep sum of updates and size of the biggest
+	 * spike up to date. Spikes never shrink, so only the difference is
+	 * needed.
+	 * 
+	 * @param spike
+	 *            - grown spike
+	 * @param previousSize
+	 *            - size of the spike before prefixes were added
+	 */
+	public void spikeGrown(Spike spike, int previousSize) {
+		updateSum += spike.getSpikeSize() - previousSize;
+		if (spike.getSpikeSize() > biggestSpikeSize) {
+			biggestSpikeSize = spike.getSpikeSize();
+		}
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to getNumberOfSpikes()-1
+	 * @return time of spike number {index} in time order
+	 */
+	public long getTime(int index) {
+		return times[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to getNumberOfSpikes()-1
+	 * @return spike number {index} in time order
+	 */
+	public Spike getSpike(int index) {
+		return spikes[index];
 	}
 
-	public HashMap<Long, Spike> getSpikes(int from, int to) {
-		HashMap<Long, Spike> result = new HashMap<Long, Spike>();
+	/**
+	 * Finds the first spike at or after the given time. To iterate over all
+	 * spikes within [from,to] interval:
+	 * 
+	 * for (int i = firstIndexFrom(from); i < getNumberOfSpikes() &&
+	 * getTime(i) <= to; i++)
+	 * 
+	 * @param time
+	 * @return index of the first spike with time >= {time}, or
+	 *         getNumberOfSpikes() if there is no such spike
+	 */
+	public int firstIndexFrom(long time) {
+		int index = Arrays.binarySearch(times, 0, size, time);
+		return (index >= 0) ? index : -index - 1;
+	}
 
-		if ((from < 1) || (to > oneSecondSpikes.size())) {
+	/**
+	 * Copies spikes with numbers from {from} to {to} (both inclusive, starting
+	 * from 1) in time order
+	 * 
+	 * @param from
+	 * @param to
+	 * @return copied spikes or null if numbers are out of range
+	 */
+	public SingleASspikes getSpikes(int from, int to) {
+		if ((from < 1) || (to > size)) {
 			return null;
 		}
 
-		ArrayList<Long> keys = new ArrayList<Long>(oneSecondSpikes.keySet());
+		SingleASspikes result = new SingleASspikes();
 
 		for (int i = from; i <= to; i++) {
-			long time = keys.get(i - 1);
-			Spike spike = new Spike(oneSecondSpikes.get(time).copyPrefixSet());
-			result.put(time, spike);
+			result.addSpike(times[i - 1], new Spike(spikes[i - 1]));
 		}
 
 		return result;
 	}
 	
 	public int getNumberOfSpikes() {
-		return oneSecondSpikes.size();
+		return size;
 	}
 
+	/**
+	 * Copies the biggest spike. If only its size is needed, please use
+	 * getCurrentBiggestSpikeSize(), which does not search and copy.
+	 * 
+	 * @return copy of the (first) biggest spike or null if there are no
+	 *         spikes with prefixes
+	 */
 	public Spike getCurrentBiggestSpike() {
-		Spike biggestSpike = null;
-		int biggestSize = 0;
+		if (biggestSpikeSize == 0) {
+			return null;
+		}
 
-		for (Spike spike : oneSecondSpikes.values()) {
-			if (spike.getSpikeSize() > biggestSize) {
-				biggestSpike = new Spike(spike.copyPrefixSet());
-				biggestSize = spike.getSpikeSize();
+		for (int i = 0; i < size; i++) {
+			if (spikes[i].getSpikeSize() == biggestSpikeSize) {
+				return new Spike(spikes[i]);
 			}
 		}
 
-		return biggestSpike;
+		return null;
 	}
 
-	public long getCurrentUpdateSum() {
-		long updatesSum = 0;
-
-		for (Spike spike : oneSecondSpikes.values()) {
-			updatesSum += spike.getSpikeSize();
-		}
+	/**
+	 * @return number of prefixes in the biggest spike or 0 if there are no
+	 *         spikes
+	 */
+	public int getCurrentBiggestSpikeSize() {
+		return biggestSpikeSize;
+	}
 
-		return updatesSum;
+	public long getCurrentUpdateSum() {
+		return updateSum;
 	}
 
 	public long getCurrentMinTime() {
-		if (oneSecondSpikes.keySet().size() == 0) {
-			return 0;
-		} else {
-			return Collections.min(oneSecondSpikes.keySet());
-		}
+		return (size == 0) ? 0 : times[0];
 	}
 
 	public long getCurrentMaxTime() {
-		if (oneSecondSpikes.keySet().size() == 0) {
-			return 0;
-		} else {
-			return Collections.max(oneSecondSpikes.keySet());
-		}
+		return (size == 0) ? 0 : times[size - 1];
 	}
 
 	public boolean hasSpikeAtTime(long updateTime) {
-		return oneSecondSpikes.containsKey(updateTime);
+		return indexOf(updateTime) >= 0;
 	}
 
 	public Spike getSpikeAtTime(long updateTime) {
-		return oneSecondSpikes.get(updateTime);
+		int index = indexOf(updateTime);
+		return (index >= 0) ? spikes[index] : null;
+	}
+
+	/**
+	 * @param time
+	 * @return index of spike at time or negative value
+	 */
+	private int indexOf(long time) {
+		// spikes are usually requested for the last second during loading
+		if (size > 0 && times[size - 1] == time) {
+			return size - 1;
+		}
+		return Arrays.binarySearch(times, 0, size, time);
 	}
 
 	/**
@@ -160,21 +284,29 @@ public class SingleASspikes {
 			endTime = temp;
 		}
 
-		// the following code:
-		// for (long time : oneSecondSpikes.keySet()) {
-		// if ((time < startTime) || (time > endTime)){
-		// oneSecondSpikes.remove(time);
-		// } }
-		// causes ConcurrentModificationException
-		// so I rewrite it as:
-
-		Iterator<Entry<Long, Spike>> iterator = oneSecondSpikes.entrySet()
-				.iterator();
-		while (iterator.hasNext()) {
-			Map.Entry<Long, Spike> pair = iterator.next();
-			long time = (long) pair.getKey();
-			if ((time < startTime) || (time > endTime)) {
-				iterator.remove();
+		int first = firstIndexFrom(startTime);
+		int last = firstIndexFrom(endTime);
+		if (last < size && times[last] == endTime) {
+			last++;
+		}
+		// now spikes from first (inclusive) to last (exclusive) are kept
+
+		int newSize = Math.max(0, last - first);
+		System.arraycopy(times, first, times, 0, newSize);
+		System.arraycopy(spikes, first, spikes, 0, newSize);
+
+		// let removed spikes be garbage collected
+		Arrays.fill(spikes, newSize, size, null);
+
+		size = newSize;
+
+		// count statistics of the kept spikes again
+		updateSum = 0;
+		biggestSpikeSize = 0;
+		for (int i = 0; i < size; i++) {
+			updateSum += spikes[i].getSpikeSize();
+			if (spikes[i].getSpikeSize() > biggestSpikeSize) {
+				biggestSpikeSize = spikes[i].getSpikeSize();
 			}
 		}
 	}
@@ -23,8 +23,8 @@
 package org.sapegin.bgp.analyse.spikes;
 
 import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -42,31 +42,135 @@ import org.sapegin.bgp.analyse.ribs.ASPathElement;
  * 
  */
 public class Spike {
-	// list containing all prefixes of this spike
-	private ArrayList<Destination> destinations;
+	// all prefixes of this spike: network addresses (see Prefix), mask
+	// lengths and origin ASs. Origin ASs array is created only when first
+	// origin AS is added.
+	private int[] prefixes;
+	private byte[] prefixLengths;
+	private ASPathElement[] originASs;
+	// number of prefixes in arrays above. If spike only counts prefixes
+	// (see countOnly()), arrays are null and it's just the number of added
+	// prefixes.
+	private int size;
 	// list containing unique (!!!) origin ASs for all destinations
 	private Set<ASPathElement> origins;
 
+	// hash index of network addresses, used by containsPrefix(). It is built
+	// on the first lookup in a spike bigger than INDEX_THRESHOLD; after that
+	// new prefixes are also added to it. Spikes are shared between classifier
+	// threads, so the index is published only after it is completely built.
+	private volatile PrefixSet index;
+
+	private static final int DEFAULT_CAPACITY = 4;
+
+	// for smaller spikes linear search is faster than hashing
+	private static final int INDEX_THRESHOLD = 8;
+
 	// logger
 	private Logger logger = LogManager.getLogger(Spike.class);
 
 	public Spike() {
-		destinations = new ArrayList<Destination>();
+		prefixes = new int[DEFAULT_CAPACITY];
+		prefixLengths = new byte[DEFAULT_CAPACITY];
 		origins = new HashSet<ASPathElement>();
 	}
 
 	public Spike(ArrayList<Destination> prefixes) {
-		this.destinations = new ArrayList<Destination>(prefixes);
+		this.prefixes = new int[Math.max(prefixes.size(), DEFAULT_CAPACITY)];
+		this.prefixLengths = new byte[this.prefixes.length];
 		this.origins = new HashSet<ASPathElement>();
-		
-		for (Destination destination: destinations){
-			this.origins.add(destination.getOriginAS());
+
+		for (Destination destination : prefixes) {
+			addDestination(destination);
 		}
 	}
-	
-	public void addDestination(Destination destination){
-		this.destinations.add(destination);
-		this.origins.add(destination.getOriginAS());
+
+	/**
+	 * Creates spike, which doesn't store prefixes, but only counts them. Its
+	 * size is the number of added prefixes, but it contains no prefixes and no
+	 * origin ASs. Such spikes are used for seconds, which are never analysed
+	 * (see org.sapegin.bgp.analyse.updates.SelectiveIngest).
+	 * 
+	 * @return
+	 */
+	public static Spike countOnly() {
+		Spike spike = new Spike();
+		spike.prefixes = null;
+		spike.prefixLengths = null;
+		spike.origins = null;
+		return spike;
+	}
+
+	/**
+	 * Copies prefixes of given spike. As with Spike(spike.copyPrefixSet()),
+	 * origin ASs of all prefixes are counted (even if they are unknown).
+	 * 
+	 * @param spike
+	 */
+	public Spike(Spike spike) {
+		this.size = spike.size;
+		if (!spike.hasPrefixes()) {
+			return; // nothing to copy, the copy only counts prefixes too
+		}
+		this.prefixes = Arrays.copyOf(spike.prefixes,
+				Math.max(size, DEFAULT_CAPACITY));
+		this.prefixLengths = Arrays.copyOf(spike.prefixLengths,
+				this.prefixes.length);
+		this.origins = new HashSet<ASPathElement>();
+
+		if (spike.originASs != null) {
+			this.originASs = Arrays.copyOf(spike.originASs,
+					this.prefixes.length);
+			for (int i = 0; i < size; i++) {
+				this.origins.add(originASs[i]);
+			}
+		} else if (size > 0) {
+			this.origins.add(null);
+		}
+	}
+
+	public void addDestination(Destination destination) {
+		addDestination(destination.getPrefix(),
+				destination.getPrefixLength(), destination.getOriginAS());
+	}
+
+	/**
+	 * This method adds IPv4 prefix with origin AS to the spike
+	 * 
+	 * @param prefix
+	 *            - network address packed into int
+	 * @param prefixLength
+	 * @param originAS
+	 */
+	public void addDestination(int prefix, byte prefixLength,
+			ASPathElement originAS) {
+		add(prefix, prefixLength, originAS);
+		if (origins != null) {
+			this.origins.add(originAS);
+		}
+	}
+
+	/**
+	 * Adds all prefixes of the given spike to this one. If any of spikes only
+	 * counts prefixes, prefixes of this spike are dropped and it only counts
+	 * them after that.
+	 * 
+	 * @param spike
+	 */
+	public void addAll(Spike spike) {
+		if (hasPrefixes() && spike.hasPrefixes()) {
+			for (int i = 0; i < spike.size; i++) {
+				addDestination(spike.prefixes[i], spike.prefixLengths[i],
+						spike.getOriginAS(i));
+			}
+		} else {
+			prefixes = null;
+			prefixLengths = null;
+			originASs = null;
+			origins = null;
+			index = null;
+			size += spike.size;
+		}
 	}
 
 	/**
@@ -77,10 +181,8 @@ public class Spike {
 	 */
 	public void addPrefix(String ip) {
 		try {
-			InetAddress prefixWithoutOrigin = InetAddress.getByName(ip);
-			Destination destination = new Destination(prefixWithoutOrigin);
-			destinations.add(destination);
-		} catch (UnknownHostException e) {
+			add(Prefix.parse(ip), Prefix.UNKNOWN_LENGTH, null);
+		} catch (NumberFormatException e) {
 			logger.error(
 					"Can't convert String "
 							+ ip
@@ -96,36 +198,212 @@ public class Spike {
 	 *            - IPv4 network address as InetAddress
 	 */
 	public void addPrefix(InetAddress ip) {
-		Destination destination = new Destination(ip);
-		this.destinations.add(destination);
+		add(Prefix.fromInetAddress(ip), Prefix.UNKNOWN_LENGTH, null);
+	}
+
+	/**
+	 * This method adds IPv4 prefix to the spike
+	 * 
+	 * @param prefix
+	 *            - network address packed into int
+	 * @param prefixLength
+	 */
+	public void addPrefix(int prefix, byte prefixLength) {
+		add(prefix, prefixLength, null);
+	}
+
+	private void add(int prefix, byte prefixLength, ASPathElement originAS) {
+		if (prefixes == null) { // prefix is only counted
+			size++;
+			return;
+		}
+
+		// grow arrays if needed
+		if (size == prefixes.length) {
+			int capacity = prefixes.length * 2;
+			prefixes = Arrays.copyOf(prefixes, capacity);
+			prefixLengths = Arrays.copyOf(prefixLengths, capacity);
+			if (originASs != null) {
+				originASs = Arrays.copyOf(originASs, capacity);
+			}
+		}
+
+		if (originAS != null && originASs == null) {
+			originASs = new ASPathElement[prefixes.length];
+		}
+
+		prefixes[size] = prefix;
+		prefixLengths[size] = prefixLength;
+		if (originASs != null) {
+			originASs[size] = originAS;
+		}
+		size++;
+
+		if (index != null) {
+			index.add(prefix);
+		}
 	}
 	
 	public int getNumberOfOriginASs(){
-		return origins.size();
+		return (origins == null) ? 0 : origins.size();
+	}
+
+	/**
+	 * Counts origin ASs the same way as they are counted in a copy made by
+	 * Spike(spike): unknown origin of any prefix is counted as one more origin
+	 * AS. Spikes analysed by classification were copies before, so this
+	 * number is used in results to keep them comparable.
+	 * 
+	 * @return number of different origin ASs of prefixes, including unknown
+	 *         one, or 0 if spike only counts prefixes
+	 */
+	public int getNumberOfOriginASsCountingUnknown() {
+		if (!hasPrefixes() || size == 0) {
+			return 0;
+		}
+		if (originASs == null) {
+			// all origins are unknown
+			return 1;
+		}
+
+		HashSet<ASPathElement> allOrigins = new HashSet<ASPathElement>(origins);
+		for (int i = 0; i < size; i++) {
+			if (originASs[i] == null) {
+				allOrigins.add(null);
+				break;
+			}
+		}
+		return allOrigins.size();
+	}
+
+	/**
+	 * @return false if this spike only counts prefixes (see countOnly()). In
+	 *         this case getPrefix() and other methods returning single
+	 *         prefixes should not be called.
+	 */
+	public boolean hasPrefixes() {
+		return prefixes != null;
 	}
 
 	public int getSpikeSize() {
-		return destinations.size();
+		return size;
 	}
 
-	public Boolean containsPrefix(InetAddress ip) {
-		for (Destination destination: destinations){
-			if (destination.getPrefix().equals(ip)){
-				return true;
-			}
+	/**
+	 * @param index
+	 *            - from 0 to getSpikeSize()-1
+	 * @return network address of prefix number {index}, packed into int
+	 */
+	public int getPrefix(int index) {
+		return prefixes[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to getSpikeSize()-1
+	 * @return mask length of prefix number {index}
+	 */
+	public byte getPrefixLength(int index) {
+		return prefixLengths[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to getSpikeSize()-1
+	 * @return origin AS of prefix number {index} or null if it's unknown
+	 */
+	public ASPathElement getOriginAS(int index) {
+		return (originASs == null) ? null : originASs[index];
+	}
+
+	/**
+	 * @return true if origin AS is known for at least one prefix
+	 */
+	public boolean hasOriginASs() {
+		return originASs != null;
+	}
+
+	/**
+	 * @param prefix
+	 *            - network address packed into int
+	 * @return
+	 */
+	public boolean containsPrefix(int prefix) {
+		if (prefixes == null) {
+			return false;
 		}
+
+		if (size <= INDEX_THRESHOLD) {
+			for (int i = 0; i < size; i++) {
+				if (prefixes[i] == prefix) {
+					return true;
+				}
+			}
 			return false;
+		}
+
+		PrefixSet index = this.index;
+		if (index == null) {
+			index = buildIndex();
+		}
+		return index.contains(prefix);
+	}
+
+	/**
+	 * Builds hash index of all network addresses in this spike. If several
+	 * threads build it at the same time, all of them get the same result.
+	 * 
+	 * @return
+	 */
+	private PrefixSet buildIndex() {
+		PrefixSet index = new PrefixSet(size);
+		for (int i = 0; i < size; i++) {
+			index.add(prefixes[i]);
+		}
+		this.index = index;
+		return index;
+	}
+
+	public boolean containsPrefix(InetAddress ip) {
+		return containsPrefix(Prefix.fromInetAddress(ip));
+	}
+
+	/**
+	 * @param prefixes
+	 * @return number of prefixes (network addresses) of this spike, which are
+	 *         contained in the given set. Equal prefixes are counted every
+	 *         time.
+	 */
+	public int countPrefixesIn(PrefixSet prefixes) {
+		int count = 0;
+		if (this.prefixes == null) {
+			return count;
+		}
+		for (int i = 0; i < size; i++) {
+			if (prefixes.contains(this.prefixes[i])) {
+				count++;
+			}
+		}
+		return count;
 	}
 
-// !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! //	
 	/**
-	 * Possible mistake here
+	 * Creates list of all destinations in this spike.
+	 * 
 	 * @return
 	 */
 	public ArrayList<Destination> copyPrefixSet() {
-		return new ArrayList<Destination>(destinations);
+		if (prefixes == null) {
+			return new ArrayList<Destination>();
+		}
+
+		ArrayList<Destination> destinations = new ArrayList<Destination>(size);
+		for (int i = 0; i < size; i++) {
+			destinations.add(new Destination(prefixes[i], prefixLengths[i],
+					(originASs == null) ? null : originASs[i]));
+		}
+		return destinations;
 	}
-// !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! //
 	
 	/**
 	 * This method determines which of 2 spikes (this spike and <spike> received
@@ -145,35 +423,49 @@ public class Spike {
 	 * @return
 	 */
 	public boolean isDuplicatedWith(Spike spike, double duplicationPercentage) {
-		if (destinations.size() > spike.getSpikeSize()) {
+		return getDuplicationRatio(spike) >= duplicationPercentage;
+	}
+
+	/**
+	 * Calculates how many prefixes (%) of the smaller spike are also included
+	 * in the bigger one (see {@link #isDuplicatedWith(Spike, double)}). This
+	 * way, duplication of two spikes could be checked for several
+	 * percentages at once.
+	 * 
+	 * @param spike
+	 * @return ratio from 0 to 1 or NaN, if prefixes of the smaller spike are
+	 *         unknown or it is empty (such spikes are never duplicated)
+	 */
+	public float getDuplicationRatio(Spike spike) {
+		if (size > spike.getSpikeSize()) {
 			// change order of parameters
-			return spike.isDuplicatedWith(this, duplicationPercentage);
+			return spike.getDuplicationRatio(this);
+		} else if (prefixes == null) {
+			return Float.NaN; // prefixes are unknown
 		} else {
-			
-			// check if spikes are duplicated
+
 			int duplicated = 0;
-			for (Destination destination : destinations) {
-				if (spike.containsPrefix(destination.getPrefix())) {
+			for (int i = 0; i < size; i++) {
+				if (spike.containsPrefix(prefixes[i])) {
 					duplicated++;
 				}
 			}
-			
-			if ((duplicated / (float) destinations.size()) >= duplicationPercentage) {
-					return true;
-				} else {
-					return false;
-				}
+
+			return duplicated / (float) size;
 		}
 	}
 
-	public Set<InetAddress> getPrefixesDuplicatedWith(
-			Spike duplicatedSpike) {
+	public PrefixSet getPrefixesDuplicatedWith(Spike duplicatedSpike) {
 		
-		Set<InetAddress> duplicatedPrefixes = new HashSet<InetAddress>();
+		PrefixSet duplicatedPrefixes = new PrefixSet(Math.min(size,
+				duplicatedSpike.getSpikeSize()));
+		if (prefixes == null) {
+			return duplicatedPrefixes;
+		}
 		
-		for (Destination destination: this.destinations){
-			if (duplicatedSpike.containsPrefix(destination.getPrefix())){
-				duplicatedPrefixes.add(destination.getPrefix());
+		for (int i = 0; i < size; i++) {
+			if (duplicatedSpike.containsPrefix(prefixes[i])){
+				duplicatedPrefixes.add(prefixes[i]);
 			}
 		}
 		
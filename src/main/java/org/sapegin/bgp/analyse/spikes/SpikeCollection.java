@@ -26,7 +26,6 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.InetAddress;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,6 +33,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.sapegin.bgp.analyse.Colours;
+import org.sapegin.bgp.analyse.ribs.ASPathElement;
 
 /**
  * 
@@ -60,37 +60,29 @@ public class SpikeCollection {
 	// add prefix with originAS to the SpikeCollection
 	protected void addDestination(MonitoredAS monitoredAS, long updateTime,
 			Destination destination) {
-		if (!allUpdates.containsKey(monitoredAS)) {
-			// if there is no spikes for this AS yet
-			// create all new:
+		addDestination(monitoredAS, updateTime, destination.getPrefix(),
+				destination.getPrefixLength(), destination.getOriginAS());
+	}
 
+	// add prefix with originAS to the SpikeCollection
+	protected void addDestination(MonitoredAS monitoredAS, long updateTime,
+			int prefix, byte prefixLength, ASPathElement originAS) {
+		Spike spike = getSpike(monitoredAS, updateTime);
+
+		if (spike == null) {
+			// if there is no spike at updateTime for this monitored AS yet
 			// create new spike and add prefix
-			Spike spike = new Spike();
-			spike.addDestination(destination);
+			spike = newSpike(updateTime);
+			spike.addDestination(prefix, prefixLength, originAS);
 
 			// add new spike
 			addSpike(updateTime, spike, monitoredAS);
 		} else {
-			// if there are already some spikes for this monitored AS
+			// if there is already a spike at updateTime
 			// add new prefix:
-
-			SingleASspikes spikes = allUpdates.get(monitoredAS);
-			if (!spikes.hasSpikeAtTime(updateTime)) {
-				// if there is no spike at updateTime
-				// create new:-
-
-				// create new spike and add prefix
-				Spike spike = new Spike();
-				spike.addDestination(destination);
-
-				// put new spike with prefix at update time
-				spikes.addSpike(updateTime, spike);
-			} else {
-				// if there is already a spike at updateTime
-				// add new prefix:
-				Spike spike = spikes.getSpikeAtTime(updateTime);
-				spike.addDestination(destination);
-			}
+			int previousSize = spike.getSpikeSize();
+			spike.addDestination(prefix, prefixLength, originAS);
+			allUpdates.get(monitoredAS).spikeGrown(spike, previousSize);
 		}
 	}
 
@@ -100,51 +92,61 @@ public class SpikeCollection {
 	 * @param monitoredAS
 	 * @param updateTime
 	 * @param prefix
+	 *            - network address packed into int (see Prefix)
+	 * @param prefixLength
+	 * @return false if the spike at updateTime already contained this prefix
 	 */
 	protected boolean addPrefix(MonitoredAS monitoredAS, long updateTime,
-			InetAddress prefix) {
+			int prefix, byte prefixLength) {
 		boolean warning = false;
-		
-		if (!allUpdates.containsKey(monitoredAS)) {
-			// if there is no spikes for this AS yet
-			// create all new:
 
+		Spike spike = getSpike(monitoredAS, updateTime);
+
+		if (spike == null) {
+			// if there is no spike at updateTime for this monitored AS yet
 			// create new spike and add prefix
-			Spike spike = new Spike();
-			spike.addPrefix(prefix);
+			spike = newSpike(updateTime);
+			spike.addPrefix(prefix, prefixLength);
 
 			// add new spike
 			addSpike(updateTime, spike, monitoredAS);
 		} else {
-			// if there are already some spikes for this monitored AS
+			// if there is already a spike at updateTime
 			// add new prefix:
-
-			SingleASspikes spikes = allUpdates.get(monitoredAS);
-			if (!spikes.hasSpikeAtTime(updateTime)) {
-				// if there is no spike at updateTime
-				// create new:-
-
-				// create new spike and add prefix
-				Spike spike = new Spike();
-				spike.addPrefix(prefix);
-
-				// put new spike with prefix at update time
-				spikes.addSpike(updateTime, spike);
-			} else {
-				// if there is already a spike at updateTime
-				// add new prefix:
-				Spike spike = spikes.getSpikeAtTime(updateTime);
-				
-				if (spike.containsPrefix(prefix)) {
-					warning = true;
-				}
-				spike.addPrefix(prefix);
+			if (spike.containsPrefix(prefix)) {
+				warning = true;
 			}
+			int previousSize = spike.getSpikeSize();
+			spike.addPrefix(prefix, prefixLength);
+			allUpdates.get(monitoredAS).spikeGrown(spike, previousSize);
 		}
-		
+
 		return !warning;
 	}
 
+	/**
+	 * Creates new spike for prefixes added at the given time by
+	 * addPrefix()/addDestination(). Subclasses could create spikes, which
+	 * only count prefixes (see Spike.countOnly()).
+	 * 
+	 * @param updateTime
+	 * @return
+	 */
+	protected Spike newSpike(long updateTime) {
+		return new Spike();
+	}
+
+	/**
+	 * @param monitoredAS
+	 * @param updateTime
+	 * @return spike of the given pair {monitored AS, monitoring router} at the
+	 *         given time or null if there is no such spike
+	 */
+	private Spike getSpike(MonitoredAS monitoredAS, long updateTime) {
+		SingleASspikes spikes = allUpdates.get(monitoredAS);
+		return (spikes == null) ? null : spikes.getSpikeAtTime(updateTime);
+	}
+
 	/**
 	 * Adds spike to collection of spikes.
 	 * 
@@ -166,6 +168,35 @@ public class SpikeCollection {
 		}
 	}
 
+	/**
+	 * Adds all spikes from the given collection to this one. Spikes are not
+	 * copied. If both collections have spikes at the same time from the same
+	 * {monitored AS, monitoring router} pair, prefixes of the given spike are
+	 * added to the spike of this collection (see Spike.addAll()).
+	 * 
+	 * @param collection
+	 */
+	public void addAll(SpikeCollection collection) {
+		for (Map.Entry<MonitoredAS, SingleASspikes> pair : collection
+				.getUpdateMap().entrySet()) {
+			SingleASspikes spikes = pair.getValue();
+
+			for (int i = 0; i < spikes.getNumberOfSpikes(); i++) {
+				Spike spike = getSpike(pair.getKey(), spikes.getTime(i));
+
+				if (spike == null) {
+					addSpike(spikes.getTime(i), spikes.getSpike(i),
+							pair.getKey());
+				} else {
+					int previousSize = spike.getSpikeSize();
+					spike.addAll(spikes.getSpike(i));
+					allUpdates.get(pair.getKey()).spikeGrown(spike,
+							previousSize);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Returns map representation of spike collection.
 	 * 
@@ -230,72 +261,44 @@ public class SpikeCollection {
 
 			int dataFiles = 0;
 
-			// go through all spikes in spike interval
-			for (long time = spikeTime - timeBuffer; time <= spikeTime
-					+ timeBuffer; time++) {
-
-				// check all pairs {monitored AS, monitoring router}
-				for (MonitoredAS monitoredAS : allUpdates.keySet()) {
-
-					SingleASspikes spikes = allUpdates.get(monitoredAS);
-
-					// if there is a spike within the time interval
-					if (spikes.hasSpikeAtTime(time)) {
-
-						// prepare file with spike sizes and times
-						// gnuplot script will take data from these files
-						File dump = new File(chartFolder + "/"
-								+ monitoredAS.getMonitoredAS() + "_"
-								+ monitoredAS.getMonitoringRouter());
-
-						boolean exists = dump.exists();
-
-						// prepare string to write
-						String str = time + " "
-								+ spikes.getSpikeAtTime(time).getSpikeSize()
-								+ "\n";
-
-						FileWriter fwr;
-						BufferedWriter bwr;
-
-						// if we have already dumped some spikes for this
-						// {monitored AS, monitoring router} pair
-						if (exists) {
-							fwr = new FileWriter(dump, true); // then append it
-							bwr = new BufferedWriter(fwr);
-						} else {
-							fwr = new FileWriter(dump); // create it
-							bwr = new BufferedWriter(fwr);
-
-							// if I create a new data file,
-							// then I need to add it to the gnuplot script
-							if (dataFiles == 0) { // if this is first data file
-								gbwr.write("'" + dump.getName() + "' w i");// lc
-																			// rgb
-																			// '"
-																			// +
-																			// colours.getNext()
-																			// +
-																			// "'");
-							} else {
-								gbwr.write(", '" + dump.getName() + "' w i");// lc
-																				// rgb
-																				// '"
-																				// +
-																				// colours.getNext()
-																				// +
-																				// "'");
-							}
-
-							dataFiles++;
-						}
-
-						bwr.write(str);
-
-						bwr.close();
-						fwr.close();
-					}
+			// check all pairs {monitored AS, monitoring router}
+			for (MonitoredAS monitoredAS : allUpdates.keySet()) {
+
+				SingleASspikes spikes = allUpdates.get(monitoredAS);
+
+				// find the first spike within the time interval
+				int first = spikes.firstIndexFrom(spikeTime - timeBuffer);
+				if (first >= spikes.getNumberOfSpikes()
+						|| spikes.getTime(first) > spikeTime + timeBuffer) {
+					continue; // no spikes around, no data file needed
+				}
+
+				// prepare file with spike sizes and times
+				// gnuplot script will take data from these files
+				File dump = new File(chartFolder + "/"
+						+ monitoredAS.getMonitoredAS() + "_"
+						+ monitoredAS.getMonitoringRouter());
+
+				FileWriter fwr = new FileWriter(dump);
+				BufferedWriter bwr = new BufferedWriter(fwr);
+
+				// every new data file should be added to the gnuplot script
+				if (dataFiles == 0) { // if this is first data file
+					gbwr.write("'" + dump.getName() + "' w i");
+				} else {
+					gbwr.write(", '" + dump.getName() + "' w i");
 				}
+				dataFiles++;
+
+				// go through all spikes of the pair in spike interval
+				for (int i = first; i < spikes.getNumberOfSpikes()
+						&& spikes.getTime(i) <= spikeTime + timeBuffer; i++) {
+					bwr.write(spikes.getTime(i) + " "
+							+ spikes.getSpike(i).getSpikeSize() + "\n");
+				}
+
+				bwr.close();
+				fwr.close();
 			}
 
 			gbwr.close();
@@ -0,0 +1,197 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.spikes;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         This class is an index of spikes from all pairs {monitored AS,
+ *         monitoring router} ordered by size (and by time for spikes of the
+ *         same pair with the same size). It is built once, and then spikes
+ *         with size from any interval are selected with binary search as a
+ *         slice of the index (see select()), without going through all pairs
+ *         and without copying spikes.
+ * 
+ *         The index is a snapshot - spikes added to the collection after the
+ *         index was built are not included, and spikes are ordered by size
+ *         they had when the index was built.
+ */
+public class SpikeSizeIndex {
+
+	// sizes of spikes in ascending order
+	private final int[] sizes;
+	// timestamp (in Unix-time) of spike at the same index
+	private final long[] times;
+	// pair {monitored AS, monitoring router} of spike at the same index
+	private final MonitoredAS[] pairs;
+	// spike at the same index
+	private final Spike[] spikes;
+	// updateSums[i] is the total size of the first i spikes
+	private final long[] updateSums;
+
+	/**
+	 * Builds index over all spikes in the given map
+	 * 
+	 * @param allUpdates
+	 */
+	public SpikeSizeIndex(Map<MonitoredAS, SingleASspikes> allUpdates) {
+		int size = 0;
+		for (SingleASspikes pairSpikes : allUpdates.values()) {
+			size += pairSpikes.getNumberOfSpikes();
+		}
+
+		long[] unsortedTimes = new long[size];
+		MonitoredAS[] unsortedPairs = new MonitoredAS[size];
+		Spike[] unsortedSpikes = new Spike[size];
+
+		// as in SpikeTimeIndex, entries are sorted by size packed together
+		// with their positions. Positions follow time order within every
+		// pair, so spikes of one pair with equal sizes stay in time order.
+		long[] keys = new long[size];
+
+		int entry = 0;
+		for (Map.Entry<MonitoredAS, SingleASspikes> pair : allUpdates
+				.entrySet()) {
+			SingleASspikes pairSpikes = pair.getValue();
+			for (int i = 0; i < pairSpikes.getNumberOfSpikes(); i++) {
+				unsortedTimes[entry] = pairSpikes.getTime(i);
+				unsortedPairs[entry] = pair.getKey();
+				unsortedSpikes[entry] = pairSpikes.getSpike(i);
+				keys[entry] = ((long) pairSpikes.getSpike(i).getSpikeSize() << 32)
+						| entry;
+				entry++;
+			}
+		}
+
+		Arrays.sort(keys);
+
+		sizes = new int[size];
+		times = new long[size];
+		pairs = new MonitoredAS[size];
+		spikes = new Spike[size];
+		updateSums = new long[size + 1];
+		for (int i = 0; i < size; i++) {
+			int position = (int) keys[i];
+			sizes[i] = (int) (keys[i] >>> 32);
+			times[i] = unsortedTimes[position];
+			pairs[i] = unsortedPairs[position];
+			spikes[i] = unsortedSpikes[position];
+			updateSums[i + 1] = updateSums[i] + sizes[i];
+		}
+	}
+
+	/**
+	 * @return number of indexed spikes
+	 */
+	public int size() {
+		return sizes.length;
+	}
+
+	/**
+	 * @param spikeSize
+	 * @return index of the first spike with size >= {spikeSize}, or size() if
+	 *         there is no such spike
+	 */
+	public int firstIndexFrom(int spikeSize) {
+		int index = Arrays.binarySearch(sizes, spikeSize);
+		if (index < 0) {
+			return -index - 1;
+		}
+
+		// there are usually many spikes with the same size, I need the first
+		while (index > 0 && sizes[index - 1] == spikeSize) {
+			index--;
+		}
+		return index;
+	}
+
+	/**
+	 * Selects spikes with predefined size. Order of min- and maxSize parameters
+	 * is not significant.
+	 * 
+	 * @param minSize
+	 * @param maxSize
+	 * @return read-only view of spikes with size greater than or equals to
+	 *         minSize and strictly less than maxSize
+	 */
+	public SelectedSpikes select(int minSize, int maxSize) {
+		if (maxSize < minSize) {
+			int tmp = maxSize;
+			maxSize = minSize;
+			minSize = tmp;
+		}
+
+		return new SelectedSpikes(this, firstIndexFrom(minSize),
+				firstIndexFrom(maxSize));
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to size()-1
+	 * @return size of spike number {index} in size order
+	 */
+	public int getSize(int index) {
+		return sizes[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to size()-1
+	 * @return time of spike number {index} in size order
+	 */
+	public long getTime(int index) {
+		return times[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to size()-1
+	 * @return pair {monitored AS, monitoring router} of spike number {index}
+	 */
+	public MonitoredAS getMonitoredAS(int index) {
+		return pairs[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to size()-1
+	 * @return spike number {index} in size order
+	 */
+	public Spike getSpike(int index) {
+		return spikes[index];
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return total size of spikes with numbers from {from} (inclusive) to
+	 *         {to} (exclusive)
+	 */
+	public long getUpdateSum(int from, int to) {
+		return updateSums[to] - updateSums[from];
+	}
+}
@@ -0,0 +1,156 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.spikes;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         This class is an index of spikes from all pairs {monitored AS,
+ *         monitoring router} ordered by time. It is used to find all spikes
+ *         within some time interval without going through all pairs and all
+ *         seconds of the interval: the first spike of the interval is found
+ *         with binary search, and then only seconds having spikes are visited.
+ * 
+ *         To iterate over all spikes within [from,to] interval:
+ * 
+ *         for (int i = firstIndexFrom(from); i < size() && getTime(i) <= to;
+ *         i++)
+ * 
+ *         The index is a snapshot - spikes added to the collection after the
+ *         index was built are not included (however, prefixes added to
+ *         already indexed spikes are visible, as spikes are not copied).
+ */
+public class SpikeTimeIndex {
+
+	// timestamps (in Unix-time) of spikes in ascending order
+	private final long[] times;
+	// pair {monitored AS, monitoring router} of spike at the same index
+	private final MonitoredAS[] pairs;
+	// spike at the same index
+	private final Spike[] spikes;
+
+	/**
+	 * Builds index over all spikes in the given map
+	 * 
+	 * @param allUpdates
+	 */
+	public SpikeTimeIndex(Map<MonitoredAS, SingleASspikes> allUpdates) {
+		int size = 0;
+		long minTime = Long.MAX_VALUE;
+		for (SingleASspikes pairSpikes : allUpdates.values()) {
+			if (pairSpikes.getNumberOfSpikes() > 0) {
+				size += pairSpikes.getNumberOfSpikes();
+				minTime = Math.min(minTime, pairSpikes.getCurrentMinTime());
+			}
+		}
+
+		MonitoredAS[] unsortedPairs = new MonitoredAS[size];
+		Spike[] unsortedSpikes = new Spike[size];
+
+		// I sort entries by time packed together with their positions, so
+		// I can use primitive sort and don't create an object per spike.
+		// Time is counted from the earliest spike, so it fits into higher 32
+		// bits for more than 100 years of updates.
+		long[] keys = new long[size];
+
+		int entry = 0;
+		for (Map.Entry<MonitoredAS, SingleASspikes> pair : allUpdates
+				.entrySet()) {
+			SingleASspikes pairSpikes = pair.getValue();
+			for (int i = 0; i < pairSpikes.getNumberOfSpikes(); i++) {
+				unsortedPairs[entry] = pair.getKey();
+				unsortedSpikes[entry] = pairSpikes.getSpike(i);
+				keys[entry] = ((pairSpikes.getTime(i) - minTime) << 32) | entry;
+				entry++;
+			}
+		}
+
+		Arrays.sort(keys);
+
+		times = new long[size];
+		pairs = new MonitoredAS[size];
+		spikes = new Spike[size];
+		for (int i = 0; i < size; i++) {
+			int position = (int) keys[i];
+			times[i] = (keys[i] >>> 32) + minTime;
+			pairs[i] = unsortedPairs[position];
+			spikes[i] = unsortedSpikes[position];
+		}
+	}
+
+	/**
+	 * @return number of indexed spikes
+	 */
+	public int size() {
+		return times.length;
+	}
+
+	/**
+	 * @param time
+	 * @return index of the first spike with time >= {time}, or size() if
+	 *         there is no such spike
+	 */
+	public int firstIndexFrom(long time) {
+		int index = Arrays.binarySearch(times, time);
+		if (index < 0) {
+			return -index - 1;
+		}
+
+		// there could be several spikes at the same time, I need the first
+		while (index > 0 && times[index - 1] == time) {
+			index--;
+		}
+		return index;
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to size()-1
+	 * @return time of spike number {index} in time order
+	 */
+	public long getTime(int index) {
+		return times[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to size()-1
+	 * @return pair {monitored AS, monitoring router} of spike number {index}
+	 */
+	public MonitoredAS getMonitoredAS(int index) {
+		return pairs[index];
+	}
+
+	/**
+	 * @param index
+	 *            - from 0 to size()-1
+	 * @return spike number {index} in time order
+	 */
+	public Spike getSpike(int index) {
+		return spikes[index];
+	}
+}
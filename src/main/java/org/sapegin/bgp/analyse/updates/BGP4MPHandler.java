@@ -0,0 +1,68 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Receives fields of BGP messages tokenized by {@link BGP4MPParser}.
+ *         All fields are passed as primitives; the AS Path is passed as a span
+ *         of the parser's buffer, which is only valid during the call.
+ * 
+ */
+public interface BGP4MPHandler {
+
+	/**
+	 * Called for every well-formed message.
+	 * 
+	 * @param time
+	 *            - time of message in Unix-time format
+	 * @param type
+	 *            - message type ('A', 'W', 'B', ...)
+	 * @param peerAS
+	 *            - name (number) of AS sent the update message
+	 * @param prefix
+	 *            - IPv4 network address packed into int (big-endian)
+	 * @param prefixLength
+	 *            - mask length of prefix
+	 * @param line
+	 *            - parser buffer with the message
+	 * @param asPathStart
+	 *            - index of first byte of AS Path in the buffer
+	 * @param asPathEnd
+	 *            - index after the last byte of AS Path (equals to asPathStart
+	 *            if there is no AS Path, e.g. in withdrawals)
+	 */
+	public void message(long time, byte type, int peerAS, int prefix,
+			byte prefixLength, byte[] line, int asPathStart, int asPathEnd);
+
+	/**
+	 * Called for every message, which can't be parsed. The message is skipped
+	 * afterwards.
+	 * 
+	 * @param reason
+	 *            - one of constant reasons from {@link BGP4MPParser}
+	 */
+	public void malformed(String reason);
+}
@@ -0,0 +1,341 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         This class tokenizes BGP messages in machine format (created with
+ *         route_btoa or bgpdump -m), e.g.:
+ * 
+ *         BGP4MP|1243814950|A|198.32.143.65|4558|213.147.65.76/30|4558 3356|IGP|...
+ * 
+ *         Messages are scanned directly in the byte buffer, without creating
+ *         any Strings. Parsed fields are passed to {@link BGP4MPHandler}. Only
+ *         IPv4 prefixes are supported, messages with IPv6 prefixes are reported
+ *         as malformed.
+ * 
+ *         The same parser is used for RIB dumps (TABLE_DUMP2|...), as they
+ *         have the same format. Expected headers are given in the
+ *         constructor.
+ * 
+ *         Files in binary MRT format are decoded by {@link MRTParser}.
+ * 
+ *         Parser is not thread safe - use one parser per thread.
+ * 
+ */
+public class BGP4MPParser extends DumpParser {
+
+	// reasons of malformed messages
+	public static final String WRONG_HEADER = "Message does not start with expected header.";
+	public static final String WRONG_TIME = "Can't parse the time of message!";
+	public static final String WRONG_TYPE = "Can't parse the type of message!";
+	public static final String WRONG_PEER = "Can't parse the name of AS, which has sent the message!";
+	public static final String WRONG_PREFIX = "Can't parse prefix!";
+	public static final String IPV6_PREFIX = "IPv6 prefix found, only IPv4 prefixes are supported!";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// maximum time, which could be parsed without overflow
+	private static final long MAX_TIME = Long.MAX_VALUE / 10;
+
+	// expected headers with '|' at the end, e.g. "BGP4MP|"
+	private final byte[][] headers;
+
+	// buffer for reading from streams. It grows if a line does not fit into
+	// it.
+	private byte[] buffer;
+
+	// current position in the line being parsed
+	private int position;
+
+	/**
+	 * creates parser for BGP update messages (starting with "BGP4MP|")
+	 */
+	public BGP4MPParser() {
+		this("BGP4MP");
+	}
+
+	/**
+	 * creates parser for messages starting with any of the given headers
+	 * 
+	 * @param headers
+	 *            - e.g. "BGP4MP" or "TABLE_DUMP2", "TABLE_DUMP"
+	 */
+	public BGP4MPParser(String... headers) {
+		this.headers = new byte[headers.length][];
+		for (int i = 0; i < headers.length; i++) {
+			this.headers[i] = (headers[i] + "|").getBytes(Charset
+					.forName("US-ASCII"));
+		}
+		this.buffer = new byte[BUFFER_SIZE];
+	}
+
+	@Override
+	public void parse(InputStream in, BGP4MPHandler handler)
+			throws IOException {
+		// number of bytes in the buffer
+		int length = 0;
+
+		int read;
+		while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+
+			// parse all complete lines
+			int parsed = parseLines(buffer, 0, length, handler);
+
+			// move the rest (incomplete line) to the beginning of the buffer
+			length -= parsed;
+			System.arraycopy(buffer, parsed, buffer, 0, length);
+
+			// grow buffer if the line is longer than buffer
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+
+		// parse the last line, if it does not end with newline
+		if (length > 0) {
+			parseLine(buffer, 0, length, handler);
+		}
+	}
+
+	/**
+	 * Parses all complete (ending with '\n') lines in the given part of
+	 * buffer.
+	 * 
+	 * @param buf
+	 * @param start
+	 *            - index of first byte
+	 * @param end
+	 *            - index after the last byte
+	 * @param handler
+	 * @return index after the last parsed newline (start, if there is no
+	 *         newline)
+	 */
+	public int parseLines(byte[] buf, int start, int end,
+			BGP4MPHandler handler) {
+		int lineStart = start;
+
+		for (int i = start; i < end; i++) {
+			if (buf[i] == '\n') {
+				parseLine(buf, lineStart, i, handler);
+				lineStart = i + 1;
+			}
+		}
+
+		return lineStart;
+	}
+
+	/**
+	 * Parses single line (without '\n') and passes its fields to the handler.
+	 * 
+	 * @param buf
+	 * @param start
+	 *            - index of first byte of the line
+	 * @param end
+	 *            - index after the last byte of the line
+	 * @param handler
+	 */
+	public void parseLine(byte[] buf, int start, int end, BGP4MPHandler handler) {
+
+		// ignore '\r' from windows line endings
+		if (end > start && buf[end - 1] == '\r') {
+			end--;
+		}
+
+		// check message format
+		position = -1;
+		for (byte[] header : headers) {
+			if (startsWith(buf, start, end, header)) {
+				position = start + header.length;
+				break;
+			}
+		}
+		if (position < 0) {
+			handler.malformed(WRONG_HEADER);
+			return;
+		}
+
+		// get time
+		long time = readNumber(buf, end, '|', MAX_TIME);
+		if (time < 0 || position > end) {
+			handler.malformed(WRONG_TIME);
+			return;
+		}
+
+		// get message type (announcement / withdrawal / RIB entry)
+		if (position + 1 >= end || buf[position + 1] != '|') {
+			handler.malformed(WRONG_TYPE);
+			return;
+		}
+		byte type = buf[position];
+		position += 2;
+
+		// skip IP address of AS sent the message
+		while (position < end && buf[position] != '|') {
+			position++;
+		}
+		position++;
+
+		// get name (number) of AS sent the message
+		long peerAS = readNumber(buf, end, '|', Integer.MAX_VALUE);
+		if (peerAS < 0 || position > end) {
+			handler.malformed(WRONG_PEER);
+			return;
+		}
+
+		// get prefix (network address and mask length)
+		int prefixStart = position;
+		int prefix = 0;
+		long octet = 0;
+		for (int i = 0; i < 4 && octet >= 0; i++) {
+			octet = readNumber(buf, end, (i < 3) ? '.' : '/', 255);
+			prefix = (prefix << 8) | (int) octet;
+		}
+		long prefixLength = (octet < 0 || position > end) ? -1 : readNumber(
+				buf, end, '|', 32);
+		if (octet < 0 || prefixLength < 0) {
+			handler.malformed(isIPv6(buf, prefixStart, end) ? IPV6_PREFIX
+					: WRONG_PREFIX);
+			return;
+		}
+
+		// find AS Path (there is no AS Path in withdrawals)
+		int asPathStart = Math.min(position, end);
+		position = asPathStart;
+		while (position < end && buf[position] != '|') {
+			position++;
+		}
+
+		handler.message(time, type, (int) peerAS, prefix, (byte) prefixLength,
+				buf, asPathStart, position);
+	}
+
+	@Override
+	public long readStartTime(InputStream in) throws IOException {
+		// read first line
+		int length = 0;
+		int b = in.read();
+		while (b != -1 && b != '\n') {
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			buffer[length++] = (byte) b;
+			b = in.read();
+		}
+
+		if (length == 0) { // if file is empty
+			return -1;
+		}
+
+		StartTimeHandler handler = new StartTimeHandler();
+		parseLine(buffer, 0, length, handler);
+
+		return handler.time;
+	}
+
+	/**
+	 * Parses decimal number starting from current position till the delimiter
+	 * (or till the end of line). Position is moved after the delimiter.
+	 * 
+	 * @return parsed number, or -1 if field is empty, contains not only digits
+	 *         or the number is greater than max
+	 */
+	private long readNumber(byte[] buf, int end, char delimiter, long max) {
+		int fieldStart = position;
+		long value = 0;
+
+		while (position < end && buf[position] != delimiter) {
+			int digit = buf[position] - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+			if (value > max) {
+				return -1;
+			}
+			position++;
+		}
+
+		if (position == fieldStart) {
+			return -1;
+		}
+
+		// skip delimiter
+		position++;
+
+		return value;
+	}
+
+	/**
+	 * checks if line starts with the given header
+	 */
+	private boolean startsWith(byte[] buf, int start, int end, byte[] header) {
+		if (end - start < header.length) {
+			return false;
+		}
+		for (int i = 0; i < header.length; i++) {
+			if (buf[start + i] != header[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * checks if prefix field contains ':'
+	 */
+	private boolean isIPv6(byte[] buf, int prefixStart, int end) {
+		for (int i = prefixStart; i < end && buf[i] != '|'; i++) {
+			if (buf[i] == ':') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * remembers time of the message
+	 */
+	private static class StartTimeHandler implements BGP4MPHandler {
+
+		private long time = -1;
+
+		@Override
+		public void message(long time, byte type, int peerAS, int prefix,
+				byte prefixLength, byte[] line, int asPathStart, int asPathEnd) {
+			this.time = time;
+		}
+
+		@Override
+		public void malformed(String reason) {
+		}
+	}
+}
@@ -0,0 +1,470 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         This class parses one big file with BGP updates in ASCII format
+ *         using several threads. The file is memory-mapped and split into
+ *         chunks at newline boundaries. Chunks are parsed in parallel and
+ *         messages needed (see {@link PeerHandlers#isNeeded(long, int)}) are
+ *         stored separately for every peer.
+ * 
+ *         Then messages of every peer are passed to its own handler, chunk by
+ *         chunk, so every handler receives messages in the same order as in
+ *         the file (and e.g. could apply them to the RIB of peer). Handlers of
+ *         different peers are called in parallel. Every chunk is passed to
+ *         handlers as soon as it and all earlier chunks are parsed and then
+ *         released. Every parsed chunk holds a permit, and permits could be
+ *         shared by parsers of several files read at once, so memory used
+ *         doesn't grow with the size or the number of files.
+ * 
+ *         Only uncompressed ASCII files could be split, as neither compressed
+ *         streams nor MRT records could be started from the middle.
+ * 
+ */
+public class ChunkedDumpParser {
+
+	// 64MB
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 26;
+
+	private final ExecutorService executor;
+
+	private final int chunkSize;
+
+	// one permit for every chunk parsed, but not yet passed to handlers
+	private final Semaphore chunkPermits;
+
+	/**
+	 * Parses one chunk more than there are processors ahead, so that
+	 * processors are busy while the earliest chunk is passed to handlers.
+	 * 
+	 * @param executor
+	 *            - threads to parse chunks and to call handlers. Tasks
+	 *            submitted to it never wait for other tasks.
+	 * @param chunkSize
+	 *            - approximate size of one chunk in bytes
+	 */
+	public ChunkedDumpParser(ExecutorService executor, int chunkSize) {
+		this(executor, chunkSize,
+				Runtime.getRuntime().availableProcessors() + 1);
+	}
+
+	/**
+	 * @param executor
+	 *            - threads to parse chunks and to call handlers. Tasks
+	 *            submitted to it never wait for other tasks.
+	 * @param chunkSize
+	 *            - approximate size of one chunk in bytes
+	 * @param chunksInFlight
+	 *            - maximum number of chunks kept in memory (parsed or being
+	 *            parsed) at the same time
+	 */
+	public ChunkedDumpParser(ExecutorService executor, int chunkSize,
+			int chunksInFlight) {
+		this(executor, chunkSize, new Semaphore(Math.max(1, chunksInFlight)));
+	}
+
+	/**
+	 * @param executor
+	 *            - threads to parse chunks and to call handlers. Tasks
+	 *            submitted to it never wait for other tasks.
+	 * @param chunkSize
+	 *            - approximate size of one chunk in bytes
+	 * @param chunkPermits
+	 *            - permits for chunks kept in memory (parsed or being
+	 *            parsed), could be shared by parsers of several files to
+	 *            limit memory used by all of them
+	 */
+	public ChunkedDumpParser(ExecutorService executor, int chunkSize,
+			Semaphore chunkPermits) {
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+		this.chunkPermits = chunkPermits;
+	}
+
+	/**
+	 * Checks if file is worth to be split into chunks, i.e. it is an
+	 * uncompressed ASCII file bigger than one chunk.
+	 * 
+	 * @param filename
+	 * @return
+	 * @throws IOException
+	 */
+	public boolean canSplit(String filename) throws IOException {
+		if (new File(filename).length() <= chunkSize) {
+			return false;
+		}
+
+		InputStream in = new BufferedInputStream(new FileInputStream(filename));
+		try {
+			return !DumpParser.isCompressed(in) && !DumpParser.isMRT(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Parses file and passes its messages to handlers of peers.
+	 * 
+	 * @param filename
+	 * @param handlers
+	 * @throws IOException
+	 */
+	public void parse(String filename, final PeerHandlers handlers)
+			throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+
+		try {
+			final FileChannel channel = file.getChannel();
+			long[] bounds = findChunkBounds(channel);
+
+			// chunks being parsed, the earliest one first
+			LinkedList<Future<Chunk>> futures = new LinkedList<Future<Chunk>>();
+			int submitted = 0;
+
+			// handlers of peers are created when the first message of peer
+			// is replayed
+			HashMap<Integer, BGP4MPHandler> peerHandlers = new HashMap<Integer, BGP4MPHandler>();
+
+			try {
+				while (submitted < bounds.length - 1 || !futures.isEmpty()) {
+					// parse next chunks while there are free permits. If no
+					// chunk of this file is parsed, wait for a permit (this
+					// file holds no permits then, so other files could always
+					// finish their chunks and release permits).
+					while (submitted < bounds.length - 1) {
+						if (futures.isEmpty()) {
+							acquire(chunkPermits);
+						} else if (!chunkPermits.tryAcquire()) {
+							break;
+						}
+
+						final long start = bounds[submitted];
+						final long end = bounds[submitted + 1];
+						futures.add(executor.submit(new Callable<Chunk>() {
+							@Override
+							public Chunk call() throws IOException {
+								return parseChunk(channel, start, end, handlers);
+							}
+						}));
+						submitted++;
+					}
+
+					// the earliest chunk is passed to handlers and released
+					Future<Chunk> earliest = futures.removeFirst();
+					try {
+						replay(get(earliest), handlers, peerHandlers);
+					} finally {
+						chunkPermits.release();
+					}
+				}
+			} finally {
+				// stop parsing, if replay failed
+				for (Future<Chunk> future : futures) {
+					future.cancel(true);
+					chunkPermits.release();
+				}
+			}
+
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Passes messages of one chunk to handlers of peers (in parallel) and
+	 * waits until all of them are passed
+	 * 
+	 * @param chunk
+	 * @param handlers
+	 * @param peerHandlers
+	 *            - handlers of peers created for previous chunks
+	 * @throws IOException
+	 */
+	private void replay(Chunk chunk, PeerHandlers handlers,
+			HashMap<Integer, BGP4MPHandler> peerHandlers) throws IOException {
+		for (Map.Entry<String, Integer> reason : chunk.malformed.entrySet()) {
+			for (int j = 0; j < reason.getValue(); j++) {
+				handlers.malformed(reason.getKey());
+			}
+		}
+
+		// peers in ascending order, as handlers are created in this order
+		TreeSet<Integer> peers = new TreeSet<Integer>(chunk.messages.keySet());
+
+		List<Future<Void>> replays = new ArrayList<Future<Void>>();
+		for (final int peer : peers) {
+			BGP4MPHandler handler = peerHandlers.get(peer);
+			if (handler == null) {
+				handler = handlers.newHandler(peer);
+				peerHandlers.put(peer, handler);
+			}
+
+			final BGP4MPHandler peerHandler = handler;
+			final PeerMessages messages = chunk.messages.get(peer);
+			replays.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					messages.replay(peer, peerHandler);
+					return null;
+				}
+			}));
+		}
+		for (Future<Void> replay : replays) {
+			get(replay);
+		}
+	}
+
+	/**
+	 * Splits file into chunks of about 'chunkSize' bytes. Every chunk (except
+	 * the last one) ends just after newline.
+	 * 
+	 * @param channel
+	 * @return offsets of chunks, the last one is size of file
+	 * @throws IOException
+	 */
+	private long[] findChunkBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+
+		ArrayList<Long> bounds = new ArrayList<Long>();
+		bounds.add(0L);
+
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long position = chunkSize;
+		while (position < size) {
+			// find next newline
+			long newline = -1;
+			while (newline < 0 && position < size) {
+				buffer.clear();
+				int read = channel.read(buffer, position);
+				if (read <= 0) {
+					break;
+				}
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') {
+						newline = position + i;
+						break;
+					}
+				}
+				if (newline < 0) {
+					position += read;
+				}
+			}
+
+			if (newline < 0 || newline + 1 >= size) {
+				break;
+			}
+			bounds.add(newline + 1);
+			position = newline + 1 + chunkSize;
+		}
+		bounds.add(size);
+
+		long[] result = new long[bounds.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = bounds.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Parses one chunk and stores needed messages by peer
+	 */
+	private static Chunk parseChunk(FileChannel channel, long start, long end,
+			PeerHandlers handlers) throws IOException {
+		ByteBuffer mapped = channel.map(MapMode.READ_ONLY, start, end - start);
+
+		Chunk chunk = new Chunk(handlers);
+		new BGP4MPParser().parse(new ByteBufferInputStream(mapped), chunk);
+		return chunk;
+	}
+
+	/**
+	 * acquires permit, interruption is thrown as IOException (like in get())
+	 */
+	private static void acquire(Semaphore permits) throws IOException {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted during parsing of chunks", e);
+		}
+	}
+
+	/**
+	 * returns result of task, exceptions of the task are thrown as
+	 * IOException
+	 */
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted during parsing of chunks", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Error during parsing of chunks",
+					e.getCause());
+		}
+	}
+
+	/**
+	 * Messages parsed from one chunk, stored by peer
+	 */
+	private static class Chunk implements BGP4MPHandler {
+
+		private final PeerHandlers handlers;
+
+		private final HashMap<Integer, PeerMessages> messages = new HashMap<Integer, PeerMessages>();
+
+		// number of malformed messages by reason
+		private final HashMap<String, Integer> malformed = new HashMap<String, Integer>();
+
+		Chunk(PeerHandlers handlers) {
+			this.handlers = handlers;
+		}
+
+		@Override
+		public void message(long time, byte type, int peerAS, int prefix,
+				byte prefixLength, byte[] line, int asPathStart, int asPathEnd) {
+			if (!handlers.isNeeded(time, peerAS)) {
+				return;
+			}
+
+			PeerMessages peerMessages = messages.get(peerAS);
+			if (peerMessages == null) {
+				peerMessages = new PeerMessages();
+				messages.put(peerAS, peerMessages);
+			}
+			peerMessages.add(time, type, prefix, prefixLength, line,
+					asPathStart, asPathEnd);
+		}
+
+		@Override
+		public void malformed(String reason) {
+			Integer count = malformed.get(reason);
+			malformed.put(reason, (count == null) ? 1 : count + 1);
+		}
+	}
+
+	/**
+	 * Messages of one peer packed into byte array: time (8 bytes), type (1),
+	 * prefix (4), prefix length (1), length of AS Path (4) and AS Path.
+	 */
+	private static class PeerMessages {
+
+		private static final int FIELDS_LENGTH = 18;
+
+		private byte[] data = new byte[1 << 10];
+		private int length = 0;
+
+		void add(long time, byte type, int prefix, byte prefixLength,
+				byte[] line, int asPathStart, int asPathEnd) {
+			int asPathLength = asPathEnd - asPathStart;
+			if (length + FIELDS_LENGTH + asPathLength > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length * 2, length
+						+ FIELDS_LENGTH + asPathLength));
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(data, length, FIELDS_LENGTH);
+			buffer.putLong(time);
+			buffer.put(type);
+			buffer.putInt(prefix);
+			buffer.put(prefixLength);
+			buffer.putInt(asPathLength);
+			length += FIELDS_LENGTH;
+
+			System.arraycopy(line, asPathStart, data, length, asPathLength);
+			length += asPathLength;
+		}
+
+		void replay(int peerAS, BGP4MPHandler handler) {
+			ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+			while (buffer.hasRemaining()) {
+				long time = buffer.getLong();
+				byte type = buffer.get();
+				int prefix = buffer.getInt();
+				byte prefixLength = buffer.get();
+				int asPathLength = buffer.getInt();
+				int asPathStart = buffer.position();
+				buffer.position(asPathStart + asPathLength);
+
+				handler.message(time, type, peerAS, prefix, prefixLength,
+						data, asPathStart, asPathStart + asPathLength);
+			}
+		}
+	}
+
+	/**
+	 * Reads bytes from memory-mapped part of file
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+	}
+}
@@ -0,0 +1,326 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Common parent of parsers for files with BGP updates and RIBs. Files
+ *         could be either in ASCII machine-readable format (created with
+ *         route_btoa or bgpdump -m, see {@link BGP4MPParser}) or in original
+ *         binary MRT format (see {@link MRTParser}). Both could be compressed
+ *         with gzip or bzip2.
+ * 
+ *         The format is detected for every file separately, so files in
+ *         different formats could be mixed in one input_names file.
+ * 
+ */
+public abstract class DumpParser {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// number of bytes needed to detect format of file
+	private static final int MAGIC_LENGTH = 6;
+
+	/**
+	 * Reads all messages from the stream and passes them to the handler. The
+	 * stream is not closed.
+	 * 
+	 * @param in
+	 * @param handler
+	 * @throws IOException
+	 */
+	public abstract void parse(InputStream in, BGP4MPHandler handler)
+			throws IOException;
+
+	/**
+	 * Reads the first message from the stream and returns its time.
+	 * 
+	 * @param in
+	 * @return time of first message or -1, if stream is empty or the first
+	 *         message is malformed
+	 * @throws IOException
+	 */
+	public abstract long readStartTime(InputStream in) throws IOException;
+
+	/**
+	 * Reads the first message in file and returns its time.
+	 * 
+	 * @param filename
+	 * @return time of first message or -1, if file is empty or the first
+	 *         message is malformed
+	 * @throws IOException
+	 */
+	public long readStartTime(String filename) throws IOException {
+		InputStream in = open(filename);
+		try {
+			return readStartTime(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Opens file with updates or RIB. Compressed files are unpacked on the
+	 * fly: gzip with java.util.zip and bzip2 with external 'bzip2' program
+	 * (the same, which is used by scripts/updates/unpack_all.sh), as there is
+	 * no bzip2 in the JDK.
+	 * 
+	 * If bzip2 fails (e.g. the file is corrupt or truncated), closing the
+	 * stream after all data was read throws IOException with the error
+	 * message of bzip2, so that the short data is not taken for a complete
+	 * file.
+	 * 
+	 * @param filename
+	 * @return buffered stream, which supports mark()
+	 * @throws IOException
+	 */
+	public static InputStream open(String filename) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(
+				filename), BUFFER_SIZE);
+
+		byte[] magic = peek(in);
+
+		if (isGzip(magic)) {
+			return new BufferedInputStream(new GZIPInputStream(in,
+					BUFFER_SIZE), BUFFER_SIZE);
+		}
+
+		if (isBzip2(magic)) {
+			in.close();
+
+			Process bzip2 = new ProcessBuilder("bzip2", "-dc", filename)
+					.start();
+			bzip2.getOutputStream().close();
+
+			return new BufferedInputStream(new Bzip2InputStream(bzip2,
+					filename), BUFFER_SIZE);
+		}
+
+		return in;
+	}
+
+	/**
+	 * Checks if stream is compressed with gzip or bzip2. The stream should
+	 * support mark(), it's not changed.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static boolean isCompressed(InputStream in) throws IOException {
+		byte[] magic = peek(in);
+		return isGzip(magic) || isBzip2(magic);
+	}
+
+	/**
+	 * Checks if stream contains binary MRT records. The stream should support
+	 * mark() (e.g. opened with {@link #open(String)}), it's not changed.
+	 * 
+	 * @param in
+	 * @return true if the first record has MRT header with known type, false
+	 *         otherwise (e.g. for ASCII files, which start with
+	 *         "BGP4MP|..." or "TABLE_DUMP2|...")
+	 * @throws IOException
+	 */
+	public static boolean isMRT(InputStream in) throws IOException {
+		byte[] magic = peek(in);
+
+		// MRT header starts with 4 bytes of time and 2 bytes of type (< 256)
+		return magic[4] == 0 && MRTParser.isKnownType(magic[5] & 0xff);
+	}
+
+	/**
+	 * Creates parser for BGP updates in the stream (BGP4MP messages).
+	 * 
+	 * @param in
+	 *            - stream, which supports mark()
+	 * @return {@link MRTParser} or {@link BGP4MPParser}, depending on format
+	 *         of the stream
+	 * @throws IOException
+	 */
+	public static DumpParser forUpdates(InputStream in) throws IOException {
+		if (isMRT(in)) {
+			return new MRTParser();
+		} else {
+			return new BGP4MPParser();
+		}
+	}
+
+	/**
+	 * Creates parser for RIB in the stream (TABLE_DUMP or TABLE_DUMP_V2
+	 * records).
+	 * 
+	 * @param in
+	 *            - stream, which supports mark()
+	 * @return {@link MRTParser} or {@link BGP4MPParser}, depending on format
+	 *         of the stream
+	 * @throws IOException
+	 */
+	public static DumpParser forRIBs(InputStream in) throws IOException {
+		if (isMRT(in)) {
+			return new MRTParser(MRTParser.TABLE_DUMP_V2,
+					MRTParser.TABLE_DUMP);
+		} else {
+			return new BGP4MPParser("TABLE_DUMP2", "TABLE_DUMP");
+		}
+	}
+
+	private static boolean isGzip(byte[] magic) {
+		return (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b;
+	}
+
+	private static boolean isBzip2(byte[] magic) {
+		return magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h';
+	}
+
+	/**
+	 * returns first bytes of the stream without consuming them. Missing
+	 * bytes (if stream is shorter) are -1.
+	 */
+	private static byte[] peek(InputStream in) throws IOException {
+		byte[] magic = new byte[MAGIC_LENGTH];
+
+		in.mark(MAGIC_LENGTH);
+		int length = 0;
+		int read = 0;
+		while (length < MAGIC_LENGTH
+				&& (read = in.read(magic, length, MAGIC_LENGTH - length)) != -1) {
+			length += read;
+		}
+		in.reset();
+
+		for (int i = length; i < MAGIC_LENGTH; i++) {
+			magic[i] = -1;
+		}
+
+		return magic;
+	}
+
+	/**
+	 * Output of external 'bzip2' process. Its error output is read in a
+	 * separate thread (otherwise bzip2 could block on a full pipe) and is
+	 * used in the exception, if bzip2 exits with error.
+	 */
+	private static class Bzip2InputStream extends FilterInputStream {
+
+		// only the beginning of error output is kept
+		private static final int MAX_ERROR_LENGTH = 1024;
+
+		private final Process bzip2;
+		private final String filename;
+		private final StringBuilder errors = new StringBuilder();
+		private final Thread errorReader;
+
+		// true if the end of output was reached
+		private boolean finished = false;
+
+		Bzip2InputStream(Process bzip2, String filename) {
+			super(bzip2.getInputStream());
+			this.bzip2 = bzip2;
+			this.filename = filename;
+
+			final InputStream err = bzip2.getErrorStream();
+			errorReader = new Thread("bzip2 stderr " + filename) {
+				@Override
+				public void run() {
+					byte[] buffer = new byte[256];
+					try {
+						int read;
+						while ((read = err.read(buffer)) != -1) {
+							synchronized (errors) {
+								if (errors.length() < MAX_ERROR_LENGTH) {
+									errors.append(new String(buffer, 0, read));
+								}
+							}
+						}
+					} catch (IOException e) {
+						// stream is closed, nothing more to read
+					}
+				}
+			};
+			errorReader.setDaemon(true);
+			errorReader.start();
+		}
+
+		@Override
+		public int read() throws IOException {
+			int result = super.read();
+			if (result == -1) {
+				finished = true;
+			}
+			return result;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int result = super.read(b, off, len);
+			if (result == -1) {
+				finished = true;
+			}
+			return result;
+		}
+
+		@Override
+		public void close() throws IOException {
+			super.close();
+
+			if (!finished) {
+				// stream is closed before the end (e.g. only the start time
+				// is read), exit code of bzip2 doesn't matter
+				bzip2.destroy();
+				return;
+			}
+
+			int exitCode;
+			try {
+				exitCode = bzip2.waitFor();
+				errorReader.join();
+			} catch (InterruptedException e) {
+				bzip2.destroy();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"interrupted while waiting for bzip2 to unpack "
+								+ filename);
+			}
+
+			if (exitCode != 0) {
+				String message;
+				synchronized (errors) {
+					message = errors.toString().trim();
+				}
+				throw new IOException("bzip2 failed to unpack " + filename
+						+ " (exit code " + exitCode + "): " + message);
+			}
+		}
+	}
+}
@@ -0,0 +1,703 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         This class decodes BGP messages directly from binary MRT files (RFC
+ *         6396), without converting them to ASCII with route_btoa or bgpdump
+ *         first. Supported records are:
+ * 
+ *         BGP4MP and BGP4MP_ET (UPDATE messages only) - for update dumps,
+ * 
+ *         TABLE_DUMP_V2 and TABLE_DUMP - for RIB dumps.
+ * 
+ *         Decoded fields are passed to the same {@link BGP4MPHandler} as by
+ *         {@link BGP4MPParser}, so the same handlers could be used for both
+ *         formats. Message types are 'A' and 'W' for updates and 'B' for RIB
+ *         entries, as in bgpdump -m output. The AS Path is written to the
+ *         handler in the same format as in the ASCII files ("1 2 [3 4]"), so
+ *         it could be parsed with
+ *         {@link org.sapegin.bgp.analyse.ribs.ASPath#ASPath(byte[], int, int)}
+ * 
+ *         Only IPv4 prefixes are supported, IPv6 prefixes are reported as
+ *         malformed. Records of other types are skipped.
+ * 
+ *         Parser is not thread safe - use one parser per thread.
+ * 
+ */
+public class MRTParser extends DumpParser {
+
+	// MRT types
+	public static final int TABLE_DUMP = 12;
+	public static final int TABLE_DUMP_V2 = 13;
+	public static final int BGP4MP = 16;
+	public static final int BGP4MP_ET = 17;
+
+	// reasons of malformed messages
+	public static final String WRONG_RECORD = "Can't parse MRT record!";
+	public static final String TRUNCATED = "MRT record is truncated!";
+
+	// BGP4MP subtypes
+	private static final int BGP4MP_MESSAGE = 1;
+	private static final int BGP4MP_MESSAGE_AS4 = 4;
+	private static final int BGP4MP_MESSAGE_LOCAL = 6;
+	private static final int BGP4MP_MESSAGE_AS4_LOCAL = 7;
+
+	// TABLE_DUMP_V2 subtypes
+	private static final int PEER_INDEX_TABLE = 1;
+	private static final int RIB_IPV4_UNICAST = 2;
+	private static final int RIB_IPV6_UNICAST = 4;
+
+	// TABLE_DUMP subtypes
+	private static final int AFI_IPV4 = 1;
+	private static final int AFI_IPV6 = 2;
+
+	// BGP message type
+	private static final int UPDATE = 2;
+
+	// BGP path attributes
+	private static final int AS_PATH = 2;
+	private static final int MP_REACH_NLRI = 14;
+	private static final int MP_UNREACH_NLRI = 15;
+	private static final int AS4_PATH = 17;
+	private static final int EXTENDED_LENGTH = 0x10;
+
+	// AS Path segments
+	private static final int AS_SET = 1;
+	private static final int AS_SEQUENCE = 2;
+
+	private static final int HEADER_LENGTH = 12;
+
+	// records are not longer than 64KB, except TABLE_DUMP_V2 records with
+	// many peers. Anything longer than this is surely broken file.
+	private static final int MAX_RECORD_LENGTH = 1 << 26;
+
+	// expected MRT types
+	private final int[] types;
+
+	// buffer for one record
+	private byte[] record = new byte[1 << 16];
+
+	// AS Path written in ASCII format
+	private byte[] asPath = new byte[1 << 10];
+	private int asPathLength;
+
+	// AS numbers of peers from the last PEER_INDEX_TABLE
+	private long[] peers = new long[0];
+
+	// header of current record
+	private long time;
+	private int type;
+	private int subtype;
+
+	// length of current record
+	private int recordLength;
+
+	// position in record during parsing
+	private int position;
+
+	// set, if prefix could not be parsed
+	private boolean wrongPrefix;
+
+	/**
+	 * creates parser for BGP update messages (BGP4MP and BGP4MP_ET records)
+	 */
+	public MRTParser() {
+		this(BGP4MP, BGP4MP_ET);
+	}
+
+	/**
+	 * creates parser for records of the given MRT types
+	 * 
+	 * @param types
+	 *            - e.g. TABLE_DUMP_V2, TABLE_DUMP
+	 */
+	public MRTParser(int... types) {
+		this.types = types.clone();
+	}
+
+	/**
+	 * checks if type is one of MRT types, supported by this parser
+	 * 
+	 * @param type
+	 * @return
+	 */
+	public static boolean isKnownType(int type) {
+		return type == TABLE_DUMP || type == TABLE_DUMP_V2 || type == BGP4MP
+				|| type == BGP4MP_ET;
+	}
+
+	@Override
+	public void parse(InputStream in, BGP4MPHandler handler)
+			throws IOException {
+		while ((recordLength = readRecord(in, handler)) >= 0) {
+			if (!isExpected(type)) {
+				continue;
+			}
+
+			try {
+				parseRecord(handler);
+			} catch (IndexOutOfBoundsException e) {
+				// fields of record point outside of record
+				handler.malformed(WRONG_RECORD);
+			}
+		}
+	}
+
+	@Override
+	public long readStartTime(InputStream in) throws IOException {
+		if (readRecord(in, null) < 0 || !isExpected(type)) {
+			return -1;
+		}
+		return time;
+	}
+
+	/**
+	 * Reads the next record into the buffer
+	 * 
+	 * @param in
+	 * @param handler
+	 *            - to report truncated record, could be null
+	 * @return length of the record or -1 at the end of stream
+	 * @throws IOException
+	 */
+	private int readRecord(InputStream in, BGP4MPHandler handler)
+			throws IOException {
+		try {
+			if (!readFully(in, record, 0, HEADER_LENGTH, true)) {
+				return -1;
+			}
+		} catch (EOFException e) {
+			if (handler != null) {
+				handler.malformed(TRUNCATED);
+			}
+			return -1;
+		}
+
+		time = getUnsigned(record, 0, 4);
+		type = (int) getUnsigned(record, 4, 2);
+		subtype = (int) getUnsigned(record, 6, 2);
+		long length = getUnsigned(record, 8, 4);
+
+		if (length > MAX_RECORD_LENGTH) {
+			if (handler != null) {
+				handler.malformed(WRONG_RECORD);
+			}
+			return -1;
+		}
+
+		if (length > record.length) {
+			record = new byte[Math.max((int) length, record.length * 2)];
+		}
+
+		try {
+			readFully(in, record, 0, (int) length, false);
+		} catch (EOFException e) {
+			if (handler != null) {
+				handler.malformed(TRUNCATED);
+			}
+			return -1;
+		}
+
+		return (int) length;
+	}
+
+	/**
+	 * Passes all messages from record in the buffer to the handler
+	 */
+	private void parseRecord(BGP4MPHandler handler) {
+		position = 0;
+
+		if (type == BGP4MP || type == BGP4MP_ET) {
+			if (type == BGP4MP_ET) {
+				position += 4; // skip microseconds
+			}
+
+			switch (subtype) {
+			case BGP4MP_MESSAGE:
+			case BGP4MP_MESSAGE_LOCAL:
+				parseBGP4MPMessage(2, handler);
+				break;
+			case BGP4MP_MESSAGE_AS4:
+			case BGP4MP_MESSAGE_AS4_LOCAL:
+				parseBGP4MPMessage(4, handler);
+				break;
+			default:
+				// state changes, ADD-PATH messages, etc. are not needed
+			}
+		} else if (type == TABLE_DUMP_V2) {
+			switch (subtype) {
+			case PEER_INDEX_TABLE:
+				parsePeerIndexTable();
+				break;
+			case RIB_IPV4_UNICAST:
+				parseRIBEntries(handler);
+				break;
+			case RIB_IPV6_UNICAST:
+				// every RIB entry is an IPv6 route
+				position += 4;
+				skipPrefix();
+				int entries = (int) readUnsigned(2);
+				for (int i = 0; i < entries; i++) {
+					handler.malformed(BGP4MPParser.IPV6_PREFIX);
+				}
+				break;
+			default:
+				// multicast and generic RIBs are not needed
+			}
+		} else if (type == TABLE_DUMP) {
+			if (subtype == AFI_IPV4) {
+				parseTableDump(handler);
+			} else if (subtype == AFI_IPV6) {
+				handler.malformed(BGP4MPParser.IPV6_PREFIX);
+			}
+		}
+	}
+
+	/**
+	 * Parses BGP4MP message record. Only UPDATE messages are passed to the
+	 * handler.
+	 * 
+	 * @param asSize
+	 *            - size of AS numbers in bytes
+	 * @param handler
+	 */
+	private void parseBGP4MPMessage(int asSize, BGP4MPHandler handler) {
+		long peerAS = readUnsigned(asSize);
+		position += asSize; // local AS
+		position += 2; // interface index
+		int afi = (int) readUnsigned(2);
+		position += 2 * ((afi == AFI_IPV6) ? 16 : 4); // peer and local IP
+
+		// BGP message header
+		int messageStart = position;
+		position += 16; // marker
+		int messageEnd = messageStart + (int) readUnsigned(2);
+		if ((int) readUnsigned(1) != UPDATE) {
+			return;
+		}
+		checkBounds(messageEnd);
+
+		if (peerAS > Integer.MAX_VALUE) {
+			handler.malformed(BGP4MPParser.WRONG_PEER);
+			return;
+		}
+
+		// withdrawals
+		int withdrawnLength = (int) readUnsigned(2);
+		parsePrefixes(position + withdrawnLength, 'W', (int) peerAS, handler);
+
+		// path attributes
+		int attributesLength = (int) readUnsigned(2);
+		int attributesStart = position;
+		int attributesEnd = position + attributesLength;
+		parseAttributes(attributesEnd, asSize);
+
+		// announcements from MP_REACH_NLRI and withdrawals from
+		// MP_UNREACH_NLRI (IPv6 prefixes as a rule)
+		position = attributesStart;
+		while (position < attributesEnd) {
+			int flags = (int) readUnsigned(1);
+			int code = (int) readUnsigned(1);
+			int attributeLength = (int) readUnsigned(((flags & EXTENDED_LENGTH) != 0) ? 2
+					: 1);
+			int attributeEnd = position + attributeLength;
+
+			if (code == MP_REACH_NLRI || code == MP_UNREACH_NLRI) {
+				int afiNLRI = (int) readUnsigned(2);
+				position++; // SAFI
+				if (code == MP_REACH_NLRI) {
+					int nextHopLength = (int) readUnsigned(1);
+					position += nextHopLength; // next hop
+					position++; // reserved
+				}
+				if (afiNLRI == AFI_IPV4) {
+					parsePrefixes(attributeEnd, (code == MP_REACH_NLRI) ? 'A'
+							: 'W', (int) peerAS, handler);
+				} else {
+					while (position < attributeEnd) {
+						skipPrefix();
+						handler.malformed(BGP4MPParser.IPV6_PREFIX);
+					}
+				}
+			}
+
+			position = attributeEnd;
+		}
+
+		// announcements
+		position = attributesEnd;
+		parsePrefixes(messageEnd, 'A', (int) peerAS, handler);
+	}
+
+	/**
+	 * Parses TABLE_DUMP_V2 PEER_INDEX_TABLE and remembers AS numbers of peers
+	 */
+	private void parsePeerIndexTable() {
+		position += 4; // collector BGP ID
+		int viewNameLength = (int) readUnsigned(2);
+		position += viewNameLength; // view name
+
+		int count = (int) readUnsigned(2);
+		peers = new long[count];
+		for (int i = 0; i < count; i++) {
+			int peerType = (int) readUnsigned(1);
+			position += 4; // peer BGP ID
+			position += ((peerType & 0x01) != 0) ? 16 : 4; // peer IP
+			peers[i] = readUnsigned(((peerType & 0x02) != 0) ? 4 : 2);
+		}
+	}
+
+	/**
+	 * Parses TABLE_DUMP_V2 RIB_IPV4_UNICAST record. Every RIB entry is passed
+	 * to the handler as separate message.
+	 */
+	private void parseRIBEntries(BGP4MPHandler handler) {
+		position += 4; // sequence number
+
+		int prefixLength = (int) readUnsigned(1);
+		int prefix = readPrefix(prefixLength);
+		if (wrongPrefix) {
+			handler.malformed(BGP4MPParser.WRONG_PREFIX);
+			return;
+		}
+
+		int entries = (int) readUnsigned(2);
+		for (int i = 0; i < entries; i++) {
+			int peer = (int) readUnsigned(2);
+			position += 4; // originated time
+			int attributesLength = (int) readUnsigned(2);
+			int attributesEnd = position + attributesLength;
+
+			if (peer >= peers.length) {
+				handler.malformed(WRONG_RECORD);
+			} else if (peers[peer] > Integer.MAX_VALUE) {
+				handler.malformed(BGP4MPParser.WRONG_PEER);
+			} else {
+				// AS numbers in TABLE_DUMP_V2 are always 4 bytes long
+				parseAttributes(attributesEnd, 4);
+				handler.message(time, (byte) 'B', (int) peers[peer], prefix,
+						(byte) prefixLength, asPath, 0, asPathLength);
+			}
+
+			position = attributesEnd;
+		}
+	}
+
+	/**
+	 * Parses TABLE_DUMP (AFI_IPv4) record with single RIB entry
+	 */
+	private void parseTableDump(BGP4MPHandler handler) {
+		position += 4; // view number and sequence number
+		int prefix = (int) readUnsigned(4);
+		int prefixLength = (int) readUnsigned(1);
+		position += 1; // status
+		position += 4; // originated time
+		position += 4; // peer IP
+		int peerAS = (int) readUnsigned(2);
+		int attributesLength = (int) readUnsigned(2);
+		int attributesEnd = position + attributesLength;
+
+		if (prefixLength > 32) {
+			handler.malformed(BGP4MPParser.WRONG_PREFIX);
+			return;
+		}
+
+		parseAttributes(attributesEnd, 2);
+		handler.message(time, (byte) 'B', peerAS, prefix, (byte) prefixLength,
+				asPath, 0, asPathLength);
+	}
+
+	/**
+	 * Parses IPv4 prefixes (e.g., withdrawn routes or NLRI) till the end
+	 * position and passes them to the handler. AS Path, which was parsed
+	 * before, is passed together with announcements.
+	 */
+	private void parsePrefixes(int end, char messageType, int peerAS,
+			BGP4MPHandler handler) {
+		while (position < end) {
+			int prefixLength = (int) readUnsigned(1);
+			int prefix = readPrefix(prefixLength);
+
+			if (wrongPrefix) {
+				// the rest could not be parsed
+				handler.malformed(BGP4MPParser.WRONG_PREFIX);
+				position = end;
+				return;
+			}
+
+			handler.message(time, (byte) messageType, peerAS, prefix,
+					(byte) prefixLength, asPath, 0,
+					(messageType == 'A') ? asPathLength : 0);
+		}
+	}
+
+	/**
+	 * Reads prefix with given length (only significant bytes are stored)
+	 * 
+	 * @return network address packed into int, or 0 (with wrongPrefix flag
+	 *         set), if length is not valid for IPv4
+	 */
+	private int readPrefix(int prefixLength) {
+		wrongPrefix = prefixLength > 32;
+		if (wrongPrefix) {
+			return 0;
+		}
+
+		int bytes = (prefixLength + 7) / 8;
+		int prefix = 0;
+		for (int i = 0; i < 4; i++) {
+			prefix <<= 8;
+			if (i < bytes) {
+				prefix |= (int) readUnsigned(1);
+			}
+		}
+		return prefix;
+	}
+
+	/**
+	 * skips prefix of any length (e.g. IPv6 prefix)
+	 */
+	private void skipPrefix() {
+		int prefixLength = (int) readUnsigned(1);
+		position += (prefixLength + 7) / 8;
+	}
+
+	/**
+	 * Parses path attributes till the end position and writes AS Path from
+	 * them to 'asPath' buffer (empty AS Path, if there is no AS_PATH
+	 * attribute). Position is moved to the end.
+	 * 
+	 * @param end
+	 * @param asSize
+	 *            - size of AS numbers in AS_PATH attribute
+	 */
+	private void parseAttributes(int end, int asSize) {
+		int pathStart = -1;
+		int pathEnd = -1;
+		int path4Start = -1;
+		int path4End = -1;
+
+		while (position < end) {
+			int flags = (int) readUnsigned(1);
+			int code = (int) readUnsigned(1);
+			int attributeLength = (int) readUnsigned(((flags & EXTENDED_LENGTH) != 0) ? 2
+					: 1);
+			checkBounds(position + attributeLength);
+
+			if (code == AS_PATH) {
+				pathStart = position;
+				pathEnd = position + attributeLength;
+			} else if (code == AS4_PATH) {
+				path4Start = position;
+				path4End = position + attributeLength;
+			}
+
+			position += attributeLength;
+		}
+		position = end;
+
+		asPathLength = 0;
+		if (pathStart < 0) {
+			return;
+		}
+
+		if (asSize == 2 && path4Start >= 0) {
+			// 4-byte AS numbers are replaced with AS_TRANS (23456) in AS_PATH
+			// of old speakers, the real ones are in AS4_PATH (RFC 6793).
+			int count = countASs(pathStart, pathEnd, 2);
+			int count4 = countASs(path4Start, path4End, 4);
+			if (count >= count4) {
+				writeASPath(pathStart, pathEnd, 2, count - count4);
+				writeASPath(path4Start, path4End, 4, count4);
+				return;
+			}
+		}
+
+		writeASPath(pathStart, pathEnd, asSize, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * counts AS numbers in AS Path (AS_SET counts as one, as in RFC 4271)
+	 */
+	private int countASs(int start, int end, int asSize) {
+		int count = 0;
+		int i = start;
+		while (i + 1 < end) {
+			int segmentType = record[i] & 0xff;
+			int segmentLength = record[i + 1] & 0xff;
+			if (segmentType == AS_SEQUENCE) {
+				count += segmentLength;
+			} else if (segmentType == AS_SET) {
+				count++;
+			}
+			i += 2 + segmentLength * asSize;
+		}
+		return count;
+	}
+
+	/**
+	 * Writes AS Path segments in ASCII format ("1 2 [3 4]") to the end of
+	 * 'asPath' buffer. Confederation segments are skipped.
+	 * 
+	 * @param start
+	 * @param end
+	 * @param asSize
+	 * @param max
+	 *            - maximum number of ASs to write (AS_SET counts as one)
+	 */
+	private void writeASPath(int start, int end, int asSize, int max) {
+		int count = 0;
+		int i = start;
+		while (i + 1 < end && count < max) {
+			int segmentType = record[i] & 0xff;
+			int segmentLength = record[i + 1] & 0xff;
+			i += 2;
+			checkBounds(i + segmentLength * asSize);
+
+			if (segmentType == AS_SEQUENCE) {
+				for (int j = 0; j < segmentLength && count < max; j++) {
+					writeAS(getUnsigned(record, i + j * asSize, asSize));
+					count++;
+				}
+			} else if (segmentType == AS_SET && segmentLength > 0) {
+				if (asPathLength > 0) {
+					writeByte(' ');
+				}
+				writeByte('[');
+				for (int j = 0; j < segmentLength; j++) {
+					writeAS(getUnsigned(record, i + j * asSize, asSize));
+				}
+				writeByte(']');
+				count++;
+			}
+
+			i += segmentLength * asSize;
+		}
+	}
+
+	/**
+	 * writes AS number to 'asPath' buffer, separated with space from the
+	 * previous one
+	 */
+	private void writeAS(long as) {
+		if (asPathLength > 0 && asPath[asPathLength - 1] != '[') {
+			writeByte(' ');
+		}
+
+		int start = asPathLength;
+		do {
+			writeByte((char) ('0' + as % 10));
+			as /= 10;
+		} while (as > 0);
+
+		// digits were written in reverse order
+		for (int i = start, j = asPathLength - 1; i < j; i++, j--) {
+			byte b = asPath[i];
+			asPath[i] = asPath[j];
+			asPath[j] = b;
+		}
+	}
+
+	private void writeByte(char b) {
+		if (asPathLength == asPath.length) {
+			asPath = Arrays.copyOf(asPath, asPath.length * 2);
+		}
+		asPath[asPathLength++] = (byte) b;
+	}
+
+	/**
+	 * reads unsigned big-endian number from the record and moves position
+	 */
+	private long readUnsigned(int bytes) {
+		checkBounds(position + bytes);
+		long value = getUnsigned(record, position, bytes);
+		position += bytes;
+		return value;
+	}
+
+	private static long getUnsigned(byte[] buf, int start, int bytes) {
+		long value = 0;
+		for (int i = 0; i < bytes; i++) {
+			value = (value << 8) | (buf[start + i] & 0xff);
+		}
+		return value;
+	}
+
+	/**
+	 * checks that field, which ends at the given index, is inside of the
+	 * current record
+	 * 
+	 * @throws IndexOutOfBoundsException
+	 */
+	private void checkBounds(int end) {
+		if (end > recordLength) {
+			throw new IndexOutOfBoundsException("Field ends at " + end
+					+ ", but MRT record is only " + recordLength
+					+ " bytes long");
+		}
+	}
+
+	private boolean isExpected(int type) {
+		for (int expected : types) {
+			if (expected == type) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * reads exactly 'length' bytes from the stream
+	 * 
+	 * @param eofAllowed
+	 *            - if true, end of stream before the first byte is not an
+	 *            error
+	 * @return false, if end of stream was reached before the first byte
+	 * @throws EOFException
+	 *             if end of stream was reached in the middle
+	 */
+	private static boolean readFully(InputStream in, byte[] buf, int start,
+			int length, boolean eofAllowed) throws IOException {
+		int read = 0;
+		while (read < length) {
+			int n = in.read(buf, start + read, length - read);
+			if (n == -1) {
+				if (read == 0 && eofAllowed) {
+					return false;
+				}
+				throw new EOFException();
+			}
+			read += n;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Creates a separate {@link BGP4MPHandler} for every peer (AS sent the
+ *         messages) in file with updates. Every handler receives messages of
+ *         its peer in the same order as in the file, but handlers of
+ *         different peers could be called from different threads at the same
+ *         time (see {@link ChunkedDumpParser}). So handlers should not share
+ *         anything, except objects which are safe to use from several threads
+ *         or separated by peer (e.g. RIB of peer).
+ * 
+ */
+public interface PeerHandlers {
+
+	/**
+	 * Checks if message should be passed to the handler at all. Called from
+	 * several threads, so it should only read immutable data.
+	 * 
+	 * @param time
+	 *            - time of message
+	 * @param peerAS
+	 *            - name (number) of AS sent the message
+	 * @return false, if message should be skipped
+	 */
+	public boolean isNeeded(long time, int peerAS);
+
+	/**
+	 * Creates handler for messages from one peer. Called once per peer, not
+	 * from several threads at the same time.
+	 * 
+	 * @param peerAS
+	 * @return
+	 */
+	public BGP4MPHandler newHandler(int peerAS);
+
+	/**
+	 * Called for every message, which can't be parsed. Not called from
+	 * several threads at the same time.
+	 * 
+	 * @param reason
+	 *            - one of constant reasons from {@link BGP4MPParser} or
+	 *            {@link MRTParser}
+	 */
+	public void malformed(String reason);
+}
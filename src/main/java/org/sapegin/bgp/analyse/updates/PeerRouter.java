@@ -20,27 +20,48 @@
 	 * language governing permissions and limitations under the License.
 	 *
 	 */
-package org.sapegin.bgp.analyse;
+package org.sapegin.bgp.analyse.updates;
 
 import java.util.HashMap;
-import java.util.Map;
 
 /**
  * 
  * @author Andrey Sapegin
  * 
- * this class contains a dynamic array with distances from one AS (not known for this class) to all ther ASs in Internet.
- *
+ *         Passes messages parsed from one stream to handlers of their peers,
+ *         created with {@link PeerHandlers}. It's used when file is parsed
+ *         sequentially, so all handlers are called from one thread.
+ * 
  */
-public class Distances {
-	
-	private Map<Integer,Byte> distances = new HashMap<Integer,Byte>();
-	
-	public void setDistance(int destinationASnumber, byte distance){
-		distances.put(destinationASnumber, distance);
+public class PeerRouter implements BGP4MPHandler {
+
+	private final PeerHandlers handlers;
+
+	private final HashMap<Integer, BGP4MPHandler> peers = new HashMap<Integer, BGP4MPHandler>();
+
+	public PeerRouter(PeerHandlers handlers) {
+		this.handlers = handlers;
 	}
-	
-	public Byte getDistance(int destinationASnumber){
-		return distances.get(destinationASnumber);
+
+	@Override
+	public void message(long time, byte type, int peerAS, int prefix,
+			byte prefixLength, byte[] line, int asPathStart, int asPathEnd) {
+		if (!handlers.isNeeded(time, peerAS)) {
+			return;
+		}
+
+		BGP4MPHandler handler = peers.get(peerAS);
+		if (handler == null) {
+			handler = handlers.newHandler(peerAS);
+			peers.put(peerAS, handler);
+		}
+
+		handler.message(time, type, peerAS, prefix, prefixLength, line,
+				asPathStart, asPathEnd);
+	}
+
+	@Override
+	public void malformed(String reason) {
+		handlers.malformed(reason);
 	}
 }
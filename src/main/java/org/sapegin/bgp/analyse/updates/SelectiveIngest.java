@@ -0,0 +1,177 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sapegin.bgp.analyse.SizeInterval;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         Selects seconds, for which prefixes of spikes should be stored during
+ *         the second pass of selective ingest (see
+ *         {@link UpdatesFactory#setSelectiveIngest}). Only spikes with sizes
+ *         from analysed size intervals are classified, and only spikes within
+ *         time buffer around them are compared with them. For all other
+ *         seconds it's enough to know the number of updates, so that they
+ *         are stored as spikes, which only count prefixes (see
+ *         Spike.countOnly()).
+ * 
+ *         During the first pass (before select() is called) no prefixes are
+ *         stored at all.
+ * 
+ */
+public class SelectiveIngest {
+
+	// sizes of analysed spikes, minimum is included, maximum is not (as in
+	// Updates.getSpikesWithPredefinedSize())
+	private final List<SizeInterval> analysedSizes;
+
+	private final long timeBuffer;
+
+	// seconds, which are analysed in any case (e.g. single spike given by
+	// user)
+	private final List<Long> analysedTimes = new ArrayList<Long>();
+
+	// sorted times of all analysed spikes, or null during the first pass
+	private long[] selectedTimes;
+
+	/**
+	 * @param analysedSizes
+	 *            - sizes of spikes to be analysed
+	 * @param timeBuffer
+	 *            - prefixes are stored for all spikes within timeBuffer
+	 *            seconds before and after every analysed spike
+	 */
+	public SelectiveIngest(List<SizeInterval> analysedSizes, long timeBuffer) {
+		this.analysedSizes = new ArrayList<SizeInterval>(analysedSizes);
+		this.timeBuffer = timeBuffer;
+	}
+
+	/**
+	 * Spike at the given time will be analysed independent of its size.
+	 * Should be called before select().
+	 * 
+	 * @param time
+	 */
+	public void addAnalysedTime(long time) {
+		analysedTimes.add(time);
+	}
+
+	/**
+	 * @return true if seconds are already selected, so that spikes could be
+	 *         loaded in one (second) pass
+	 */
+	public boolean isSelected() {
+		return selectedTimes != null;
+	}
+
+	/**
+	 * Selects seconds of all spikes with analysed sizes. Spikes could (and
+	 * should, to save memory) only count prefixes.
+	 * 
+	 * @param countedSpikes
+	 *            - spikes loaded during the first pass
+	 */
+	public void select(SpikeCollection countedSpikes) {
+		long[] times = new long[16];
+		int size = 0;
+
+		for (long time : analysedTimes) {
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+			}
+			times[size++] = time;
+		}
+
+		for (SingleASspikes spikes : countedSpikes.getUpdateMap().values()) {
+			for (int i = 0; i < spikes.getNumberOfSpikes(); i++) {
+				if (isAnalysedSize(spikes.getSpike(i).getSpikeSize())) {
+					if (size == times.length) {
+						times = Arrays.copyOf(times, size * 2);
+					}
+					times[size++] = spikes.getTime(i);
+				}
+			}
+		}
+
+		// sort and remove repetitions (spikes of different pairs at the same
+		// second)
+		Arrays.sort(times, 0, size);
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique == 0 || times[unique - 1] != times[i]) {
+				times[unique++] = times[i];
+			}
+		}
+
+		selectedTimes = Arrays.copyOf(times, unique);
+	}
+
+	/**
+	 * @return number of seconds, when at least one spike will be analysed
+	 */
+	public int getNumberOfSelectedTimes() {
+		return (selectedTimes == null) ? 0 : selectedTimes.length;
+	}
+
+	/**
+	 * @param size
+	 * @return true if spikes with this size are analysed
+	 */
+	public boolean isAnalysedSize(int size) {
+		for (SizeInterval interval : analysedSizes) {
+			if (size >= interval.getMinSize() && size < interval.getMaxSize()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param time
+	 * @return true if prefixes of spikes at the given time should be stored,
+	 *         because there is an analysed spike within time buffer. Always
+	 *         false during the first pass.
+	 */
+	public boolean keepsPrefixes(long time) {
+		long[] times = selectedTimes;
+		if (times == null) {
+			return false;
+		}
+
+		// find the first analysed spike not earlier than time - timeBuffer
+		int index = Arrays.binarySearch(times, time - timeBuffer);
+		if (index < 0) {
+			index = -index - 1;
+		}
+
+		return index < times.length && times[index] <= time + timeBuffer;
+	}
+}
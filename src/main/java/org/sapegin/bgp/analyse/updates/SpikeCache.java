@@ -0,0 +1,404 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.sapegin.bgp.analyse.ASSet;
+import org.sapegin.bgp.analyse.ribs.ASPathElement;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         File with all spikes loaded from files with updates, so that next
+ *         runs with the same input files and the same ASs could load spikes
+ *         without parsing updates (and RIBs) again. The name of the file is a
+ *         hash of type of updates, input ASs and names, sizes and modification
+ *         times of input files.
+ * 
+ *         File format: int MAGIC, int VERSION, then a block for every pair
+ *         {monitored AS, monitoring router}: int number of spikes (n), n
+ *         times, n spike sizes, n flags (1 if origin ASs are known), and then
+ *         for every spike: prefixes, mask lengths and (if flag is set)
+ *         numbers of origin ASs (-1 if unknown). After the blocks follows the
+ *         index: int number of origin ASs and origin ASs (int number of ASs
+ *         and ASs), int number of pairs and for every pair: name of
+ *         monitoring router (int length and UTF-8 bytes), int monitored AS,
+ *         long offset and long length of its block. The file ends with long
+ *         offset of index and int MAGIC.
+ */
+public class SpikeCache {
+
+	private static final int MAGIC = 0x42475053; // "BGPS"
+	private static final int VERSION = 1;
+
+	// offset of index and MAGIC
+	private static final int FOOTER_SIZE = 12;
+
+	private static Logger logger = LogManager.getLogger(SpikeCache.class);
+
+	private final File file;
+
+	/**
+	 * @param cacheFolder
+	 * @param type
+	 *            - type of updates (e.g. name of Updates subclass), as updates
+	 *            loaded from the same files are filtered differently
+	 * @param inputASs
+	 *            - ASs, which updates are loaded
+	 * @param inputFilenames
+	 *            - all files used to load updates (updates and RIBs)
+	 * @throws IOException
+	 */
+	public SpikeCache(String cacheFolder, String type, ASSet inputASs,
+			List<String> inputFilenames) throws IOException {
+		this.file = new File(cacheFolder, "spikes_"
+				+ key(type, inputASs, inputFilenames) + ".bin");
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public boolean exists() {
+		return file.exists();
+	}
+
+	/**
+	 * Adds all spikes from file to the collection
+	 * 
+	 * @param spikes
+	 * @return false if file contains something else (nothing is added then)
+	 * @throws IOException
+	 */
+	public boolean load(SpikeCollection spikes) throws IOException {
+		SpikeCollection loaded = new SpikeCollection();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size < 8 + FOOTER_SIZE) {
+				logger.warn("Unexpected size of " + file
+						+ ". Updates will be loaded again.");
+				return false;
+			}
+
+			ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY,
+					size - FOOTER_SIZE, FOOTER_SIZE);
+			long indexOffset = footer.getLong();
+			if (footer.getInt() != MAGIC || indexOffset < 8
+					|| indexOffset > size - FOOTER_SIZE
+					|| size - FOOTER_SIZE - indexOffset > Integer.MAX_VALUE) {
+				logger.warn("Unexpected content of " + file
+						+ ". Updates will be loaded again.");
+				return false;
+			}
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					8);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				logger.warn("Unexpected version of " + file
+						+ ". Updates will be loaded again.");
+				return false;
+			}
+
+			ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY,
+					indexOffset, size - FOOTER_SIZE - indexOffset);
+
+			// origin ASs are shared by all spikes
+			ASPathElement[] origins = new ASPathElement[index.getInt()];
+			for (int i = 0; i < origins.length; i++) {
+				ArrayList<Integer> ases = new ArrayList<Integer>();
+				int n = index.getInt();
+				for (int j = 0; j < n; j++) {
+					ases.add(index.getInt());
+				}
+				origins[i] = new ASPathElement(ases);
+			}
+
+			int pairs = index.getInt();
+			for (int i = 0; i < pairs; i++) {
+				byte[] name = new byte[index.getInt()];
+				index.get(name);
+				MonitoredAS monitoredAS = new MonitoredAS(new String(name,
+						"UTF-8"), index.getInt());
+				long offset = index.getLong();
+				long length = index.getLong();
+
+				if (offset < 8 || length > Integer.MAX_VALUE
+						|| offset + length > indexOffset) {
+					throw new BufferUnderflowException();
+				}
+
+				readBlock(
+						channel.map(FileChannel.MapMode.READ_ONLY, offset,
+								length), monitoredAS, origins, loaded);
+			}
+		} catch (BufferUnderflowException e) {
+			logger.warn("Unexpected end of data in " + file
+					+ ". Updates will be loaded again.");
+			return false;
+		} catch (IndexOutOfBoundsException e) {
+			logger.warn("Unexpected content of " + file
+					+ ". Updates will be loaded again.");
+			return false;
+		} finally {
+			raf.close();
+		}
+
+		spikes.addAll(loaded);
+		return true;
+	}
+
+	/**
+	 * reads spikes of one pair {monitored AS, monitoring router}
+	 */
+	private void readBlock(ByteBuffer block, MonitoredAS monitoredAS,
+			ASPathElement[] origins, SpikeCollection loaded) {
+		int n = block.getInt();
+		long[] times = new long[n];
+		int[] sizes = new int[n];
+		byte[] flags = new byte[n];
+		block.asLongBuffer().get(times);
+		block.position(block.position() + 8 * n);
+		block.asIntBuffer().get(sizes);
+		block.position(block.position() + 4 * n);
+		block.get(flags);
+
+		for (int i = 0; i < n; i++) {
+			int[] prefixes = new int[sizes[i]];
+			byte[] lengths = new byte[sizes[i]];
+			block.asIntBuffer().get(prefixes);
+			block.position(block.position() + 4 * sizes[i]);
+			block.get(lengths);
+
+			Spike spike = new Spike();
+			if (flags[i] != 0) {
+				for (int j = 0; j < sizes[i]; j++) {
+					int origin = block.getInt();
+					spike.addDestination(prefixes[j], lengths[j],
+							(origin < 0) ? null : origins[origin]);
+				}
+			} else {
+				for (int j = 0; j < sizes[i]; j++) {
+					spike.addPrefix(prefixes[j], lengths[j]);
+				}
+			}
+
+			loaded.addSpike(times[i], spike, monitoredAS);
+		}
+	}
+
+	/**
+	 * Saves all spikes from collection. File is written under temporary name
+	 * and then renamed, so other runs never see half-written file.
+	 * 
+	 * @param spikes
+	 * @throws IOException
+	 */
+	public void save(SpikeCollection spikes) throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		File tmpFile = new File(file.getPath() + ".tmp");
+
+		boolean renamed = false;
+		try {
+			write(tmpFile, spikes);
+
+			renamed = tmpFile.renameTo(file);
+			if (!renamed) {
+				file.delete();
+				renamed = tmpFile.renameTo(file);
+			}
+			if (!renamed) {
+				throw new IOException("Cannot rename " + tmpFile + " to "
+						+ file);
+			}
+		} finally {
+			// don't leave half-written file behind
+			if (!renamed) {
+				tmpFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * writes all spikes from collection into the given file
+	 */
+	private void write(File tmpFile, SpikeCollection spikes)
+			throws IOException {
+		FileOutputStream fileOut = new FileOutputStream(tmpFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				fileOut, 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			// origin AS -> its number in file
+			HashMap<ASPathElement, Integer> origins = new HashMap<ASPathElement, Integer>();
+			List<ASPathElement> originsList = new ArrayList<ASPathElement>();
+
+			List<MonitoredAS> pairs = new ArrayList<MonitoredAS>();
+			List<long[]> blocks = new ArrayList<long[]>();
+
+			for (Map.Entry<MonitoredAS, SingleASspikes> pair : spikes
+					.getUpdateMap().entrySet()) {
+				out.flush();
+				long offset = fileOut.getChannel().position();
+
+				writeBlock(out, pair.getValue(), origins, originsList);
+
+				out.flush();
+				pairs.add(pair.getKey());
+				blocks.add(new long[] { offset,
+						fileOut.getChannel().position() - offset });
+			}
+
+			// index
+			out.flush();
+			long indexOffset = fileOut.getChannel().position();
+
+			out.writeInt(originsList.size());
+			for (ASPathElement origin : originsList) {
+				ArrayList<Integer> ases = origin.getASPathElement();
+				out.writeInt(ases.size());
+				for (Integer as : ases) {
+					out.writeInt(as);
+				}
+			}
+
+			out.writeInt(pairs.size());
+			for (int i = 0; i < pairs.size(); i++) {
+				byte[] name = pairs.get(i).getMonitoringRouter()
+						.getBytes("UTF-8");
+				out.writeInt(name.length);
+				out.write(name);
+				out.writeInt(pairs.get(i).getMonitoredAS());
+				out.writeLong(blocks.get(i)[0]);
+				out.writeLong(blocks.get(i)[1]);
+			}
+
+			out.writeLong(indexOffset);
+			out.writeInt(MAGIC);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeBlock(DataOutputStream out, SingleASspikes spikes,
+			HashMap<ASPathElement, Integer> origins,
+			List<ASPathElement> originsList) throws IOException {
+		int n = spikes.getNumberOfSpikes();
+		out.writeInt(n);
+		for (int i = 0; i < n; i++) {
+			out.writeLong(spikes.getTime(i));
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeInt(spikes.getSpike(i).getSpikeSize());
+		}
+		for (int i = 0; i < n; i++) {
+			out.writeByte(spikes.getSpike(i).hasOriginASs() ? 1 : 0);
+		}
+
+		for (int i = 0; i < n; i++) {
+			Spike spike = spikes.getSpike(i);
+			int size = spike.getSpikeSize();
+			for (int j = 0; j < size; j++) {
+				out.writeInt(spike.getPrefix(j));
+			}
+			for (int j = 0; j < size; j++) {
+				out.writeByte(spike.getPrefixLength(j));
+			}
+			if (spike.hasOriginASs()) {
+				for (int j = 0; j < size; j++) {
+					ASPathElement origin = spike.getOriginAS(j);
+					if (origin == null) {
+						out.writeInt(-1);
+						continue;
+					}
+					Integer number = origins.get(origin);
+					if (number == null) {
+						number = originsList.size();
+						origins.put(origin, number);
+						originsList.add(origin);
+					}
+					out.writeInt(number);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return hash of type of updates, input ASs and names, sizes and
+	 *         modification times of input files. Input files are not read, as
+	 *         they are much bigger than RIBs (see
+	 *         {@link org.sapegin.bgp.analyse.ribs.RIBSnapshot}).
+	 */
+	private static String key(String type, ASSet inputASs,
+			List<String> inputFilenames) throws IOException {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+
+			StringBuilder files = new StringBuilder(type);
+			for (String inputFilename : inputFilenames) {
+				File inputFile = new File(inputFilename);
+				files.append('\n').append(inputFile.getCanonicalPath())
+						.append(' ').append(inputFile.length()).append(' ')
+						.append(inputFile.lastModified());
+			}
+			digest.update(files.toString().getBytes("UTF-8"));
+
+			int[] names = inputASs.toIntArray();
+			ByteBuffer namesBuffer = ByteBuffer.allocate(4 * names.length);
+			namesBuffer.asIntBuffer().put(names);
+			digest.update(namesBuffer.array());
+
+			return String.format("%032x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			// MD5 is always available in Java
+			throw new IOException(e);
+		}
+	}
+}
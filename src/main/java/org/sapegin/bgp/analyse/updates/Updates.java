@@ -22,80 +22,77 @@
 	 */
 package org.sapegin.bgp.analyse.updates;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.PrefixSet;
+import org.sapegin.bgp.analyse.spikes.PrefixSpikeIndex;
+import org.sapegin.bgp.analyse.spikes.SelectedSpikes;
 import org.sapegin.bgp.analyse.spikes.SingleASspikes;
 import org.sapegin.bgp.analyse.spikes.Spike;
 import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+import org.sapegin.bgp.analyse.spikes.SpikeSizeIndex;
+import org.sapegin.bgp.analyse.spikes.SpikeTimeIndex;
 
 /**
  * 
- * This class reads from files and stores BGP update messages.
+ * This class stores BGP update messages (as spikes) and finds spikes in
+ * them. Updates are read from files by subclasses of {@link UpdatesFromFiles},
+ * but could be also selected from other updates (see
+ * {@link UpdatesFactory#createView}).
  * 
  * @author Andrey Sapegin
  * 
  */
-public abstract class Updates extends SpikeCollection {
+public class Updates extends SpikeCollection {
 
 	// It's a main map with updates
 	// For each key (pair {monitoringRouter,monitoredAS}) all spikes will be
 	// stored as value
 	// private Map<MonitoredAS, SingleASspikes> allASsUpdates;
 
-	// time in Unix-time format - the moment in time, from which this class has
-	// started importing of updates from files
-	// it's needed for time synchronisation
-	// E.g., if there are 2 files with updates: in the first file first update
-	// timestamp is X; and in the second file - X+5 - minStartTime will be X+5.
-	// Thus all updates from input files before X+5 timestamp will be skipped
-	// and all imported updates will start from the same time moment.
-	protected long minStartTime;
+	// logger
+	protected Logger logger = LogManager.getLogger(Updates.class);
 
-	protected ArrayList<String> inputUpdatesFilenames;
+	// spikes of all pairs {monitored AS, monitoring router} ordered by time,
+	// used to find spikes within time interval around analysed spike.
+	// It is built on first request and dropped when spikes are added or
+	// removed.
+	private volatile SpikeTimeIndex timeIndex;
 
-	// only updates from ASs listed here will be imported from files
-	protected ArrayList<Integer> inputASs;
+	// prefix -> spikes containing it, used to select candidates for
+	// duplicated spikes. Built on first request over the current timeIndex.
+	private volatile PrefixSpikeIndex prefixIndex;
 
-	// logger
-	protected Logger logger = LogManager.getLogger(Updates.class);
+	// spikes of all pairs ordered by size, used to select spikes with
+	// predefined size. Built on first request, like timeIndex.
+	private volatile SpikeSizeIndex sizeIndex;
 
-	protected Updates() {
+	/**
+	 * Constructor for empty updates
+	 */
+	public Updates() {
 	}
 
 	/**
-	 * Constructor
-	 * 
-	 * This constructor will call methods to read files from
-	 * {inputUpdatesFilenames} and import updates ONLY for ASs in {inputASs}
-	 * list
+	 * Constructor for updates already loaded into the map. Spikes are not
+	 * copied.
 	 * 
-	 * @param inputASsFilenames
-	 * @param inputASs
+	 * @param spikes
+	 *            - spikes of pairs {monitored AS, monitoring router}
 	 */
-	public Updates(ArrayList<String> inputUpdatesFilenames,
-			ArrayList<Integer> inputASs) {
-		this.inputUpdatesFilenames = inputUpdatesFilenames;
-		this.inputASs = inputASs;
-
-		findStartTime();
-
-		allUpdates = new HashMap<MonitoredAS, SingleASspikes>();
+	public Updates(Map<MonitoredAS, SingleASspikes> spikes) {
+		super(spikes);
 	}
 
 	/**
@@ -123,91 +120,133 @@ public abstract class Updates extends SpikeCollection {
 		for (SingleASspikes pairSpikes : allUpdates.values()) {
 			pairSpikes.synchronise(startTime, endTime);
 		}
+
+		timeIndex = null;
+		prefixIndex = null;
+		sizeIndex = null;
 	}
 
-	protected abstract void readUpdates();
+	@Override
+	public boolean addSpike(long spikeTime, Spike spike, MonitoredAS as) {
+		timeIndex = null;
+		prefixIndex = null;
+		sizeIndex = null;
+		return super.addSpike(spikeTime, spike, as);
+	}
 
 	/**
-	 * This method extracts prefix (network IPv4 address) from update message in
-	 * machine format created with route_btoa and prepared by readUpdates()
-	 * method (message should start with AS name (number))
+	 * Returns index of all spikes ordered by time. Index is built once and
+	 * shared between all threads analysing spikes.
 	 * 
-	 * @param str
-	 *            - update message in machine format starting from AS name
-	 * @return InetAddress - extracted prefix (network address)
-	 * @throws UnknownHostException
+	 * @return
 	 */
-	protected InetAddress readPrefix(String str) throws UnknownHostException {
-		String prefix = str.substring(str.indexOf("|") + 1, str.indexOf("/"));
-
-		return InetAddress.getByName(prefix);
+	public SpikeTimeIndex getTimeIndex() {
+		SpikeTimeIndex index = timeIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = timeIndex;
+				if (index == null) {
+					index = new SpikeTimeIndex(allUpdates);
+					timeIndex = index;
+				}
+			}
+		}
+		return index;
 	}
 
 	/**
-	 * This functions looks into every file with BGP updates loaded before and
-	 * finds maximum time among starting (first message) time in the files
+	 * Returns index from prefix to all spikes containing it. Index is built
+	 * once and shared between all threads analysing spikes.
 	 * 
+	 * @return
 	 */
-	private void findStartTime() {
-		// at the beginning maximum is 0
-		minStartTime = 0;
-
-		// go through all files with BGP updates
-		for (int i = 0; i < inputUpdatesFilenames.size(); i++) {
-			try {
-				FileReader fr = new FileReader(inputUpdatesFilenames.get(i));
-				BufferedReader br = new BufferedReader(fr);
-
-				// read first line
-				String str = br.readLine();
-
-				if (str == null) { // if file with updates is empty
-					br.close();
-					fr.close();
-					continue;
-				}
-
-				// check if message is ok
-				if (str.indexOf("|") != 6) {
-					logger.fatal("Unexpected update message found! Filename: "
-							+ inputUpdatesFilenames.get(i));
+	public PrefixSpikeIndex getPrefixIndex() {
+		SpikeTimeIndex times = getTimeIndex();
+		PrefixSpikeIndex index = prefixIndex;
+		if (index == null || index.getTimeIndex() != times) {
+			synchronized (this) {
+				index = prefixIndex;
+				if (index == null || index.getTimeIndex() != times) {
+					index = new PrefixSpikeIndex(times);
+					prefixIndex = index;
 				}
+			}
+		}
+		return index;
+	}
 
-				str = str.substring(str.indexOf("|") + 1);
-
-				// check if time is correct
-				if (str.indexOf("|") != 10) {
-					logger.fatal("Unexpected time length in update message found! Filename: "
-							+ inputUpdatesFilenames.get(i));
+	/**
+	 * Returns index of all spikes ordered by size. Index is built once and
+	 * shared between all threads.
+	 * 
+	 * @return
+	 */
+	public SpikeSizeIndex getSizeIndex() {
+		SpikeSizeIndex index = sizeIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = sizeIndex;
+				if (index == null) {
+					index = new SpikeSizeIndex(allUpdates);
+					sizeIndex = index;
 				}
+			}
+		}
+		return index;
+	}
 
-				// parse time
-				int time = Integer.parseInt(str.substring(0, str.indexOf("|")));
+	/**
+	 * Selects spikes, which could be duplicated with the given one, within
+	 * time interval [time - timeBuffer, time + timeBuffer]. If
+	 * duplicationPercentage is more than 0, only spikes having common
+	 * prefixes with the given one could be duplicated. Otherwise (0% of
+	 * common prefixes is enough) all spikes within time interval are
+	 * selected.
+	 * 
+	 * @param spike
+	 * @param time
+	 * @param timeBuffer
+	 * @param duplicationPercentage
+	 * @return positions in time index (see getTimeIndex()) in time order
+	 */
+	private int[] findSpikesToCompare(Spike spike, long time, long timeBuffer,
+			double duplicationPercentage) {
+		if (duplicationPercentage > 0) {
+			return getPrefixIndex().findCandidates(spike, time - timeBuffer,
+					time + timeBuffer);
+		}
 
-				// refresh maximum
-				if (time > minStartTime) {
-					minStartTime = time;
-				}
+		SpikeTimeIndex index = getTimeIndex();
+		int first = index.firstIndexFrom(time - timeBuffer);
+		int last = index.firstIndexFrom(time + timeBuffer + 1);
 
-				br.close();
-				fr.close();
-
-			} catch (FileNotFoundException e) {
-				logger.fatal(
-						"FileNotFound exception during reading files with updates during determining max start time",
-						e);
-			} catch (IOException e) {
-				logger.fatal(
-						"IO exception during reading files with updates during determining max start time",
-						e);
-			}
+		int[] positions = new int[last - first];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = first + i;
 		}
+		return positions;
+	}
+
+	/**
+	 * Selects spikes with predefined size from the index of spikes ordered by
+	 * size (see getSizeIndex()). Spikes are neither searched in all pairs
+	 * nor copied. Order of min- and maxSize parameters is not significant.
+	 * 
+	 * @param minSize
+	 * @param maxSize
+	 * @return read-only view of spikes with size greater than or equals to
+	 *         minSize and strictly less than maxSize
+	 */
+	public SelectedSpikes selectSpikesWithPredefinedSize(int minSize,
+			int maxSize) {
+		return getSizeIndex().select(minSize, maxSize);
 	}
 
 	/**
 	 * 
 	 * Selects spikes with predefined size. Order of min- and maxSize parameters
-	 * is not significant.
+	 * is not significant. Unlike selectSpikesWithPredefinedSize(), selected
+	 * spikes are copied, so they could be changed.
 	 * 
 	 * @param minSize
 	 * @param maxSize
@@ -315,13 +354,9 @@ public abstract class Updates extends SpikeCollection {
 
 				SingleASspikes spikes = allUpdates.get(monitoredAS);
 
-				for (long second = spikes.getCurrentMinTime(); second <= spikes
-						.getCurrentMaxTime(); second++) {
-					if (spikes.hasSpikeAtTime(second)) {
-						bwr.write(second + "\t"
-								+ spikes.getSpikeAtTime(second).getSpikeSize()
-								+ "\n");
-					}
+				for (int i = 0; i < spikes.getNumberOfSpikes(); i++) {
+					bwr.write(spikes.getTime(i) + "\t"
+							+ spikes.getSpike(i).getSpikeSize() + "\n");
 				}
 
 				bwr.close();
@@ -354,27 +389,24 @@ public abstract class Updates extends SpikeCollection {
 			long timeBuffer, MonitoredAS as, double duplicationPercentage) {
 		SpikeCollection duplicatedSpikes = new SpikeCollection();
 
-		for (MonitoredAS pair : allUpdates.keySet()) {
-
-			SingleASspikes asSpikes = allUpdates.get(pair);
+		SpikeTimeIndex index = getTimeIndex();
 
-			for (long second = time - timeBuffer; second <= time + timeBuffer; second++) {
+		// go through spikes of all pairs within time interval, which could be
+		// duplicated with the given one
+		for (int i : findSpikesToCompare(spike, time, timeBuffer,
+				duplicationPercentage)) {
+			long second = index.getTime(i);
+			MonitoredAS pair = index.getMonitoredAS(i);
 
-				if ((pair.getMonitoredAS() == as.getMonitoredAS())
-						&& (pair.getMonitoringRouter().equals(as
-								.getMonitoringRouter())) && (second == time)) {
-					// skip the given spike, as I don't want to check if spike
-					// is duplicated with itself
-					continue;
-				}
+			if ((second == time) && pair.equals(as)) {
+				// skip the given spike, as I don't want to check if spike
+				// is duplicated with itself
+				continue;
+			}
 
-				if (asSpikes.hasSpikeAtTime(second)) {
-					if (asSpikes.getSpikeAtTime(second).isDuplicatedWith(spike,
-							duplicationPercentage)) {
-						duplicatedSpikes.addSpike(second,
-								asSpikes.getSpikeAtTime(second), pair);
-					}
-				}
+			if (index.getSpike(i).isDuplicatedWith(spike,
+					duplicationPercentage)) {
+				duplicatedSpikes.addSpike(second, index.getSpike(i), pair);
 			}
 		}
 
@@ -399,34 +431,31 @@ public abstract class Updates extends SpikeCollection {
 	 * @return set of unique prefixes in original spike that were ACTUALLY
 	 *         marked as duplicated IN DUPLICATED SPIKES
 	 */
-	public Set<InetAddress> getDuplicatedPrefixesInSpikeIfSpikeIsDuplicated(
+	public PrefixSet getDuplicatedPrefixesInSpikeIfSpikeIsDuplicated(
 			Spike spike, long time, long timeBuffer, MonitoredAS as,
 			double duplicationPercentage) {
 
-		Set<InetAddress> duplicatedPrefixes = new HashSet<InetAddress>();
+		PrefixSet duplicatedPrefixes = new PrefixSet();
 
-		for (MonitoredAS pair : allUpdates.keySet()) {
+		SpikeTimeIndex index = getTimeIndex();
 
-			if (pair.getMonitoredAS() == as.getMonitoredAS()) {
+		// go through spikes of all pairs within time interval, which could be
+		// duplicated with the given one
+		for (int i : findSpikesToCompare(spike, time, timeBuffer,
+				duplicationPercentage)) {
+
+			if (index.getMonitoredAS(i).getMonitoredAS() == as
+					.getMonitoredAS()) {
 				// skip all spikes from the same AS
 				continue;
 			}
 
-			SingleASspikes asSpikes = allUpdates.get(pair);
-
-			for (long second = time - timeBuffer; second <= time + timeBuffer; second++) {
+			if (index.getSpike(i).isDuplicatedWith(spike,
+					duplicationPercentage)) { // if spikes are duplicated
+				// find number of duplicated prefixes in spike
 
-				if (asSpikes.hasSpikeAtTime(second)) {
-					if (asSpikes.getSpikeAtTime(second).isDuplicatedWith(spike,
-							duplicationPercentage)) { // if spikes are
-														// duplicated
-						// find number of duplicated prefixes in spike
-
-						duplicatedPrefixes.addAll(spike
-								.getPrefixesDuplicatedWith(asSpikes
-										.getSpikeAtTime(second)));
-					}
-				}
+				duplicatedPrefixes.addAll(spike.getPrefixesDuplicatedWith(index
+						.getSpike(i)));
 			}
 		}
 
@@ -451,32 +480,75 @@ public abstract class Updates extends SpikeCollection {
 	 * @return set of unique prefixes in original spike that were ACTUALLY
 	 *         marked as duplicated WITH ALL OTHER SPIKES WITHIN TIME INTERVAL
 	 */
-	public Set<InetAddress> getAllDuplicatedPrefixesInSpike(Spike spike,
+	public PrefixSet getAllDuplicatedPrefixesInSpike(Spike spike,
 			long time, long timeBuffer, MonitoredAS as,
 			double duplicationPercentage) {
 
-		Set<InetAddress> duplicatedPrefixes = new HashSet<InetAddress>();
+		PrefixSet duplicatedPrefixes = new PrefixSet();
 
-		for (MonitoredAS pair : allUpdates.keySet()) {
+		PrefixSpikeIndex index = getPrefixIndex();
+		SpikeTimeIndex times = index.getTimeIndex();
 
-			if (pair.getMonitoredAS() == as.getMonitoredAS()) {
-				// skip all spikes from the same AS
-				continue;
+		// prefix of the given spike is duplicated, if there is a spike with
+		// the same prefix from different AS within time interval
+		for (int i = 0; i < spike.getSpikeSize(); i++) {
+			int prefix = spike.getPrefix(i);
+			if (duplicatedPrefixes.contains(prefix)) {
+				continue; // the same prefix was already found
 			}
 
-			SingleASspikes asSpikes = allUpdates.get(pair);
+			int[] postings = index.getPostings(prefix);
+			for (int j = index.firstPostingFrom(postings, time
+					- timeBuffer); j < postings.length
+					&& times.getTime(postings[j]) <= time + timeBuffer; j++) {
+				if (times.getMonitoredAS(postings[j]).getMonitoredAS() != as
+						.getMonitoredAS()) {
+					duplicatedPrefixes.add(prefix);
+					break;
+				}
+			}
+		}
 
-			for (long second = time - timeBuffer; second <= time + timeBuffer; second++) {
+		return duplicatedPrefixes;
+	}
 
-				if (asSpikes.hasSpikeAtTime(second)) {
-					// find number of duplicated prefixes in spike
-					duplicatedPrefixes.addAll(spike
-							.getPrefixesDuplicatedWith(asSpikes
-									.getSpikeAtTime(second)));
+	/**
+	 * For every prefix of the given spike finds the nearest spike from
+	 * different AS containing the same prefix within time interval [time -
+	 * timeBuffer, time + timeBuffer]. This way, duplicated prefixes (see
+	 * getAllDuplicatedPrefixesInSpike()) could be counted for every smaller
+	 * time buffer without searching again.
+	 * 
+	 * @param spike
+	 * @param time
+	 * @param timeBuffer
+	 * @param as
+	 * @return time offset of the nearest spike for every prefix of the given
+	 *         spike (in the same order), or Long.MAX_VALUE if there is no such
+	 *         spike
+	 */
+	public long[] getDuplicatedPrefixOffsets(Spike spike, long time,
+			long timeBuffer, MonitoredAS as) {
+
+		long[] offsets = new long[spike.getSpikeSize()];
+		Arrays.fill(offsets, Long.MAX_VALUE);
+
+		PrefixSpikeIndex index = getPrefixIndex();
+		SpikeTimeIndex times = index.getTimeIndex();
+
+		for (int i = 0; i < spike.getSpikeSize(); i++) {
+			int[] postings = index.getPostings(spike.getPrefix(i));
+			for (int j = index.firstPostingFrom(postings, time
+					- timeBuffer); j < postings.length
+					&& times.getTime(postings[j]) <= time + timeBuffer; j++) {
+				if (times.getMonitoredAS(postings[j]).getMonitoredAS() != as
+						.getMonitoredAS()) {
+					offsets[i] = Math.min(offsets[i],
+							Math.abs(times.getTime(postings[j]) - time));
 				}
 			}
 		}
 
-		return duplicatedPrefixes;
+		return offsets;
 	}
 }
@@ -22,13 +22,26 @@
 	 */
 package org.sapegin.bgp.analyse.updates;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
+import org.sapegin.bgp.analyse.ASSet;
+import org.sapegin.bgp.analyse.ribs.ASPath;
+import org.sapegin.bgp.analyse.ribs.ASPathElement;
+import org.sapegin.bgp.analyse.ribs.InternPool;
 import org.sapegin.bgp.analyse.ribs.OriginsOnlyRIB;
 import org.sapegin.bgp.analyse.ribs.RIB;
+import org.sapegin.bgp.analyse.ribs.RIBLoader;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
 import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
 import org.sapegin.bgp.analyse.visibility.ASsToAnalyse;
 
 /**
@@ -45,6 +58,75 @@ public class UpdatesFactory<T extends ASsToAnalyse> {
 
 	private Logger logger = LogManager.getLogger(UpdatesFactory.class);
 
+	// maximum number of RIBs loaded at the same time
+	private int ribThreads;
+
+	// part of heap, which should be free to start loading of next RIB (see
+	// RIBLoader)
+	private double ribMemoryReserve;
+
+	// load RIBs from binary snapshots (see RIBSnapshot)
+	private boolean ribSnapshots;
+
+	// folder with spikes saved by previous runs (see SpikeCache), or null
+	private String spikeCacheFolder;
+
+	// if not null, updates are read twice, and prefixes are stored only for
+	// analysed spikes (see SelectiveIngest)
+	private SelectiveIngest selectiveIngest;
+
+	/**
+	 * RIBs will be loaded in as many threads as there are processors, without
+	 * snapshots. Spikes will not be cached.
+	 */
+	public UpdatesFactory() {
+		this(Runtime.getRuntime().availableProcessors(),
+				RIBLoader.DEFAULT_MEMORY_RESERVE, false, null);
+	}
+
+	/**
+	 * @param ribThreads
+	 *            - maximum number of RIBs loaded at the same time
+	 * @param ribMemoryReserve
+	 *            - part of maximum heap (0..1), which should be free to start
+	 *            loading of next RIB, while other RIBs are loading
+	 * @param ribSnapshots
+	 *            - load RIBs from binary snapshots next to RIB files, or
+	 *            create snapshots, if they don't exist
+	 * @param spikeCacheFolder
+	 *            - folder to load spikes saved by previous runs with the same
+	 *            input files and ASs, and to save newly loaded spikes. If
+	 *            null, spikes are always loaded from input files.
+	 */
+	public UpdatesFactory(int ribThreads, double ribMemoryReserve,
+			boolean ribSnapshots, String spikeCacheFolder) {
+		this.ribThreads = ribThreads;
+		this.ribMemoryReserve = ribMemoryReserve;
+		this.ribSnapshots = ribSnapshots;
+		this.spikeCacheFolder = spikeCacheFolder;
+	}
+
+	/**
+	 * Switches on selective ingest. Files with updates will be read twice by
+	 * createUpdates(). During the first pass only numbers of updates for every
+	 * pair {monitored AS, monitoring router} and second are counted. Then
+	 * seconds with spikes of analysed sizes are selected, and during the
+	 * second pass prefixes are stored only for spikes within time buffer
+	 * around them. All other spikes only count prefixes (see
+	 * Spike.countOnly()), so they could be used to calculate sizes and sums,
+	 * but not to compare prefixes.
+	 * 
+	 * If selectiveIngest already has selected seconds (e.g. it was used to
+	 * create other updates before), files are read only once.
+	 * 
+	 * @param selectiveIngest
+	 *            - seconds to store prefixes for, or null to store all
+	 *            prefixes
+	 */
+	public void setSelectiveIngest(SelectiveIngest selectiveIngest) {
+		this.selectiveIngest = selectiveIngest;
+	}
+
 	/**
 	 * This method returns instance of Updates subclass selected based on
 	 * parameters
@@ -65,7 +147,106 @@ public class UpdatesFactory<T extends ASsToAnalyse> {
 			boolean correlated, T visibleASs,
 			ArrayList<String> inputUpdatesFilenames, boolean synchronise) {
 
-		Updates updates;
+		// names of visible/monitored ASs used to filter updates and RIBs
+		ASSet visibleASsNames = visibleASs.getVisibleASsNames();
+
+		// names of ASs used to filter updates
+		ASSet updatesASsNames = selectUpdatesASsNames(useRIBs, componentOnly,
+				correlated, visibleASs);
+
+		// spikes saved by previous run with the same input files and ASs
+		SpikeCache cache = null;
+		SpikeCollection cachedSpikes = null;
+		if (spikeCacheFolder != null) {
+			cache = findSpikeCache(useRIBs, correlated, updatesASsNames,
+					inputRIBsFilenames, inputUpdatesFilenames);
+			cachedSpikes = loadSpikeCache(cache);
+		}
+
+		// RIBs are not needed, if spikes are loaded from cache
+		List<String> ribsToLoad = new ArrayList<String>();
+		if (useRIBs && cachedSpikes == null) {
+			ribsToLoad = inputRIBsFilenames;
+		}
+
+		UpdatesFromFiles updates = newUpdates(useRIBs, ribsToLoad, correlated,
+				visibleASsNames, updatesASsNames, inputUpdatesFilenames,
+				synchronise);
+
+		if (cachedSpikes != null) {
+			updates.addAll(cachedSpikes);
+		} else if (selectiveIngest != null) {
+			if (!selectiveIngest.isSelected()) {
+				logger.info("counting updates to select analysed spikes...");
+				updates.setSelectiveIngest(selectiveIngest);
+				updates.readUpdates();
+				selectiveIngest.select(updates);
+
+				logger.info("prefixes will be stored for spikes within time buffer around "
+						+ selectiveIngest.getNumberOfSelectedTimes()
+						+ " seconds with analysed spikes");
+
+				// RIBs were changed by updates, so they should be loaded
+				// again
+				updates = newUpdates(useRIBs, ribsToLoad, correlated,
+						visibleASsNames, updatesASsNames,
+						inputUpdatesFilenames, synchronise);
+			}
+
+			updates.setSelectiveIngest(selectiveIngest);
+			updates.readUpdates();
+			// spikes without prefixes are not saved into cache
+		} else {
+			// load updates
+			updates.readUpdates();
+
+			if (cache != null) {
+				try {
+					cache.save(updates);
+					logger.info("spikes saved into " + cache.getFile());
+				} catch (IOException e) {
+					logger.error("Cannot save spikes into cache", e);
+				}
+			}
+		}
+
+		if (synchronise) {
+			// print out stats
+			int total = 0;
+			for (SingleASspikes spikes : updates.getUpdateMap().values()) {
+				total += spikes.getCurrentUpdateSum();
+			}
+
+			logger.info(total
+					+ " update messages from "
+					+ updates.getUpdateMap().keySet().size()
+					+ " monitored ASs loaded before synchronisation. Syncing time...");
+
+			updates.synchronise();
+		}
+
+		// print out stats
+		int total = 0;
+		for (SingleASspikes spikes : updates.getUpdateMap().values()) {
+			total += spikes.getCurrentUpdateSum();
+		}
+
+		logger.info(total + " update messages from "
+				+ updates.getUpdateMap().keySet().size()
+				+ " monitored ASs loaded");
+
+		return updates;
+	}
+
+	/**
+	 * Creates instance of UpdatesFromFiles subclass and starts loading of RIBs needed
+	 * for it. Updates are not read.
+	 */
+	private UpdatesFromFiles newUpdates(boolean useRIBs, List<String> ribsToLoad,
+			boolean correlated, final ASSet visibleASsNames,
+			ASSet updatesASsNames, ArrayList<String> inputUpdatesFilenames,
+			boolean synchronise) {
+		UpdatesFromFiles updates;
 
 		// read Updates from visible/monitored ASs only
 		// ////// ?????????????? And what with neighbours of visible ASs???????
@@ -76,42 +257,49 @@ public class UpdatesFactory<T extends ASsToAnalyse> {
 						// only updates with AS Path including only VisibleASs
 						// will be loaded and analysed
 
+			// all RIBs share prefix ids and AS Paths, as most of them are the
+			// same for all monitoring routers
+			final PrefixDictionary prefixes = new PrefixDictionary();
+
+			// RIBs are loaded in background, and updates of every monitoring
+			// router are read as soon as its RIB is loaded
+			if (!ribsToLoad.isEmpty()) {
+				logger.info("loading " + ribsToLoad.size() + " RIBs in "
+						+ Math.min(ribThreads, ribsToLoad.size())
+						+ " threads...");
+			}
+
 			// prepare updates
 			if (correlated) {
 				// load OriginsASOnlyRIB for every monitor router
-				logger.info("loading RIBs with origins ASes only...");
-				ArrayList<OriginsOnlyRIB> allRIBs = new ArrayList<OriginsOnlyRIB>();
-				for (String inputRIBfilename : inputRIBsFilenames) {
-					allRIBs.add(new OriginsOnlyRIB(inputRIBfilename, visibleASs
-							.getVisibleASsNames()));
-				}
-				logger.info("RIBs loaded.");
-				
+				final InternPool<ASPathElement> origins = new InternPool<ASPathElement>();
+				List<Future<OriginsOnlyRIB>> allRIBs = new RIBLoader<OriginsOnlyRIB>(
+						ribThreads, ribMemoryReserve) {
+					@Override
+					protected OriginsOnlyRIB load(String ribFilename) {
+						return new OriginsOnlyRIB(ribFilename, visibleASsNames,
+								prefixes, origins, ribSnapshots);
+					}
+				}.loadAll(ribsToLoad);
+
 				updates = new UpdatesFromVisibleASsWithOriginAS(inputUpdatesFilenames,
-						allRIBs, visibleASs.getVisibleASsNames(),
+						allRIBs, updatesASsNames,
 						synchronise);
 			} else {
 				
 				// load RIB with full AS Path for every monitor router
-				logger.info("loading RIBs...");
-				ArrayList<RIB> allRIBs = new ArrayList<RIB>();
-				for (String inputRIBfilename : inputRIBsFilenames) {
-					allRIBs.add(new RIB(inputRIBfilename, visibleASs
-							.getVisibleASsNames()));
-				}
-				logger.info("RIBs loaded.");
-				
-				if (componentOnly) {
-					updates = new UpdatesWithVisibleAS_Path(
-							inputUpdatesFilenames, allRIBs,
-							new ArrayList<Integer>(visibleASs
-									.getBiggestConnectedGraphComponent()
-									.vertexSet()), synchronise);
-				} else {
-					updates = new UpdatesWithVisibleAS_Path(
-							inputUpdatesFilenames, allRIBs,
-							visibleASs.getVisibleASsNames(), synchronise);
-				}
+				final InternPool<ASPath> paths = new InternPool<ASPath>();
+				List<Future<RIB>> allRIBs = new RIBLoader<RIB>(ribThreads,
+						ribMemoryReserve) {
+					@Override
+					protected RIB load(String ribFilename) {
+						return new RIB(ribFilename, visibleASsNames, prefixes,
+								paths, ribSnapshots);
+					}
+				}.loadAll(ribsToLoad);
+
+				updates = new UpdatesWithVisibleAS_Path(inputUpdatesFilenames,
+						allRIBs, updatesASsNames, synchronise);
 			}
 		} else { // if RIBs are not available
 					// currently I'm forced to use all updates coming from
@@ -125,45 +313,156 @@ public class UpdatesFactory<T extends ASsToAnalyse> {
 					// for long enough time period.
 					// However, at this step I'm not going to implement this
 					// idea as it needs time which I think I don't have now.
-			if (componentOnly) {
-				updates = new UpdatesFromVisibleASs(inputUpdatesFilenames,
-						new ArrayList<Integer>(visibleASs
-								.getBiggestConnectedGraphComponent()
-								.vertexSet()), synchronise);
-			} else {
-				updates = new UpdatesFromVisibleASs(inputUpdatesFilenames,
-						visibleASs.getVisibleASsNames(), synchronise);
-			}
+			updates = new UpdatesFromVisibleASs(inputUpdatesFilenames,
+					updatesASsNames, synchronise);
 		}
-		
-		// load updates
-		updates.readUpdates();
 
-		if (synchronise) {
-			// print out stats
-			int total = 0;
-			for (SingleASspikes spikes : updates.getUpdateMap().values()) {
-				total += spikes.getCurrentUpdateSum();
-			}
+		return updates;
+	}
 
-			logger.info(total
-					+ " update messages from "
-					+ updates.getUpdateMap().keySet().size()
-					+ " monitored ASs loaded before synchronisation. Syncing time...");
+	/**
+	 * @return names of ASs, which updates are loaded by createUpdates() with
+	 *         given parameters. Updates with origin ASs are always loaded
+	 *         from all visible/monitored ASs.
+	 */
+	private ASSet selectUpdatesASsNames(boolean useRIBs,
+			boolean componentOnly, boolean correlated, T visibleASs) {
+		if (componentOnly && !(useRIBs && correlated)) {
+			return visibleASs.getASsNamesFromBiggestConnectedGraphComponent();
+		} else {
+			return visibleASs.getVisibleASsNames();
+		}
+	}
 
-			updates.synchronise();
+	/**
+	 * Checks, if updates loaded by createUpdates() for some ASs could be
+	 * selected from updates loaded for all ASs (see createView()). It's
+	 * possible only if updates are filtered just by AS sent them, and this AS
+	 * could be any of all ASs. Updates with full AS Path (loaded with RIBs,
+	 * but not correlated) are also filtered by ASs in AS Path. And biggest
+	 * connected component of visible ASs could be outside of biggest
+	 * component of all ASs. So such updates should be loaded separately.
+	 * 
+	 * @param useRIBs
+	 * @param componentOnly
+	 * @param correlated
+	 * @return
+	 */
+	public static boolean canCreateView(boolean useRIBs,
+			boolean componentOnly, boolean correlated) {
+		if (useRIBs) {
+			return correlated;
+		} else {
+			return !componentOnly;
+		}
+	}
+
+	/**
+	 * Selects updates from visibleASs from already loaded updates from all
+	 * (or more) ASs, so that files with updates and RIBs are read only once.
+	 * The result is the same as createUpdates() with the same parameters
+	 * would return, but spikes are shared with allUpdates.
+	 * 
+	 * allUpdates should be created by createUpdates() with the same
+	 * parameters for all ASs (see canCreateView()), but without
+	 * synchronisation. If synchronise is true, both allUpdates and the view
+	 * will be synchronised here.
+	 * 
+	 * @param allUpdates
+	 * @param useRIBs
+	 * @param componentOnly
+	 * @param correlated
+	 * @param visibleASs
+	 * @param synchronise
+	 * @return
+	 */
+	public Updates createView(Updates allUpdates, boolean useRIBs,
+			boolean componentOnly, boolean correlated, T visibleASs,
+			boolean synchronise) {
+		if (!canCreateView(useRIBs, componentOnly, correlated)) {
+			throw new IllegalArgumentException(
+					"These updates can't be selected from other updates");
+		}
+
+		// select pairs of ASs sent updates. Spikes are not copied, so the
+		// view needs almost no memory. But arrays of spikes of every pair are
+		// copied, if allUpdates will be synchronised for all pairs, and the
+		// view - only for its own pairs
+		ASSet viewASsNames = selectUpdatesASsNames(useRIBs, componentOnly,
+				correlated, visibleASs);
+		Map<MonitoredAS, SingleASspikes> viewSpikes = new HashMap<MonitoredAS, SingleASspikes>();
+		for (Map.Entry<MonitoredAS, SingleASspikes> pair : allUpdates
+				.getUpdateMap().entrySet()) {
+			if (viewASsNames.contains(pair.getKey().getMonitoredAS())) {
+				viewSpikes.put(pair.getKey(),
+						synchronise ? new SingleASspikes(pair.getValue())
+								: pair.getValue());
+			}
+		}
+		Updates view = new Updates(viewSpikes);
+
+		if (synchronise) {
+			view.synchronise();
+			allUpdates.synchronise();
 		}
 
 		// print out stats
 		int total = 0;
-		for (SingleASspikes spikes : updates.getUpdateMap().values()) {
+		for (SingleASspikes spikes : view.getUpdateMap().values()) {
 			total += spikes.getCurrentUpdateSum();
 		}
 
 		logger.info(total + " update messages from "
-				+ updates.getUpdateMap().keySet().size()
-				+ " monitored ASs loaded");
+				+ view.getUpdateMap().keySet().size()
+				+ " monitored ASs selected");
 
-		return updates;
+		return view;
+	}
+
+	/**
+	 * @return cache file for updates with given parameters or null, if input
+	 *         files can't be accessed
+	 */
+	private SpikeCache findSpikeCache(boolean useRIBs, boolean correlated,
+			ASSet updatesASsNames, ArrayList<String> inputRIBsFilenames,
+			ArrayList<String> inputUpdatesFilenames) {
+		// updates are filtered differently by every Updates subclass
+		String type = UpdatesFromVisibleASs.class.getSimpleName();
+		List<String> inputFilenames = new ArrayList<String>(
+				inputUpdatesFilenames);
+		if (useRIBs) {
+			type = correlated ? UpdatesFromVisibleASsWithOriginAS.class
+					.getSimpleName() : UpdatesWithVisibleAS_Path.class
+					.getSimpleName();
+			inputFilenames.addAll(inputRIBsFilenames);
+		}
+
+		try {
+			return new SpikeCache(spikeCacheFolder, type, updatesASsNames,
+					inputFilenames);
+		} catch (IOException e) {
+			logger.error("Cannot find spikes in cache", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return spikes from cache or null, if they are not there
+	 */
+	private SpikeCollection loadSpikeCache(SpikeCache cache) {
+		if (cache == null || !cache.exists()) {
+			return null;
+		}
+
+		try {
+			SpikeCollection spikes = new SpikeCollection();
+			if (cache.load(spikes)) {
+				logger.info("spikes loaded from " + cache.getFile());
+				return spikes;
+			}
+		} catch (IOException e) {
+			logger.error("Cannot read spikes from cache", e);
+		}
+		return null;
 	}
 }
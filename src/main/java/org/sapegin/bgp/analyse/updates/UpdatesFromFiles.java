@@ -0,0 +1,409 @@
+/*
+	 * Copyright 2013 Andrey Sapegin
+	 * 
+	 * Licensed under the "Attribution-NonCommercial-ShareAlike" Vizsage
+	 * Public License (the "License"). You may not use this file except
+	 * in compliance with the License. Roughly speaking, non-commercial
+	 * users may share and modify this code, but must give credit and 
+	 * share improvements. However, for proper details please 
+	 * read the full License, available at
+	 *  	http://vizsage.com/license/Vizsage-License-BY-NC-SA.html 
+	 * and the handy reference for understanding the full license at 
+	 *  	http://vizsage.com/license/Vizsage-Deed-BY-NC-SA.html
+	 *
+	 * Please contact the author for any other kinds of use.
+	 * 
+	 * Unless required by applicable law or agreed to in writing, any
+	 * software distributed under the License is distributed on an 
+	 * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, 
+	 * either express or implied. See the License for the specific 
+	 * language governing permissions and limitations under the License.
+	 *
+	 */
+package org.sapegin.bgp.analyse.updates;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.sapegin.bgp.analyse.ASSet;
+import org.sapegin.bgp.analyse.ribs.ASPathElement;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+
+/**
+ * 
+ * @author Andrey Sapegin
+ * 
+ *         This class reads BGP update messages from files and stores them.
+ *         Every subclass filters updates in its own way, see
+ *         {@link #readUpdates(int, String)}.
+ * 
+ */
+public abstract class UpdatesFromFiles extends Updates {
+
+	// time in Unix-time format - the moment in time, from which this class has
+	// started importing of updates from files
+	// it's needed for time synchronisation
+	// E.g., if there are 2 files with updates: in the first file first update
+	// timestamp is X; and in the second file - X+5 - minStartTime will be X+5.
+	// Thus all updates from input files before X+5 timestamp will be skipped
+	// and all imported updates will start from the same time moment.
+	protected long minStartTime;
+
+	protected ArrayList<String> inputUpdatesFilenames;
+
+	// only updates from ASs listed here will be imported from files
+	protected ASSet inputASs;
+
+	// threads to parse chunks of big files, exists only during readUpdates()
+	private volatile ExecutorService chunkExecutor;
+	// permits for parsed chunks of all files read at once, so that only
+	// several chunks are kept in memory for all of them
+	private volatile Semaphore chunkPermits;
+
+	// seconds, for which prefixes are stored, or null if they are stored for
+	// all seconds (see SelectiveIngest)
+	private SelectiveIngest selectiveIngest;
+
+	protected UpdatesFromFiles() {
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * Updates will be imported from files {inputUpdatesFilenames} ONLY for
+	 * ASs in {inputASs} list by readUpdates()
+	 * 
+	 * @param inputASsFilenames
+	 * @param inputASs
+	 */
+	public UpdatesFromFiles(ArrayList<String> inputUpdatesFilenames,
+			ASSet inputASs) {
+		this.inputUpdatesFilenames = inputUpdatesFilenames;
+		this.inputASs = inputASs;
+
+		allUpdates = new HashMap<MonitoredAS, SingleASspikes>();
+	}
+
+	/**
+	 * Prefixes will be stored by readUpdates() only for seconds selected by
+	 * selectiveIngest, spikes at all other seconds will only count them.
+	 * 
+	 * @param selectiveIngest
+	 */
+	void setSelectiveIngest(SelectiveIngest selectiveIngest) {
+		this.selectiveIngest = selectiveIngest;
+	}
+
+	/**
+	 * This method reads updates from all files in 'inputUpdatesFilenames'.
+	 * Files are read in parallel, one task per file (monitoring router), and
+	 * every task fills its own collection of spikes. The collections are
+	 * merged, when all files are read.
+	 * 
+	 * Before that, start time of all files is found (also in parallel), as
+	 * updates before the latest start time should be skipped in all files.
+	 * 
+	 * Big files are also split into chunks, which are parsed by separate
+	 * threads (see {@link #parseUpdates(String, PeerHandlers)}).
+	 */
+	protected void readUpdates() {
+		int cores = Runtime.getRuntime().availableProcessors();
+		int threads = Math.max(1,
+				Math.min(inputUpdatesFilenames.size(), cores));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+		// tasks of file threads wait for chunks, so chunks are parsed by
+		// other threads
+		chunkPermits = new Semaphore(cores + 1);
+		chunkExecutor = Executors.newFixedThreadPool(cores);
+
+		try {
+			findStartTime(executor);
+
+			// read all files
+			List<Future<FileSpikes>> files = new ArrayList<Future<FileSpikes>>();
+			for (int i = 0; i < inputUpdatesFilenames.size(); i++) {
+				final int fileIndex = i;
+				files.add(executor.submit(new Callable<FileSpikes>() {
+					@Override
+					public FileSpikes call() {
+						return readUpdates(fileIndex,
+								inputUpdatesFilenames.get(fileIndex));
+					}
+				}));
+			}
+
+			// merge spikes from all files
+			for (Future<FileSpikes> file : files) {
+				addAll(file.get());
+			}
+		} catch (InterruptedException e) {
+			logger.fatal("Interrupted during reading files with updates", e);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.fatal("Error during reading files with updates", e);
+		} finally {
+			executor.shutdown();
+			chunkExecutor.shutdown();
+			chunkExecutor = null;
+		}
+	}
+
+	/**
+	 * Reads updates from one file. Could be called by several threads at the
+	 * same time for different files, so it should not change anything
+	 * except objects used only for this file.
+	 * 
+	 * @param fileIndex
+	 *            - number of file in 'inputUpdatesFilenames'
+	 * @param inputUpdates
+	 *            - file name
+	 * @return spikes read from the file
+	 */
+	protected abstract FileSpikes readUpdates(int fileIndex,
+			String inputUpdates);
+
+	/**
+	 * Waits until RIB of monitoring router is loaded (see
+	 * {@link org.sapegin.bgp.analyse.ribs.RIBLoader}), so that updates of
+	 * every monitoring router could be read as soon as its own RIB is ready.
+	 * 
+	 * @param monitorRIBs
+	 *            - RIBs in the same order as files with updates
+	 * @param fileIndex
+	 *            - number of file in 'inputUpdatesFilenames'
+	 * @return RIB or null, if there is no RIB for the file or it could not be
+	 *         loaded
+	 */
+	protected <R> R waitForRIB(List<Future<R>> monitorRIBs, int fileIndex) {
+		String inputUpdates = inputUpdatesFilenames.get(fileIndex);
+
+		if (fileIndex >= monitorRIBs.size()) {
+			logger.error("No RIB for " + inputUpdates
+					+ ". Updates from this file will be skipped.");
+			return null;
+		}
+
+		try {
+			return monitorRIBs.get(fileIndex).get();
+		} catch (InterruptedException e) {
+			logger.fatal("Interrupted during waiting for RIB for "
+					+ inputUpdates, e);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.fatal("Error during loading RIB for " + inputUpdates
+					+ ". Updates from this file will be skipped.", e.getCause());
+		}
+		return null;
+	}
+
+	/**
+	 * Parses file with updates and passes its messages to handlers of peers.
+	 * Big uncompressed ASCII files are split into chunks and parsed in
+	 * parallel (see {@link ChunkedDumpParser}), other files are parsed
+	 * sequentially.
+	 * 
+	 * @param inputUpdates
+	 *            - file name
+	 * @param handlers
+	 * @throws IOException
+	 */
+	protected void parseUpdates(String inputUpdates, PeerHandlers handlers)
+			throws IOException {
+		ExecutorService executor = chunkExecutor;
+		if (executor != null) {
+			ChunkedDumpParser parser = new ChunkedDumpParser(executor,
+					ChunkedDumpParser.DEFAULT_CHUNK_SIZE, chunkPermits);
+			if (parser.canSplit(inputUpdates)) {
+				parser.parse(inputUpdates, handlers);
+				return;
+			}
+		}
+
+		InputStream in = DumpParser.open(inputUpdates);
+		try {
+			DumpParser.forUpdates(in).parse(in, new PeerRouter(handlers));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Creates handlers for messages of every peer in one file. Only messages
+	 * not earlier than minStartTime from ASs listed in 'inputASs' are passed
+	 * to handlers. Every handler should add prefixes to its own spikes (see
+	 * {@link #newPeerSpikes()}), which are merged by {@link #getSpikes()}.
+	 */
+	protected abstract class FileHandlers implements PeerHandlers {
+
+		protected final String inputUpdates;
+
+		// name of monitoring router (file name)
+		protected final String monitoringRouter;
+
+		private final ArrayList<FileSpikes> peerSpikes = new ArrayList<FileSpikes>();
+
+		protected FileHandlers(String inputUpdates) {
+			this.inputUpdates = inputUpdates;
+			this.monitoringRouter = new File(inputUpdates).getName();
+		}
+
+		@Override
+		public boolean isNeeded(long time, int peerAS) {
+			// skip message if time < minStartTime to synchronise files
+			if (time < minStartTime) {
+				return false;
+			}
+
+			if (!inputASs.contains(peerAS)) {
+				if (logger.isTraceEnabled()) {
+					logger.trace("Update from AS " + peerAS
+							+ ", not contained in inputASs list found in "
+							+ inputUpdates
+							+ ". Update message will be skipped.");
+				}
+				return false;
+			}
+
+			return true;
+		}
+
+		/**
+		 * creates spikes for handler of one peer
+		 */
+		protected FileSpikes newPeerSpikes() {
+			FileSpikes spikes = new FileSpikes(selectiveIngest);
+			peerSpikes.add(spikes);
+			return spikes;
+		}
+
+		/**
+		 * @return spikes of all peers in the file
+		 */
+		public FileSpikes getSpikes() {
+			FileSpikes spikes = new FileSpikes();
+			for (FileSpikes peer : peerSpikes) {
+				spikes.addAll(peer);
+			}
+			return spikes;
+		}
+	}
+
+	/**
+	 * Collection of spikes read from one file. Prefixes could be added to it
+	 * by any subclass of UpdatesFromFiles.
+	 */
+	protected static class FileSpikes extends SpikeCollection {
+
+		// seconds, for which prefixes are stored, or null
+		private final SelectiveIngest selectiveIngest;
+
+		public FileSpikes() {
+			this(null);
+		}
+
+		/**
+		 * @param selectiveIngest
+		 *            - if not null, prefixes are stored only for seconds
+		 *            selected by it
+		 */
+		public FileSpikes(SelectiveIngest selectiveIngest) {
+			this.selectiveIngest = selectiveIngest;
+		}
+
+		@Override
+		protected Spike newSpike(long updateTime) {
+			if (selectiveIngest != null
+					&& !selectiveIngest.keepsPrefixes(updateTime)) {
+				return Spike.countOnly();
+			}
+			return super.newSpike(updateTime);
+		}
+
+		@Override
+		public void addDestination(MonitoredAS monitoredAS, long updateTime,
+				int prefix, byte prefixLength, ASPathElement originAS) {
+			super.addDestination(monitoredAS, updateTime, prefix,
+					prefixLength, originAS);
+		}
+
+		@Override
+		public boolean addPrefix(MonitoredAS monitoredAS, long updateTime,
+				int prefix, byte prefixLength) {
+			return super.addPrefix(monitoredAS, updateTime, prefix,
+					prefixLength);
+		}
+	}
+
+	/**
+	 * This functions looks into every file with BGP updates and finds maximum
+	 * time among starting (first message) time in the files
+	 * 
+	 * @param executor
+	 *            - threads to read files
+	 */
+	private void findStartTime(ExecutorService executor)
+			throws InterruptedException {
+		// read time of first message from every file
+		List<Future<Long>> times = new ArrayList<Future<Long>>();
+		for (final String inputUpdates : inputUpdatesFilenames) {
+			times.add(executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws IOException {
+					InputStream in = DumpParser.open(inputUpdates);
+					try {
+						return DumpParser.forUpdates(in).readStartTime(in);
+					} finally {
+						in.close();
+					}
+				}
+			}));
+		}
+
+		// at the beginning maximum is 0
+		minStartTime = 0;
+
+		// go through all files with BGP updates
+		for (int i = 0; i < inputUpdatesFilenames.size(); i++) {
+			try {
+				long time = times.get(i).get();
+
+				if (time < 0) { // if file is empty or message is not ok
+					logger.fatal("File is empty or unexpected update message found! Filename: "
+							+ inputUpdatesFilenames.get(i));
+					continue;
+				}
+
+				// refresh maximum
+				if (time > minStartTime) {
+					minStartTime = time;
+				}
+
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof FileNotFoundException) {
+					logger.fatal(
+							"FileNotFound exception during reading files with updates during determining max start time",
+							e.getCause());
+				} else {
+					logger.fatal(
+							"IO exception during reading files with updates during determining max start time",
+							e.getCause());
+				}
+			}
+		}
+	}
+}
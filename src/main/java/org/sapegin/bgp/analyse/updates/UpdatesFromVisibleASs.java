@@ -22,15 +22,11 @@
 	 */
 package org.sapegin.bgp.analyse.updates;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
 
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.spikes.MonitoredAS;
 
 /**
@@ -42,14 +38,14 @@ import org.sapegin.bgp.analyse.spikes.MonitoredAS;
  *         specified AS names will be loaded from file.
  * 
  */
-public class UpdatesFromVisibleASs extends Updates {
+public class UpdatesFromVisibleASs extends UpdatesFromFiles {
 
 	protected UpdatesFromVisibleASs() {
 	}
 
 	// "package private" constructor
 	UpdatesFromVisibleASs(ArrayList<String> inputUpdatesFilenames,
-			ArrayList<Integer> visibleASsNames, boolean synchronise) {
+			ASSet visibleASsNames, boolean synchronise) {
 		super(inputUpdatesFilenames, visibleASsNames);
 	}
 
@@ -62,118 +58,109 @@ public class UpdatesFromVisibleASs extends Updates {
 		logger.info("loading updates from visible/monitored ASs ("
 				+ inputASs.size() + " ASs are used)...");
 
-		// for every filename
-		for (String inputUpdates : inputUpdatesFilenames) {
-			try {
-				File file = new File(inputUpdates);
-				FileReader fr = new FileReader(file);
-				BufferedReader br = new BufferedReader(fr);
-
-				boolean warning = false;
-				int prefixes = 0;
-				int samePrefixes = 0;
-
-				String str = br.readLine();
-
-				while (str != null) {
-
-					// check message format
-					if (!str.startsWith("BGP4MP|")) {
-						logger.warn("Update message does not start with 'BGP4MP|'. Skipping message...");
-						str = br.readLine();
-						continue;
-					}
-
-					// delete "BGP4MP|"
-					str = str.substring(7);
-
-					// get time
-					long updateTime;
-					try {
-						updateTime = Long.parseLong(str.substring(0,
-								str.indexOf("|")));
-					} catch (NumberFormatException e) {
-						logger.warn(
-								"Can't parse the time of update message! Message will be skipped.",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					// skip message if time < minStartTime to synchronise files
-					if (updateTime < this.minStartTime) {
-						str = br.readLine();
-						continue;
-					}
-
-					// get name (number) of AS sent the update message
-					for (int i = 0; i < 3; i++) { // skip '|' 3 times
-						str = str.substring(str.indexOf("|") + 1);
-					}
-					int nameAS;
-					try { // parse AS's name
-						nameAS = Integer.parseInt(str.substring(0,
-								str.indexOf("|")));
-					} catch (NumberFormatException e) {
-						logger.warn(
-								"Can't parse the name of AS, which has sent the update message! Message will be skipped.",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					if (!inputASs.contains(nameAS)) {
-						logger.trace("Update from AS " + nameAS
-								+ ", not contained in inputASs list found in "
-								+ inputUpdates
-								+ ". Update message will be skipped.");
-						str = br.readLine();
-						continue;
-					}
-
-					// add update to the map! //
-					MonitoredAS monitoredAS = new MonitoredAS(file.getName(),
-							nameAS);
-
-					InetAddress prefix;
-					try { // parse prefix
-						prefix = readPrefix(str);
-					} catch (UnknownHostException e) {
-						logger.error(
-								"Can't parse prefix. Update message will be skipped",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					// add prefix to the map!
-					if (!addPrefix(monitoredAS, updateTime, prefix)) { //if prefix already contained at this second from this AS.
-						if (!warning) { // if this warning is not yet issued for
+		super.readUpdates();
+	}
+
+	@Override
+	protected FileSpikes readUpdates(int fileIndex, String inputUpdates) {
+		Handlers handlers = new Handlers(inputUpdates);
+
+		try {
+			parseUpdates(inputUpdates, handlers);
+
+			int prefixes = 0;
+			int samePrefixes = 0;
+			for (UpdatesHandler handler : handlers.peers) {
+				prefixes += handler.prefixes;
+				samePrefixes += handler.samePrefixes;
+			}
+
+			logger.info("File " + inputUpdates + " readed. " + prefixes
+					+ " prefixes loaded including " + samePrefixes
+					+ " equal prefixes appeared the same second");
+
+		} catch (FileNotFoundException e) {
+			logger.fatal(
+					"FileNotFound exception during reading files with updates",
+					e);
+		} catch (IOException e) {
+			logger.fatal(
+					"IO exception during reading files with updates during",
+					e);
+		}
+
+		return handlers.getSpikes();
+	}
+
+	/**
+	 * Creates handlers for peers in one file
+	 */
+	private class Handlers extends FileHandlers {
+
+		private final ArrayList<UpdatesHandler> peers = new ArrayList<UpdatesHandler>();
+
+		// the same warning of all peers is issued only once for file
+		private volatile boolean warning = false;
+
+		Handlers(String inputUpdates) {
+			super(inputUpdates);
+		}
+
+		@Override
+		public BGP4MPHandler newHandler(int peerAS) {
+			UpdatesHandler handler = new UpdatesHandler(this, peerAS);
+			peers.add(handler);
+			return handler;
+		}
+
+		@Override
+		public void malformed(String reason) {
+			logger.warn(reason + " Message will be skipped.");
+		}
+	}
+
+	/**
+	 * Adds messages of one peer to the spikes of this peer
+	 */
+	private class UpdatesHandler implements BGP4MPHandler {
+
+		private final Handlers file;
+
+		private final MonitoredAS monitoredAS;
+
+		private final FileSpikes spikes;
+
+		private int prefixes = 0;
+		private int samePrefixes = 0;
+
+		UpdatesHandler(Handlers file, int peerAS) {
+			this.file = file;
+			this.monitoredAS = new MonitoredAS(file.monitoringRouter, peerAS);
+			this.spikes = file.newPeerSpikes();
+		}
+
+		@Override
+		public void message(long updateTime, byte type, int nameAS,
+				int prefix, byte prefixLength, byte[] line, int asPathStart,
+				int asPathEnd) {
+
+			// add prefix to the map!
+			// if prefix already contained at this second from this AS.
+			if (!spikes.addPrefix(monitoredAS, updateTime, prefix, prefixLength)) {
+				if (!file.warning) { // if this warning is not yet issued for
 										// this file
-							logger.warn("this prefix is already presented in this spike. This could be normal if the update dump contains several prefix updates (withdrawals/updates) from 1 AS at the same second");
-							logger.warn("this warning will be issued only once for this file");
-							warning = true;
-						}
-						samePrefixes++;
-					}
-					prefixes++;
-
-					str = br.readLine();
+					logger.warn("this prefix is already presented in this spike. This could be normal if the update dump contains several prefix updates (withdrawals/updates) from 1 AS at the same second");
+					logger.warn("this warning will be issued only once for this file");
+					file.warning = true;
 				}
-
-				logger.info("File "+inputUpdates+" readed. "+prefixes+" prefixes loaded including "+samePrefixes+" equal prefixes appeared the same second");
-				
-				fr.close();
-
-			} catch (FileNotFoundException e) {
-				logger.fatal(
-						"FileNotFound exception during reading files with updates",
-						e);
-			} catch (IOException e) {
-				logger.fatal(
-						"IO exception during reading files with updates during",
-						e);
+				samePrefixes++;
 			}
+			prefixes++;
+		}
+
+		@Override
+		public void malformed(String reason) {
+			// malformed messages are not assigned to peers, see Handlers
 		}
 	}
 }
@@ -22,16 +22,13 @@
 	 */
 package org.sapegin.bgp.analyse.updates;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
 
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.ribs.ASPath;
 import org.sapegin.bgp.analyse.ribs.ASPathElement;
 import org.sapegin.bgp.analyse.ribs.OriginsOnlyRIB;
@@ -47,16 +44,17 @@ import org.sapegin.bgp.analyse.spikes.MonitoredAS;
  *         specified AS names will be loaded from file.
  * 
  */
-public class UpdatesFromVisibleASsWithOriginAS extends Updates {
+public class UpdatesFromVisibleASsWithOriginAS extends UpdatesFromFiles {
 
 	protected UpdatesFromVisibleASsWithOriginAS() {
 	}
 
-	private ArrayList<OriginsOnlyRIB> monitorRIBs;
+	// RIBs are still loading, while updates are read (see RIBLoader)
+	private List<Future<OriginsOnlyRIB>> monitorRIBs;
 
 	// "package visible" constructor
 	UpdatesFromVisibleASsWithOriginAS(ArrayList<String> inputUpdatesFilenames,
-			ArrayList<OriginsOnlyRIB> monitorRIBs, ArrayList<Integer> visibleASsNames,
+			List<Future<OriginsOnlyRIB>> monitorRIBs, ASSet visibleASsNames,
 			boolean synchronise) {
 		super(inputUpdatesFilenames, visibleASsNames);
 		this.monitorRIBs = monitorRIBs;
@@ -67,162 +65,144 @@ public class UpdatesFromVisibleASsWithOriginAS extends Updates {
 		logger.info("loading updates from only visible/monitored ASs in AS Path ("
 				+ inputASs.size() + " ASs are used)...");
 
-		// for every filename
-		// and for every router RIB
-		Iterator<String> filenames = inputUpdatesFilenames.iterator();
-		Iterator<OriginsOnlyRIB> ribs = monitorRIBs.iterator();
-		while (filenames.hasNext() && ribs.hasNext()) {
-			String inputUpdates = filenames.next();
-			OriginsOnlyRIB rib = ribs.next();
-			
-			logger.info("loading updates from "+inputUpdates+"...");
-			
-			try {
-				File file = new File(inputUpdates);
-				FileReader fr = new FileReader(file);
-				BufferedReader br = new BufferedReader(fr);
-
-				String str = br.readLine();
-				
-				int updates_total = 0;
-				int updates_read = 0;
-
-				while (str != null) {
-					
-					updates_total++;
-					
-					// check message format
-					if (!str.startsWith("BGP4MP|")) {
-						logger.trace("Update message does not start with 'BGP4MP|'. Skipping message...");
-						str = br.readLine();
-						continue;
-					}
-
-					// delete "BGP4MP|"
-					str = str.substring(7);
-
-					// get time
-					long updateTime;
-					try {
-						updateTime = Long.parseLong(str.substring(0,
-								str.indexOf("|")));
-					} catch (NumberFormatException e) {
-						logger.trace(
-								"Can't parse the time of update message! Message will be skipped.",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					// skip message if time < minStartTime to synchronise files
-					if (updateTime < this.minStartTime) {
-						str = br.readLine();
-						continue;
-					}
-
-					// get message type (announcement / withdrawal)
-					str = str.substring(str.indexOf("|") + 1); // delete time
-					String type = str.substring(0, str.indexOf("|"));
-
-					// get name (number) of AS sent the update message
-					str = str.substring(str.indexOf("|") + 1); // delete type
-					str = str.substring(str.indexOf("|") + 1); // delete AS IP
-																// address
-					int nameAS;
-					try { // parse AS's name
-						nameAS = Integer.parseInt(str.substring(0,
-								str.indexOf("|")));
-					} catch (NumberFormatException e) {
-						logger.trace(
-								"Can't parse the name of AS, which has sent the update message! Message will be skipped.",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					if (!inputASs.contains(nameAS)) {
-						logger.trace("Update from AS " + nameAS
-								+ ", not contained in inputASs list found in "
-								+ inputUpdates
-								+ ". Update message will be skipped.");
-						str = br.readLine();
-						continue;
-					}
-
-					// parse prefix
-					InetAddress prefix;
-					try { // parse prefix
-						prefix = readPrefix(str);
-					} catch (UnknownHostException e) {
-						logger.trace(
-								"Can't parse prefix. Update message will be skipped",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					// read origin AS from AS path
-					ASPathElement originAS = null;
-					if (type.equals("A")) { // if update type is announcement,
-											// there should be AS Path
-
-						str = str.substring(str.indexOf("|") + 1); // delete AS
-						// name
-						str = str.substring(str.indexOf("|") + 1); // delete
-						// prefix
-						String ases = str.substring(0, str.indexOf("|"));
-
-						originAS = new ASPath(ases).getOriginAS();
-
-					} else if (type.equals("W")) { // if it's a withdrawal - try
-													// to get AS Path from RIB
-						originAS = rib.getWithdwalOrigin(nameAS, new Destination(
-								prefix));
-					} else {
-						logger.trace("Update message type is not W or A!. Message will be skipped!");
-						str = br.readLine();
-						continue;
-					}
-
-					// check if AS Path was not empty
-					if (originAS == null) {
-						logger.trace("Empty originAS loaded. Message will be skipped!");
-						str = br.readLine();
-						continue;
-					}
-
-					// apply update to RIB
-					if (type.equals("W")) {
-						rib.withdrawOrigin(nameAS, new Destination(prefix));
-					} else if (type.equals("A")) {
-						rib.announceOrigin(nameAS, new Destination(prefix), originAS);
-					}
-
-					// add prefix with origin to the map
-					MonitoredAS monitoredAS = new MonitoredAS(file.getName(),
-							nameAS);
-					addDestination(monitoredAS, updateTime, new Destination(
-							prefix, originAS));
-
-					updates_read++;
-					
-					str = br.readLine();
-				}
-				
-				logger.info(updates_read+" of "+updates_total+" loaded from file.");
-				
-				br.close();
-				fr.close();
-
-			} catch (FileNotFoundException e) {
-				logger.fatal(
-						"FileNotFound exception during reading files with updates",
-						e);
-			} catch (IOException e) {
-				logger.fatal(
-						"IO exception during reading files with updates during",
-						e);
+		super.readUpdates();
+	}
+
+	@Override
+	protected FileSpikes readUpdates(int fileIndex, String inputUpdates) {
+		// every file has its own router RIB
+		OriginsOnlyRIB rib = waitForRIB(monitorRIBs, fileIndex);
+		if (rib == null) {
+			return new FileSpikes();
+		}
+
+		logger.info("loading updates from " + inputUpdates + "...");
+
+		Handlers handlers = new Handlers(inputUpdates, rib);
+
+		try {
+			parseUpdates(inputUpdates, handlers);
+
+			int updates_read = 0;
+			for (UpdatesHandler handler : handlers.peers) {
+				updates_read += handler.updates_read;
+			}
+
+			logger.info(updates_read + " updates loaded from file "
+					+ inputUpdates + ", " + handlers.updates_malformed
+					+ " malformed updates skipped.");
+
+		} catch (FileNotFoundException e) {
+			logger.fatal(
+					"FileNotFound exception during reading files with updates",
+					e);
+		} catch (IOException e) {
+			logger.fatal(
+					"IO exception during reading files with updates during",
+					e);
+		}
+
+		return handlers.getSpikes();
+	}
+
+	/**
+	 * Creates handlers for peers in one file
+	 */
+	private class Handlers extends FileHandlers {
+
+		private final OriginsOnlyRIB rib;
+
+		private final ArrayList<UpdatesHandler> peers = new ArrayList<UpdatesHandler>();
+
+		private int updates_malformed = 0;
+
+		Handlers(String inputUpdates, OriginsOnlyRIB rib) {
+			super(inputUpdates);
+			this.rib = rib;
+		}
+
+		@Override
+		public BGP4MPHandler newHandler(int peerAS) {
+			UpdatesHandler handler = new UpdatesHandler(this, peerAS);
+			peers.add(handler);
+			return handler;
+		}
+
+		@Override
+		public void malformed(String reason) {
+			updates_malformed++;
+
+			if (logger.isTraceEnabled()) {
+				logger.trace(reason + " Message will be skipped.");
+			}
+		}
+	}
+
+	/**
+	 * Applies messages of one peer to the RIB and adds them to the spikes of
+	 * this peer
+	 */
+	private class UpdatesHandler implements BGP4MPHandler {
+
+		private final OriginsOnlyRIB rib;
+
+		private final MonitoredAS monitoredAS;
+
+		private final FileSpikes spikes;
+
+		private int updates_read = 0;
+
+		UpdatesHandler(Handlers file, int peerAS) {
+			this.rib = file.rib;
+			this.monitoredAS = new MonitoredAS(file.monitoringRouter, peerAS);
+			this.spikes = file.newPeerSpikes();
+		}
+
+		@Override
+		public void message(long updateTime, byte type, int nameAS,
+				int prefix, byte prefixLength, byte[] line, int asPathStart,
+				int asPathEnd) {
+
+			Destination destination = new Destination(prefix, prefixLength);
+
+			// read origin AS from AS path
+			ASPathElement originAS = null;
+			if (type == 'A') { // if update type is announcement,
+								// there should be AS Path
+				originAS = new ASPath(line, asPathStart, asPathEnd)
+						.getOriginAS();
+
+			} else if (type == 'W') { // if it's a withdrawal - try
+										// to get AS Path from RIB
+				originAS = rib.getWithdwalOrigin(nameAS, destination);
+			} else {
+				logger.trace("Update message type is not W or A!. Message will be skipped!");
+				return;
 			}
+
+			// check if AS Path was not empty
+			if (originAS == null) {
+				logger.trace("Empty originAS loaded. Message will be skipped!");
+				return;
+			}
+
+			// apply update to RIB
+			if (type == 'W') {
+				rib.withdrawOrigin(nameAS, destination);
+			} else {
+				rib.announceOrigin(nameAS, destination, originAS);
+			}
+
+			// add prefix with origin to the map
+			spikes.addDestination(monitoredAS, updateTime, prefix,
+					prefixLength, originAS);
+
+			updates_read++;
+		}
+
+		@Override
+		public void malformed(String reason) {
+			// malformed messages are not assigned to peers, see Handlers
 		}
 	}
 }
@@ -28,7 +28,6 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
-import org.sapegin.bgp.analyse.spikes.Destination;
 import org.sapegin.bgp.analyse.spikes.MonitoredAS;
 import org.sapegin.bgp.analyse.spikes.SingleASspikes;
 import org.sapegin.bgp.analyse.spikes.Spike;
@@ -91,44 +90,39 @@ public class UpdatesSelector extends Thread {
 				continue;
 			}
 
-			for (Long time = spikes.getCurrentMinTime(); time <= spikes
-					.getCurrentMaxTime(); time++) {
-				if (spikes.hasSpikeAtTime(time)) {
-
-					int size = spikes.getSpikeAtTime(time).getSpikeSize();
-					if ((size < maxSize) && (size >= minSize)) {// select spike
-
-						// Attention! this part of code
-						// "contains a sequence of calls to a concurrent" hash
-						// map. However, it should not be a problem since
-						// different threads work with different monitoredASs
-
-						// check if there are already selected spikes from this
-						// monitoredAS
-						if (!selectedSpikesWithPredefinedSize
-								.containsKey(monitoredAS)) {
-							// create hash map entry for monitoredAS with empty
-							// spikes
-							// I will add spikes at the code below
-							selectedSpikesWithPredefinedSize.put(monitoredAS,
-									new SingleASspikes());// need
-							// to
-							// copy
-							// monitoredAS?
-						}
-
-						// copy spike object
-						ArrayList<Destination> destinations = spikes
-								.getSpikeAtTime(time).copyPrefixSet();
-						Spike selectedSpike = new Spike(destinations);
-
-						// add spike to selected (entry with monitored AS is
-						// already created)
-						selectedSpikesWithPredefinedSize.get(monitoredAS)
-								.addSpike(time, selectedSpike);
-
-						selected++;
+			for (int index = 0; index < spikes.getNumberOfSpikes(); index++) {
+				long time = spikes.getTime(index);
+				int size = spikes.getSpike(index).getSpikeSize();
+				if ((size < maxSize) && (size >= minSize)) {// select spike
+
+					// Attention! this part of code
+					// "contains a sequence of calls to a concurrent" hash
+					// map. However, it should not be a problem since
+					// different threads work with different monitoredASs
+
+					// check if there are already selected spikes from this
+					// monitoredAS
+					if (!selectedSpikesWithPredefinedSize
+							.containsKey(monitoredAS)) {
+						// create hash map entry for monitoredAS with empty
+						// spikes
+						// I will add spikes at the code below
+						selectedSpikesWithPredefinedSize.put(monitoredAS,
+								new SingleASspikes());// need
+						// to
+						// copy
+						// monitoredAS?
 					}
+
+					// copy spike object
+					Spike selectedSpike = new Spike(spikes.getSpike(index));
+
+					// add spike to selected (entry with monitored AS is
+					// already created)
+					selectedSpikesWithPredefinedSize.get(monitoredAS)
+							.addSpike(time, selectedSpike);
+
+					selected++;
 				}
 			}
 		}
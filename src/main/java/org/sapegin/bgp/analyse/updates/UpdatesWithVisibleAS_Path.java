@@ -22,16 +22,13 @@
 	 */
 package org.sapegin.bgp.analyse.updates;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
 
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.ribs.ASPath;
 import org.sapegin.bgp.analyse.ribs.RIB;
 import org.sapegin.bgp.analyse.spikes.Destination;
@@ -47,15 +44,16 @@ import org.sapegin.bgp.analyse.spikes.MonitoredAS;
  *         will be loaded from file.
  * 
  */
-public class UpdatesWithVisibleAS_Path extends Updates {
+public class UpdatesWithVisibleAS_Path extends UpdatesFromFiles {
 
-	private ArrayList<RIB> monitorRIBs;
+	// RIBs are still loading, while updates are read (see RIBLoader)
+	private List<Future<RIB>> monitorRIBs;
 
 	protected UpdatesWithVisibleAS_Path(){}
 	
 	// "package private" constructor
 	UpdatesWithVisibleAS_Path(ArrayList<String> inputUpdatesFilenames,
-			ArrayList<RIB> monitorRIBs, ArrayList<Integer> visibleASsNames, boolean synchronise) {
+			List<Future<RIB>> monitorRIBs, ASSet visibleASsNames, boolean synchronise) {
 		super(inputUpdatesFilenames, visibleASsNames); // read updates
 		
 		this.monitorRIBs = monitorRIBs;
@@ -69,149 +67,121 @@ public class UpdatesWithVisibleAS_Path extends Updates {
 	@Override
 	protected void readUpdates() {
 		logger.info("loading updates from only visible/monitored ASs in AS Path (" +inputASs.size()+  " ASs are used)...");
-		
-		// for every filename
-		// and for every router RIB
-		Iterator<String> filenames = inputUpdatesFilenames.iterator();
-		Iterator<RIB> ribs = monitorRIBs.iterator();
-		while (filenames.hasNext() && ribs.hasNext()) {
-			String inputUpdates = filenames.next();
-			RIB rib = ribs.next();
-
-			try {
-				File file = new File(inputUpdates);
-				FileReader fr = new FileReader(file);
-				BufferedReader br = new BufferedReader(fr);
-
-				String str = br.readLine();
-
-				while (str != null) {
-
-					// check message format
-					if (!str.startsWith("BGP4MP|")) {
-						logger.warn("Update message does not start with 'BGP4MP|'. Skipping message...");
-						str = br.readLine();
-						continue;
-					}
-
-					// delete "BGP4MP|"
-					str = str.substring(7);
-
-					// get time
-					long updateTime;
-					try {
-						updateTime = Long.parseLong(str.substring(0,
-								str.indexOf("|")));
-					} catch (NumberFormatException e) {
-						logger.warn(
-								"Can't parse the time of update message! Message will be skipped.",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					// skip message if time < minStartTime to synchronise files
-					if (updateTime < this.minStartTime) {
-						str = br.readLine();
-						continue;
-					}
-
-					// get message time (announcement / withdrawal)
-					str = str.substring(str.indexOf("|") + 1); // delete time
-					String type = str.substring(0, str.indexOf("|"));
-
-					// get name (number) of AS sent the update message
-					str = str.substring(str.indexOf("|") + 1); // delete type
-					str = str.substring(str.indexOf("|") + 1); // delete AS IP
-																// address
-					int nameAS;
-					try { // parse AS's name
-						nameAS = Integer.parseInt(str.substring(0,
-								str.indexOf("|")));
-					} catch (NumberFormatException e) {
-						logger.warn(
-								"Can't parse the name of AS, which has sent the update message! Message will be skipped.",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					if (!inputASs.contains(nameAS)) {
-						logger.trace("Update from AS "
-								+ nameAS
-								+ ", not contained in inputASs list found in "+ inputUpdates +". Update message will be skipped.");
-						str = br.readLine();
-						continue;
-					}
-
-					// parse prefix
-					InetAddress prefix;
-					try { // parse prefix
-						prefix = readPrefix(str);
-					} catch (UnknownHostException e) {
-						logger.error(
-								"Can't parse prefix. Update message will be skipped",
-								e);
-						str = br.readLine();
-						continue;
-					}
-
-					// read AS path
-					ASPath asPath;
-					if (type.equals("A")) { // if update type is announcement,
-											// there should be AS Path
-						str = str.substring(str.indexOf("|") + 1); // delete AS
-						// name
-						str = str.substring(str.indexOf("|") + 1); // delete
-						// prefix
-						String ases = str.substring(0, str.indexOf("|"));
-						
-						asPath = new ASPath(ases);
-					} else if (type.equals("W")) { // if it's a withdrawal - try
-													// to get AS Path from RIB
-						asPath = rib.getWithdwalASPath(nameAS, new Destination(prefix));
-					} else {
-						logger.warn("Update message type is not W or A!. Message will be skipped!");
-						str = br.readLine();
-						continue;
-					}
-
-					// check if AS Path is not empty
-					if (asPath == null) {
-						logger.trace("Empty AS Path loaded. Message will be skipped!");
-						str = br.readLine();
-						continue;
-					}
-
-					// check if AS Path consists ONLY from VisibleASs
-					if (inputASs.containsAll(asPath.getASList())) { // if yes, then
-						// add prefix to the map!!!
-						MonitoredAS monitoredAS = new MonitoredAS(file.getName(),
-								nameAS);
-						addPrefix(monitoredAS, updateTime, prefix);
-					}
-
-					// apply update to RIB
-					if (type.equals("W")) {
-						rib.withdraw(nameAS, new Destination(prefix));
-					} else if (type.equals("A")) {
-						rib.announce(nameAS, new Destination(prefix), asPath);
-					}
-
-					str = br.readLine();
-				}
-
-				fr.close();
-
-			} catch (FileNotFoundException e) {
-				logger.fatal(
-						"FileNotFound exception during reading files with updates",
-						e);
-			} catch (IOException e) {
-				logger.fatal(
-						"IO exception during reading files with updates during",
-						e);
+
+		super.readUpdates();
+	}
+
+	@Override
+	protected FileSpikes readUpdates(int fileIndex, String inputUpdates) {
+		// every file has its own router RIB
+		RIB rib = waitForRIB(monitorRIBs, fileIndex);
+		if (rib == null) {
+			return new FileSpikes();
+		}
+
+		Handlers handlers = new Handlers(inputUpdates, rib);
+
+		try {
+			parseUpdates(inputUpdates, handlers);
+
+		} catch (FileNotFoundException e) {
+			logger.fatal(
+					"FileNotFound exception during reading files with updates",
+					e);
+		} catch (IOException e) {
+			logger.fatal(
+					"IO exception during reading files with updates during",
+					e);
+		}
+
+		return handlers.getSpikes();
+	}
+
+	/**
+	 * Creates handlers for peers in one file
+	 */
+	private class Handlers extends FileHandlers {
+
+		private final RIB rib;
+
+		Handlers(String inputUpdates, RIB rib) {
+			super(inputUpdates);
+			this.rib = rib;
+		}
+
+		@Override
+		public BGP4MPHandler newHandler(int peerAS) {
+			return new UpdatesHandler(this, peerAS);
+		}
+
+		@Override
+		public void malformed(String reason) {
+			logger.warn(reason + " Message will be skipped.");
+		}
+	}
+
+	/**
+	 * Applies messages of one peer to the RIB and adds them to the spikes of
+	 * this peer
+	 */
+	private class UpdatesHandler implements BGP4MPHandler {
+
+		private final RIB rib;
+
+		private final MonitoredAS monitoredAS;
+
+		private final FileSpikes spikes;
+
+		UpdatesHandler(Handlers file, int peerAS) {
+			this.rib = file.rib;
+			this.monitoredAS = new MonitoredAS(file.monitoringRouter, peerAS);
+			this.spikes = file.newPeerSpikes();
+		}
+
+		@Override
+		public void message(long updateTime, byte type, int nameAS,
+				int prefix, byte prefixLength, byte[] line, int asPathStart,
+				int asPathEnd) {
+
+			Destination destination = new Destination(prefix, prefixLength);
+
+			// read AS path
+			ASPath asPath;
+			if (type == 'A') { // if update type is announcement,
+								// there should be AS Path
+				asPath = new ASPath(line, asPathStart, asPathEnd);
+			} else if (type == 'W') { // if it's a withdrawal - try
+										// to get AS Path from RIB
+				asPath = rib.getWithdwalASPath(nameAS, destination);
+			} else {
+				logger.warn("Update message type is not W or A!. Message will be skipped!");
+				return;
+			}
+
+			// check if AS Path is not empty
+			if (asPath == null) {
+				logger.trace("Empty AS Path loaded. Message will be skipped!");
+				return;
+			}
+
+			// check if AS Path consists ONLY from VisibleASs
+			if (inputASs.containsAll(asPath.getASList())) { // if yes, then
+				// add prefix to the map!!!
+				spikes.addPrefix(monitoredAS, updateTime, prefix,
+						prefixLength);
+			}
+
+			// apply update to RIB
+			if (type == 'W') {
+				rib.withdraw(nameAS, destination);
+			} else {
+				rib.announce(nameAS, destination, asPath);
 			}
 		}
+
+		@Override
+		public void malformed(String reason) {
+			// malformed messages are not assigned to peers, see Handlers
+		}
 	}
 }
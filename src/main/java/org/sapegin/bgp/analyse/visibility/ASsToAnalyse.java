@@ -39,6 +39,7 @@ import org.apache.log4j.Logger;
 import org.jgrapht.ext.DOTExporter;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleGraph;
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.AutonomousSystemsGraph;
 import org.sapegin.bgp.analyse.InternetMap;
@@ -89,7 +90,7 @@ public abstract class ASsToAnalyse extends AutonomousSystemsGraph {
 			// for every neighbour of concerned AS
 			for (Integer neighbour : neighbours) {
 				// check if the neighbour is monitored
-				if (realASsNames.getASsNames().contains(neighbour)) {
+				if (realASsNames.getASsSet().contains(neighbour)) {
 					monitoredNeighbours++; // increment number of monitored
 											// neighbours
 				}
@@ -130,7 +131,7 @@ public abstract class ASsToAnalyse extends AutonomousSystemsGraph {
 		// for every neighbour of concerned AS
 		for (Integer neighbour : neighbours) {
 			// check if the neighbour is monitored
-			if (realASsNames.getASsNames().contains(neighbour)) {
+			if (realASsNames.getASsSet().contains(neighbour)) {
 				monitoredNeighbours++; // increment number of monitored
 										// neighbours
 			}
@@ -150,26 +151,19 @@ public abstract class ASsToAnalyse extends AutonomousSystemsGraph {
 	/**
 	 * Getter returning visible AS names
 	 * 
-	 * @return ArrayList&lt;Integer&gt; - array list with names (integer
-	 *         numbers) of visible (according to visibilityPercent) ASs
+	 * @return ASSet - set with names (integer numbers) of visible (according
+	 *         to visibilityPercent) ASs
 	 */
-	public ArrayList<Integer> getVisibleASsNames() {
-		ArrayList<Integer> vASs = new ArrayList<Integer>();
-		for (Integer name : graphAS.vertexSet()) {
-			vASs.add(name);
-		}
-
-		return vASs;
+	public ASSet getVisibleASsNames() {
+		return new ASSet(graphAS.vertexSet());
 	}
 
 	/**
 	 * finds biggest connected component of AS graph and returns list of ASs in
 	 * this component.
 	 */
-	public ArrayList<Integer> getASsNamesFromBiggestConnectedGraphComponent() {
-		ArrayList<Integer> result = new ArrayList<Integer>();
-		result.addAll(getBiggestConnectedGraphComponent().vertexSet());
-		return result;
+	public ASSet getASsNamesFromBiggestConnectedGraphComponent() {
+		return new ASSet(getBiggestConnectedGraphComponent().vertexSet());
 	}
 
 	/**
@@ -34,6 +34,7 @@ import org.sapegin.bgp.analyse.AnalyseSpikesTask;
 import org.sapegin.bgp.analyse.Colours;
 import org.sapegin.bgp.analyse.MyDirectIntegerVertexNameProvider;
 import org.sapegin.bgp.analyse.generics.ASsFactory;
+import org.sapegin.bgp.analyse.updates.SelectiveIngest;
 import org.sapegin.bgp.analyse.updates.Updates;
 import org.sapegin.bgp.analyse.updates.UpdatesFactory;
 
@@ -95,15 +96,6 @@ public class AnalyseVisibleSpikesTask<T extends ASsToAnalyse> extends
 				"groups_graphs");
 		this.colours = new Colours(properties.getProperty("gnuplot_colours"));
 
-		// load updates
-		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>();
-
-		logger.info("loading updates...");
-
-		this.allUpdates = updatesFactory.createUpdates(useRIBs,
-				inputRIBsFilenames, componentOnly, correlated, visibleASs,
-				inputUpdatesFilenames, synchronise);
-
 		// not equals 0 if the task is to analyse some random spikes
 		this.numberOfSpikesToAnalyse = Integer.parseInt(properties.getProperty(
 				"number_of_random_spikes_to_analyse_for_each_size_interval",
@@ -116,6 +108,25 @@ public class AnalyseVisibleSpikesTask<T extends ASsToAnalyse> extends
 					"0"));
 			this.spikeMonitor = properties.getProperty("spike_monitor", "");
 		}
+
+		// load updates
+		UpdatesFactory<ASsToAnalyse> updatesFactory = new UpdatesFactory<ASsToAnalyse>(
+				ribThreads, ribMemoryReserve, ribSnapshots,
+				spikeCacheFolder);
+		// random spikes are selected from sizeIntervals, or the single given
+		// spike is analysed
+		SelectiveIngest selectiveIngest = newSelectiveIngest(sizeIntervals);
+		if (selectiveIngest != null && this.numberOfSpikesToAnalyse == 0) {
+			selectiveIngest.addAnalysedTime(spikeTime);
+		}
+		updatesFactory.setSelectiveIngest(selectiveIngest);
+
+		logger.info("loading updates...");
+
+		this.allUpdates = updatesFactory.createUpdates(useRIBs,
+				inputRIBsFilenames, componentOnly, correlated, visibleASs,
+				inputUpdatesFilenames, synchronise);
+
 	}
 
 	/**
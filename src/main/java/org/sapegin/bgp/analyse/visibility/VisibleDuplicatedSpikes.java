@@ -75,10 +75,10 @@ public class VisibleDuplicatedSpikes<T extends ASsToAnalyse> {
 						+ sizeInterval.getMaxSize() + "...");
 
 				// get all spikes with sizes from sizeInterval
-				SelectedSpikes selectedSpikes = new SelectedSpikes(
-						allUpdates.getSpikesWithPredefinedSize(
+				SelectedSpikes selectedSpikes = allUpdates
+						.selectSpikesWithPredefinedSize(
 								sizeInterval.getMinSize(),
-								sizeInterval.getMaxSize(), 2));
+								sizeInterval.getMaxSize());
 
 				// randomly select several spikes for analysis
 				Map<MonitoredAS, SingleASspikes> selectedRandomSpikes = selectedSpikes
@@ -88,19 +88,16 @@ public class VisibleDuplicatedSpikes<T extends ASsToAnalyse> {
 				for (MonitoredAS as : selectedRandomSpikes.keySet()) {
 					SingleASspikes oneSecondSpikes = selectedRandomSpikes
 							.get(as);
-					for (long time = oneSecondSpikes.getCurrentMinTime(); time <= oneSecondSpikes
-							.getCurrentMaxTime(); time++) {
-						if (oneSecondSpikes.hasSpikeAtTime(time)) {
+					for (int i = 0; i < oneSecondSpikes.getNumberOfSpikes(); i++) {
+						long time = oneSecondSpikes.getTime(i);
+						Spike spike = oneSecondSpikes.getSpike(i);
 
-							Spike spike = oneSecondSpikes.getSpikeAtTime(time);
+						// find a group of spikes duplicated with the given
+						DuplicatedSpikesGroup dGroup = new DuplicatedSpikesGroup(
+								as, spike, time, allUpdates, iMap,
+								timeBuffer, duplicationPercentage);
 
-							// find a group of spikes duplicated with the given
-							DuplicatedSpikesGroup dGroup = new DuplicatedSpikesGroup(
-									as, spike, time, allUpdates, iMap,
-									timeBuffer, duplicationPercentage);
-
-							groups.add(dGroup);
-						}
+						groups.add(dGroup);
 					}
 				}
 			}
@@ -0,0 +1,56 @@
+package org.sapegin.bgp.analyse.tests.analyse;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ASSet;
+
+public class ASSetTest {
+
+	@Test
+	public void testContains() {
+		ArrayList<Integer> ases = new ArrayList<Integer>(Arrays.asList(3356,
+				13101, 0, 65535, 65536, 200000, 3356, Integer.MAX_VALUE));
+		for (int i = 1; i < 1000; i++) {
+			ases.add(400000 + i * 7);
+		}
+
+		ASSet set = new ASSet(ases);
+
+		assertEquals(ases.size() - 1, set.size());
+		for (Integer as : ases) {
+			assertTrue(set.contains(as.intValue()));
+			assertTrue(set.contains(as));
+		}
+
+		assertFalse(set.contains(1));
+		assertFalse(set.contains(65534));
+		assertFalse(set.contains(65537));
+		assertFalse(set.contains(400001));
+		assertFalse(set.contains(-1));
+		assertFalse(set.contains("3356"));
+
+		assertTrue(set.containsAll(Arrays.asList(3356, 200000)));
+		assertFalse(set.containsAll(Arrays.asList(3356, 200001)));
+	}
+
+	@Test
+	public void testIteration() {
+		ASSet set = new ASSet(Arrays.asList(200000, 12, 3356, 12));
+
+		assertArrayEquals(new int[] { 12, 3356, 200000 }, set.toIntArray());
+		assertEquals(Arrays.asList(12, 3356, 200000), new ArrayList<Integer>(
+				set));
+
+		assertSame(set, ASSet.of(set));
+		assertEquals(set, ASSet.of(Arrays.asList(12, 3356, 200000)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutable() {
+		new ASSet(Arrays.asList(1, 2)).add(3);
+	}
+}
@@ -4,6 +4,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.tests.BasicTest;
@@ -69,6 +76,7 @@ public class InternetMapTest extends BasicTest{
 		assertTrue(success);
 	}
 	
+	@Test
 	public void testDistanceCalculation() throws Exception{
 		InternetMap map = new InternetMap(properties.getProperty("map"), null, null, null);
 		
@@ -79,4 +87,31 @@ public class InternetMapTest extends BasicTest{
 		assertEquals((byte) 5, (byte) map.getInternetDistanceBFS(16445, 14444));
 		assertEquals((byte) 2, (byte) map.getInternetDistanceBFS(1525, 13101));
 	}
+
+	@Test
+	public void testSharedDistances() throws Exception {
+		final InternetMap map = new InternetMap(properties.getProperty("map"),
+				null, null, null);
+
+		// the same map is used by several threads at once
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Byte>> distances = new ArrayList<Future<Byte>>();
+		for (int i = 0; i < 100; i++) {
+			distances.add(executor.submit(new Callable<Byte>() {
+				@Override
+				public Byte call() {
+					return map.getInternetDistanceBFS(16445, 14444);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		for (Future<Byte> distance : distances) {
+			assertEquals((byte) 5, (byte) distance.get());
+		}
+
+		assertEquals((byte) 0, (byte) map.getInternetDistanceBFS(1001, 1001));
+		// AS is not in the map
+		assertEquals((byte) 127, (byte) map.getInternetDistanceBFS(1001, 5));
+	}
 }
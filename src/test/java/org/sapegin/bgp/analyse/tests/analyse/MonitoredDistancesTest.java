@@ -0,0 +1,64 @@
+package org.sapegin.bgp.analyse.tests.analyse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.InternetMap;
+import org.sapegin.bgp.analyse.MonitoredDistances;
+import org.sapegin.bgp.analyse.tests.BasicTest;
+
+public class MonitoredDistancesTest extends BasicTest {
+
+	@Test
+	public void testMonitoredDistances() throws Exception {
+		InternetMap map = new InternetMap(properties.getProperty("map"), null,
+				null, null);
+
+		List<Integer> ases = Arrays.asList(1001, 22548, 24875, 12985, 14444,
+				16445, 1525, 13101, 1001);
+
+		File cacheFolder = new File("test/distances_cache");
+		FileUtils.deleteDirectory(cacheFolder);
+
+		try {
+			// calculate and save
+			MonitoredDistances distances = new MonitoredDistances(map, ases,
+					2, cacheFolder.getPath());
+			assertEquals(8, distances.size());
+			assertEquals(1, cacheFolder.listFiles().length);
+			checkDistances(distances);
+
+			// load saved
+			distances = new MonitoredDistances(map, ases, 2,
+					cacheFolder.getPath());
+			checkDistances(distances);
+
+			// precomputed distances are used by the map
+			map.precomputeDistances(ases, 2, cacheFolder.getPath());
+			assertEquals((byte) 5,
+					(byte) map.getInternetDistanceBFS(16445, 14444));
+			// not monitored AS
+			assertEquals((byte) 127,
+					(byte) map.getInternetDistanceBFS(16445, 5));
+		} finally {
+			FileUtils.deleteDirectory(cacheFolder);
+		}
+	}
+
+	private void checkDistances(MonitoredDistances distances) {
+		assertEquals(2, distances.getDistance(1001, 22548));
+		assertEquals(2, distances.getDistance(22548, 1001));
+		assertEquals(3, distances.getDistance(1001, 24875));
+		assertEquals(127, distances.getDistance(12985, 14444));
+		assertEquals(5, distances.getDistance(16445, 14444));
+		assertEquals(2, distances.getDistance(1525, 13101));
+		assertEquals(0, distances.getDistance(1525, 1525));
+		assertTrue(distances.getDistance(1525, 5) < 0);
+	}
+}
@@ -50,8 +50,8 @@ public class DuplicatedSpikesGroupClassificationTest extends BasicTest {
 		MonitoredAS as = new MonitoredAS(
 				new File(inputUpdatesFilenames.get(0)).getName(), 29073);
 
-		Spike spike = updates1.getUpdateMap().get(as).getAllSpikes()
-				.get((long) 1243814456);
+		Spike spike = updates1.getUpdateMap().get(as).getSpikeAtTime(
+				1243814456);
 
 		DuplicatedSpikesGroup group = new DuplicatedSpikesGroup(as, spike,
 				(long) 1243814456, updates1, map, 120, 0.99);
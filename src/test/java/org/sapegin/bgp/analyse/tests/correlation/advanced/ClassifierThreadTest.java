@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -15,6 +16,7 @@ import org.junit.Test;
 import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.correlation.ClassificationResults;
+import org.sapegin.bgp.analyse.correlation.CorrelationParameters;
 import org.sapegin.bgp.analyse.correlation.advanced.ClassifierThread;
 import org.sapegin.bgp.analyse.tests.GenericTestWithRIB;
 import org.sapegin.bgp.analyse.updates.Updates;
@@ -27,6 +29,10 @@ public class ClassifierThreadTest extends GenericTestWithRIB {
 	private ClassifierThread classifier_1map;
 	private ClassifierThread classifier_allMaps;
 
+	private InternetMap map;
+	private MonitoredASs monitoredASs;
+	private Updates allUpdates;
+
 	@Before
 	public void testClassifierThread() throws Exception {
 
@@ -35,14 +41,14 @@ public class ClassifierThreadTest extends GenericTestWithRIB {
 		ASsNames names = new ASsNames(inputASsFilenames);
 
 		// prepare classifier with single map
-		InternetMap map = new InternetMap(properties.getProperty("map"), null,
+		map = new InternetMap(properties.getProperty("map"), null,
 				null, null);
 		
 		int threads = Integer.parseInt(properties.getProperty("threads","1"));
-		MonitoredASs monitoredASs = new MonitoredASs(map, names, threads);
+		monitoredASs = new MonitoredASs(map, names, threads);
 		// with ribs; ribFilenames; NOT componentOnly; correlated; from all
 		// monitored ASs; filenames with updates; sync time
-		Updates allUpdates = updatesFactory.createUpdates(true,
+		allUpdates = updatesFactory.createUpdates(true,
 				inputRIBsFilenames, false, true, monitoredASs,
 				inputUpdatesFilenames, true);
 		classifier_1map = new ClassifierThread(0.99,
@@ -160,4 +166,62 @@ public class ClassifierThreadTest extends GenericTestWithRIB {
 		assertEquals(2, results.getSingleSpikesMax033Visible()
 				.getTotalNumberOfPrefixes());
 	}
+
+	@Test
+	public void testClassifyAll() throws Exception {
+		List<CorrelationParameters> parameters = CorrelationParameters
+				.combine(Arrays.asList(3L, 120L), Arrays.asList(0.33, 0.99),
+						Arrays.asList(0.1, 0.5));
+
+		// all combinations for advanced and basic classification at once
+		List<ClassificationResults> advanced = new ClassifierThread(
+				parameters, allUpdates.getSpikesWithPredefinedSize(0, 1000, 2),
+				monitoredASs, allUpdates, map, false).classifyAll();
+		List<ClassificationResults> basic = new ClassifierThread(parameters,
+				allUpdates.getSpikesWithPredefinedSize(0, 1000, 2),
+				monitoredASs, allUpdates, map, true).classifyAll();
+		assertEquals(8, advanced.size());
+
+		// the same results as for every combination separately
+		for (int c = 0; c < parameters.size(); c++) {
+			CorrelationParameters combination = parameters.get(c);
+
+			ClassificationResults expected = new ClassifierThread(
+					combination.getDuplicationPercentage(),
+					allUpdates.getSpikesWithPredefinedSize(0, 1000, 2),
+					monitoredASs, allUpdates, combination.getTimeBuffer(),
+					map, false, null).call();
+			assertEquals(expected.getCorrelatedSpikesStats().keySet(),
+					advanced.get(c).getCorrelatedSpikesStats().keySet());
+			for (byte hop : expected.getCorrelatedSpikesStats().keySet()) {
+				assertEquals(expected.getCorrelatedSpikesStats().get(hop)
+						.getTotalNumberOfPrefixes(), advanced.get(c)
+						.getCorrelatedSpikesStats().get(hop)
+						.getTotalNumberOfPrefixes());
+				assertEquals(expected.getCorrelatedSpikesStats().get(hop)
+						.getMaxGroupTimes(), advanced.get(c)
+						.getCorrelatedSpikesStats().get(hop)
+						.getMaxGroupTimes());
+			}
+			assertEquals(expected.getSingleSpikes100Visible()
+					.getTotalNumberOfPrefixes(), advanced.get(c)
+					.getSingleSpikes100Visible().getTotalNumberOfPrefixes());
+
+			expected = new ClassifierThread(
+					combination.getDuplicationPercentage(),
+					allUpdates.getSpikesWithPredefinedSize(0, 1000, 2),
+					monitoredASs, allUpdates, combination.getTimeBuffer(),
+					map, true, combination.getBasicThreshold()).call();
+			assertEquals(expected.getBasicStats().getNumberOfDuplicatedSpikes(),
+					basic.get(c).getBasicStats().getNumberOfDuplicatedSpikes());
+			assertEquals(expected.getBasicStats()
+					.getNumberOfAllDuplicatedPrefixesWithAllSpikes(), basic
+					.get(c).getBasicStats()
+					.getNumberOfAllDuplicatedPrefixesWithAllSpikes());
+		}
+
+		// results for 120 seconds and 0.99 are the same as in testCall_1map_99
+		assertEquals(17, advanced.get(6).getCorrelatedSpikesStats()
+				.get((byte) 2).getTotalNumberOfPrefixes());
+	}
 }
@@ -0,0 +1,79 @@
+package org.sapegin.bgp.analyse.tests.correlation.advanced;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.correlation.advanced.QuantileSketch;
+import org.sapegin.bgp.analyse.correlation.advanced.Quartiles;
+
+public class QuantileSketchTest {
+
+	@Test
+	public void testExactQuartiles() {
+		QuantileSketch sketch = new QuantileSketch();
+		assertNull(sketch.getQuartiles());
+
+		for (long value : new long[] { 550, 100, 400, 200, 500, 300 }) {
+			sketch.add(value);
+		}
+
+		assertTrue(sketch.isExact());
+		assertEquals(6, sketch.getValues().length);
+
+		Quartiles quartiles = sketch.getQuartiles();
+		assertEquals(100, quartiles.getMin());
+		assertEquals(200, quartiles.getFirstQuartile(), 0);
+		assertEquals(350, quartiles.getMediana(), 0);
+		assertEquals(500, quartiles.getThirdQuartile(), 0);
+		assertEquals(550, quartiles.getMax());
+	}
+
+	@Test
+	public void testApproximateQuartiles() {
+		QuantileSketch sketch = new QuantileSketch(256);
+		for (long value = 0; value < 100000; value++) {
+			sketch.add((value * 7919) % 100000);
+		}
+
+		assertFalse(sketch.isExact());
+		assertEquals(100000, sketch.getCount());
+		assertTrue(sketch.getValues().length <= 256);
+
+		Quartiles quartiles = sketch.getQuartiles();
+		assertEquals(0, quartiles.getMin());
+		assertEquals(99999, quartiles.getMax());
+		assertEquals(25000, quartiles.getFirstQuartile(), 2000);
+		assertEquals(50000, quartiles.getMediana(), 2000);
+		assertEquals(75000, quartiles.getThirdQuartile(), 2000);
+	}
+
+	@Test
+	public void testMerge() {
+		QuantileSketch first = new QuantileSketch(128);
+		QuantileSketch second = new QuantileSketch(128);
+		for (long value = 0; value < 10000; value++) {
+			if (value % 2 == 0) {
+				first.add(value);
+			} else {
+				second.add(value);
+			}
+		}
+
+		first.merge(second);
+
+		assertEquals(10000, first.getCount());
+		Quartiles quartiles = first.getQuartiles();
+		assertEquals(0, quartiles.getMin());
+		assertEquals(9999, quartiles.getMax());
+		assertEquals(5000, quartiles.getMediana(), 300);
+
+		// merged sketch stays exact while it is small
+		QuantileSketch small = new QuantileSketch();
+		small.add(1);
+		QuantileSketch other = new QuantileSketch();
+		other.add(3);
+		small.merge(other);
+		assertTrue(small.isExact());
+		assertEquals(2, small.getQuartiles().getMediana(), 0);
+	}
+}
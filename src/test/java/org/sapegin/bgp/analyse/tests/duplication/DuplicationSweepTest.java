@@ -0,0 +1,82 @@
+package org.sapegin.bgp.analyse.tests.duplication;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ASsNames;
+import org.sapegin.bgp.analyse.InternetMap;
+import org.sapegin.bgp.analyse.duplication.DuplicationAnalyser;
+import org.sapegin.bgp.analyse.duplication.DuplicationStats;
+import org.sapegin.bgp.analyse.duplication.DuplicationSweep;
+import org.sapegin.bgp.analyse.generics.MonitoredASsFactory;
+import org.sapegin.bgp.analyse.tests.BasicTest;
+import org.sapegin.bgp.analyse.updates.Updates;
+import org.sapegin.bgp.analyse.updates.UpdatesFactory;
+import org.sapegin.bgp.analyse.visibility.MonitoredASs;
+
+public class DuplicationSweepTest extends BasicTest {
+
+	@Test
+	public void testSameAsAnalyser() throws Exception {
+		InternetMap map = new InternetMap(properties.getProperty("map"),
+				null, null, null);
+
+		List<Byte> buffers = Arrays.asList((byte) 0, (byte) 1, (byte) 5,
+				(byte) 6, (byte) 30);
+		List<Float> percentages = Arrays.asList(0f, 0.1f, 0.66f, 0.99f, 1f);
+
+		for (int file = 0; file < 2; file++) {
+			ASsNames ases = new ASsNames(new ArrayList<String>(
+					Arrays.asList(this.inputASsFilenames.get(file))));
+			MonitoredASs monitoredASs = new MonitoredASsFactory().create(map,
+					ases, 1, 1);
+			Updates updates = new UpdatesFactory<MonitoredASs>()
+					.createUpdates(false, null, false, false, monitoredASs,
+							new ArrayList<String>(Arrays
+									.asList(this.inputUpdatesFilenames
+											.get(file))), false);
+
+			DuplicationSweep sweep = new DuplicationSweep(updates, buffers,
+					percentages);
+			sweep.calculateDuplication();
+
+			for (int b = 0; b < buffers.size(); b++) {
+				for (int p = 0; p < percentages.size(); p++) {
+					DuplicationAnalyser analyser = new DuplicationAnalyser(
+							updates, buffers.get(b), percentages.get(p));
+					analyser.calculateDuplication();
+
+					DuplicationStats expected = analyser.getStats();
+					DuplicationStats actual = sweep.getStats(b, p);
+
+					assertEquals(expected.getNumberOfSingleSpikes(),
+							actual.getNumberOfSingleSpikes());
+					assertEquals(expected.getNumberOfDuplicatedSpikes(),
+							actual.getNumberOfDuplicatedSpikes());
+					assertEquals(expected.getNumberOfPrefixesInSingleSpikes(),
+							actual.getNumberOfPrefixesInSingleSpikes());
+					assertEquals(
+							expected.getNumberOfPrefixesInDuplicatedSpikes(),
+							actual.getNumberOfPrefixesInDuplicatedSpikes());
+					assertEquals(
+							expected.getNumberOfDuplicatedPrefixesInDuplicatedSpikes(),
+							actual.getNumberOfDuplicatedPrefixesInDuplicatedSpikes());
+					assertEquals(
+							expected.getNumberOfAllDuplicatedPrefixesWithAllSpikes(),
+							actual.getNumberOfAllDuplicatedPrefixesWithAllSpikes());
+				}
+			}
+
+			// the same values as in DuplicationAnalyserTest
+			if (file == 0) {
+				assertEquals(4, sweep.getStats(3, 3)
+						.getNumberOfDuplicatedSpikes());
+			}
+		}
+	}
+
+}
@@ -54,4 +54,19 @@ public class ASPathTest {
 		assertEquals(6, (int) path.getASList().get(5));
 	}
 
+	@Test
+	public void testASPathBytes() throws Exception {
+		byte[] buf = "|1 2 [3 4]|".getBytes("US-ASCII");
+		ASPath path1 = new ASPath(buf, 1, buf.length - 1);
+
+		// multi-AS element is parsed, but not stored
+		assertEquals(2, path1.getASPath().size());
+		assertEquals(2, path1.getASList().size());
+		assertEquals(1, path1.getOriginAS().getASPathElement().size());
+		assertEquals(2, (int) path1.getOriginAS().getASPathElement().get(0));
+
+		// the same path parsed from String
+		assertEquals(path1.getASList(), new ASPath("1 2 [3 4]").getASList());
+	}
+
 }
@@ -10,8 +10,10 @@ import java.util.Arrays;
 import org.junit.Test;
 import org.sapegin.bgp.analyse.ribs.ASPath;
 import org.sapegin.bgp.analyse.ribs.ASPathElement;
+import org.sapegin.bgp.analyse.ribs.InternPool;
 import org.sapegin.bgp.analyse.ribs.OneAS_RIB;
 import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
 
 public class OneAS_RIBTest {
 
@@ -43,4 +45,29 @@ public class OneAS_RIBTest {
 		assertEquals((int) rib.getAS_Path(new Destination(InetAddress.getByName("1.1.1.0"))).getASPath().get(1).getASPathElement().get(0), 2);
 
 	}
+
+	@Test
+	public void testSharedPool() throws UnknownHostException {
+		PrefixDictionary prefixes = new PrefixDictionary();
+		InternPool<ASPath> paths = new InternPool<ASPath>();
+		OneAS_RIB rib1 = new OneAS_RIB(prefixes, paths);
+		OneAS_RIB rib2 = new OneAS_RIB(prefixes, paths);
+
+		Destination prefix = new Destination(InetAddress.getByName("1.1.1.0"));
+		rib1.announce(prefix, new ASPath("1 2 3"));
+		rib2.announce(prefix, new ASPath("1 2 3"));
+		rib2.announce(new Destination(InetAddress.getByName("1.2.3.0")),
+				new ASPath("1 [2 4]"));
+
+		// equal AS Paths are stored only once
+		assertSame(rib1.getAS_Path(prefix), rib2.getAS_Path(prefix));
+		assertEquals(2, paths.size());
+		assertEquals(2, prefixes.size());
+
+		rib1.withdraw(prefix);
+		assertNull(rib1.getAS_Path(prefix));
+		assertEquals(new ASPath("1 2 3"), rib2.getAS_Path(prefix));
+		assertNull(rib1.getAS_Path(new Destination(InetAddress
+				.getByName("1.2.3.0"))));
+	}
 }
@@ -0,0 +1,61 @@
+package org.sapegin.bgp.analyse.tests.ribs;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ASsNames;
+import org.sapegin.bgp.analyse.ribs.ASPath;
+import org.sapegin.bgp.analyse.ribs.InternPool;
+import org.sapegin.bgp.analyse.ribs.RIB;
+import org.sapegin.bgp.analyse.ribs.RIBLoader;
+import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
+import org.sapegin.bgp.analyse.tests.BasicTest;
+
+public class RIBLoaderTest extends BasicTest {
+
+	private ASsNames names;
+
+	@Before
+	public void prepare() {
+		names = new ASsNames(inputASsFilenames);
+	}
+
+	@Test
+	public void testParallelLoad() throws Exception {
+		final PrefixDictionary prefixes = new PrefixDictionary();
+		final InternPool<ASPath> paths = new InternPool<ASPath>();
+
+		List<String> filenames = Arrays.asList("test/ribs/1.rib",
+				"test/ribs/2.rib", "test/ribs/3.rib");
+
+		// reserve of whole heap: RIBs are loaded one by one, if heap is
+		// already used
+		List<Future<RIB>> ribs = new RIBLoader<RIB>(3, 1.0) {
+			@Override
+			protected RIB load(String ribFilename) {
+				return new RIB(ribFilename, names.getASsNames(), prefixes,
+						paths);
+			}
+		}.loadAll(filenames);
+
+		assertEquals(3, ribs.size());
+
+		// the same RIB loaded alone
+		RIB expected = new RIB("test/ribs/1.rib", names.getASsNames());
+		Destination prefix = new Destination(InetAddress.getByName("1.0.0.0"));
+		assertEquals(expected.getWithdwalASPath(3257, prefix), ribs.get(0)
+				.get().getWithdwalASPath(3257, prefix));
+
+		for (Future<RIB> rib : ribs) {
+			assertNotNull(rib.get());
+		}
+		assertTrue(paths.size() > 0);
+	}
+}
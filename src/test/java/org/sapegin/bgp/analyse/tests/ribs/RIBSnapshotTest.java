@@ -0,0 +1,158 @@
+package org.sapegin.bgp.analyse.tests.ribs;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ASSet;
+import org.sapegin.bgp.analyse.ASsNames;
+import org.sapegin.bgp.analyse.ribs.ASPath;
+import org.sapegin.bgp.analyse.ribs.ASPathElement;
+import org.sapegin.bgp.analyse.ribs.InternPool;
+import org.sapegin.bgp.analyse.ribs.OriginsOnlyRIB;
+import org.sapegin.bgp.analyse.ribs.RIB;
+import org.sapegin.bgp.analyse.ribs.RIBSnapshot;
+import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
+import org.sapegin.bgp.analyse.tests.BasicTest;
+
+public class RIBSnapshotTest extends BasicTest {
+
+	private ASsNames names;
+
+	private File folder;
+	private File ribFile;
+
+	@Before
+	public void prepare() throws IOException {
+		names = new ASsNames(inputASsFilenames);
+
+		// snapshots are written next to RIB, so RIB is copied to temporary
+		// folder
+		folder = File.createTempFile("ribs", "");
+		folder.delete();
+		folder.mkdirs();
+		ribFile = new File(folder, "1.rib");
+
+		FileInputStream in = new FileInputStream("test/ribs/1.rib");
+		FileOutputStream out = new FileOutputStream(ribFile);
+		byte[] buffer = new byte[64 * 1024];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			out.write(buffer, 0, read);
+		}
+		in.close();
+		out.close();
+	}
+
+	@After
+	public void cleanup() {
+		for (File file : folder.listFiles()) {
+			file.delete();
+		}
+		folder.delete();
+	}
+
+	private RIB load() {
+		return new RIB(ribFile.getPath(), names.getASsNames(),
+				new PrefixDictionary(), new InternPool<ASPath>(), true);
+	}
+
+	@Test
+	public void testReload() throws Exception {
+		RIB parsed = load();
+
+		RIBSnapshot snapshot = new RIBSnapshot(ribFile.getPath(),
+				ASSet.of(names.getASsNames()));
+		assertTrue(snapshot.exists());
+
+		// second load should use the snapshot
+		RIB loaded = load();
+
+		Destination prefix = new Destination(InetAddress.getByName("1.0.0.0"));
+		assertNotNull(parsed.getWithdwalASPath(3257, prefix));
+		assertEquals(parsed.getWithdwalASPath(3257, prefix),
+				loaded.getWithdwalASPath(3257, prefix));
+		assertNull(loaded.getWithdwalASPath(1299, prefix));
+
+		OriginsOnlyRIB origins = new OriginsOnlyRIB(ribFile.getPath(),
+				names.getASsNames(), new PrefixDictionary(),
+				new InternPool<ASPathElement>(),
+				true);
+		assertEquals(parsed.getWithdwalASPath(3257, prefix).getOriginAS(),
+				origins.getWithdwalOrigin(3257, prefix));
+
+		// only one snapshot for the same RIB and ASs
+		assertEquals(2, folder.listFiles().length);
+	}
+
+	@Test
+	public void testCorruptSnapshot() throws Exception {
+		RIB parsed = load();
+
+		RIBSnapshot snapshot = new RIBSnapshot(ribFile.getPath(),
+				ASSet.of(names.getASsNames()));
+
+		// remove some bytes in the middle, so that END is still there
+		RandomAccessFile raf = new RandomAccessFile(snapshot.getFile(), "rw");
+		byte[] content = new byte[(int) raf.length()];
+		raf.readFully(content);
+		int middle = content.length / 2;
+		raf.seek(middle);
+		raf.write(content, middle + 3, content.length - middle - 3);
+		raf.setLength(content.length - 3);
+		raf.close();
+
+		// no routes are passed, if something is wrong
+		final int[] routes = new int[1];
+		assertEquals(-1, snapshot.replay(new RIBSnapshot.RouteHandler() {
+			@Override
+			public void route(int peerAS, Destination prefix, ASPath asPath) {
+				routes[0]++;
+			}
+		}));
+		assertEquals(0, routes[0]);
+
+		// RIB is parsed again
+		RIB loaded = load();
+		Destination prefix = new Destination(InetAddress.getByName("1.0.0.0"));
+		assertEquals(parsed.getWithdwalASPath(3257, prefix),
+				loaded.getWithdwalASPath(3257, prefix));
+	}
+
+	@Test
+	public void testSnapshotNotWritten() throws Exception {
+		RIBSnapshot snapshot = new RIBSnapshot(ribFile.getPath(),
+				ASSet.of(names.getASsNames()));
+
+		// temporary file of snapshot can't be created
+		File tmpFile = new File(snapshot.getFile().getPath() + ".tmp");
+		assertTrue(tmpFile.mkdir());
+
+		RIB loaded = load();
+		Destination prefix = new Destination(InetAddress.getByName("1.0.0.0"));
+		assertNotNull(loaded.getWithdwalASPath(3257, prefix));
+		assertFalse(snapshot.exists());
+	}
+
+	@Test
+	public void testKey() throws Exception {
+		ArrayList<Integer> otherASs = new ArrayList<Integer>(
+				names.getASsNames());
+		otherASs.remove(0);
+
+		assertFalse(new RIBSnapshot(ribFile.getPath(),
+				ASSet.of(names.getASsNames())).getFile().equals(
+				new RIBSnapshot(ribFile.getPath(), ASSet.of(otherASs))
+						.getFile()));
+	}
+}
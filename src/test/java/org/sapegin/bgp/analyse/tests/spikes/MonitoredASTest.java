@@ -1,5 +1,7 @@
 package org.sapegin.bgp.analyse.tests.spikes;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
@@ -25,4 +27,14 @@ public class MonitoredASTest {
 		assertTrue(as.getMonitoredAS()==12345);
 	}
 
+	@Test
+	public void testEquals() {
+		MonitoredAS same = new MonitoredAS("wide", 12345);
+
+		assertEquals(as, same);
+		assertEquals(as.hashCode(), same.hashCode());
+		assertFalse(as.equals(new MonitoredAS("wide", 54321)));
+		assertFalse(as.equals(new MonitoredAS("route-views", 12345)));
+	}
+
 }
@@ -0,0 +1,40 @@
+package org.sapegin.bgp.analyse.tests.spikes;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.spikes.PrefixDictionary;
+
+public class PrefixDictionaryTest {
+
+	@Test
+	public void testDenseIds() {
+		PrefixDictionary dictionary = new PrefixDictionary();
+		assertEquals(PrefixDictionary.NO_ID, dictionary.getId(256));
+		assertEquals(0, dictionary.intern(256));
+		assertEquals(1, dictionary.intern(0));
+		assertEquals(0, dictionary.intern(256));
+		assertEquals(1, dictionary.getId(0));
+		assertEquals(2, dictionary.size());
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		Random random = new Random(42);
+		PrefixDictionary dictionary = new PrefixDictionary();
+		HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(20000) << 8;
+			if (!expected.containsKey(key)) {
+				assertEquals(PrefixDictionary.NO_ID, dictionary.getId(key));
+				expected.put(key, expected.size());
+			}
+			assertEquals((int) expected.get(key), dictionary.intern(key));
+		}
+		assertEquals(expected.size(), dictionary.size());
+	}
+}
@@ -0,0 +1,50 @@
+package org.sapegin.bgp.analyse.tests.spikes;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.spikes.PrefixMap;
+
+public class PrefixMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		PrefixMap<String> map = new PrefixMap<String>();
+		assertNull(map.put(0, "zero"));
+		assertNull(map.put(256, "a"));
+		assertEquals("a", map.put(256, "b"));
+		assertEquals("zero", map.get(0));
+		assertEquals("b", map.get(256));
+		assertEquals(2, map.size());
+		assertEquals("b", map.remove(256));
+		assertNull(map.get(256));
+		assertEquals("zero", map.put(0, null));
+		assertEquals(0, map.size());
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		// random operations on small key space to get many collisions and
+		// removals inside clusters
+		Random random = new Random(42);
+		PrefixMap<Integer> map = new PrefixMap<Integer>();
+		HashMap<Integer, Integer> expected = new HashMap<Integer, Integer>();
+
+		for (int i = 0; i < 100000; i++) {
+			int key = random.nextInt(500) << 8;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (int key = 0; key < 500; key++) {
+			assertEquals(expected.get(key << 8), map.get(key << 8));
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package org.sapegin.bgp.analyse.tests.spikes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.Prefix;
+import org.sapegin.bgp.analyse.spikes.PrefixSpikeIndex;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeTimeIndex;
+
+public class PrefixSpikeIndexTest {
+
+	private Spike spike(String... prefixes) {
+		Spike spike = new Spike();
+		for (String prefix : prefixes) {
+			spike.addPrefix(prefix);
+		}
+		return spike;
+	}
+
+	@Test
+	public void testFindCandidates() {
+		Map<MonitoredAS, SingleASspikes> map = new HashMap<MonitoredAS, SingleASspikes>();
+
+		SingleASspikes spikes1 = new SingleASspikes();
+		spikes1.addSpike(100, spike("1.1.1.0", "1.1.2.0", "1.1.1.0"));
+		spikes1.addSpike(200, spike("1.1.3.0"));
+		spikes1.addSpike(300, spike("1.1.2.0"));
+
+		SingleASspikes spikes2 = new SingleASspikes();
+		spikes2.addSpike(150, spike("1.1.2.0", "1.1.4.0"));
+
+		map.put(new MonitoredAS("router1", 1), spikes1);
+		map.put(new MonitoredAS("router2", 2), spikes2);
+
+		SpikeTimeIndex times = new SpikeTimeIndex(map);
+		PrefixSpikeIndex index = new PrefixSpikeIndex(times);
+
+		// positions: 0 - 100, 1 - 150, 2 - 200, 3 - 300
+		assertArrayEquals(new int[] { 0, 1, 3 },
+				index.getPostings(Prefix.parse("1.1.2.0")));
+		// repeated prefix is indexed only once per spike
+		assertArrayEquals(new int[] { 0 },
+				index.getPostings(Prefix.parse("1.1.1.0")));
+		assertEquals(0,
+				index.getPostings(Prefix.parse("1.1.9.0")).length);
+
+		Spike given = spike("1.1.2.0", "1.1.3.0", "1.1.9.0");
+		assertArrayEquals(new int[] { 0, 1, 2, 3 },
+				index.findCandidates(given, 0, 1000));
+		assertArrayEquals(new int[] { 1, 2 },
+				index.findCandidates(given, 101, 299));
+		assertArrayEquals(new int[0],
+				index.findCandidates(spike("1.1.9.0"), 0, 1000));
+
+		assertEquals(1, index.firstPostingFrom(new int[] { 0, 1, 3 }, 101));
+		assertEquals(3, index.firstPostingFrom(new int[] { 0, 1, 3 }, 301));
+	}
+}
@@ -0,0 +1,71 @@
+package org.sapegin.bgp.analyse.tests.spikes;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.Prefix;
+import org.sapegin.bgp.analyse.spikes.PrefixSet;
+
+public class PrefixTest {
+
+	@Test
+	public void testParse() throws UnknownHostException {
+		assertEquals(0x01020300, Prefix.parse("1.2.3.0"));
+		assertEquals(0x01020300, Prefix.parse("1.2.3.0/24"));
+		assertEquals(0xC0A80101, Prefix.parse("192.168.1.1"));
+		assertEquals(Prefix.fromInetAddress(InetAddress.getByName("213.147.65.76")),
+				Prefix.parse("213.147.65.76"));
+		assertEquals("213.147.65.76", Prefix.toString(Prefix.parse("213.147.65.76")));
+		assertEquals("1.2.3.0/24", Prefix.toString(Prefix.parse("1.2.3.0"), (byte) 24));
+		assertEquals(InetAddress.getByName("213.147.65.76"),
+				Prefix.toInetAddress(Prefix.parse("213.147.65.76")));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseWrongOctet() {
+		Prefix.parse("1.2.256.0");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseShort() {
+		Prefix.parse("1.2.3");
+	}
+
+	@Test
+	public void testDestination() throws UnknownHostException {
+		// prefixes are compared by network address only
+		assertEquals(new Destination(InetAddress.getByName("1.1.1.0")),
+				new Destination(Prefix.parse("1.1.1.0"), (byte) 24));
+		assertFalse(new Destination(Prefix.parse("1.1.1.0"), (byte) 24)
+				.equals(new Destination(Prefix.parse("1.1.2.0"), (byte) 24)));
+	}
+
+	@Test
+	public void testPrefixSet() {
+		PrefixSet set = new PrefixSet();
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(set.add(i * 256));
+		}
+		assertFalse(set.add(256));
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(999 * 256));
+		assertFalse(set.contains(1000 * 256));
+		assertEquals(1000, set.size());
+
+		PrefixSet other = new PrefixSet();
+		other.add(Prefix.parse("255.0.0.0"));
+		other.add(256);
+		set.addAll(other);
+		assertEquals(1001, set.size());
+
+		// sorted as unsigned addresses
+		int[] prefixes = set.toArray();
+		assertEquals(0, prefixes[0]);
+		assertEquals(256, prefixes[1]);
+		assertEquals(Prefix.parse("255.0.0.0"), prefixes[1000]);
+	}
+}
@@ -2,6 +2,7 @@ package org.sapegin.bgp.analyse.tests.spikes;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.InetAddress;
@@ -96,6 +97,44 @@ public class SingleASspikesTest {
 		assertEquals(2,spikes.getNumberOfSpikes());
 	}
 	
+	@Test
+	public void testGetCurrentBiggestSpikeSize() {
+		spikes = new SingleASspikes();
+		assertEquals(0, spikes.getCurrentBiggestSpikeSize());
+		assertNull(spikes.getCurrentBiggestSpike());
+
+		addSpikes();
+		assertEquals(4, spikes.getCurrentBiggestSpikeSize());
+
+		// biggest spike is deleted
+		spikes.synchronise(1, 3);
+		assertEquals(3, spikes.getCurrentBiggestSpikeSize());
+		assertEquals(6, spikes.getCurrentUpdateSum());
+	}
+
+	@Test
+	public void testSpikeGrown() {
+		spikes = new SingleASspikes();
+		addSpikes();
+
+		Spike spike = spikes.getSpikeAtTime(1);
+		int previousSize = spike.getSpikeSize();
+		spike.addPrefix("1.1.11.0");
+		spike.addPrefix("1.1.12.0");
+		spike.addPrefix("1.1.13.0");
+		spike.addPrefix("1.1.14.0");
+		spikes.spikeGrown(spike, previousSize);
+
+		assertEquals(14, spikes.getCurrentUpdateSum());
+		assertEquals(5, spikes.getCurrentBiggestSpikeSize());
+		assertEquals(5, spikes.getCurrentBiggestSpike().getSpikeSize());
+
+		// copy keeps statistics
+		SingleASspikes copy = new SingleASspikes(spikes);
+		assertEquals(14, copy.getCurrentUpdateSum());
+		assertEquals(5, copy.getCurrentBiggestSpikeSize());
+	}
+
 	private void addSpikes(){
 		Spike spike1 = new Spike();
 		spike1.addPrefix("1.1.1.0");
@@ -0,0 +1,132 @@
+package org.sapegin.bgp.analyse.tests.spikes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.Random;
+
+import org.sapegin.bgp.analyse.SizeInterval;
+import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.Spike;
+
+/**
+ * Compares duplication check of spikes with linear search of prefixes (as it
+ * was before hash index in Spike) and with hash index. Spike sizes are taken
+ * from the biggest sizes of spike_size_intervals, which are given as argument
+ * or loaded from analyse.properties.xml (with the same default as in
+ * AnalyseSpikesTask, if there is no such property).
+ * 
+ * It's not a unit test. Run it with:
+ * 
+ * java -cp ... org.sapegin.bgp.analyse.tests.spikes.SpikeDuplicationBenchmark
+ * [950..1050,1950..2050]
+ */
+public class SpikeDuplicationBenchmark {
+
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ROUNDS = 5;
+
+	// checks per round are chosen so that one round takes ~10^8 prefix
+	// comparisons with linear search
+	private static final long COMPARISONS_PER_ROUND = 100000000L;
+
+	private static volatile boolean sink;
+
+	public static void main(String[] args) throws IOException {
+		String intervals = (args.length > 0) ? args[0] : loadIntervals();
+
+		System.out.println("size\tlinear ns/op\tindexed ns/op");
+
+		for (String interval : intervals.split(",")) {
+			int size = new SizeInterval(interval).getMaxSize();
+
+			Spike spike1 = randomSpike(size, 1);
+			// 99% of prefixes are the same as in spike1
+			Spike spike2 = new Spike(spike1);
+			Random random = new Random(2);
+			for (int i = 0; i < size / 100; i++) {
+				spike2.addPrefix(random.nextInt(), (byte) 24);
+			}
+
+			// prefix lists for linear search are copied once, so that only
+			// the duplication check itself is timed
+			ArrayList<Destination> prefixes1 = spike1.copyPrefixSet();
+			ArrayList<Destination> prefixes2 = spike2.copyPrefixSet();
+
+			int checks = (int) Math.max(1, COMPARISONS_PER_ROUND
+					/ ((long) size * size));
+
+			long linear = 0;
+			long indexed = 0;
+			for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+				long start = System.nanoTime();
+				for (int i = 0; i < checks; i++) {
+					sink = isDuplicatedLinear(prefixes1, prefixes2, 0.99);
+				}
+				long middle = System.nanoTime();
+				for (int i = 0; i < checks; i++) {
+					sink = spike1.isDuplicatedWith(spike2, 0.99);
+				}
+				long end = System.nanoTime();
+
+				if (round >= WARMUP_ROUNDS) {
+					linear += middle - start;
+					indexed += end - middle;
+				}
+			}
+
+			System.out.println(size + "\t" + linear / ((long) ROUNDS * checks)
+					+ "\t" + indexed / ((long) ROUNDS * checks));
+		}
+	}
+
+	/**
+	 * @return spike_size_intervals from analyse.properties.xml
+	 * @throws IOException
+	 */
+	private static String loadIntervals() throws IOException {
+		Properties properties = new Properties();
+		InputStream stream = ClassLoader.getSystemClassLoader()
+				.getResourceAsStream("analyse.properties.xml");
+		if (stream != null) {
+			properties.loadFromXML(stream);
+			stream.close();
+		}
+		return properties.getProperty("spike_size_intervals",
+				"950..1050,1950..2050");
+	}
+
+	private static Spike randomSpike(int size, long seed) {
+		Random random = new Random(seed);
+		Spike spike = new Spike();
+		for (int i = 0; i < size; i++) {
+			spike.addPrefix(random.nextInt() & 0xffffff00, (byte) 24);
+		}
+		return spike;
+	}
+
+	/**
+	 * duplication check with linear search of every prefix in the bigger
+	 * spike (Spike.isDuplicatedWith() before hash index was added)
+	 */
+	private static boolean isDuplicatedLinear(
+			ArrayList<Destination> smaller, ArrayList<Destination> bigger,
+			double duplicationPercentage) {
+		if (smaller.size() > bigger.size()) {
+			return isDuplicatedLinear(bigger, smaller, duplicationPercentage);
+		}
+
+		int duplicated = 0;
+		for (Destination destination : smaller) {
+			for (Destination other : bigger) {
+				if (other.getPrefix() == destination.getPrefix()) {
+					duplicated++;
+					break;
+				}
+			}
+		}
+
+		return (duplicated / (float) smaller.size()) >= duplicationPercentage;
+	}
+}
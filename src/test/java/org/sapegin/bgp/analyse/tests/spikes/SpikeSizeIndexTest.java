@@ -0,0 +1,90 @@
+package org.sapegin.bgp.analyse.tests.spikes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SelectedSpikes;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+import org.sapegin.bgp.analyse.spikes.SpikeSizeIndex;
+
+public class SpikeSizeIndexTest {
+
+	private static Spike spike(int size) {
+		Spike spike = new Spike();
+		for (int i = 0; i < size; i++) {
+			spike.addPrefix(i, (byte) 32);
+		}
+		return spike;
+	}
+
+	@Test
+	public void testSelect() {
+		Map<MonitoredAS, SingleASspikes> map = new HashMap<MonitoredAS, SingleASspikes>();
+
+		MonitoredAS as1 = new MonitoredAS("router1", 1);
+		MonitoredAS as2 = new MonitoredAS("router2", 2);
+
+		SingleASspikes spikes1 = new SingleASspikes();
+		Spike big = spike(150);
+		spikes1.addSpike(1000, spike(5));
+		spikes1.addSpike(1001, big);
+		spikes1.addSpike(1002, spike(99));
+
+		SingleASspikes spikes2 = new SingleASspikes();
+		spikes2.addSpike(1000, spike(100));
+		spikes2.addSpike(1005, spike(5));
+
+		map.put(as1, spikes1);
+		map.put(as2, spikes2);
+
+		SpikeSizeIndex index = new SpikeSizeIndex(map);
+		assertEquals(5, index.size());
+		assertEquals(5, index.getSize(0));
+		assertEquals(150, index.getSize(4));
+		assertSame(big, index.getSpike(4));
+		assertEquals(1001, index.getTime(4));
+		assertEquals(as1, index.getMonitoredAS(4));
+		assertEquals(2, index.firstIndexFrom(6));
+		assertEquals(3, index.firstIndexFrom(100));
+
+		// the same interval as the first one in correlated analysis
+		SelectedSpikes selected = index.select(100, 0);
+		assertEquals(3, selected.numberOfSpikes());
+		assertEquals(109, selected.numberOfUpdates());
+		assertEquals(2, selected.getUpdateMap().get(as1).getNumberOfSpikes());
+		assertEquals(1, selected.getUpdateMap().get(as2).getNumberOfSpikes());
+
+		selected = index.select(100, 200);
+		assertEquals(2, selected.numberOfSpikes());
+		assertSame(big, selected.getSpike(1));
+		assertSame(big, selected.getSpikes(2, 10).getUpdateMap().get(as1)
+				.getSpikeAtTime(1001));
+
+		assertEquals(0, index.select(200, 300).numberOfSpikes());
+		assertEquals(0, index.select(200, 300).getRandom(10).getUpdateMap()
+				.size());
+
+		// random spikes are distinct spikes of the view
+		SpikeCollection random = index.select(0, 100).getRandom(10);
+		assertEquals(2, random.getUpdateMap().get(as1).getNumberOfSpikes());
+		assertEquals(1, random.getUpdateMap().get(as2).getNumberOfSpikes());
+		assertTrue(random.getUpdateMap().get(as1).getSpikeAtTime(1002)
+				.getSpikeSize() == 99);
+
+		try {
+			selected.addSpike(2000, spike(1), as2);
+			fail("Spikes selected by size should be read-only");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.sapegin.bgp.analyse.tests.spikes;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -11,6 +12,7 @@ import java.util.Arrays;
 import org.junit.Test;
 import org.sapegin.bgp.analyse.ribs.ASPathElement;
 import org.sapegin.bgp.analyse.spikes.Destination;
+import org.sapegin.bgp.analyse.spikes.Prefix;
 import org.sapegin.bgp.analyse.spikes.Spike;
 
 public class SpikeTest {
@@ -57,4 +59,68 @@ public class SpikeTest {
 		assertFalse(spike.isDuplicatedWith(duplicated, 0.34));
 	}
 
+	@Test
+	public void testContainsPrefixInBigSpike() {
+		Spike spike = new Spike();
+		for (int i = 1; i <= 100; i++) {
+			spike.addPrefix(i << 8, (byte) 24);
+		}
+		assertTrue(spike.containsPrefix(50 << 8));
+		assertFalse(spike.containsPrefix(101 << 8));
+
+		// prefixes added after the first lookup are found too
+		spike.addPrefix(101 << 8, (byte) 24);
+		assertTrue(spike.containsPrefix(101 << 8));
+
+		Spike duplicated = new Spike();
+		for (int i = 2; i <= 101; i++) {
+			duplicated.addPrefix(i << 8, (byte) 24);
+		}
+		// all prefixes of the smaller spike are in the bigger one
+		assertTrue(spike.isDuplicatedWith(duplicated, 1));
+		duplicated.addPrefix(102 << 8, (byte) 24);
+		assertFalse(spike.isDuplicatedWith(duplicated, 1));
+		assertTrue(spike.isDuplicatedWith(duplicated, 0.99));
+		assertEquals(100, spike.getPrefixesDuplicatedWith(duplicated).size());
+	}
+
+	@Test
+	public void testCountOnly() {
+		Spike counter = Spike.countOnly();
+		counter.addPrefix(1, (byte) 24);
+		counter.addPrefix(2, (byte) 24);
+		assertFalse(counter.hasPrefixes());
+		assertEquals(2, counter.getSpikeSize());
+		assertFalse(counter.containsPrefix(1));
+		assertEquals(0, counter.copyPrefixSet().size());
+		assertEquals(2, new Spike(counter).getSpikeSize());
+
+		// merged spike only counts prefixes
+		Spike spike = new Spike();
+		spike.addPrefix(3, (byte) 24);
+		spike.addAll(counter);
+		assertFalse(spike.hasPrefixes());
+		assertEquals(3, spike.getSpikeSize());
+	}
+
+	@Test
+	public void testNumberOfOriginASsCountingUnknown() {
+		ASPathElement origin = new ASPathElement(new ArrayList<Integer>(
+				Arrays.asList(1, 2, 3)));
+
+		// unknown origin is counted as in a copy of spike
+		Spike spike = new Spike();
+		spike.addPrefix("1.1.1.0");
+		assertEquals(0, spike.getNumberOfOriginASs());
+		assertEquals(1, new Spike(spike).getNumberOfOriginASs());
+		assertEquals(1, spike.getNumberOfOriginASsCountingUnknown());
+
+		spike.addDestination(Prefix.parse("2.2.2.0"), (byte) 24, origin);
+		assertEquals(1, spike.getNumberOfOriginASs());
+		assertEquals(2, new Spike(spike).getNumberOfOriginASs());
+		assertEquals(2, spike.getNumberOfOriginASsCountingUnknown());
+
+		assertEquals(0, new Spike().getNumberOfOriginASsCountingUnknown());
+		assertEquals(0, Spike.countOnly().getNumberOfOriginASsCountingUnknown());
+	}
 }
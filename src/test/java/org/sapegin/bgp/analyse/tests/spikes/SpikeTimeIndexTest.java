@@ -0,0 +1,64 @@
+package org.sapegin.bgp.analyse.tests.spikes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeTimeIndex;
+
+public class SpikeTimeIndexTest {
+
+	@Test
+	public void testTimeOrder() {
+		Map<MonitoredAS, SingleASspikes> map = new HashMap<MonitoredAS, SingleASspikes>();
+
+		MonitoredAS as1 = new MonitoredAS("router1", 1);
+		MonitoredAS as2 = new MonitoredAS("router2", 2);
+
+		SingleASspikes spikes1 = new SingleASspikes();
+		Spike spike = new Spike();
+		spikes1.addSpike(1000, spike);
+		spikes1.addSpike(1002, new Spike());
+		spikes1.addSpike(2000, new Spike());
+
+		SingleASspikes spikes2 = new SingleASspikes();
+		spikes2.addSpike(1001, new Spike());
+		spikes2.addSpike(1002, new Spike());
+
+		map.put(as1, spikes1);
+		map.put(as2, spikes2);
+		map.put(new MonitoredAS("router3", 3), new SingleASspikes());
+
+		SpikeTimeIndex index = new SpikeTimeIndex(map);
+
+		assertEquals(5, index.size());
+		assertEquals(1000, index.getTime(0));
+		assertSame(spike, index.getSpike(0));
+		assertEquals(as1, index.getMonitoredAS(0));
+		assertEquals(1001, index.getTime(1));
+		assertEquals(as2, index.getMonitoredAS(1));
+		assertEquals(2000, index.getTime(4));
+
+		// first of two spikes at the same time
+		assertEquals(2, index.firstIndexFrom(1002));
+		assertEquals(1002, index.getTime(3));
+		assertEquals(4, index.firstIndexFrom(1003));
+		assertEquals(0, index.firstIndexFrom(0));
+		assertEquals(5, index.firstIndexFrom(2001));
+	}
+
+	@Test
+	public void testEmpty() {
+		SpikeTimeIndex index = new SpikeTimeIndex(
+				new HashMap<MonitoredAS, SingleASspikes>());
+
+		assertEquals(0, index.size());
+		assertEquals(0, index.firstIndexFrom(1000));
+	}
+}
@@ -0,0 +1,99 @@
+package org.sapegin.bgp.analyse.tests.updates;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ribs.ASPath;
+import org.sapegin.bgp.analyse.updates.BGP4MPHandler;
+import org.sapegin.bgp.analyse.updates.BGP4MPParser;
+
+public class BGP4MPParserTest {
+
+	private BGP4MPParser parser;
+	private ArrayList<String> messages;
+	private ArrayList<String> malformed;
+
+	private BGP4MPHandler handler = new BGP4MPHandler() {
+
+		@Override
+		public void message(long time, byte type, int peerAS, int prefix,
+				byte prefixLength, byte[] line, int asPathStart, int asPathEnd) {
+			messages.add(time + " " + (char) type + " " + peerAS + " "
+					+ (prefix >>> 24) + "." + ((prefix >>> 16) & 0xff) + "."
+					+ ((prefix >>> 8) & 0xff) + "." + (prefix & 0xff) + "/"
+					+ prefixLength + " "
+					+ new ASPath(line, asPathStart, asPathEnd).getASList());
+		}
+
+		@Override
+		public void malformed(String reason) {
+			malformed.add(reason);
+		}
+	};
+
+	@Before
+	public void prepare() {
+		parser = new BGP4MPParser();
+		messages = new ArrayList<String>();
+		malformed = new ArrayList<String>();
+	}
+
+	private void parse(String str) throws IOException {
+		parser.parse(new ByteArrayInputStream(str.getBytes("US-ASCII")),
+				handler);
+	}
+
+	@Test
+	public void testParse() throws IOException {
+		parse("BGP4MP|1243814950|A|198.32.143.65|4558|213.147.65.76/30|4558 3356 12|IGP|198.32.143.65|0|0||NAG||\n"
+				+ "BGP4MP|1243814951|W|198.32.143.65|4558|213.147.65.104/29");
+
+		assertEquals(2, messages.size());
+		assertEquals(0, malformed.size());
+		assertEquals("1243814950 A 4558 213.147.65.76/30 [4558, 3356, 12]",
+				messages.get(0));
+		assertEquals("1243814951 W 4558 213.147.65.104/29 []", messages.get(1));
+	}
+
+	@Test
+	public void testMalformed() throws IOException {
+		parse("TABLE_DUMP2|1243814950|B|198.32.143.65|4558|213.147.65.76/30|4558|IGP\n"
+				+ "BGP4MP|12438x4950|A|198.32.143.65|4558|213.147.65.76/30|4558|IGP\n"
+				+ "BGP4MP|1243814950|A|198.32.143.65|4558|2001:db8::/32|4558|IGP\n"
+				+ "BGP4MP|1243814950|A|198.32.143.65|4558|256.147.65.76/30|4558|IGP\n"
+				+ "\r\n");
+
+		assertEquals(0, messages.size());
+		assertEquals(5, malformed.size());
+		assertEquals(BGP4MPParser.WRONG_HEADER, malformed.get(0));
+		assertEquals(BGP4MPParser.WRONG_TIME, malformed.get(1));
+		assertEquals(BGP4MPParser.IPV6_PREFIX, malformed.get(2));
+		assertEquals(BGP4MPParser.WRONG_PREFIX, malformed.get(3));
+		assertEquals(BGP4MPParser.WRONG_HEADER, malformed.get(4));
+	}
+
+	@Test
+	public void testLongLines() throws IOException {
+		// lines longer than the parser buffer
+		StringBuilder asPath = new StringBuilder("1");
+		for (int i = 0; i < 20000; i++) {
+			asPath.append(" 2");
+		}
+		String line = "BGP4MP|1|A|1.1.1.1|1|1.1.1.0/24|" + asPath + "|IGP";
+		parse(line + "\r\n" + line);
+
+		assertEquals(2, messages.size());
+		assertEquals(0, malformed.size());
+	}
+
+	@Test
+	public void testReadStartTime() throws IOException {
+		assertEquals(1243814454,
+				parser.readStartTime("test/updates/updates_m_1"));
+	}
+}
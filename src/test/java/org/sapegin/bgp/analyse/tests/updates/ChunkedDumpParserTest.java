@@ -0,0 +1,153 @@
+package org.sapegin.bgp.analyse.tests.updates;
+
+import static org.junit.Assert.*;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ribs.ASPath;
+import org.sapegin.bgp.analyse.updates.BGP4MPHandler;
+import org.sapegin.bgp.analyse.updates.BGP4MPParser;
+import org.sapegin.bgp.analyse.updates.ChunkedDumpParser;
+import org.sapegin.bgp.analyse.updates.PeerHandlers;
+import org.sapegin.bgp.analyse.updates.PeerRouter;
+
+public class ChunkedDumpParserTest {
+
+	private static final String FILENAME = "test/updates/updates_m_2";
+
+	private ExecutorService executor;
+
+	@Before
+	public void prepare() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * remembers messages of every peer (except peer 1916) in order
+	 */
+	private static class RecordingHandlers implements PeerHandlers {
+
+		private final Map<Integer, ArrayList<String>> messages = new TreeMap<Integer, ArrayList<String>>();
+
+		private int malformed = 0;
+
+		@Override
+		public boolean isNeeded(long time, int peerAS) {
+			return peerAS != 1916;
+		}
+
+		@Override
+		public BGP4MPHandler newHandler(int peerAS) {
+			final ArrayList<String> peerMessages = new ArrayList<String>();
+			assertNull(messages.put(peerAS, peerMessages));
+
+			return new BGP4MPHandler() {
+				@Override
+				public void message(long time, byte type, int peerAS,
+						int prefix, byte prefixLength, byte[] line,
+						int asPathStart, int asPathEnd) {
+					peerMessages.add(time + " " + (char) type + " " + prefix
+							+ "/" + prefixLength + " "
+							+ new ASPath(line, asPathStart, asPathEnd)
+									.getASList());
+				}
+
+				@Override
+				public void malformed(String reason) {
+					fail();
+				}
+			};
+		}
+
+		@Override
+		public void malformed(String reason) {
+			malformed++;
+		}
+	}
+
+	@Test
+	public void testParse() throws IOException {
+		// sequential
+		RecordingHandlers expected = new RecordingHandlers();
+		InputStream in = new FileInputStream(FILENAME);
+		new BGP4MPParser().parse(in, new PeerRouter(expected));
+		in.close();
+
+		assertEquals(1, expected.messages.size());
+		assertEquals(18, expected.messages.get(22548).size());
+		assertFalse(expected.messages.containsKey(1916));
+
+		// chunks are much smaller than file
+		ChunkedDumpParser parser = new ChunkedDumpParser(executor, 200);
+		assertTrue(parser.canSplit(FILENAME));
+
+		RecordingHandlers chunked = new RecordingHandlers();
+		parser.parse(FILENAME, chunked);
+
+		assertEquals(expected.messages, chunked.messages);
+		assertEquals(expected.malformed, chunked.malformed);
+
+		// only one chunk is kept in memory at a time
+		RecordingHandlers oneChunk = new RecordingHandlers();
+		new ChunkedDumpParser(executor, 200, 1).parse(FILENAME, oneChunk);
+
+		assertEquals(expected.messages, oneChunk.messages);
+		assertEquals(expected.malformed, oneChunk.malformed);
+	}
+
+	@Test
+	public void testSharedPermits() throws Exception {
+		RecordingHandlers expected = new RecordingHandlers();
+		new ChunkedDumpParser(executor, 200).parse(FILENAME, expected);
+
+		// two files are parsed at once with only one chunk in memory
+		final Semaphore permits = new Semaphore(1);
+		ExecutorService files = Executors.newFixedThreadPool(2);
+		List<Future<RecordingHandlers>> results = new ArrayList<Future<RecordingHandlers>>();
+		for (int i = 0; i < 2; i++) {
+			results.add(files.submit(new Callable<RecordingHandlers>() {
+				@Override
+				public RecordingHandlers call() throws IOException {
+					RecordingHandlers handlers = new RecordingHandlers();
+					new ChunkedDumpParser(executor, 200, permits).parse(
+							FILENAME, handlers);
+					return handlers;
+				}
+			}));
+		}
+		for (Future<RecordingHandlers> result : results) {
+			assertEquals(expected.messages, result.get().messages);
+		}
+		files.shutdown();
+
+		// all permits are released
+		assertEquals(1, permits.availablePermits());
+	}
+
+	@Test
+	public void testCanSplit() throws IOException {
+		assertFalse(new ChunkedDumpParser(executor,
+				ChunkedDumpParser.DEFAULT_CHUNK_SIZE).canSplit(FILENAME));
+		assertFalse(new ChunkedDumpParser(executor, 200)
+				.canSplit("test/updates/updates_m_3"));
+	}
+}
@@ -0,0 +1,337 @@
+package org.sapegin.bgp.analyse.tests.updates;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ribs.ASPath;
+import org.sapegin.bgp.analyse.updates.BGP4MPHandler;
+import org.sapegin.bgp.analyse.updates.BGP4MPParser;
+import org.sapegin.bgp.analyse.updates.DumpParser;
+import org.sapegin.bgp.analyse.updates.MRTParser;
+
+public class MRTParserTest {
+
+	private ArrayList<String> messages;
+	private ArrayList<String> malformed;
+
+	private BGP4MPHandler handler = new BGP4MPHandler() {
+
+		@Override
+		public void message(long time, byte type, int peerAS, int prefix,
+				byte prefixLength, byte[] line, int asPathStart, int asPathEnd) {
+			messages.add(time + " " + (char) type + " " + peerAS + " "
+					+ (prefix >>> 24) + "." + ((prefix >>> 16) & 0xff) + "."
+					+ ((prefix >>> 8) & 0xff) + "." + (prefix & 0xff) + "/"
+					+ prefixLength + " "
+					+ new ASPath(line, asPathStart, asPathEnd).getASList());
+		}
+
+		@Override
+		public void malformed(String reason) {
+			malformed.add(reason);
+		}
+	};
+
+	@Before
+	public void prepare() {
+		messages = new ArrayList<String>();
+		malformed = new ArrayList<String>();
+	}
+
+	/**
+	 * creates MRT record with the given body
+	 */
+	private byte[] record(long time, int type, int subtype, byte[] body)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt((int) time);
+		out.writeShort(type);
+		out.writeShort(subtype);
+		out.writeInt(body.length);
+		out.write(body);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * creates BGP4MP_MESSAGE(_AS4) body with UPDATE message
+	 */
+	private byte[] update(int peerAS, int asSize, byte[] withdrawn,
+			byte[] attributes, byte[] nlri) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeAS(out, peerAS, asSize); // peer AS
+		writeAS(out, 6447, asSize); // local AS
+		out.writeShort(0); // interface
+		out.writeShort(1); // AFI IPv4
+		out.writeInt(0xC6208F41); // peer IP
+		out.writeInt(0xC6208F01); // local IP
+		for (int i = 0; i < 16; i++) {
+			out.writeByte(0xff); // marker
+		}
+		out.writeShort(19 + 2 + withdrawn.length + 2 + attributes.length
+				+ nlri.length);
+		out.writeByte(2); // UPDATE
+		out.writeShort(withdrawn.length);
+		out.write(withdrawn);
+		out.writeShort(attributes.length);
+		out.write(attributes);
+		out.write(nlri);
+		return bytes.toByteArray();
+	}
+
+	private void writeAS(DataOutputStream out, int as, int asSize)
+			throws IOException {
+		if (asSize == 2) {
+			out.writeShort(as);
+		} else {
+			out.writeInt(as);
+		}
+	}
+
+	/**
+	 * creates path attribute
+	 */
+	private byte[] attribute(int code, byte[] value) {
+		byte[] attribute = new byte[3 + value.length];
+		attribute[0] = 0x40;
+		attribute[1] = (byte) code;
+		attribute[2] = (byte) value.length;
+		System.arraycopy(value, 0, attribute, 3, value.length);
+		return attribute;
+	}
+
+	/**
+	 * creates AS Path segment
+	 */
+	private byte[] segment(int segmentType, int asSize, int... ases)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(segmentType);
+		out.writeByte(ases.length);
+		for (int as : ases) {
+			writeAS(out, as, asSize);
+		}
+		return bytes.toByteArray();
+	}
+
+	private byte[] concat(byte[]... arrays) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (byte[] array : arrays) {
+			bytes.write(array, 0, array.length);
+		}
+		return bytes.toByteArray();
+	}
+
+	private byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+
+	private void parse(MRTParser parser, byte[] dump) throws IOException {
+		parser.parse(new ByteArrayInputStream(dump), handler);
+	}
+
+	@Test
+	public void testParseUpdates() throws IOException {
+		byte[] asPath = attribute(
+				2,
+				concat(segment(2, 4, 4558, 3356), segment(1, 4, 12, 13)));
+		byte[] dump = concat(
+				record(1243814950, MRTParser.BGP4MP, 4,
+						update(4558, 4, bytes(8, 10),
+								concat(attribute(1, bytes(0)), asPath),
+								bytes(30, 213, 147, 65, 76, 24, 1, 2, 3))),
+				// state change is skipped
+				record(1243814951, MRTParser.BGP4MP, 5, bytes(0, 0, 0, 1)),
+				// the same in 2 byte AS message with AS4_PATH
+				record(1243814952, MRTParser.BGP4MP, 1,
+						update(4558, 2, new byte[0], concat(
+								attribute(2, segment(2, 2, 4558, 23456)),
+								attribute(17, segment(2, 4, 200000))),
+								bytes(24, 1, 2, 3))));
+
+		parse(new MRTParser(), dump);
+
+		assertEquals(0, malformed.size());
+		assertEquals(4, messages.size());
+		assertEquals("1243814950 W 4558 10.0.0.0/8 []", messages.get(0));
+		// AS_SET is written as [12 13], but not stored by ASPath
+		assertEquals("1243814950 A 4558 213.147.65.76/30 [4558, 3356]",
+				messages.get(1));
+		assertEquals("1243814950 A 4558 1.2.3.0/24 [4558, 3356]",
+				messages.get(2));
+		assertEquals("1243814952 A 4558 1.2.3.0/24 [4558, 200000]",
+				messages.get(3));
+
+		// RIB parser skips updates
+		prepare();
+		parse(new MRTParser(MRTParser.TABLE_DUMP_V2), dump);
+		assertEquals(0, messages.size());
+	}
+
+	@Test
+	public void testParseTableDumpV2() throws IOException {
+		ByteArrayOutputStream peerIndex = new ByteArrayOutputStream();
+		DataOutputStream peers = new DataOutputStream(peerIndex);
+		peers.writeInt(0); // collector
+		peers.writeShort(0); // view name
+		peers.writeShort(2);
+		peers.writeByte(0); // IPv4, 2 byte AS
+		peers.writeInt(1);
+		peers.writeInt(0xC6208F41);
+		peers.writeShort(4558);
+		peers.writeByte(3); // IPv6, 4 byte AS
+		peers.writeInt(2);
+		peers.write(new byte[16]);
+		peers.writeInt(200000);
+
+		byte[] asPath = attribute(2, segment(2, 4, 3356, 12));
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		DataOutputStream rib = new DataOutputStream(entries);
+		rib.writeInt(0); // sequence
+		rib.write(bytes(16, 10, 1));
+		rib.writeShort(2);
+		for (int peer = 0; peer < 2; peer++) {
+			rib.writeShort(peer);
+			rib.writeInt(0);
+			rib.writeShort(asPath.length);
+			rib.write(asPath);
+		}
+
+		parse(new MRTParser(MRTParser.TABLE_DUMP_V2),
+				concat(record(1243814400, MRTParser.TABLE_DUMP_V2, 1,
+						peerIndex.toByteArray()),
+						record(1243814400, MRTParser.TABLE_DUMP_V2, 2,
+								entries.toByteArray())));
+
+		assertEquals(0, malformed.size());
+		assertEquals(2, messages.size());
+		assertEquals("1243814400 B 4558 10.1.0.0/16 [3356, 12]",
+				messages.get(0));
+		assertEquals("1243814400 B 200000 10.1.0.0/16 [3356, 12]",
+				messages.get(1));
+	}
+
+	@Test
+	public void testMalformed() throws IOException {
+		// IPv6 announcement in MP_REACH_NLRI
+		byte[] mpReach = attribute(
+				14,
+				concat(bytes(0, 2, 1, 16), new byte[16],
+						bytes(0, 32, 0x20, 0x01, 0x0d, 0xb8)));
+		byte[] update = record(1243814950, MRTParser.BGP4MP, 4,
+				update(4558, 4, new byte[0], mpReach, new byte[0]));
+
+		// wrong prefix length, broken attributes and truncated record
+		byte[] wrongPrefix = record(1243814950, MRTParser.BGP4MP, 4,
+				update(4558, 4, bytes(33, 1, 2, 3, 4, 5), new byte[0],
+						new byte[0]));
+		byte[] brokenAttributes = record(1243814950, MRTParser.BGP4MP, 4,
+				update(4558, 4, new byte[0], bytes(0x40, 2, 100), new byte[0]));
+		byte[] truncated = record(1243814950, MRTParser.BGP4MP, 4,
+				update(4558, 4, new byte[0], new byte[0], bytes(24, 1, 2, 3)));
+		truncated = Arrays.copyOf(truncated, truncated.length - 1);
+
+		parse(new MRTParser(),
+				concat(update, wrongPrefix, brokenAttributes, truncated));
+
+		assertEquals(0, messages.size());
+		assertEquals(4, malformed.size());
+		assertEquals(BGP4MPParser.IPV6_PREFIX, malformed.get(0));
+		assertEquals(BGP4MPParser.WRONG_PREFIX, malformed.get(1));
+		assertEquals(MRTParser.WRONG_RECORD, malformed.get(2));
+		assertEquals(MRTParser.TRUNCATED, malformed.get(3));
+	}
+
+	@Test
+	public void testCompressedDump() throws IOException {
+		byte[] dump = record(1243814950, MRTParser.BGP4MP, 4,
+				update(4558, 4, bytes(8, 10), new byte[0], new byte[0]));
+
+		File file = File.createTempFile("updates", ".gz");
+		file.deleteOnExit();
+		GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+		out.write(dump);
+		out.close();
+
+		assertEquals(1243814950,
+				new MRTParser().readStartTime(file.getPath()));
+
+		InputStream in = DumpParser.open(file.getPath());
+		DumpParser parser = DumpParser.forUpdates(in);
+		assertTrue(parser instanceof MRTParser);
+		parser.parse(in, handler);
+		in.close();
+
+		assertEquals(1, messages.size());
+		assertEquals("1243814950 W 4558 10.0.0.0/8 []", messages.get(0));
+	}
+
+	@Test
+	public void testTruncatedBzip2Dump() throws IOException,
+			InterruptedException {
+		ByteArrayOutputStream dump = new ByteArrayOutputStream();
+		for (int i = 0; i < 10000; i++) {
+			dump.write(record(1243814950 + i, MRTParser.BGP4MP, 4,
+					update(4558, 4, bytes(8, 10), new byte[0], new byte[0])));
+		}
+
+		File file = File.createTempFile("updates", "");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(dump.toByteArray());
+		out.close();
+
+		assertEquals(0, new ProcessBuilder("bzip2", "-f", file.getPath())
+				.start().waitFor());
+		File compressed = new File(file.getPath() + ".bz2");
+		compressed.deleteOnExit();
+
+		// complete file is unpacked without errors
+		InputStream in = DumpParser.open(compressed.getPath());
+		DumpParser.forUpdates(in).parse(in, handler);
+		in.close();
+		assertEquals(10000, messages.size());
+
+		// cut the end of compressed file
+		RandomAccessFile truncated = new RandomAccessFile(compressed, "rw");
+		truncated.setLength(truncated.length() / 2);
+		truncated.close();
+
+		in = DumpParser.open(compressed.getPath());
+		DumpParser.forUpdates(in).parse(in, handler);
+		try {
+			in.close();
+			fail("truncated file should not be taken for a complete one");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("bzip2"));
+		}
+	}
+
+	@Test
+	public void testASCIIDump() throws IOException {
+		InputStream in = DumpParser.open("test/updates/updates_m_1");
+		assertFalse(DumpParser.isMRT(in));
+		assertTrue(DumpParser.forUpdates(in) instanceof BGP4MPParser);
+		assertEquals(1243814454, DumpParser.forUpdates(in).readStartTime(in));
+		in.close();
+	}
+}
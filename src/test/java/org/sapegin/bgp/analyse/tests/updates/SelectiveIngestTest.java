@@ -0,0 +1,125 @@
+package org.sapegin.bgp.analyse.tests.updates;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ASsNames;
+import org.sapegin.bgp.analyse.InternetMap;
+import org.sapegin.bgp.analyse.SizeInterval;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+import org.sapegin.bgp.analyse.tests.GenericTestWithRIB;
+import org.sapegin.bgp.analyse.updates.SelectiveIngest;
+import org.sapegin.bgp.analyse.updates.Updates;
+import org.sapegin.bgp.analyse.updates.UpdatesFactory;
+import org.sapegin.bgp.analyse.visibility.MonitoredASs;
+
+public class SelectiveIngestTest extends GenericTestWithRIB {
+
+	private Spike spikeWithSize(int size) {
+		Spike spike = Spike.countOnly();
+		for (int i = 0; i < size; i++) {
+			spike.addPrefix(i, (byte) 24);
+		}
+		return spike;
+	}
+
+	@Test
+	public void testSelect() {
+		SpikeCollection counted = new SpikeCollection();
+		MonitoredAS as = new MonitoredAS("router", 1);
+		counted.addSpike(100, spikeWithSize(5), as);
+		counted.addSpike(200, spikeWithSize(10), as);
+		counted.addSpike(300, spikeWithSize(20), as);
+
+		SelectiveIngest ingest = new SelectiveIngest(
+				Arrays.asList(new SizeInterval(10, 20)), 5);
+		ingest.addAnalysedTime(1000);
+		assertFalse(ingest.isSelected());
+		assertFalse(ingest.keepsPrefixes(200));
+
+		ingest.select(counted);
+		assertTrue(ingest.isSelected());
+		assertEquals(2, ingest.getNumberOfSelectedTimes());
+
+		assertFalse(ingest.keepsPrefixes(100));
+		assertFalse(ingest.keepsPrefixes(194));
+		assertTrue(ingest.keepsPrefixes(195));
+		assertTrue(ingest.keepsPrefixes(200));
+		assertTrue(ingest.keepsPrefixes(205));
+		assertFalse(ingest.keepsPrefixes(206));
+		// maximum size is not included
+		assertFalse(ingest.keepsPrefixes(300));
+		assertTrue(ingest.keepsPrefixes(1000));
+	}
+
+	@Test
+	public void testSelectiveUpdates() throws Exception {
+		ASsNames names = new ASsNames(inputASsFilenames);
+		InternetMap iMap = new InternetMap(properties.getProperty("map"),
+				properties.getProperty("map_t1"),
+				properties.getProperty("map_t2"),
+				properties.getProperty("map_t3"));
+		MonitoredASs monitoredASs = new MonitoredASs(iMap, names, 1);
+
+		UpdatesFactory<MonitoredASs> factory = new UpdatesFactory<MonitoredASs>();
+		Updates expected = factory.createUpdates(true, inputRIBsFilenames,
+				true, true, monitoredASs, inputUpdatesFilenames, false);
+
+		// only the biggest spikes are analysed
+		int maxSize = 0;
+		for (SingleASspikes spikes : expected.getUpdateMap().values()) {
+			maxSize = Math.max(maxSize, spikes.getCurrentBiggestSpike()
+					.getSpikeSize());
+		}
+		SelectiveIngest ingest = new SelectiveIngest(
+				Arrays.asList(new SizeInterval(maxSize, maxSize + 1)), 1);
+		factory.setSelectiveIngest(ingest);
+		Updates selected = factory.createUpdates(true, inputRIBsFilenames,
+				true, true, monitoredASs, inputUpdatesFilenames, false);
+
+		assertTrue(ingest.isSelected());
+		assertTrue(ingest.getNumberOfSelectedTimes() > 0);
+		assertEquals(expected.getUpdateMap().keySet(), selected.getUpdateMap()
+				.keySet());
+
+		int withPrefixes = 0;
+		int withoutPrefixes = 0;
+		for (MonitoredAS as : expected.getUpdateMap().keySet()) {
+			SingleASspikes expectedSpikes = expected.getUpdateMap().get(as);
+			SingleASspikes selectedSpikes = selected.getUpdateMap().get(as);
+
+			// sizes of all spikes are known
+			assertEquals(expectedSpikes.getNumberOfSpikes(),
+					selectedSpikes.getNumberOfSpikes());
+			assertEquals(expectedSpikes.getCurrentUpdateSum(),
+					selectedSpikes.getCurrentUpdateSum());
+
+			for (int i = 0; i < expectedSpikes.getNumberOfSpikes(); i++) {
+				long time = expectedSpikes.getTime(i);
+				Spike spike = selectedSpikes.getSpike(i);
+				assertEquals(time, selectedSpikes.getTime(i));
+				assertEquals(expectedSpikes.getSpike(i).getSpikeSize(),
+						spike.getSpikeSize());
+				assertEquals(ingest.keepsPrefixes(time), spike.hasPrefixes());
+
+				if (ingest.isAnalysedSize(spike.getSpikeSize())) {
+					assertTrue(spike.hasPrefixes());
+				}
+				if (spike.hasPrefixes()) {
+					assertEquals(expectedSpikes.getSpike(i).copyPrefixSet()
+							.size(), spike.copyPrefixSet().size());
+					withPrefixes++;
+				} else {
+					withoutPrefixes++;
+				}
+			}
+		}
+		assertTrue(withPrefixes > 0);
+		assertTrue(withoutPrefixes > 0);
+	}
+}
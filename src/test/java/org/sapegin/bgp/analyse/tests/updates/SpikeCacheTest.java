@@ -0,0 +1,123 @@
+package org.sapegin.bgp.analyse.tests.updates;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ASSet;
+import org.sapegin.bgp.analyse.ASsNames;
+import org.sapegin.bgp.analyse.InternetMap;
+import org.sapegin.bgp.analyse.ribs.RIBLoader;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.spikes.Spike;
+import org.sapegin.bgp.analyse.spikes.SpikeCollection;
+import org.sapegin.bgp.analyse.tests.GenericTestWithRIB;
+import org.sapegin.bgp.analyse.updates.SpikeCache;
+import org.sapegin.bgp.analyse.updates.Updates;
+import org.sapegin.bgp.analyse.updates.UpdatesFactory;
+import org.sapegin.bgp.analyse.updates.UpdatesFromVisibleASsWithOriginAS;
+import org.sapegin.bgp.analyse.visibility.MonitoredASs;
+
+public class SpikeCacheTest extends GenericTestWithRIB {
+
+	private ASsNames names;
+	private InternetMap iMap;
+	private File folder;
+
+	@Before
+	public void prepare() throws Exception {
+		names = new ASsNames(inputASsFilenames);
+		iMap = new InternetMap(properties.getProperty("map"),
+				properties.getProperty("map_t1"),
+				properties.getProperty("map_t2"),
+				properties.getProperty("map_t3"));
+
+		folder = File.createTempFile("spikes", "");
+		folder.delete();
+	}
+
+	@After
+	public void cleanup() {
+		if (folder.exists()) {
+			for (File file : folder.listFiles()) {
+				file.delete();
+			}
+			folder.delete();
+		}
+	}
+
+	private Updates load() {
+		UpdatesFactory<MonitoredASs> updatesFactory = new UpdatesFactory<MonitoredASs>(
+				1, RIBLoader.DEFAULT_MEMORY_RESERVE, false, folder.getPath());
+		return updatesFactory.createUpdates(true, inputRIBsFilenames, false,
+				true, new MonitoredASs(iMap, names, 1), inputUpdatesFilenames,
+				false);
+	}
+
+	@Test
+	public void testReload() throws IOException {
+		Updates parsed = load();
+		assertEquals(1, folder.listFiles().length);
+
+		Updates cached = load();
+		assertTrue(cached instanceof UpdatesFromVisibleASsWithOriginAS);
+
+		assertFalse(parsed.getUpdateMap().isEmpty());
+		assertEquals(parsed.getUpdateMap().keySet(), cached.getUpdateMap()
+				.keySet());
+
+		for (MonitoredAS monitoredAS : parsed.getUpdateMap().keySet()) {
+			SingleASspikes expected = parsed.getUpdateMap().get(monitoredAS);
+			SingleASspikes actual = cached.getUpdateMap().get(monitoredAS);
+
+			assertEquals(expected.getNumberOfSpikes(),
+					actual.getNumberOfSpikes());
+			for (int i = 0; i < expected.getNumberOfSpikes(); i++) {
+				assertEquals(expected.getTime(i), actual.getTime(i));
+
+				Spike expectedSpike = expected.getSpike(i);
+				Spike actualSpike = actual.getSpike(i);
+				assertEquals(expectedSpike.getSpikeSize(),
+						actualSpike.getSpikeSize());
+				assertEquals(expectedSpike.getNumberOfOriginASs(),
+						actualSpike.getNumberOfOriginASs());
+				for (int j = 0; j < expectedSpike.getSpikeSize(); j++) {
+					assertEquals(expectedSpike.getPrefix(j),
+							actualSpike.getPrefix(j));
+					assertEquals(expectedSpike.getPrefixLength(j),
+							actualSpike.getPrefixLength(j));
+					assertEquals(expectedSpike.getOriginAS(j),
+							actualSpike.getOriginAS(j));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFailedSave() throws IOException {
+		SpikeCache cache = new SpikeCache(folder.getPath(), "test",
+				new ASSet(Arrays.asList(1, 2)),
+				inputUpdatesFilenames);
+
+		// cache file can't replace non-empty folder
+		File blocker = new File(cache.getFile(), "blocker");
+		blocker.getParentFile().mkdirs();
+		blocker.createNewFile();
+
+		try {
+			cache.save(new SpikeCollection());
+			fail("IOException expected");
+		} catch (IOException e) {
+			// expected
+		}
+		assertFalse(new File(cache.getFile().getPath() + ".tmp").exists());
+
+		blocker.delete();
+	}
+}
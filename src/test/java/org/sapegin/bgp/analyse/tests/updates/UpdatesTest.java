@@ -7,7 +7,6 @@ import static org.junit.Assert.assertTrue;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
-import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +14,8 @@ import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.spikes.Destination;
 import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.Prefix;
+import org.sapegin.bgp.analyse.spikes.PrefixSet;
 import org.sapegin.bgp.analyse.spikes.SelectedSpikes;
 import org.sapegin.bgp.analyse.spikes.Spike;
 import org.sapegin.bgp.analyse.spikes.SpikeCollection;
@@ -130,10 +131,10 @@ public class UpdatesTest extends BasicTest {
 		// get random as
 		MonitoredAS as = updates.getUpdateMap().keySet().iterator().next();
 		
-		Set<InetAddress> markedPrefixes = updates.getDuplicatedPrefixesInSpikeIfSpikeIsDuplicated(spike, updates.getUpdateMap().get(as).getCurrentMinTime(), 1000, as, 0.1);
+		PrefixSet markedPrefixes = updates.getDuplicatedPrefixesInSpikeIfSpikeIsDuplicated(spike, updates.getUpdateMap().get(as).getCurrentMinTime(), 1000, as, 0.1);
 		
 		//System.out.println(markedPrefixes.size());
 		assertEquals(1, markedPrefixes.size());
-		assertEquals(InetAddress.getByName("1.1.1.0"),markedPrefixes.iterator().next());
+		assertEquals(Prefix.parse("1.1.1.0"),markedPrefixes.toArray()[0]);
 	}
 }
@@ -0,0 +1,96 @@
+package org.sapegin.bgp.analyse.tests.updates;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sapegin.bgp.analyse.ASsNames;
+import org.sapegin.bgp.analyse.InternetMap;
+import org.sapegin.bgp.analyse.spikes.MonitoredAS;
+import org.sapegin.bgp.analyse.spikes.SingleASspikes;
+import org.sapegin.bgp.analyse.tests.GenericTestWithRIB;
+import org.sapegin.bgp.analyse.updates.Updates;
+import org.sapegin.bgp.analyse.updates.UpdatesFactory;
+import org.sapegin.bgp.analyse.visibility.MonitoredASs;
+import org.sapegin.bgp.analyse.visibility.VisibleASs;
+
+public class UpdatesViewTest extends GenericTestWithRIB {
+
+	private ASsNames names;
+	private InternetMap iMap;
+
+	@Before
+	public void prepare() throws Exception {
+		names = new ASsNames(inputASsFilenames);
+		iMap = new InternetMap(properties.getProperty("map"),
+				properties.getProperty("map_t1"),
+				properties.getProperty("map_t2"),
+				properties.getProperty("map_t3"));
+	}
+
+	private void assertSameSpikes(Updates expected, Updates actual) {
+		assertEquals(expected.getUpdateMap().keySet(), actual.getUpdateMap()
+				.keySet());
+		for (MonitoredAS monitoredAS : expected.getUpdateMap().keySet()) {
+			SingleASspikes expectedSpikes = expected.getUpdateMap().get(
+					monitoredAS);
+			SingleASspikes actualSpikes = actual.getUpdateMap().get(
+					monitoredAS);
+			assertEquals(expectedSpikes.getNumberOfSpikes(),
+					actualSpikes.getNumberOfSpikes());
+			assertEquals(expectedSpikes.getCurrentUpdateSum(),
+					actualSpikes.getCurrentUpdateSum());
+			assertEquals(expectedSpikes.getCurrentMinTime(),
+					actualSpikes.getCurrentMinTime());
+		}
+	}
+
+	private void testView(boolean synchronise) {
+		MonitoredASs monitoredASs = new MonitoredASs(iMap, names, 1);
+		VisibleASs visibleASs = new VisibleASs(iMap, names, 0.5f, 1);
+
+		UpdatesFactory<MonitoredASs> allFactory = new UpdatesFactory<MonitoredASs>();
+		UpdatesFactory<VisibleASs> visibleFactory = new UpdatesFactory<VisibleASs>();
+
+		assertTrue(UpdatesFactory.canCreateView(true, true, true));
+
+		// loaded once
+		Updates allUpdates = allFactory.createUpdates(true,
+				inputRIBsFilenames, true, true, monitoredASs,
+				inputUpdatesFilenames, false);
+		Updates view = visibleFactory.createView(allUpdates, true, true, true,
+				visibleASs, synchronise);
+
+		// loaded separately
+		Updates expectedAll = allFactory.createUpdates(true,
+				inputRIBsFilenames, true, true, monitoredASs,
+				inputUpdatesFilenames, synchronise);
+		Updates expectedView = visibleFactory.createUpdates(true,
+				inputRIBsFilenames, true, true, visibleASs,
+				inputUpdatesFilenames, synchronise);
+
+		assertFalse(view.getUpdateMap().isEmpty());
+		assertTrue(view.getUpdateMap().size() < allUpdates.getUpdateMap()
+				.size());
+		assertSameSpikes(expectedAll, allUpdates);
+		assertSameSpikes(expectedView, view);
+	}
+
+	@Test
+	public void testView() {
+		testView(false);
+	}
+
+	@Test
+	public void testSynchronisedView() {
+		testView(true);
+	}
+
+	@Test
+	public void testCanCreateView() {
+		// updates are also filtered by AS Path
+		assertFalse(UpdatesFactory.canCreateView(true, false, false));
+		assertTrue(UpdatesFactory.canCreateView(false, false, true));
+		assertFalse(UpdatesFactory.canCreateView(false, true, true));
+	}
+}
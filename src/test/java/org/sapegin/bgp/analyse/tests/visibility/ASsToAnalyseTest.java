@@ -2,12 +2,12 @@ package org.sapegin.bgp.analyse.tests.visibility;
 
 import static org.junit.Assert.*;
 
-import java.util.ArrayList;
 
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleGraph;
 import org.junit.Before;
 import org.junit.Test;
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.tests.BasicTest;
@@ -42,7 +42,7 @@ public class ASsToAnalyseTest extends BasicTest {
 
 	@Test
 	public void testGetASsNamesFromBiggestConnectedGraphComponent() {
-		ArrayList<Integer> res = visibleASs
+		ASSet res = visibleASs
 				.getASsNamesFromBiggestConnectedGraphComponent();
 
 		assertTrue(res.contains(13101));
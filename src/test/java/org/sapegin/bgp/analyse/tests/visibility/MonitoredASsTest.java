@@ -4,10 +4,10 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
-import java.util.ArrayList;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.tests.BasicTest;
@@ -47,7 +47,7 @@ public class MonitoredASsTest extends BasicTest {
 
 	@Test
 	public void testGetVisibleASsNames() {
-		ArrayList<Integer> visible = monitoredASs.getVisibleASsNames();
+		ASSet visible = monitoredASs.getVisibleASsNames();
 
 		assertTrue(visible.contains(22548));
 		assertTrue(visible.contains(24875));
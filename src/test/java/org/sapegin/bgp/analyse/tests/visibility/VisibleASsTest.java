@@ -3,10 +3,10 @@ package org.sapegin.bgp.analyse.tests.visibility;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
-import java.util.ArrayList;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sapegin.bgp.analyse.ASSet;
 import org.sapegin.bgp.analyse.ASsNames;
 import org.sapegin.bgp.analyse.InternetMap;
 import org.sapegin.bgp.analyse.tests.BasicTest;
@@ -35,7 +35,7 @@ public class VisibleASsTest extends BasicTest {
 	@Test
 	public void testGetVisibleASsNames() {
 		visibleASs = new VisibleASs(map, names, 0.99f, threads);
-		ArrayList<Integer> visible = visibleASs.getVisibleASsNames();
+		ASSet visible = visibleASs.getVisibleASsNames();
 
 		assertFalse(visible.contains(22548));
 		assertTrue(visible.contains(24875));